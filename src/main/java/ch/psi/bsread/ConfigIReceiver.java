@@ -2,6 +2,9 @@ package ch.psi.bsread;
 
 import org.zeromq.ZMQ.Socket;
 
+import ch.psi.bsread.common.concurrent.HandlerDispatcher;
+import ch.psi.bsread.metrics.ReceiverMetrics;
+
 public interface ConfigIReceiver<V> extends IReceiver<V> {
 
    /**
@@ -31,4 +34,24 @@ public interface ConfigIReceiver<V> extends IReceiver<V> {
     * @return ReceiverState The ReceiverState
     */
    ReceiverState getReceiverState();
+
+   /**
+    * Provides the HandlerDispatcher running the handlers (see
+    * {@link ReceiverConfig#isParallelHandlerProcessing()} and
+    * {@link ReceiverConfig#isPipelinedHandlerProcessing()}).
+    * 
+    * @return HandlerDispatcher The HandlerDispatcher or null if handlers run on the receiving thread
+    */
+   default HandlerDispatcher getHandlerDispatcher() {
+      return null;
+   }
+
+   /**
+    * Provides the metrics of the Receiver.
+    * 
+    * @return ReceiverMetrics The ReceiverMetrics or null if metrics are disabled
+    */
+   default ReceiverMetrics getReceiverMetrics() {
+      return null;
+   }
 }
@@ -0,0 +1,104 @@
+package ch.psi.bsread;
+
+import java.nio.ByteBuffer;
+
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+
+/**
+ * A DataChannel that writes its value and timestamp directly into buffers of the {@link Sender}
+ * (i.e. no value object, no conversion by the ByteConverter and no Timestamp per pulse). The
+ * buffers are allocated by the allocators of the SenderConfig and are ordered according to the
+ * byte order of the ChannelConfig.
+ */
+public abstract class DirectDataChannel extends DataChannel<ByteBuffer> {
+	public static final int TIME_SIZE = 2 * Long.BYTES;
+
+	// subclasses providing their time through getTime(long) are respected by writeTime
+	private final boolean timeOverridden;
+
+	public DirectDataChannel(ChannelConfig config) {
+		super(config);
+		this.timeOverridden = isTimeOverridden(getClass());
+	}
+
+	/**
+	 * Provides the number of bytes of the value. By default, it is defined by type and shape of the
+	 * ChannelConfig (channels of types with a dynamic size, e.g. String, need to override this
+	 * method).
+	 *
+	 * @param pulseId The pulse-id
+	 * @return int The maximal number of bytes writeValue will write
+	 */
+	public int getValueSize(long pulseId) {
+		final ChannelConfig config = getConfig();
+		final Type type = config.getType();
+		if (type.getBytes() <= 0) {
+			throw new UnsupportedOperationException("Channel '" + config.getName()
+					+ "' of dynamic type '" + type + "' needs to define the value size.");
+		}
+
+		int size = type.getBytes();
+		for (final int dim : config.getShape()) {
+			size *= dim;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the value starting at the position of the buffer (relative puts that advance the
+	 * position and absolute puts are both fine).
+	 *
+	 * @param pulseId The pulse-id
+	 * @param dst The buffer (with at least getValueSize(pulseId) bytes remaining)
+	 * @return int The number of bytes written
+	 */
+	public abstract int writeValue(long pulseId, ByteBuffer dst);
+
+	/**
+	 * Writes the timestamp (seconds and nanoseconds as two longs) starting at the position of the
+	 * buffer and advances the position by {@link #TIME_SIZE}. By default, it is the timestamp of
+	 * {@link #getTime(long)} (the current time is written without creating a Timestamp if getTime is
+	 * not overridden).
+	 *
+	 * @param pulseId The pulse-id
+	 * @param dst The buffer (with at least TIME_SIZE bytes remaining)
+	 */
+	public void writeTime(long pulseId, ByteBuffer dst) {
+		// c-implementation uses a unsigned long (Json::UInt64, uint64_t)
+		// for time -> decided to ignore this here
+		if (timeOverridden) {
+			final Timestamp time = getTime(pulseId);
+			dst.putLong(time.getSec()).putLong(time.getNs());
+		} else {
+			final long millis = System.currentTimeMillis();
+			final long sec = millis / 1000L;
+			dst.putLong(sec).putLong((millis - (sec * 1000L)) * 1000000L);
+		}
+	}
+
+	private static boolean isTimeOverridden(Class<?> clazz) {
+		try {
+			return clazz.getMethod("getTime", long.class).getDeclaringClass() != DataChannel.class;
+		} catch (NoSuchMethodException e) {
+			// (getTime is public)
+			return true;
+		}
+	}
+
+	/**
+	 * Provides the value in a newly allocated buffer (the Sender uses
+	 * {@link #writeValue(long, ByteBuffer)}).
+	 *
+	 * @param pulseId The pulse-id
+	 * @return ByteBuffer The value
+	 */
+	@Override
+	public ByteBuffer getValue(long pulseId) {
+		final ByteBuffer buffer = ByteBuffer.allocate(getValueSize(pulseId)).order(getConfig().getByteOrder());
+		buffer.limit(writeValue(pulseId, buffer));
+		buffer.position(0);
+		return buffer;
+	}
+}
@@ -33,6 +33,28 @@ public interface IReceiver<V> extends Closeable {
     */
    Message<V> receive() throws RuntimeException;
 
+   /**
+    * Receives a batch of messages. Blocks (at most maxWaitNanos) for the first message and then
+    * adds the messages that are already available without blocking. Same as for
+    * {@link #receive()}, use close() to stop and check for -1 as termination condition.
+    * 
+    * @param sink The Collection the received messages are added to
+    * @param maxMessages The maximal number of messages to add
+    * @param maxWaitNanos The maximal time to wait for the first message (a negative value blocks
+    *        like {@link #receive()}, 0 does not block)
+    * @return int The number of messages added or -1 for termination.
+    * @throws RuntimeException Might throw a RuntimeException
+    */
+   default int receive(Collection<Message<V>> sink, int maxMessages, long maxWaitNanos) throws RuntimeException {
+      final Message<V> message = receive();
+      if (message == null) {
+         return -1;
+      } else {
+         sink.add(message);
+         return 1;
+      }
+   }
+
    /**
     * Provides access to the ValueHandlers
     * 
@@ -0,0 +1,215 @@
+package ch.psi.bsread;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.Timestamp;
+
+/**
+ * The JSON of a {@link MainHeader} pre-rendered by the ObjectMapper. Only pulse-id and global
+ * timestamp change from pulse to pulse, so their digits are written between the fixed parts of the
+ * template instead of serializing the header with Jackson for every pulse.
+ * <p>
+ * The template is rendered with sentinel values which are located in the JSON (i.e. it works
+ * independently of the configuration of the ObjectMapper as long as it is not changed afterwards).
+ * Headers the template cannot represent (subclasses of MainHeader, pulse-id 0 which is omitted
+ * due to Include.NON_DEFAULT, negative numbers) are serialized by the ObjectMapper.
+ */
+class MainHeaderTemplate {
+   private static final long PULSE_ID_SENTINEL = 918273645546372819L;
+   private static final long SEC_SENTINEL = 7463529180736251L;
+   private static final long NS_SENTINEL = 576849302L;
+   private static final int PULSE_ID = 0;
+   private static final int SEC = 1;
+   private static final int NS = 2;
+
+   private final ObjectMapper objectMapper;
+   private final String htype;
+   private final String hash;
+   private final Compression dataHeaderCompression;
+   // the fixed parts around the three numbers (null if the template could not be created)
+   private final byte[][] parts;
+   // the number written after parts[i]
+   private final int[] fields;
+
+   /**
+    * Constructor
+    *
+    * @param mainHeader The header defining the fixed parts (htype, hash and compression)
+    * @param objectMapper The ObjectMapper
+    */
+   public MainHeaderTemplate(MainHeader mainHeader, ObjectMapper objectMapper) {
+      this.objectMapper = objectMapper;
+      this.htype = mainHeader.getHtype();
+      this.hash = mainHeader.getHash();
+      this.dataHeaderCompression = mainHeader.getDataHeaderCompression();
+
+      byte[][] parts = null;
+      int[] fields = null;
+      if (MainHeader.class.equals(mainHeader.getClass())) {
+         try {
+            final byte[] json = objectMapper.writeValueAsBytes(new MainHeader(htype, PULSE_ID_SENTINEL,
+                  new Timestamp(SEC_SENTINEL, NS_SENTINEL), hash, dataHeaderCompression));
+            final int[] starts = new int[] {
+                  indexOf(json, PULSE_ID_SENTINEL),
+                  indexOf(json, SEC_SENTINEL),
+                  indexOf(json, NS_SENTINEL)};
+            if (starts[PULSE_ID] >= 0 && starts[SEC] >= 0 && starts[NS] >= 0) {
+               fields = new int[] {PULSE_ID, SEC, NS};
+               // order of appearance
+               sortByStart(fields, starts);
+
+               parts = new byte[fields.length + 1][];
+               int from = 0;
+               for (int i = 0; i < fields.length; ++i) {
+                  parts[i] = Arrays.copyOfRange(json, from, starts[fields[i]]);
+                  from = starts[fields[i]] + getNrOfDigits(getSentinel(fields[i]));
+               }
+               parts[fields.length] = Arrays.copyOfRange(json, from, json.length);
+            }
+         } catch (JsonProcessingException e) {
+            // use ObjectMapper (which will report the problem)
+            parts = null;
+         }
+      }
+      this.parts = parts;
+      this.fields = fields;
+   }
+
+   private static void sortByStart(int[] fields, int[] starts) {
+      for (int i = 1; i < fields.length; ++i) {
+         for (int j = i; j > 0 && starts[fields[j - 1]] > starts[fields[j]]; --j) {
+            final int tmp = fields[j];
+            fields[j] = fields[j - 1];
+            fields[j - 1] = tmp;
+         }
+      }
+   }
+
+   private static long getSentinel(int field) {
+      switch (field) {
+         case PULSE_ID:
+            return PULSE_ID_SENTINEL;
+         case SEC:
+            return SEC_SENTINEL;
+         default:
+            return NS_SENTINEL;
+      }
+   }
+
+   /*
+    * Provides the start of the only occurrence of the number (as a separate token) or -1.
+    */
+   private static int indexOf(byte[] json, long number) {
+      final byte[] digits = Long.toString(number).getBytes();
+      int index = -1;
+      for (int i = 0; i + digits.length <= json.length; ++i) {
+         if ((i == 0 || !isTokenChar(json[i - 1]))
+               && (i + digits.length == json.length || !isTokenChar(json[i + digits.length]))
+               && matches(json, i, digits)) {
+            if (index >= 0) {
+               // ambiguous
+               return -1;
+            }
+            index = i;
+         }
+      }
+      return index;
+   }
+
+   private static boolean isTokenChar(byte b) {
+      return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '.' || b == '-';
+   }
+
+   private static boolean matches(byte[] json, int offset, byte[] digits) {
+      for (int i = 0; i < digits.length; ++i) {
+         if (json[offset + i] != digits[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Determines if the template represents the fixed parts of a header.
+    *
+    * @param mainHeader The header
+    * @param objectMapper The ObjectMapper
+    * @return boolean true if the template can be used for the header, false otherwise
+    */
+   public boolean isValidFor(MainHeader mainHeader, ObjectMapper objectMapper) {
+      return this.objectMapper == objectMapper
+            && dataHeaderCompression == mainHeader.getDataHeaderCompression()
+            && Objects.equals(hash, mainHeader.getHash())
+            && Objects.equals(htype, mainHeader.getHtype());
+   }
+
+   /**
+    * Serializes a header (that is valid for this template).
+    *
+    * @param mainHeader The header
+    * @return byte[] The JSON
+    * @throws JsonProcessingException If the ObjectMapper had to be used and failed
+    */
+   public byte[] render(MainHeader mainHeader) throws JsonProcessingException {
+      final long pulseId = mainHeader.getPulseId();
+      final Timestamp globalTimestamp = mainHeader.getGlobalTimestamp();
+      if (parts == null || pulseId <= 0 || globalTimestamp == null || globalTimestamp.getSec() < 0) {
+         return objectMapper.writeValueAsBytes(mainHeader);
+      }
+
+      final long sec = globalTimestamp.getSec();
+      final long ns = globalTimestamp.getNs();
+      int length = getNrOfDigits(pulseId) + getNrOfDigits(sec) + getNrOfDigits(ns);
+      for (final byte[] part : parts) {
+         length += part.length;
+      }
+
+      // the socket takes ownership of the array (jeromq does not copy it)
+      final byte[] json = new byte[length];
+      int position = 0;
+      for (int i = 0; i < fields.length; ++i) {
+         System.arraycopy(parts[i], 0, json, position, parts[i].length);
+         position += parts[i].length;
+         switch (fields[i]) {
+            case PULSE_ID:
+               position = writeDigits(json, position, pulseId);
+               break;
+            case SEC:
+               position = writeDigits(json, position, sec);
+               break;
+            default:
+               position = writeDigits(json, position, ns);
+               break;
+         }
+      }
+      System.arraycopy(parts[fields.length], 0, json, position, parts[fields.length].length);
+      return json;
+   }
+
+   // non-negative numbers only
+   static int getNrOfDigits(long number) {
+      int nrOfDigits = 1;
+      while (number >= 10) {
+         number /= 10;
+         ++nrOfDigits;
+      }
+      return nrOfDigits;
+   }
+
+   // non-negative numbers only
+   static int writeDigits(byte[] dst, int position, long number) {
+      final int end = position + getNrOfDigits(number);
+      int index = end;
+      do {
+         dst[--index] = (byte) ('0' + (number % 10));
+         number /= 10;
+      } while (number != 0);
+      return end;
+   }
+}
@@ -25,4 +25,23 @@ public interface MessageExtractor<V> extends Consumer<DataHeader> {
 	 * @return Message The extracted Message
 	 */
 	Message<V> extractMessage(ConfigIReceiver<V> receiver, Socket socket, MainHeader mainHeader, Set<String> requestedChannels);
+
+	/**
+	 * Extracts the value bytes of a channel.
+	 * 
+	 * @param receiver
+	 *            The Receiver
+	 * @param socket
+	 *            The Socket to extract the Message
+	 * @param mainHeader
+	 *            The MainHeader
+	 * @param requestedChannels
+	 *            The compiled filter of the requested channels (null means all channels)
+	 * @return Message The extracted Message
+	 */
+	default Message<V> extractMessage(ConfigIReceiver<V> receiver, Socket socket, MainHeader mainHeader,
+			RequestedChannelFilter requestedChannels) {
+		return extractMessage(receiver, socket, mainHeader,
+				requestedChannels != null ? requestedChannels.getRequestedChannels(mainHeader.getPulseId()) : null);
+	}
 }
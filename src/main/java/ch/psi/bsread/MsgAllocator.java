@@ -1,4 +1,15 @@
 package ch.psi.bsread;
 
-public interface MsgAllocator extends zmq.msg.MsgAllocator{
+import zmq.Msg;
+
+public interface MsgAllocator extends zmq.msg.MsgAllocator {
+
+   /**
+    * Called for received frames that are skipped without being accessed (e.g. frames of channels
+    * that were not requested or drained frames). Allows to recycle the memory of the frame for
+    * subsequent allocations.
+    * 
+    * @param msg The Msg allocated by this allocator
+    */
+   default void discard(Msg msg) {}
 }
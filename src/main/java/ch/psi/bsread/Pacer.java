@@ -0,0 +1,218 @@
+package ch.psi.bsread;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.psi.bsread.metrics.LogLinearHistogram;
+
+/**
+ * Executes a task periodically with high precision (e.g. to simulate an IOC sending at 100Hz). The
+ * thread parks until shortly before the deadline (the park overshoot of the OS is calibrated
+ * continuously) and spins for the rest. Deadlines are fixed multiples of the period (optionally
+ * aligned to the wall clock, like the pulses of the machine), i.e. there is no drift.
+ * <p>
+ * Every execution is submitted to the Executor separately (i.e. other tasks of a single threaded
+ * Executor are executed between two executions of the pacer).
+ */
+public class Pacer implements Runnable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(Pacer.class);
+   public static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+   public enum OverrunPolicy {
+      /** Executes the missed periods back to back until the pacer is on time again. */
+      CATCH_UP,
+      /** Skips the missed periods and continues with the next deadline in the future. */
+      SKIP
+   }
+
+   private final Runnable task;
+   private final Executor executor;
+   private final long periodNanos;
+   private final OverrunPolicy overrunPolicy;
+   private long spinNanos = DEFAULT_SPIN_NANOS;
+   private boolean alignToWallClock = true;
+
+   // deviation of the start of the task from its deadline
+   private final LogLinearHistogram jitter = new LogLinearHistogram();
+   // how late the next deadline was when the task finished
+   private final LogLinearHistogram overruns = new LogLinearHistogram();
+   private final LongAdder skippedPeriods = new LongAdder();
+   private volatile long parkOvershootNanos;
+   private volatile boolean cancelled;
+   // only accessed by the executing thread (ordered by the Executor)
+   private long deadline;
+
+   /**
+    * Constructor
+    *
+    * @param task The task to execute
+    * @param executor The Executor executing the task
+    * @param period The period
+    * @param unit The unit of the period
+    * @param overrunPolicy Defines what happens if an execution takes longer than the period
+    */
+   public Pacer(Runnable task, Executor executor, long period, TimeUnit unit, OverrunPolicy overrunPolicy) {
+      this.task = task;
+      this.executor = executor;
+      this.periodNanos = unit.toNanos(period);
+      this.overrunPolicy = overrunPolicy;
+
+      if (periodNanos <= 0) {
+         throw new IllegalArgumentException("The period needs to be positive but was '" + periodNanos + "' ns.");
+      }
+   }
+
+   public long getSpinNanos() {
+      return spinNanos;
+   }
+
+   public void setSpinNanos(long spinNanos) {
+      this.spinNanos = spinNanos;
+   }
+
+   public boolean isAlignToWallClock() {
+      return alignToWallClock;
+   }
+
+   /**
+    * Defines if deadlines are multiples of the period in wall clock time (i.e. a pacer with a
+    * period of 10ms executes at 0ms, 10ms, 20ms... of every second).
+    *
+    * @param alignToWallClock true for aligned deadlines, false for deadlines relative to the start
+    */
+   public void setAlignToWallClock(boolean alignToWallClock) {
+      this.alignToWallClock = alignToWallClock;
+   }
+
+   /**
+    * Starts the pacer.
+    *
+    * @param initialDelay The delay of the first execution
+    * @param unit The unit of the delay
+    */
+   public void start(long initialDelay, TimeUnit unit) {
+      final long nanoTime = System.nanoTime();
+      long first = nanoTime + unit.toNanos(initialDelay);
+      if (alignToWallClock) {
+         final long wallClockOffset = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - nanoTime;
+         final long wallClock = first + wallClockOffset;
+         final long remainder = Math.floorMod(wallClock, periodNanos);
+         if (remainder != 0) {
+            first += periodNanos - remainder;
+         }
+      }
+      deadline = first;
+
+      executor.execute(this);
+   }
+
+   /**
+    * Stops the pacer (an ongoing execution of the task is finished).
+    */
+   public void cancel() {
+      cancelled = true;
+   }
+
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public void run() {
+      if (cancelled || !awaitDeadline()) {
+         return;
+      }
+
+      jitter.record(System.nanoTime() - deadline);
+      try {
+         task.run();
+      } catch (Exception e) {
+         // same as ScheduledExecutorService.scheduleAtFixedRate()
+         LOGGER.error("Stop pacer due to failing task.", e);
+         cancelled = true;
+         return;
+      }
+
+      deadline += periodNanos;
+      final long late = System.nanoTime() - deadline;
+      if (late > 0) {
+         overruns.record(late);
+         if (OverrunPolicy.SKIP.equals(overrunPolicy)) {
+            final long missed = late / periodNanos + 1;
+            skippedPeriods.add(missed);
+            deadline += missed * periodNanos;
+         }
+      }
+
+      try {
+         executor.execute(this);
+      } catch (RejectedExecutionException e) {
+         LOGGER.debug("Stop pacer since executor does not accept executions anymore.");
+         cancelled = true;
+      }
+   }
+
+   /*
+    * Parks until shortly before the deadline and spins for the rest.
+    */
+   private boolean awaitDeadline() {
+      long remaining;
+      while ((remaining = deadline - System.nanoTime()) > 0) {
+         if (cancelled || Thread.currentThread().isInterrupted()) {
+            return false;
+         }
+
+         final long parkNanos = remaining - spinNanos - parkOvershootNanos;
+         if (parkNanos > 0) {
+            final long start = System.nanoTime();
+            LockSupport.parkNanos(parkNanos);
+            final long overshoot = Math.max(0, System.nanoTime() - start - parkNanos);
+            // exponential moving average
+            parkOvershootNanos += (overshoot - parkOvershootNanos) / 8;
+         }
+      }
+      return !cancelled;
+   }
+
+   /**
+    * Provides the deviations of the starts of the task from their deadlines.
+    *
+    * @return LogLinearHistogram The histogram (in nanoseconds)
+    */
+   public LogLinearHistogram getJitterHistogram() {
+      return jitter;
+   }
+
+   /**
+    * Provides how late the next deadline was whenever an execution took longer than the period.
+    *
+    * @return LogLinearHistogram The histogram (in nanoseconds)
+    */
+   public LogLinearHistogram getOverrunHistogram() {
+      return overruns;
+   }
+
+   /**
+    * Provides the number of periods skipped due to overruns (see {@link OverrunPolicy#SKIP}).
+    *
+    * @return long The number of skipped periods
+    */
+   public long getSkippedPeriods() {
+      return skippedPeriods.sum();
+   }
+
+   /**
+    * Provides the calibrated time the thread usually parks longer than requested.
+    *
+    * @return long The overshoot in nanoseconds
+    */
+   public long getParkOvershootNanos() {
+      return parkOvershootNanos;
+   }
+}
@@ -18,19 +18,23 @@ import java.util.function.IntConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
 import org.zeromq.ZMQ.Socket;
 import org.zeromq.ZMQException;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ch.psi.bsread.command.Command;
+import ch.psi.bsread.common.concurrent.HandlerDispatcher;
+import ch.psi.bsread.impl.AbstractMessageExtractor;
 import ch.psi.bsread.message.DataHeader;
 import ch.psi.bsread.message.IllegalTimeException;
 import ch.psi.bsread.message.MainHeader;
 import ch.psi.bsread.message.Message;
 import ch.psi.bsread.message.Value;
+import ch.psi.bsread.message.commands.MainHeaderParser;
+import ch.psi.bsread.metrics.ReceiverMetrics;
 import ch.psi.bsread.monitors.ConnectionCounterMonitor;
 import ch.psi.bsread.monitors.MonitorConfig;
 
@@ -59,6 +63,12 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
    private ReceiverConfig<V> receiverConfig;
    private volatile ReceiverState receiverState = new ReceiverState();
    private ConnectionCounterMonitor connectionMonitor;
+   private volatile HandlerDispatcher handlerDispatcher;
+   private volatile ReceiverMetrics metrics;
+   // only used by the receiving thread
+   private final MainHeaderParser mainHeaderParser = new MainHeaderParser();
+   private long idleConnectionTime;
+   private long inactiveConnectionTime;
 
    private CompletableFuture<Void> mainLoopExitSync;
    // helps to speedup close in case main receiving thread is not blocked in
@@ -82,6 +92,19 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
          receiverState = new ReceiverState();
          isCleaned.set(false);
          mainLoopExitSync = new CompletableFuture<>();
+         initConnectionTimes();
+         if (receiverConfig.isMetricsEnabled()) {
+            if (metrics == null) {
+               metrics = new ReceiverMetrics();
+            }
+            // close() unregisters (no-op if still registered)
+            metrics.registerMBean(receiverConfig.getAddress());
+         }
+         if (handlerDispatcher == null
+               && (receiverConfig.isParallelHandlerProcessing() || receiverConfig.isPipelinedHandlerProcessing())) {
+            handlerDispatcher = new HandlerDispatcher("HandlerDispatcher for " + receiverConfig.getAddress(),
+                  receiverConfig.getHandlerQueueSize(), receiverConfig.getHandlerOverflowStrategy());
+         }
 
          socket = receiverConfig.getContext().socket(receiverConfig.getSocketType());
          socket.setRcvHWM(receiverConfig.getHighWaterMark());
@@ -139,6 +162,17 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
                cleanup();
             }
          }
+
+         final HandlerDispatcher dispatcher = handlerDispatcher;
+         if (dispatcher != null) {
+            handlerDispatcher = null;
+            dispatcher.close();
+         }
+         final ReceiverMetrics receiverMetrics = metrics;
+         if (receiverMetrics != null) {
+            // keeps collecting in case of a new connect
+            receiverMetrics.unregisterMBean();
+         }
       }
    }
 
@@ -167,6 +201,10 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
    }
 
    protected void reconnect() {
+      final ReceiverMetrics receiverMetrics = metrics;
+      if (receiverMetrics != null) {
+         receiverMetrics.reconnected();
+      }
       reconnecting.set(true);
       // prevent reconnection if other thread closes
       if (cleanup()) {
@@ -181,12 +219,7 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
    public Message<V> receive() throws RuntimeException {
       receivingThread = Thread.currentThread();
       Message<V> message = null;
-      Command command = null;
-      final ObjectMapper objectMapper = receiverConfig.getObjectMapper();
-      byte[] mainHeaderBytes;
-      long currentTime = System.currentTimeMillis();
-      long idleConnectionTime = currentTime + receiverConfig.getIdleConnectionTimeout();
-      long inactiveConnectionTime = currentTime + receiverConfig.getInactiveConnectionTimeout();
+      initConnectionTimes();
 
       try {
          while (message == null && isRunning.get()) {
@@ -195,7 +228,6 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
             handleConnectionInactiveChanges();
             handleConnectionCountChanges();
 
-            mainHeaderBytes = null;
             /*
              * It can happen that bytes received do not represent the start of a new multipart
              * message but the start of a submessage (e.g. after connection or when messages get
@@ -203,65 +235,99 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
              * message (i.e., it is possible that we loose the first message)
              */
             try {
-               mainHeaderBytes = socket.recv();
+               final byte[] mainHeaderBytes = socket.recv();
 
                if (mainHeaderBytes != null) {
-                  // connection not idle (anymore)
-                  handleConnectionIdleChanges(false);
-                  // connection not inactive (anymore)
-                  handleConnectionInactiveChanges(false);
-                  // test if mainHaderBytes can be interpreted as Command
-                  command = objectMapper.readValue(mainHeaderBytes, Command.class);
-                  message = command.process(this);
+                  handleMainHeaderReceived();
+
+                  message = processMessage(mainHeaderBytes);
                } else {
-                  final boolean running = isRunning.get();
-                  currentTime = System.currentTimeMillis();
+                  handleReceiveTimeout();
+                  message = null;
+               }
+            } catch (ZMQException e) {
+               LOGGER.info(
+                     "ZMQ stream of '{}' stopped/closed due to '{}'. This is considered as a valid state to stop sending.",
+                     receiverConfig.getAddress(), e.getMessage());
+               isRunning.set(false);
+            }
+         }
+      } catch (Exception e) {
+         LOGGER.error(
+               "ZMQ stream of '{}' stopped unexpectedly.", receiverConfig.getAddress(), e);
+         isRunning.set(false);
+         throw e;
+      } finally {
+         if (!isRunning.get()) {
+            message = null;
+         }
+         finishReceive();
+      }
 
-                  if (running && currentTime > idleConnectionTime) {
-                     handleConnectionIdleChanges(true);
-                     idleConnectionTime =
-                           currentTime + receiverConfig.getIdleConnectionTimeout();
+      return message;
+   }
+
+   @Override
+   public int receive(Collection<Message<V>> sink, int maxMessages, long maxWaitNanos) throws RuntimeException {
+      receivingThread = Thread.currentThread();
+      int count = 0;
+      boolean receiveTimeoutModified = false;
+      final long deadline = System.nanoTime() + maxWaitNanos;
+
+      try {
+         // bookkeeping once per batch
+         handleConnectionIdleChanges();
+         handleConnectionInactiveChanges();
+         handleConnectionCountChanges();
+
+         while (count < maxMessages && isRunning.get()) {
+            try {
+               final byte[] mainHeaderBytes;
+               if (count > 0 || maxWaitNanos == 0) {
+                  // only take what is already queued
+                  mainHeaderBytes = socket.recv(ZMQ.DONTWAIT);
+                  if (mainHeaderBytes == null) {
+                     if (count == 0) {
+                        // nothing available (callers might only poll)
+                        handleReceiveTimeout();
+                     }
+                     break;
+                  }
+               } else {
+                  boolean blocking = true;
+                  if (maxWaitNanos > 0) {
+                     final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                     if (remainingMillis <= 0) {
+                        // less than the granularity of the receive timeout is left (still take what
+                        // is already queued)
+                        blocking = false;
+                     } else if (remainingMillis < receiverConfig.getReceiveTimeout()
+                           || receiverConfig.getReceiveTimeout() < 0) {
+                        socket.setReceiveTimeOut((int) remainingMillis);
+                        receiveTimeoutModified = true;
+                     }
                   }
 
-                  if (running && currentTime > inactiveConnectionTime) {
-                     handleConnectionInactiveChanges(true);
-                     inactiveConnectionTime =
-                           currentTime + receiverConfig.getInactiveConnectionTimeout();
-
-                     switch (receiverConfig.getInactiveConnectionBehavior()) {
-                        case RECONNECT:
-                           LOGGER.debug("Reconnect '{}' due to timeout.", receiverConfig.getAddress());
-                           reconnect();
-                           break;
-                        case STOP:
-                           LOGGER.warn("Stop running and return null for '{}' due to idle connection.",
-                                 receiverConfig.getAddress());
-                           isRunning.set(false);
-                           break;
-                        case KEEP_RUNNING:
-                        default:
-                           LOGGER.debug("Idle connection timeout for '{}'. Keep running.", receiverConfig.getAddress());
-                           break;
+                  mainHeaderBytes = blocking ? socket.recv() : socket.recv(ZMQ.DONTWAIT);
+                  if (mainHeaderBytes == null) {
+                     handleReceiveTimeout();
+                     if (!blocking) {
+                        break;
                      }
+                     // make sure changes during looping are handled
+                     handleConnectionIdleChanges();
+                     handleConnectionInactiveChanges();
+                     handleConnectionCountChanges();
+                     continue;
                   }
+               }
+               handleMainHeaderReceived();
 
-                  message = null;
+               final Message<V> message = processMessage(mainHeaderBytes);
+               if (message != null) {
+                  sink.add(message);
+                  ++count;
                }
-            } catch (IllegalTimeException e) {
-               LOGGER.debug("Reconnect '{}' due to illegal time '{}'.", receiverConfig.getAddress(), e.getMessage());
-               message = null;
-               reconnect();
-            } catch (JsonParseException | JsonMappingException e) {
-               LOGGER.info("Could not parse MainHeader of '{}' due to '{}'.", receiverConfig.getAddress(),
-                     e.getMessage());
-               // drain the socket
-               drain();
-            } catch (IOException e) {
-               LOGGER.info("Received bytes of '{}' were not aligned with multipart message.",
-                     receiverConfig.getAddress(),
-                     e);
-               // drain the socket
-               drain();
             } catch (ZMQException e) {
                LOGGER.info(
                      "ZMQ stream of '{}' stopped/closed due to '{}'. This is considered as a valid state to stop sending.",
@@ -275,33 +341,175 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
          isRunning.set(false);
          throw e;
       } finally {
-         if (!isRunning.get()) {
-            message = null;
+         if (receiveTimeoutModified && isRunning.get() && socket != null) {
+            socket.setReceiveTimeOut(receiverConfig.getReceiveTimeout());
+         }
+         finishReceive();
+      }
 
-            cleanup();
+      if (count == 0 && !isRunning.get()) {
+         return -1;
+      } else {
+         return count;
+      }
+   }
 
-            // make sure idle/inactive connection and connection count is set
-            // in any case before updated
-            setConnectionIdle(true);
-            setConnectionInactive(true);
-            accept(0);
+   /**
+    * Interprets the main header bytes (and the remaining parts of the multipart message).
+    * 
+    * @param mainHeaderBytes The bytes of the main header
+    * @return Message The Message or null if the message was skipped
+    */
+   protected Message<V> processMessage(final byte[] mainHeaderBytes) {
+      final ReceiverMetrics receiverMetrics = metrics;
+      if (receiverMetrics != null) {
+         receiverMetrics.bytesReceived(mainHeaderBytes.length);
+      }
+
+      try {
+         Command command =
+               receiverConfig.isFastMainHeaderParsing() ? mainHeaderParser.parse(mainHeaderBytes, receiverState) : null;
+         if (command == null) {
+            // test if mainHaderBytes can be interpreted as Command
+            command = receiverConfig.getObjectMapper().readValue(mainHeaderBytes, Command.class);
+         }
+         final Message<V> message = command.process(this);
+         if (message != null && receiverMetrics != null) {
+            receiverMetrics.messageReceived();
          }
+         return message;
+      } catch (IllegalTimeException e) {
+         LOGGER.debug("Reconnect '{}' due to illegal time '{}'.", receiverConfig.getAddress(), e.getMessage());
+         reconnect();
+      } catch (JsonParseException | JsonMappingException e) {
+         LOGGER.info("Could not parse MainHeader of '{}' due to '{}'.", receiverConfig.getAddress(),
+               e.getMessage());
+         if (receiverMetrics != null) {
+            receiverMetrics.parseFailed();
+         }
+         // drain the socket
+         if (drain() > 0 && receiverMetrics != null) {
+            receiverMetrics.messageDrained();
+         }
+      } catch (IOException e) {
+         LOGGER.info("Received bytes of '{}' were not aligned with multipart message.",
+               receiverConfig.getAddress(),
+               e);
+         if (receiverMetrics != null) {
+            receiverMetrics.messageMisaligned();
+         }
+         // drain the socket
+         if (drain() > 0 && receiverMetrics != null) {
+            receiverMetrics.messageDrained();
+         }
+      }
+      return null;
+   }
 
-         // make sure changes while receiving are handled
-         handleConnectionIdleChanges();
-         handleConnectionInactiveChanges();
-         handleConnectionCountChanges();
+   /**
+    * Checks the idle/inactive connection timeouts without receiving (used when the socket is not
+    * blocked in receive, e.g. by the {@link ReceiverReactor}). Must be called by the receiving
+    * thread.
+    * 
+    * @return long The time (in millis) of the next timeout
+    */
+   long checkConnectionTimeouts() {
+      receivingThread = Thread.currentThread();
+      try {
+         handleReceiveTimeout();
+      } finally {
+         finishReceive();
       }
 
-      return message;
+      return getNextConnectionTimeout();
+   }
+
+   /**
+    * Provides the time of the next idle/inactive connection timeout.
+    * 
+    * @return long The time (in millis)
+    */
+   long getNextConnectionTimeout() {
+      return Math.min(idleConnectionTime, inactiveConnectionTime);
+   }
+
+   boolean isRunning() {
+      return isRunning.get();
+   }
+
+   private void initConnectionTimes() {
+      final long currentTime = System.currentTimeMillis();
+      idleConnectionTime = currentTime + receiverConfig.getIdleConnectionTimeout();
+      inactiveConnectionTime = currentTime + receiverConfig.getInactiveConnectionTimeout();
+   }
+
+   private void handleMainHeaderReceived() {
+      // connection not idle (anymore)
+      handleConnectionIdleChanges(false);
+      // connection not inactive (anymore)
+      handleConnectionInactiveChanges(false);
+
+      // timeouts start again
+      initConnectionTimes();
+   }
+
+   private void handleReceiveTimeout() {
+      final boolean running = isRunning.get();
+      final long currentTime = System.currentTimeMillis();
+
+      if (running && currentTime > idleConnectionTime) {
+         handleConnectionIdleChanges(true);
+         idleConnectionTime =
+               currentTime + receiverConfig.getIdleConnectionTimeout();
+      }
+
+      if (running && currentTime > inactiveConnectionTime) {
+         handleConnectionInactiveChanges(true);
+         inactiveConnectionTime =
+               currentTime + receiverConfig.getInactiveConnectionTimeout();
+
+         switch (receiverConfig.getInactiveConnectionBehavior()) {
+            case RECONNECT:
+               LOGGER.debug("Reconnect '{}' due to timeout.", receiverConfig.getAddress());
+               reconnect();
+               break;
+            case STOP:
+               LOGGER.warn("Stop running and return null for '{}' due to idle connection.",
+                     receiverConfig.getAddress());
+               isRunning.set(false);
+               break;
+            case KEEP_RUNNING:
+            default:
+               LOGGER.debug("Idle connection timeout for '{}'. Keep running.", receiverConfig.getAddress());
+               break;
+         }
+      }
+   }
+
+   private void finishReceive() {
+      if (!isRunning.get()) {
+         cleanup();
+
+         // make sure idle/inactive connection and connection count is set
+         // in any case before updated
+         setConnectionIdle(true);
+         setConnectionInactive(true);
+         accept(0);
+      }
+
+      // make sure changes while receiving are handled
+      handleConnectionIdleChanges();
+      handleConnectionInactiveChanges();
+      handleConnectionCountChanges();
    }
 
    @Override
    public int drain() {
       int count = 0;
+      final zmq.msg.MsgAllocator msgAllocator = receiverConfig.getMsgAllocator();
       while (socket.hasReceiveMore()) {
-         // is there a way to avoid copying data to user space here?
-         socket.base().recv(0);
+         // frames are already in user space (let the allocator recycle them)
+         AbstractMessageExtractor.skipMsg(socket, msgAllocator);
          count++;
       }
       return count;
@@ -328,8 +536,10 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
 
       if (connectionCount != Integer.MIN_VALUE && connectionCountPrev.getAndSet(connectionCount) != connectionCount) {
          // make sure connection handlers are executed from the receiving thread
-         if (receiverConfig.isParallelHandlerProcessing()) {
-            getConnectionCountHandlers().parallelStream().forEach(handler -> handler.accept(connectionCount));
+         final HandlerDispatcher dispatcher = handlerDispatcher;
+         if (dispatcher != null) {
+            dispatcher.dispatchAll(getConnectionCountHandlers(), IntConsumer::accept, connectionCount,
+                  !receiverConfig.isPipelinedHandlerProcessing());
          } else {
             for (final IntConsumer handler : getConnectionCountHandlers()) {
                handler.accept(connectionCount);
@@ -353,8 +563,10 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
       if (connectionIdle != null
             && connectionIdlePrev.getAndSet(connectionIdle).booleanValue() != connectionIdle.booleanValue()) {
          // make sure connection handlers are executed from the receiving thread
-         if (receiverConfig.isParallelHandlerProcessing()) {
-            getConnectionIdleHandlers().parallelStream().forEach(handler -> handler.accept(connectionIdle));
+         final HandlerDispatcher dispatcher = handlerDispatcher;
+         if (dispatcher != null) {
+            dispatcher.dispatchAll(getConnectionIdleHandlers(), Consumer::accept, connectionIdle,
+                  !receiverConfig.isPipelinedHandlerProcessing());
          } else {
             for (final Consumer<Boolean> handler : getConnectionIdleHandlers()) {
                handler.accept(connectionIdle);
@@ -379,8 +591,10 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
             && connectionInactivePrev.getAndSet(connectionInactive).booleanValue() != connectionInactive
                   .booleanValue()) {
          // make sure connection handlers are executed from the receiving thread
-         if (receiverConfig.isParallelHandlerProcessing()) {
-            getConnectionInactiveHandlers().parallelStream().forEach(handler -> handler.accept(connectionInactive));
+         final HandlerDispatcher dispatcher = handlerDispatcher;
+         if (dispatcher != null) {
+            dispatcher.dispatchAll(getConnectionInactiveHandlers(), Consumer::accept, connectionInactive,
+                  !receiverConfig.isPipelinedHandlerProcessing());
          } else {
             for (final Consumer<Boolean> handler : getConnectionInactiveHandlers()) {
                handler.accept(connectionInactive);
@@ -389,6 +603,16 @@ public class Receiver<V> implements ConfigIReceiver<V>, IntConsumer {
       }
    }
 
+   @Override
+   public HandlerDispatcher getHandlerDispatcher() {
+      return handlerDispatcher;
+   }
+
+   @Override
+   public ReceiverMetrics getReceiverMetrics() {
+      return metrics;
+   }
+
    @Override
    public Socket getSocket() {
       return socket;
@@ -2,6 +2,7 @@ package ch.psi.bsread;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.zeromq.ZMQ;
@@ -11,6 +12,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ch.psi.bsread.command.Command;
 import ch.psi.bsread.command.PolymorphicCommandMixIn;
+import ch.psi.bsread.common.concurrent.HandlerDispatcher;
+import ch.psi.bsread.common.concurrent.OverflowStrategy;
 import ch.psi.bsread.common.concurrent.singleton.Deferred;
 import ch.psi.bsread.configuration.Channel;
 import ch.psi.bsread.impl.StandardMessageExtractor;
@@ -27,6 +30,7 @@ public class ReceiverConfig<V> {
    public static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = Integer.MAX_VALUE;
    public static final int DEFAULT_INACTIVE_CONNECTION_TIMEOUT = Integer.MAX_VALUE;
    public static final int DEFAULT_RECEIVE_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(1);
+   public static final int DEFAULT_VALUE_CONVERSION_THRESHOLD = 64 * 1024;
 
    // share context due to "too many open files" issue
    // (http://stackoverflow.com/questions/25380162/jeromq-maximum-socket-opened-issue/25478590#25478590)
@@ -36,6 +40,14 @@ public class ReceiverConfig<V> {
    private Context context;
    private boolean keepListeningOnStop;
    private boolean parallelHandlerProcessing;
+   // handlers run asynchronously (each in order on its own worker)
+   private boolean pipelinedHandlerProcessing;
+   private int handlerQueueSize = HandlerDispatcher.DEFAULT_QUEUE_SIZE;
+   private OverflowStrategy handlerOverflowStrategy = OverflowStrategy.BLOCK;
+   // collect ReceiverMetrics (and register them as MBean) - opt-in
+   private boolean metricsEnabled = false;
+   // parse main headers of data messages without Jackson (falls back to Jackson for commands etc.)
+   private boolean fastMainHeaderParsing = true;
    private int highWaterMark = DEFAULT_HIGH_WATER_MARK;
    private int linger = DEFAULT_LINGER;
    private int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
@@ -56,6 +68,9 @@ public class ReceiverConfig<V> {
    private int inactiveConnectionTimeout = ReceiverConfig.DEFAULT_INACTIVE_CONNECTION_TIMEOUT;
    private InactiveConnectionBehavior inactiveConnectionBehavior = InactiveConnectionBehavior.RECONNECT;
    private Collection<Channel> requestedChannels;
+   // converts (e.g. decompresses) values in parallel (null means on the receiving thread)
+   private Executor valueConversionService;
+   private int valueConversionThreshold = DEFAULT_VALUE_CONVERSION_THRESHOLD;
 
    public ReceiverConfig() {
       this(DEFAULT_ADDRESS);
@@ -117,6 +132,78 @@ public class ReceiverConfig<V> {
       this.parallelHandlerProcessing = parallelHandlerProcessing;
    }
 
+   /**
+    * Getter defining if handlers are pipelined, i.e. the receiving thread dispatches to the
+    * handlers without waiting for them (see {@link HandlerDispatcher}).
+    * 
+    * @return boolean <tt>true</tt> if handlers are pipelined, <tt>false</tt> otherwise
+    */
+   public boolean isPipelinedHandlerProcessing() {
+      return pipelinedHandlerProcessing;
+   }
+
+   /**
+    * Setter defining if handlers are pipelined. Every handler gets its events in order on its own
+    * worker and a slow handler does not stall the receiving thread (as long as its queue is not
+    * full, see {@link #setHandlerOverflowStrategy(OverflowStrategy)}). Values passed to pipelined
+    * value handlers are retained until the handler returned.
+    * 
+    * @param pipelinedHandlerProcessing <tt>true</tt> to pipeline handlers
+    */
+   public void setPipelinedHandlerProcessing(boolean pipelinedHandlerProcessing) {
+      this.pipelinedHandlerProcessing = pipelinedHandlerProcessing;
+   }
+
+   public int getHandlerQueueSize() {
+      return handlerQueueSize;
+   }
+
+   /**
+    * Setter for the max number of events queued per pipelined handler.
+    * 
+    * @param handlerQueueSize The queue size
+    */
+   public void setHandlerQueueSize(int handlerQueueSize) {
+      this.handlerQueueSize = handlerQueueSize;
+   }
+
+   public OverflowStrategy getHandlerOverflowStrategy() {
+      return handlerOverflowStrategy;
+   }
+
+   /**
+    * Setter for the strategy applied when the queue of a pipelined handler is full.
+    * 
+    * @param handlerOverflowStrategy The OverflowStrategy
+    */
+   public void setHandlerOverflowStrategy(OverflowStrategy handlerOverflowStrategy) {
+      this.handlerOverflowStrategy = handlerOverflowStrategy;
+   }
+
+   public boolean isMetricsEnabled() {
+      return metricsEnabled;
+   }
+
+   /**
+    * Setter defining if the Receiver collects metrics (see
+    * {@link ch.psi.bsread.metrics.ReceiverMetrics}) and registers them as MBean named after the
+    * address. Metrics are disabled by default (they add a platform MBean per Receiver, which
+    * short-lived or many Receivers should not pay for).
+    * 
+    * @param metricsEnabled <tt>true</tt> to collect metrics
+    */
+   public void setMetricsEnabled(boolean metricsEnabled) {
+      this.metricsEnabled = metricsEnabled;
+   }
+
+   public boolean isFastMainHeaderParsing() {
+      return fastMainHeaderParsing;
+   }
+
+   public void setFastMainHeaderParsing(boolean fastMainHeaderParsing) {
+      this.fastMainHeaderParsing = fastMainHeaderParsing;
+   }
+
    public int getHighWaterMark() {
       return highWaterMark;
    }
@@ -260,6 +347,46 @@ public class ReceiverConfig<V> {
       this.requestedChannels.add(requestedChannel);
    }
 
+   /**
+    * Getter for the Executor used to convert (e.g. decompress) values of a message in parallel.
+    * 
+    * @return Executor The Executor or null if values are converted on the receiving thread
+    */
+   public Executor getValueConversionService() {
+      return valueConversionService;
+   }
+
+   /**
+    * Setter for the Executor used to convert (e.g. decompress) values of a message in parallel
+    * (null means values are converted on the receiving thread). The Receiver returns a message only
+    * once all its values are converted.
+    * 
+    * @param valueConversionService The Executor
+    */
+   public void setValueConversionService(Executor valueConversionService) {
+      this.valueConversionService = valueConversionService;
+   }
+
+   /**
+    * Getter for the size in bytes (of the received blob) from which on values are converted using
+    * the value conversion service.
+    * 
+    * @return int The threshold
+    */
+   public int getValueConversionThreshold() {
+      return valueConversionThreshold;
+   }
+
+   /**
+    * Setter for the size in bytes (of the received blob) from which on values are converted using
+    * the value conversion service (smaller values are converted on the receiving thread).
+    * 
+    * @param valueConversionThreshold The threshold
+    */
+   public void setValueConversionThreshold(int valueConversionThreshold) {
+      this.valueConversionThreshold = valueConversionThreshold;
+   }
+
    public static void addObjectMapperMixin(ObjectMapper objectMapper) {
       objectMapper.addMixIn(Command.class, PolymorphicCommandMixIn.class);
    }
@@ -0,0 +1,320 @@
+package ch.psi.bsread;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.psi.bsread.common.concurrent.OverflowStrategy;
+import ch.psi.bsread.common.concurrent.executor.CommonExecutors;
+import ch.psi.bsread.message.Message;
+
+/**
+ * A Reactive Streams {@link Publisher} of the messages of a {@link Receiver}. The Receiver is
+ * connected once a Subscriber subscribes and is closed once the Subscription is cancelled (or the
+ * publisher is closed).
+ * <p>
+ * With {@link OverflowStrategy#BLOCK}, messages are only received from the socket as long as the
+ * Subscriber signaled demand (i.e. a slow Subscriber applies backpressure to the socket and thus to
+ * the sender, see RCVHWM). The other strategies keep receiving and buffer at most bufferSize
+ * messages (one for {@link OverflowStrategy#KEEP_LATEST}). Values of dropped messages are
+ * released.
+ * <p>
+ * Only one Subscriber is supported.
+ *
+ * @param <V> The JAVA type
+ */
+public class ReceiverPublisher<V> implements Publisher<Message<V>>, Closeable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ReceiverPublisher.class);
+   public static final int DEFAULT_BUFFER_SIZE = 256;
+   public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+   // max time until the receiving thread notices a cancellation
+   private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+   private final Receiver<V> receiver;
+   private final OverflowStrategy overflowStrategy;
+   private final int bufferSize;
+   private final int maxBatchSize;
+   private final AtomicBoolean isSubscribed = new AtomicBoolean();
+   private final AtomicLong droppedMessages = new AtomicLong();
+   private ExecutorService executor;
+
+   public ReceiverPublisher(Receiver<V> receiver) {
+      this(receiver, OverflowStrategy.BLOCK);
+   }
+
+   public ReceiverPublisher(Receiver<V> receiver, OverflowStrategy overflowStrategy) {
+      this(receiver, overflowStrategy, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BATCH_SIZE);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param receiver The Receiver (must not be used otherwise)
+    * @param overflowStrategy The strategy applied when the Subscriber does not keep up
+    * @param bufferSize The max number of messages buffered for the Subscriber (ignored for
+    *        {@link OverflowStrategy#BLOCK} and {@link OverflowStrategy#KEEP_LATEST})
+    * @param maxBatchSize The max number of messages received at once
+    */
+   public ReceiverPublisher(Receiver<V> receiver, OverflowStrategy overflowStrategy, int bufferSize,
+         int maxBatchSize) {
+      if (bufferSize <= 0 || maxBatchSize <= 0) {
+         throw new IllegalArgumentException("Buffer and batch size must be positive.");
+      }
+
+      this.receiver = receiver;
+      this.overflowStrategy = overflowStrategy;
+      this.bufferSize = OverflowStrategy.KEEP_LATEST.equals(overflowStrategy) ? 1 : bufferSize;
+      this.maxBatchSize = maxBatchSize;
+   }
+
+   @Override
+   public void subscribe(Subscriber<? super Message<V>> subscriber) {
+      if (subscriber == null) {
+         throw new NullPointerException("Subscriber must not be null.");
+      }
+
+      if (isSubscribed.compareAndSet(false, true)) {
+         final ReceiverSubscription subscription = new ReceiverSubscription(subscriber);
+         subscriber.onSubscribe(subscription);
+
+         executor = CommonExecutors.newSingleThreadExecutor("ReceiverPublisher for "
+               + receiver.getReceiverConfig().getAddress());
+         executor.execute(subscription::receive);
+         // thread terminates once the Receiver stops
+         executor.shutdown();
+      } else {
+         subscriber.onSubscribe(new Subscription() {
+
+            @Override
+            public void request(long n) {}
+
+            @Override
+            public void cancel() {}
+         });
+         subscriber.onError(new IllegalStateException("ReceiverPublisher supports only one Subscriber."));
+      }
+   }
+
+   /**
+    * Provides the number of messages dropped due to the OverflowStrategy.
+    *
+    * @return long The number of dropped messages
+    */
+   public long getNrOfDroppedMessages() {
+      return droppedMessages.get();
+   }
+
+   /**
+    * Closes the Receiver (the Subscriber receives onComplete once buffered messages were
+    * delivered).
+    */
+   @Override
+   public void close() {
+      receiver.close();
+   }
+
+   private class ReceiverSubscription implements Subscription {
+      private final Subscriber<? super Message<V>> subscriber;
+      // guarded by itself
+      private final ArrayDeque<Message<V>> buffer = new ArrayDeque<>();
+      private final AtomicLong requested = new AtomicLong();
+      private final AtomicInteger wip = new AtomicInteger();
+      private volatile boolean cancelled;
+      private volatile boolean done;
+      private volatile Throwable error;
+      private volatile Thread receivingThread;
+
+      public ReceiverSubscription(Subscriber<? super Message<V>> subscriber) {
+         this.subscriber = subscriber;
+      }
+
+      @Override
+      public void request(long n) {
+         if (n <= 0) {
+            error = new IllegalArgumentException("Requested messages must be positive (see rule 3.9) but was " + n);
+            done = true;
+            // the receiving thread closes the Receiver
+            LockSupport.unpark(receivingThread);
+         } else {
+            long current;
+            long next;
+            do {
+               current = requested.get();
+               // Long.MAX_VALUE means unbounded
+               next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+
+            LockSupport.unpark(receivingThread);
+         }
+         drain();
+      }
+
+      @Override
+      public void cancel() {
+         if (!cancelled) {
+            cancelled = true;
+            // the receiving thread closes the Receiver
+            LockSupport.unpark(receivingThread);
+            drain();
+         }
+      }
+
+      private int getBufferedSize() {
+         synchronized (buffer) {
+            return buffer.size();
+         }
+      }
+
+      private void offer(Message<V> message) {
+         Message<V> dropped = null;
+         synchronized (buffer) {
+            if (buffer.size() < bufferSize || OverflowStrategy.BLOCK.equals(overflowStrategy)) {
+               buffer.add(message);
+            } else if (OverflowStrategy.DROP_NEWEST.equals(overflowStrategy)) {
+               dropped = message;
+            } else {
+               dropped = buffer.poll();
+               buffer.add(message);
+            }
+         }
+
+         if (dropped != null) {
+            droppedMessages.incrementAndGet();
+            dropped.release();
+         }
+      }
+
+      public void receive() {
+         receivingThread = Thread.currentThread();
+         final List<Message<V>> batch = new ArrayList<>(maxBatchSize);
+
+         try {
+            receiver.connect();
+
+            while (!cancelled && !done) {
+               int maxMessages = maxBatchSize;
+               if (OverflowStrategy.BLOCK.equals(overflowStrategy)) {
+                  // demand not yet covered by buffered messages
+                  maxMessages = (int) Math.min(maxMessages, requested.get() - getBufferedSize());
+                  if (maxMessages <= 0) {
+                     // request() and cancel() unpark
+                     LockSupport.park(this);
+                     continue;
+                  }
+               }
+
+               // bounded wait (cancel() does not block on the Receiver)
+               if (receiver.receive(batch, maxMessages, MAX_WAIT_NANOS) < 0) {
+                  break;
+               }
+               for (final Message<V> message : batch) {
+                  offer(message);
+               }
+               batch.clear();
+               drain();
+            }
+         } catch (Throwable t) {
+            LOGGER.warn("Receiver of '{}' stopped unexpectedly.", receiver.getReceiverConfig().getAddress(), t);
+            if (error == null) {
+               error = t;
+            }
+         } finally {
+            receiver.close();
+            // is receiving thread -> does cleanup
+            receiver.receive(batch, maxBatchSize, 0);
+            for (final Message<V> message : batch) {
+               offer(message);
+            }
+            done = true;
+            drain();
+         }
+      }
+
+      /*
+       * Serializes the signals to the Subscriber (whichever thread gets in delivers for the others).
+       */
+      private void drain() {
+         if (wip.getAndIncrement() != 0) {
+            return;
+         }
+
+         int missed = 1;
+         do {
+            final long requestedCount = requested.get();
+            long emitted = 0;
+
+            while (!cancelled) {
+               final boolean isDone = done;
+               final Message<V> message;
+               synchronized (buffer) {
+                  message = error == null && emitted != requestedCount ? buffer.poll() : null;
+               }
+
+               if (message != null) {
+                  try {
+                     subscriber.onNext(message);
+                  } catch (Throwable t) {
+                     // violation of rule 2.13
+                     LOGGER.warn("Subscriber of '{}' failed.", receiver.getReceiverConfig().getAddress(), t);
+                     cancel();
+                  }
+                  ++emitted;
+               } else {
+                  if (isDone && (error != null || getBufferedSize() == 0)) {
+                     terminate();
+                  }
+                  break;
+               }
+            }
+
+            if (cancelled) {
+               clearBuffer();
+            } else if (emitted != 0 && requestedCount != Long.MAX_VALUE) {
+               requested.addAndGet(-emitted);
+            }
+
+            missed = wip.addAndGet(-missed);
+         } while (missed != 0);
+      }
+
+      private void terminate() {
+         cancelled = true;
+         clearBuffer();
+         try {
+            if (error != null) {
+               subscriber.onError(error);
+            } else {
+               subscriber.onComplete();
+            }
+         } catch (Throwable t) {
+            LOGGER.warn("Subscriber of '{}' failed.", receiver.getReceiverConfig().getAddress(), t);
+         }
+      }
+
+      private void clearBuffer() {
+         Message<V> message;
+         while (true) {
+            synchronized (buffer) {
+               message = buffer.poll();
+            }
+            if (message == null) {
+               break;
+            }
+            message.release();
+         }
+      }
+   }
+}
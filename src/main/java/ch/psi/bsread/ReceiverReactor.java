@@ -0,0 +1,290 @@
+package ch.psi.bsread;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Poller;
+import org.zeromq.ZMQ.Socket;
+
+import ch.psi.bsread.common.concurrent.executor.CommonExecutors;
+import ch.psi.bsread.common.helper.TimingWheel;
+import ch.psi.bsread.message.Message;
+
+/**
+ * Receives from many Receivers on a small, fixed number of threads. The sockets of the Receivers
+ * are registered with a {@link Poller} and the usual receive path (i.e. Command.process and the
+ * handlers of the Receiver) runs for whichever socket is readable. Idle/inactive connection
+ * timeouts are tracked with a {@link TimingWheel} instead of socket receive timeouts.
+ * <p>
+ * Once registered, a Receiver must not be used with {@link Receiver#receive()} anymore. It can be
+ * stopped with {@link Receiver#close()} (the reactor does the cleanup).
+ */
+public class ReceiverReactor implements Closeable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ReceiverReactor.class);
+   public static final long DEFAULT_TICK_MILLIS = 10;
+   public static final int DEFAULT_WHEEL_SIZE = 512;
+   public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+   private final AtomicBoolean isRunning = new AtomicBoolean(true);
+   private final long tickMillis;
+   private final int maxBatchSize;
+   private final List<EventLoop> loops;
+   private final AtomicInteger nextLoop = new AtomicInteger();
+   private ExecutorService executor;
+
+   public ReceiverReactor() {
+      this(1);
+   }
+
+   public ReceiverReactor(int nrOfThreads) {
+      this(nrOfThreads, DEFAULT_TICK_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param nrOfThreads The number of threads polling the sockets
+    * @param tickMillis The granularity of the connection timeouts (also the max time a
+    *        registration or close waits for the polling thread)
+    * @param maxBatchSize The max number of messages received from a socket before the next socket
+    *        gets its turn
+    */
+   public ReceiverReactor(int nrOfThreads, long tickMillis, int maxBatchSize) {
+      this.tickMillis = tickMillis;
+      this.maxBatchSize = maxBatchSize;
+
+      this.executor = CommonExecutors.newFixedThreadPool(nrOfThreads, "ReceiverReactor");
+      this.loops = new ArrayList<>(nrOfThreads);
+      for (int i = 0; i < nrOfThreads; ++i) {
+         final EventLoop loop = new EventLoop();
+         loops.add(loop);
+         executor.execute(loop);
+      }
+   }
+
+   /**
+    * Registers a Receiver. The Receiver will be connected (if not done yet) and its messages will
+    * be received on one of the threads of the reactor.
+    *
+    * @param <V> The JAVA type
+    * @param receiver The Receiver
+    * @param messageConsumer The consumer of the received messages (called by the reactor thread)
+    * @return CompletableFuture The future that completes once the Receiver stopped
+    */
+   public <V> CompletableFuture<Void> register(Receiver<V> receiver, Consumer<Message<V>> messageConsumer) {
+      if (!isRunning.get()) {
+         throw new IllegalStateException("ReceiverReactor is closed.");
+      }
+
+      receiver.connect();
+      final Registration<V> registration = new Registration<>(receiver, messageConsumer);
+      loops.get(Math.floorMod(nextLoop.getAndIncrement(), loops.size())).register(registration);
+      return registration.stopped;
+   }
+
+   /**
+    * Provides the number of registered Receivers.
+    *
+    * @return int The number of Receivers
+    */
+   public int getNrOfReceivers() {
+      int count = 0;
+      for (EventLoop loop : loops) {
+         count += loop.nrOfReceivers.get();
+      }
+      return count;
+   }
+
+   /**
+    * Stops the reactor and closes all registered Receivers.
+    */
+   @Override
+   public void close() {
+      if (isRunning.compareAndSet(true, false)) {
+         for (EventLoop loop : loops) {
+            LockSupport.unpark(loop.thread);
+         }
+
+         executor.shutdown();
+         try {
+            if (!executor.awaitTermination(Math.max(1000, 10 * tickMillis), TimeUnit.MILLISECONDS)) {
+               LOGGER.warn("ReceiverReactor did not stop within timelimits.");
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   private class Registration<V> {
+      private final Receiver<V> receiver;
+      private final Consumer<Message<V>> messageConsumer;
+      private final List<Message<V>> batch = new ArrayList<>();
+      private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+      private Socket socket;
+      private TimingWheel.Timeout<Registration<?>> timeout;
+
+      public Registration(Receiver<V> receiver, Consumer<Message<V>> messageConsumer) {
+         this.receiver = receiver;
+         this.messageConsumer = messageConsumer;
+      }
+
+      public void receive() {
+         try {
+            receiver.receive(batch, maxBatchSize, 0);
+         } catch (Exception e) {
+            LOGGER.error("Receiver of '{}' stopped unexpectedly.", receiver.getReceiverConfig().getAddress(), e);
+            stopped.completeExceptionally(e);
+         }
+
+         for (final Message<V> message : batch) {
+            try {
+               messageConsumer.accept(message);
+            } catch (Exception e) {
+               LOGGER.warn("Could not handle message of '{}'.", receiver.getReceiverConfig().getAddress(), e);
+            }
+         }
+         batch.clear();
+      }
+
+      public void checkConnectionTimeouts(TimingWheel<Registration<?>> timingWheel) {
+         try {
+            receiver.checkConnectionTimeouts();
+         } catch (Exception e) {
+            LOGGER.error("Receiver of '{}' stopped unexpectedly.", receiver.getReceiverConfig().getAddress(), e);
+            stopped.completeExceptionally(e);
+         }
+
+         if (receiver.isRunning()) {
+            timeout = timingWheel.schedule(this, receiver.getNextConnectionTimeout());
+         }
+      }
+   }
+
+   private class EventLoop implements Runnable {
+      private final Queue<Registration<?>> pending = new ConcurrentLinkedQueue<>();
+      private final AtomicInteger nrOfReceivers = new AtomicInteger();
+      // only used by the loop thread
+      private final List<Registration<?>> registrations = new ArrayList<>();
+      private final Map<Socket, Registration<?>> sockets = new IdentityHashMap<>();
+      private volatile Thread thread;
+
+      public void register(Registration<?> registration) {
+         nrOfReceivers.incrementAndGet();
+         pending.add(registration);
+         LockSupport.unpark(thread);
+      }
+
+      @Override
+      public void run() {
+         thread = Thread.currentThread();
+         final TimingWheel<Registration<?>> timingWheel =
+               new TimingWheel<>(tickMillis, DEFAULT_WHEEL_SIZE, System.currentTimeMillis());
+         final Consumer<Registration<?>> timeoutHandler =
+               registration -> registration.checkConnectionTimeouts(timingWheel);
+         final Poller poller = ReceiverConfig.DEFERRED_CONTEXT.get().poller();
+
+         try {
+            while (isRunning.get()) {
+               Registration<?> registration;
+               while ((registration = pending.poll()) != null) {
+                  registrations.add(registration);
+                  // receives what is available
+                  registration.receive();
+                  registration.timeout =
+                        timingWheel.schedule(registration, registration.receiver.getNextConnectionTimeout());
+               }
+               updateSockets(poller);
+
+               if (sockets.isEmpty()) {
+                  LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tickMillis));
+               } else if (poller.poll(tickMillis) > 0) {
+                  for (int i = 0; i < poller.getSize(); ++i) {
+                     if (poller.pollin(i)) {
+                        registration = sockets.get(poller.getSocket(i));
+                        if (registration != null) {
+                           registration.receive();
+                        }
+                     }
+                  }
+               }
+
+               timingWheel.expire(System.currentTimeMillis(), timeoutHandler);
+            }
+         } catch (Exception e) {
+            LOGGER.error("ReceiverReactor stopped unexpectedly.", e);
+         } finally {
+            for (final Registration<?> registration : registrations) {
+               if (registration.socket != null) {
+                  poller.unregister(registration.socket);
+                  registration.socket = null;
+               }
+               // is receiving thread -> does cleanup
+               registration.receiver.close();
+               registration.receive();
+               registration.stopped.complete(null);
+            }
+            registrations.clear();
+            sockets.clear();
+
+            Registration<?> registration;
+            while ((registration = pending.poll()) != null) {
+               registration.receiver.close();
+               registration.stopped.complete(null);
+            }
+            poller.close();
+         }
+      }
+
+      /*
+       * (Un)registers sockets of stopped and reconnected Receivers (must happen before polling
+       * since their sockets might be closed).
+       */
+      private void updateSockets(Poller poller) {
+         final Iterator<Registration<?>> iter = registrations.iterator();
+         while (iter.hasNext()) {
+            final Registration<?> registration = iter.next();
+            final Socket socket = registration.receiver.isRunning() ? registration.receiver.getSocket() : null;
+
+            if (registration.socket != socket) {
+               if (registration.socket != null) {
+                  poller.unregister(registration.socket);
+                  sockets.remove(registration.socket);
+               }
+               registration.socket = socket;
+               if (socket != null) {
+                  poller.register(socket, ZMQ.Poller.POLLIN);
+                  sockets.put(socket, registration);
+               }
+            }
+
+            if (socket == null) {
+               if (registration.timeout != null) {
+                  registration.timeout.cancel();
+               }
+               // let the Receiver clean up on its receiving thread
+               registration.receive();
+               iter.remove();
+               nrOfReceivers.decrementAndGet();
+               registration.stopped.complete(null);
+            }
+         }
+      }
+   }
+}
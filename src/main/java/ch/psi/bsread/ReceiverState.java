@@ -1,15 +1,20 @@
 package ch.psi.bsread;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.function.IntFunction;
 
 import ch.psi.bsread.common.allocator.ByteBufferAllocator;
+import ch.psi.bsread.configuration.Channel;
 import ch.psi.bsread.message.DataHeader;
 
 public class ReceiverState {
 	private String dataHeaderHash = "unknown";
+	private byte[] dataHeaderHashBytes = dataHeaderHash.getBytes(StandardCharsets.UTF_8);
 	private DataHeader dataHeader = null;
 	private final IntFunction<ByteBuffer> dataHeaderAllocator = ByteBufferAllocator.DEFAULT_ALLOCATOR;
+	private RequestedChannelFilter requestedChannelFilter = null;
 
 	public ReceiverState() {
 	}
@@ -20,6 +25,30 @@ public class ReceiverState {
 
 	public void setDataHeaderHash(String dataHeaderHash) {
 		this.dataHeaderHash = dataHeaderHash;
+		this.dataHeaderHashBytes = dataHeaderHash != null ? dataHeaderHash.getBytes(StandardCharsets.UTF_8) : null;
+	}
+
+	/**
+	 * Checks if the provided (UTF-8 encoded) bytes correspond to the hash of the current DataHeader
+	 * (allows to reuse the hash String without decoding the bytes).
+	 * 
+	 * @param bytes The bytes
+	 * @param offset The offset of the hash
+	 * @param length The length of the hash
+	 * @return boolean <tt>true</tt> if the bytes correspond to the current hash, <tt>false</tt>
+	 *         otherwise
+	 */
+	public boolean isDataHeaderHash(byte[] bytes, int offset, int length) {
+		final byte[] hashBytes = dataHeaderHashBytes;
+		if (hashBytes == null || hashBytes.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (hashBytes[i] != bytes[offset + i]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public DataHeader getDataHeader() {
@@ -33,4 +62,18 @@ public class ReceiverState {
 	public IntFunction<ByteBuffer> getDataHeaderAllocator() {
 		return dataHeaderAllocator;
 	}
+
+	/**
+	 * Provides the compiled filter of the requested channels (only recompiled when the requested
+	 * channels change).
+	 * 
+	 * @param requestedChannels The requested channels
+	 * @return RequestedChannelFilter The filter
+	 */
+	public RequestedChannelFilter getRequestedChannelFilter(Collection<Channel> requestedChannels) {
+		if (requestedChannelFilter == null || !requestedChannelFilter.isCompiledFrom(requestedChannels)) {
+			requestedChannelFilter = new RequestedChannelFilter(requestedChannels);
+		}
+		return requestedChannelFilter;
+	}
 }
@@ -0,0 +1,119 @@
+package ch.psi.bsread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ch.psi.bsread.configuration.Channel;
+import ch.psi.bsread.message.ChannelIndex;
+import ch.psi.bsread.message.DataHeader;
+import ch.psi.bsread.sync.PulsePhaseTable;
+
+/**
+ * The requested channels of a Receiver compiled into {@link PulsePhaseTable}s. Deciding if a
+ * pulse-id or a channel of the DataHeader is requested needs no allocation and no hashing of
+ * channel names. The table of the DataHeader is only rebuilt when the DataHeader changes.
+ * <p>
+ * Instances are used by the receiving thread only.
+ */
+public class RequestedChannelFilter {
+   // the collection the filter was compiled from (and its size at that time)
+   private final Collection<Channel> requestedChannels;
+   private final int nrOfRequestedChannels;
+   // copies (Channels are mutable)
+   private final List<Channel> channels;
+   private final PulsePhaseTable requestedTable;
+
+   private DataHeader dataHeader;
+   private PulsePhaseTable slotTable;
+
+   /**
+    * Constructor
+    *
+    * @param requestedChannels The requested channels
+    * @throws IllegalArgumentException If a channel has a modulo of 0
+    */
+   public RequestedChannelFilter(Collection<Channel> requestedChannels) {
+      this.requestedChannels = requestedChannels;
+      this.nrOfRequestedChannels = requestedChannels.size();
+      this.channels = new ArrayList<>(requestedChannels.size());
+      for (Channel channel : requestedChannels) {
+         if (channel.getModulo() == 0) {
+            throw new IllegalArgumentException(
+                  "The modulo of requested channel '" + channel.getName() + "' must not be 0.");
+         }
+         channels.add(new Channel(channel.getName(), channel.getModulo(), channel.getOffset()));
+      }
+      this.requestedTable = new PulsePhaseTable(channels);
+   }
+
+   /**
+    * Determines if this filter was compiled from the provided requested channels. This is checked
+    * per message and therefore compares the identity and the size of the collection only (i.e.
+    * requested channels are changed by setting or adding channels, not by modifying them in place).
+    *
+    * @param requestedChannels The requested channels
+    * @return boolean <tt>true</tt> if the filter corresponds to the requested channels,
+    *         <tt>false</tt> otherwise
+    */
+   public boolean isCompiledFrom(Collection<Channel> requestedChannels) {
+      return this.requestedChannels == requestedChannels && nrOfRequestedChannels == requestedChannels.size();
+   }
+
+   /**
+    * Determines if any channel is requested for a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @return boolean <tt>true</tt> if at least one channel is requested, <tt>false</tt> otherwise
+    */
+   public boolean isAnyRequested(long pulseId) {
+      return requestedTable.isAnySet(pulseId);
+   }
+
+   /**
+    * Provides the PulsePhaseTable of the channels of a DataHeader (one bit per DataHeader slot, see
+    * {@link DataHeader#getChannelIndex()}).
+    *
+    * @param dataHeader The DataHeader
+    * @return PulsePhaseTable The PulsePhaseTable
+    */
+   public PulsePhaseTable getSlotTable(DataHeader dataHeader) {
+      if (this.dataHeader != dataHeader) {
+         final ChannelIndex channelIndex = dataHeader.getChannelIndex();
+         final List<Channel> slotChannels = new ArrayList<>(channels.size());
+         final int[] slots = new int[channels.size()];
+         for (final Channel channel : channels) {
+            final int slot = channelIndex.getSlot(channel.getName());
+            // channels not part of the DataHeader are irrelevant
+            if (slot >= 0) {
+               slots[slotChannels.size()] = slot;
+               slotChannels.add(channel);
+            }
+         }
+
+         this.slotTable = new PulsePhaseTable(slotChannels, slots, channelIndex.size(),
+               PulsePhaseTable.DEFAULT_MAX_TABLE_SIZE);
+         this.dataHeader = dataHeader;
+      }
+
+      return slotTable;
+   }
+
+   /**
+    * Provides the names of the channels requested for a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @return Set The names of the requested channels
+    */
+   public Set<String> getRequestedChannels(long pulseId) {
+      final Set<String> requestedChannels = new HashSet<>();
+      for (int i = 0; i < channels.size(); ++i) {
+         if (requestedTable.isSet(pulseId, i)) {
+            requestedChannels.add(channels.get(i).getName());
+         }
+      }
+      return requestedChannels;
+   }
+}
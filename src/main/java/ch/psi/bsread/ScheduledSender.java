@@ -21,6 +21,7 @@ public class ScheduledSender {
    // make sure everything is executed from the same Thread
    private ScheduledExecutorService executor;
    private ScheduledFuture<?> fixedRateSender;
+   private Pacer pacedSender;
    private long bindCloseTimeoutMillis = 0;
 
    private Sender sender;
@@ -65,6 +66,10 @@ public class ScheduledSender {
          }
          fixedRateSender = null;
       }
+      if (pacedSender != null) {
+         pacedSender.cancel();
+         pacedSender = null;
+      }
 
       if (executor != null) {
          executor.execute(() -> {
@@ -141,7 +146,7 @@ public class ScheduledSender {
    }
 
    public ScheduledFuture<?> sendAtFixedRate(Runnable runnable, long initialDelay, long period, TimeUnit unit) {
-      if (fixedRateSender == null) {
+      if (fixedRateSender == null && pacedSender == null) {
          fixedRateSender = executor.scheduleAtFixedRate(runnable, initialDelay, period, unit);
          return fixedRateSender;
       } else {
@@ -152,6 +157,46 @@ public class ScheduledSender {
       }
    }
 
+   /**
+    * Sends at a fixed rate with high precision (see {@link Pacer}).
+    *
+    * @param initialDelay The delay of the first send
+    * @param period The period
+    * @param unit The unit of delay and period
+    * @param overrunPolicy Defines what happens if sending takes longer than the period
+    * @return Pacer The pacer (e.g. to cancel it or to get its jitter histogram)
+    */
+   public Pacer sendPaced(long initialDelay, long period, TimeUnit unit, Pacer.OverrunPolicy overrunPolicy) {
+      return sendPaced(initialDelay, period, unit, overrunPolicy, new AtomicLong());
+   }
+
+   public Pacer sendPaced(long initialDelay, long period, TimeUnit unit, Pacer.OverrunPolicy overrunPolicy,
+         AtomicLong count) {
+      return this.sendPaced(() -> {
+         try {
+            sender.send();
+            count.incrementAndGet();
+         } catch (Exception e) {
+            LOGGER.error("Error while sending to '{}'.", sender.getSenderConfig().getAddress(), e);
+            throw e;
+         }
+      }, initialDelay, period, unit, overrunPolicy);
+   }
+
+   public Pacer sendPaced(Runnable runnable, long initialDelay, long period, TimeUnit unit,
+         Pacer.OverrunPolicy overrunPolicy) {
+      if (fixedRateSender == null && pacedSender == null) {
+         pacedSender = new Pacer(runnable, executor, period, unit, overrunPolicy);
+         pacedSender.start(initialDelay, unit);
+         return pacedSender;
+      } else {
+         String message = String.format("There is already a fixed rate sender initialized for '%s'!",
+               sender.getSenderConfig().getAddress());
+         LOGGER.error(message);
+         throw new RuntimeException(message);
+      }
+   }
+
    public void sendCommand(Command command) {
       Future<?> future = executor.submit(() -> {
          try {
@@ -5,7 +5,11 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -15,8 +19,13 @@ import org.zeromq.ZMQ.Context;
 import org.zeromq.ZMQ.Socket;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ch.psi.bsread.command.Command;
+import ch.psi.bsread.common.allocator.ByteBufferAllocator;
+import ch.psi.bsread.common.allocator.PooledByteBufferAllocator;
+import ch.psi.bsread.common.allocator.ReuseByteBufferAllocator;
+import ch.psi.bsread.common.allocator.ThreadLocalByteBufferAllocator;
 import ch.psi.bsread.common.helper.ByteBufferHelper;
 import ch.psi.bsread.compression.Compression;
 import ch.psi.bsread.message.DataHeader;
@@ -36,6 +45,7 @@ public class Sender {
    private SenderConfig senderConfig;
 
    private MainHeader mainHeader;
+   private MainHeaderTemplate mainHeaderTemplate;
    private byte[] dataHeaderBytes;
    private String dataHeaderMD5 = "";
    private long sentMessages = 0;
@@ -115,6 +125,9 @@ public class Sender {
          mainHeader.setHash(dataHeaderMD5);
          mainHeader.setDataHeaderCompression(senderConfig.getDataHeaderCompression());
          final int blockingFlag = senderConfig.getBlockingFlag();
+         final Executor encodingService = senderConfig.getEncodingService();
+         // encoded before anything is sent (a failing channel does not leave a partial message)
+         final ByteBuffer[] encodedValues = encodingService != null ? encodeValues(pulseId, encodingService) : null;
 
          try {
             if (LOGGER.isDebugEnabled()) {
@@ -126,7 +139,7 @@ public class Sender {
             }
 
             // Send header
-            if (!socket.send(senderConfig.getObjectMapper().writeValueAsBytes(mainHeader), blockingFlag | ZMQ.SNDMORE)){
+            if (!socket.send(getMainHeaderBytes(), blockingFlag | ZMQ.SNDMORE)){
                LOGGER.error("Error sending main header for pulse '{}'.",mainHeader.getPulseId());            
                return;
             }
@@ -146,30 +159,31 @@ public class Sender {
                isSendNeeded = isSendNeeded(pulseId, channel);
 
                if (isSendNeeded) {
-                  final Object value = channel.getValue(pulseId);
-
-                  // TODO: conversion could be done in parallel as a
-                  // pre-step (Important: change allocators to non-reusing
-                  // types)
-                  ByteBuffer valueBuffer = senderConfig.getByteConverter().getBytes(value,
-                        channel.getConfig().getType(), byteOrder, senderConfig.getValueAllocator());
-                  valueBuffer = channel
-                        .getConfig()
-                        .getCompression()
-                        .getCompressor()
-                        .compressData(valueBuffer, valueBuffer.position(), valueBuffer.remaining(), 0,
-                              senderConfig.getCompressedValueAllocator(), channel.getConfig().getType().getBytes());
-                  //Use getBufferFromPosition because ZMQ 0.5.3 does not support buffers with position/limit
-                  if (socket.sendByteBuffer(getBufferFromPosition(valueBuffer), ZMQ.SNDMORE | blockingFlag)<0){
+                  final ByteBuffer valueBuffer = encodedValues != null ? encodedValues[i]
+                        : encodeValue(channel, pulseId, senderConfig.getValueAllocator(),
+                              senderConfig.getCompressedValueAllocator());
+                  final IntFunction<ByteBuffer> valueBufferAllocator =
+                        Compression.none.equals(channel.getConfig().getCompression()) ? senderConfig.getValueAllocator()
+                              : senderConfig.getCompressedValueAllocator();
+                  if (!sendBuffer(valueBuffer, valueBufferAllocator, ZMQ.SNDMORE | blockingFlag)){
                     LOGGER.error("Error sending value of channel {}  for pulse '{}'.", channel.getConfig().getName(), mainHeader.getPulseId());            
                     return;
                   }
-                  Timestamp timestamp = channel.getTime(pulseId);
-                  // c-implementation uses a unsigned long (Json::UInt64,
-                  // uint64_t) for time -> decided to ignore this here
-                  ByteBuffer timeBuffer = senderConfig.getByteConverter().getBytes(timestamp.getAsLongArray(),
-                        Type.Int64, byteOrder, senderConfig.getValueAllocator());
-                  if (socket.sendByteBuffer(getBufferFromPosition(timeBuffer), lastSendMore)<0){
+                  final ByteBuffer timeBuffer;
+                  if (channel instanceof DirectDataChannel) {
+                     timeBuffer = senderConfig.getValueAllocator().apply(DirectDataChannel.TIME_SIZE).order(byteOrder);
+                     final int start = timeBuffer.position();
+                     ((DirectDataChannel) channel).writeTime(pulseId, timeBuffer);
+                     timeBuffer.limit(start + DirectDataChannel.TIME_SIZE);
+                     timeBuffer.position(start);
+                  } else {
+                     Timestamp timestamp = channel.getTime(pulseId);
+                     // c-implementation uses a unsigned long (Json::UInt64,
+                     // uint64_t) for time -> decided to ignore this here
+                     timeBuffer = senderConfig.getByteConverter().getBytes(timestamp.getAsLongArray(),
+                           Type.Int64, byteOrder, senderConfig.getValueAllocator());
+                  }
+                  if (!sendBuffer(timeBuffer, senderConfig.getValueAllocator(), lastSendMore)){
                     LOGGER.error("Error sending timestamp of channel {}  for pulse '{}'.", channel.getConfig().getName(), mainHeader.getPulseId());            
                     return;                      
                   }
@@ -193,6 +207,132 @@ public class Sender {
       }
    }
 
+   private ByteBuffer encodeValue(DataChannel<?> channel, long pulseId, IntFunction<ByteBuffer> valueAllocator,
+         IntFunction<ByteBuffer> compressedValueAllocator) {
+      final ByteBuffer valueBuffer;
+      if (channel instanceof DirectDataChannel) {
+         final DirectDataChannel directChannel = (DirectDataChannel) channel;
+         valueBuffer = valueAllocator.apply(directChannel.getValueSize(pulseId))
+               .order(channel.getConfig().getByteOrder());
+         final int start = valueBuffer.position();
+         final int nrOfBytes = directChannel.writeValue(pulseId, valueBuffer);
+         valueBuffer.limit(start + nrOfBytes);
+         valueBuffer.position(start);
+      } else {
+         final Object value = channel.getValue(pulseId);
+         final ByteBuffer convertedBuffer = senderConfig.getByteConverter().getBytes(value,
+               channel.getConfig().getType(), channel.getConfig().getByteOrder(), valueAllocator);
+         if (valueAllocator instanceof PooledByteBufferAllocator && convertedBuffer.hasArray()
+               && convertedBuffer.array() == value) {
+            // byte arrays are wrapped (the array of the channel must not end up in the pool)
+            valueBuffer = valueAllocator.apply(convertedBuffer.remaining()).order(convertedBuffer.order());
+            valueBuffer.put(convertedBuffer.duplicate());
+            valueBuffer.flip();
+         } else {
+            valueBuffer = convertedBuffer;
+         }
+      }
+      final Compression compression = channel.getConfig().getCompression();
+      final ByteBuffer compressedBuffer = compression
+            .getCompressor()
+            .compressData(valueBuffer, valueBuffer.position(), valueBuffer.remaining(), 0,
+                  compressedValueAllocator, channel.getConfig().getType().getBytes());
+      // Compression.none sends (a duplicate of) the value buffer
+      if (!Compression.none.equals(compression) && valueAllocator instanceof PooledByteBufferAllocator) {
+         ((PooledByteBufferAllocator) valueAllocator).release(valueBuffer);
+      }
+      return compressedBuffer;
+   }
+
+   /*
+    * jeromq wraps the sent buffer (no copy) and does not notify when it is done with it. Therefore,
+    * buffers of a PooledByteBufferAllocator are copied on enqueue and released immediately (the
+    * pool still saves the uncompressed and the worst case sized compression buffers).
+    */
+   private boolean sendBuffer(ByteBuffer buffer, IntFunction<ByteBuffer> allocator, int flags) {
+      if (allocator instanceof PooledByteBufferAllocator) {
+         final byte[] bytes = new byte[buffer.remaining()];
+         buffer.duplicate().get(bytes);
+         ((PooledByteBufferAllocator) allocator).release(buffer);
+         return socket.send(bytes, flags);
+      } else {
+         //Use getBufferFromPosition because ZMQ 0.5.3 does not support buffers with position/limit
+         return socket.sendByteBuffer(getBufferFromPosition(buffer), flags) >= 0;
+      }
+   }
+
+   /*
+    * Converts and compresses the values of a pulse in parallel (the first value on the calling
+    * thread).
+    */
+   private ByteBuffer[] encodeValues(long pulseId, Executor encodingService) {
+      final IntFunction<ByteBuffer> valueAllocator = getNonReusingAllocator(senderConfig.getValueAllocator());
+      final IntFunction<ByteBuffer> compressedValueAllocator =
+            getNonReusingAllocator(senderConfig.getCompressedValueAllocator());
+      final ByteBuffer[] encodedValues = new ByteBuffer[channels.size()];
+      final CompletableFuture<?>[] futures = new CompletableFuture<?>[channels.size()];
+
+      int first = -1;
+      for (int i = 0; i < channels.size(); ++i) {
+         final DataChannel<?> channel = channels.get(i);
+         if (isSendNeeded(pulseId, channel)) {
+            if (first < 0) {
+               first = i;
+            } else {
+               futures[i] = CompletableFuture.supplyAsync(
+                     () -> encodeValue(channel, pulseId, valueAllocator, compressedValueAllocator),
+                     encodingService);
+            }
+         }
+      }
+
+      RuntimeException exception = null;
+      if (first >= 0) {
+         try {
+            encodedValues[first] =
+                  encodeValue(channels.get(first), pulseId, valueAllocator, compressedValueAllocator);
+         } catch (RuntimeException e) {
+            exception = e;
+         }
+      }
+      for (int i = 0; i < futures.length; ++i) {
+         if (futures[i] != null) {
+            try {
+               encodedValues[i] = (ByteBuffer) futures[i].join();
+            } catch (CompletionException e) {
+               if (exception == null) {
+                  exception = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new IllegalStateException("Unable to encode value of channel '"
+                              + channels.get(i).getConfig().getName() + "'.", e.getCause());
+               }
+            }
+         }
+      }
+
+      if (exception != null) {
+         throw exception;
+      }
+      return encodedValues;
+   }
+
+   private static IntFunction<ByteBuffer> getNonReusingAllocator(IntFunction<ByteBuffer> allocator) {
+      // concurrently encoded values must not share a buffer
+      if (allocator instanceof ReuseByteBufferAllocator || allocator instanceof ThreadLocalByteBufferAllocator) {
+         return ByteBufferAllocator.DEFAULT_ALLOCATOR;
+      } else {
+         return allocator;
+      }
+   }
+
+   private byte[] getMainHeaderBytes() throws JsonProcessingException {
+      final ObjectMapper objectMapper = senderConfig.getObjectMapper();
+      // only pulse-id and global timestamp change per pulse (see generateDataHeader())
+      if (mainHeaderTemplate == null || !mainHeaderTemplate.isValidFor(mainHeader, objectMapper)) {
+         mainHeaderTemplate = new MainHeaderTemplate(mainHeader, objectMapper);
+      }
+      return mainHeaderTemplate.render(mainHeader);
+   }
+
    private boolean isSendNeeded(long pulseId, DataChannel<?> channel) {
       // Check if this channel sends data for given pulseId
       return ((pulseId - channel.getConfig().getOffset()) % channel.getConfig().getModulo()) == 0;
@@ -220,6 +360,11 @@ public class Sender {
          // (allows to check consistency without uncompressing the bytes at
          // receivers side)
          dataHeaderMD5 = Utils.computeMD5(dataHeaderBytes);
+
+         // pre-render the main header for the new hash
+         mainHeader.setHash(dataHeaderMD5);
+         mainHeader.setDataHeaderCompression(senderConfig.getDataHeaderCompression());
+         mainHeaderTemplate = new MainHeaderTemplate(mainHeader, senderConfig.getObjectMapper());
       } catch (JsonProcessingException e) {
          throw new RuntimeException("Unable to generate data header", e);
       }
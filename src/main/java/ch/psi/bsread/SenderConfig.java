@@ -1,6 +1,7 @@
 package ch.psi.bsread;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
@@ -43,6 +44,8 @@ public class SenderConfig {
    private int sendBufferSize = DEFAULT_SEND_BUFFER_SIZE;
    private Monitor monitor;
    private boolean blockingSend = false;
+   // converts and compresses values in parallel (null means on the sending thread)
+   private Executor encodingService;
 
    public SenderConfig() {
       this(DEFAULT_ADDRESS);
@@ -190,4 +193,27 @@ public class SenderConfig {
    public int getBlockingFlag() {
       return blockingSend ? 0 : org.zeromq.ZMQ.NOBLOCK;
    }
+
+   /**
+    * Getter for the Executor used to convert and compress the values of a pulse in parallel.
+    * 
+    * @return Executor The Executor or null if values are encoded on the sending thread
+    */
+   public Executor getEncodingService() {
+      return encodingService;
+   }
+
+   /**
+    * Setter for the Executor used to convert and compress the values of a pulse in parallel (null
+    * means values are encoded on the sending thread). All values of a pulse are encoded before the
+    * first frame is sent and the frames are sent in DataHeader order. DataChannel.getValue() of
+    * different channels is called concurrently. Since every value needs its own buffer, reusing
+    * allocators (ReuseByteBufferAllocator, ThreadLocalByteBufferAllocator) are replaced by
+    * {@link ByteBufferAllocator#DEFAULT_ALLOCATOR} for the encoding.
+    * 
+    * @param encodingService The Executor
+    */
+   public void setEncodingService(Executor encodingService) {
+      this.encodingService = encodingService;
+   }
 }
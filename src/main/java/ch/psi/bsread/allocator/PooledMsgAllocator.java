@@ -0,0 +1,127 @@
+package ch.psi.bsread.allocator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import zmq.Msg;
+import ch.psi.bsread.MsgAllocator;
+import ch.psi.bsread.common.allocator.ByteBufferAllocator;
+import ch.psi.bsread.common.allocator.PooledByteBufferAllocator;
+
+/**
+ * A MsgAllocator that keeps direct buffers of received blobs bigger than a threshold in a pool.
+ * Buffers are handed out in power of two size classes and return to the pool once the
+ * {@link PooledMsg} (or the Value wrapping it) gets released. Buffers that are never released are
+ * simply reclaimed by the GC.
+ */
+public class PooledMsgAllocator implements MsgAllocator {
+   public static final int DEFAULT_POOLING_THRESHOLD = 64 * 1024;
+   public static final long DEFAULT_MAX_POOLED_BYTES = PooledByteBufferAllocator.DEFAULT_MAX_POOLED_BYTES;
+
+   private final int poolingThreshold;
+   // keeps the direct buffers (size classes and pool limit)
+   private final PooledByteBufferAllocator pool;
+   // heap allocations below the pooling threshold
+   private final AtomicLong allocatedBytes = new AtomicLong();
+
+   public PooledMsgAllocator() {
+      this(DEFAULT_POOLING_THRESHOLD, DEFAULT_MAX_POOLED_BYTES);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param poolingThreshold Blobs smaller than this size are allocated on the heap (and not
+    *        pooled)
+    * @param maxPooledBytes The maximal number of bytes kept in the pool (buffers released when the
+    *        pool is full are left to the GC)
+    */
+   public PooledMsgAllocator(int poolingThreshold, long maxPooledBytes) {
+      this.poolingThreshold = poolingThreshold;
+      this.pool = new PooledByteBufferAllocator(ByteBufferAllocator.DEFAULT_ALLOCATOR::allocateDirect, maxPooledBytes);
+   }
+
+   @Override
+   public Msg allocate(int size) {
+      if (size <= 0 || size < poolingThreshold) {
+         allocatedBytes.addAndGet(Math.max(0, size));
+         return new Msg(size);
+      } else {
+         return new PooledMsg(this, acquire(size));
+      }
+   }
+
+   /**
+    * Provides a buffer (with position 0 and limit size) from the pool or allocates a new one.
+    *
+    * @param size The size
+    * @return ByteBuffer The buffer
+    */
+   public ByteBuffer acquire(int size) {
+      return pool.apply(size);
+   }
+
+   /**
+    * Returns a buffer acquired through {@link #acquire(int)} to the pool.
+    *
+    * @param buffer The buffer
+    * @return boolean <tt>true</tt> if the buffer was pooled, <tt>false</tt> otherwise (e.g. pool
+    *         is full)
+    */
+   public boolean release(ByteBuffer buffer) {
+      return buffer.isDirect() && pool.release(buffer);
+   }
+
+   /**
+    * Hands the buffer of a skipped frame back to the pool.
+    */
+   @Override
+   public void discard(Msg msg) {
+      if (msg instanceof PooledMsg) {
+         ((PooledMsg) msg).release();
+      }
+   }
+
+   public long getPooledBytes() {
+      return pool.getPooledBytes();
+   }
+
+   /**
+    * Provides the number of bytes that had to be allocated (i.e. could not be served from the
+    * pool) since creation.
+    *
+    * @return long The allocated bytes
+    */
+   public long getAllocatedBytes() {
+      return allocatedBytes.get() + pool.getAllocatedBytes();
+   }
+
+   /**
+    * A Msg whose buffer belongs to a {@link PooledMsgAllocator}.
+    */
+   public static class PooledMsg extends Msg {
+      private static final AtomicIntegerFieldUpdater<PooledMsg> RELEASED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PooledMsg.class, "released");
+
+      private final PooledMsgAllocator allocator;
+      private final ByteBuffer pooledBuffer;
+      private volatile int released;
+
+      protected PooledMsg(PooledMsgAllocator allocator, ByteBuffer pooledBuffer) {
+         super(pooledBuffer);
+         this.allocator = allocator;
+         this.pooledBuffer = pooledBuffer;
+      }
+
+      /**
+       * Returns the buffer to the pool. The buffer (and all views of it) must not be accessed
+       * afterwards. Multiple calls have no effect.
+       */
+      public void release() {
+         if (RELEASED_UPDATER.compareAndSet(this, 0, 1)) {
+            allocator.release(pooledBuffer);
+         }
+      }
+   }
+}
@@ -1,129 +1,190 @@
 package ch.psi.bsread.analyzer;
 
-public class AnalyzerReport {
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.psi.bsread.metrics.LogLinearHistogram;
 
-    private final int SIZE_HISTOGRAM_PULSE_ID_INCREMENTS = 100;
-    private final int SIZE_HISTOGRAM_DELAYS = 10000; // 10 seconds
+/**
+ * Counters and histograms of a {@link MainHeaderAnalyzer}. All updates are thread-safe and
+ * allocation-free. Reports of many streams can be aggregated with {@link #merge(AnalyzerReport)}
+ * (at the cost of the number of histogram buckets, independent of the number of messages).
+ */
+public class AnalyzerReport {
 
-    private int numberOfMessages = 0;
+    private final LongAdder numberOfMessages = new LongAdder();
     // number of correct messages will always be one less than number of messages because the first message cannot be fully checked for validity
-    private int numberOfCorrectMessages = 0;
+    private final LongAdder numberOfCorrectMessages = new LongAdder();
+
+    private final LongAdder zeroPulseIds = new LongAdder();
+    private final LongAdder duplicatedPulseIds = new LongAdder();
+    private final LongAdder pulseIdsBeforeLastValid = new LongAdder();
 
-    private int zeroPulseIds = 0;
-    private int duplicatedPulseIds = 0;
-    private int pulseIdsBeforeLastValid = 0;
+    private final LongAdder globalTimestampOutOfValidTimeRange = new LongAdder();
+    private final LongAdder duplicatedGlobalTimestamp = new LongAdder();
+    private final LongAdder globalTimestampBeforeLastValid = new LongAdder();
 
-    private int globalTimestampOutOfValidTimeRange = 0;
-    private int duplicatedGlobalTimestamp = 0;
-    private int globalTimestampBeforeLastValid = 0;
+    // histogram of pulse-id increments
+    private final LogLinearHistogram histogramPulseIdIncrements;
 
-    // histogram of pulse-id increments - // last index holds all others
-    private int[] histogramPulseIdIncrements = new int[SIZE_HISTOGRAM_PULSE_ID_INCREMENTS+1];
+    // histogram of delays in ms - delays lower than 0 are recorded as 0
+    private final LogLinearHistogram histogramDelays;
 
-    // histogram of delays in ms - last index holds all other delays, index 0  holds delays equal and lower to 0
-    // Note: Maybe save full delay list to spot periodicity of delays?
-    private int[] histogramDelays = new int[SIZE_HISTOGRAM_DELAYS+1]; //
+    public AnalyzerReport() {
+        this(new LogLinearHistogram(), new LogLinearHistogram());
+    }
 
+    private AnalyzerReport(LogLinearHistogram histogramPulseIdIncrements, LogLinearHistogram histogramDelays) {
+        this.histogramPulseIdIncrements = histogramPulseIdIncrements;
+        this.histogramDelays = histogramDelays;
+    }
 
     public void incrementNumberOfMessages(){
-        numberOfMessages++;
+        numberOfMessages.increment();
     }
     public void incrementNumberOfCorrectMessages(){
-        numberOfCorrectMessages++;
+        numberOfCorrectMessages.increment();
     }
     public void incrementZeroPulseIds(){
-        zeroPulseIds++;
+        zeroPulseIds.increment();
     }
     public void incrementDuplicatedPulseIds(){
-        duplicatedPulseIds++;
+        duplicatedPulseIds.increment();
     }
     public void incrementPulseIdsBeforeLastValid(){
-        pulseIdsBeforeLastValid++;
+        pulseIdsBeforeLastValid.increment();
     }
-    public void incrementGlobalTimestampOutOfValidTimeRange(){ globalTimestampOutOfValidTimeRange++; }
+    public void incrementGlobalTimestampOutOfValidTimeRange(){ globalTimestampOutOfValidTimeRange.increment(); }
     public void incrementGlobalTimestampBeforeLastValid(){
-        globalTimestampBeforeLastValid++;
+        globalTimestampBeforeLastValid.increment();
     }
     public void incrementDuplicatedGlobalTimestamp(){
-        duplicatedGlobalTimestamp++;
+        duplicatedGlobalTimestamp.increment();
     }
 
-    public void updateHistogramPulseIdIncrements(int increment){
-        if(increment<SIZE_HISTOGRAM_PULSE_ID_INCREMENTS) {
-            histogramPulseIdIncrements[increment] += 1;
-        }
-        else{
-            // last index holds count for all other increments
-            histogramPulseIdIncrements[SIZE_HISTOGRAM_PULSE_ID_INCREMENTS] += 1;
-        }
+    public void updateHistogramPulseIdIncrements(long increment){
+        histogramPulseIdIncrements.record(increment);
     }
 
-    public void updateHistogramDelays(int delay){
-        if(delay <=0){
-            histogramDelays[0] += 1;
-        }
-        else if(delay<SIZE_HISTOGRAM_DELAYS) {
-            histogramDelays[delay] += 1;
-        }
-        else{
-            // last index holds count for all larger delays
-            histogramDelays[SIZE_HISTOGRAM_DELAYS] += 1;
-        }
+    public void updateHistogramDelays(long delay){
+        histogramDelays.record(delay);
     }
 
-    public int getNumberOfMessages() {
-        return numberOfMessages;
+    public long getNumberOfMessages() {
+        return numberOfMessages.sum();
     }
 
-    public int getNumberOfCorrectMessages() {
-        return numberOfCorrectMessages;
+    public long getNumberOfCorrectMessages() {
+        return numberOfCorrectMessages.sum();
     }
 
-    public int getZeroPulseIds() {
-        return zeroPulseIds;
+    public long getZeroPulseIds() {
+        return zeroPulseIds.sum();
     }
 
-    public int getDuplicatedPulseIds() {
-        return duplicatedPulseIds;
+    public long getDuplicatedPulseIds() {
+        return duplicatedPulseIds.sum();
     }
 
-    public int getPulseIdsBeforeLastValid() {
-        return pulseIdsBeforeLastValid;
+    public long getPulseIdsBeforeLastValid() {
+        return pulseIdsBeforeLastValid.sum();
     }
 
-    public int getGlobalTimestampOutOfValidTimeRange() {
-        return globalTimestampOutOfValidTimeRange;
+    public long getGlobalTimestampOutOfValidTimeRange() {
+        return globalTimestampOutOfValidTimeRange.sum();
     }
 
-    public int getDuplicatedGlobalTimestamp() {
-        return duplicatedGlobalTimestamp;
+    public long getDuplicatedGlobalTimestamp() {
+        return duplicatedGlobalTimestamp.sum();
     }
 
-    public int getGlobalTimestampBeforeLastValid() {
-        return globalTimestampBeforeLastValid;
+    public long getGlobalTimestampBeforeLastValid() {
+        return globalTimestampBeforeLastValid.sum();
     }
 
-    public int[] getHistogramPulseIdIncrements() {
+    /**
+     * Provides the histogram of the pulse-id increments between valid messages.
+     *
+     * @return LogLinearHistogram The histogram
+     */
+    public LogLinearHistogram getHistogramPulseIdIncrements() {
         return histogramPulseIdIncrements;
     }
 
-    public int[] getHistogramDelays() {
+    /**
+     * Provides the histogram of the delays between the global timestamp and the analysis.
+     *
+     * @return LogLinearHistogram The histogram (in milliseconds)
+     */
+    public LogLinearHistogram getHistogramDelays() {
         return histogramDelays;
     }
 
+    /**
+     * Adds the counters and histograms of another report to this report (e.g. to get a view of
+     * many streams).
+     *
+     * @param other The other report
+     */
+    public void merge(AnalyzerReport other) {
+        numberOfMessages.add(other.numberOfMessages.sum());
+        numberOfCorrectMessages.add(other.numberOfCorrectMessages.sum());
+        zeroPulseIds.add(other.zeroPulseIds.sum());
+        duplicatedPulseIds.add(other.duplicatedPulseIds.sum());
+        pulseIdsBeforeLastValid.add(other.pulseIdsBeforeLastValid.sum());
+        globalTimestampOutOfValidTimeRange.add(other.globalTimestampOutOfValidTimeRange.sum());
+        duplicatedGlobalTimestamp.add(other.duplicatedGlobalTimestamp.sum());
+        globalTimestampBeforeLastValid.add(other.globalTimestampBeforeLastValid.sum());
+        histogramPulseIdIncrements.add(other.histogramPulseIdIncrements);
+        histogramDelays.add(other.histogramDelays);
+    }
+
+    /**
+     * Creates a snapshot of the report and resets it (e.g. for interval reporting). Updates done
+     * concurrently are either part of the snapshot or remain in this report.
+     *
+     * @return AnalyzerReport The snapshot
+     */
+    public AnalyzerReport snapshotAndReset() {
+        final AnalyzerReport snapshot = new AnalyzerReport(histogramPulseIdIncrements.snapshotAndReset(),
+                histogramDelays.snapshotAndReset());
+        snapshot.numberOfMessages.add(numberOfMessages.sumThenReset());
+        snapshot.numberOfCorrectMessages.add(numberOfCorrectMessages.sumThenReset());
+        snapshot.zeroPulseIds.add(zeroPulseIds.sumThenReset());
+        snapshot.duplicatedPulseIds.add(duplicatedPulseIds.sumThenReset());
+        snapshot.pulseIdsBeforeLastValid.add(pulseIdsBeforeLastValid.sumThenReset());
+        snapshot.globalTimestampOutOfValidTimeRange.add(globalTimestampOutOfValidTimeRange.sumThenReset());
+        snapshot.duplicatedGlobalTimestamp.add(duplicatedGlobalTimestamp.sumThenReset());
+        snapshot.globalTimestampBeforeLastValid.add(globalTimestampBeforeLastValid.sumThenReset());
+        return snapshot;
+    }
+
+    /**
+     * Resets the counters and histograms.
+     */
+    public void reset() {
+        snapshotAndReset();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(String.format("Number of messages: %d\n", numberOfMessages));
-        sb.append(String.format("Number of correct messages: %d\n", numberOfCorrectMessages));
+        sb.append(String.format("Number of messages: %d\n", getNumberOfMessages()));
+        sb.append(String.format("Number of correct messages: %d\n", getNumberOfCorrectMessages()));
+
+        sb.append(String.format("Zero pulse-ids: %d\n", getZeroPulseIds()));
+        sb.append(String.format("Duplicated pulse-ids: %d\n", getDuplicatedPulseIds()));
+        sb.append(String.format("Pulse-ids before last valid: %d\n", getPulseIdsBeforeLastValid()));
 
-        sb.append(String.format("Zero pulse-ids: %d\n", zeroPulseIds));
-        sb.append(String.format("Duplicated pulse-ids: %d\n", duplicatedPulseIds));
-        sb.append(String.format("Pulse-ids before last valid: %d\n", pulseIdsBeforeLastValid));
+        sb.append(String.format("Global-timestamp out of valid timerange: %d\n", getGlobalTimestampOutOfValidTimeRange()));
+        sb.append(String.format("Duplicated global-timestamp: %d\n", getDuplicatedGlobalTimestamp()));
+        sb.append(String.format("Global-timestamp before last valid: %d\n", getGlobalTimestampBeforeLastValid()));
 
-        sb.append(String.format("Global-timestamp out of valid timerange: %d\n", globalTimestampOutOfValidTimeRange));
-        sb.append(String.format("Duplicated global-timestamp: %d\n", duplicatedGlobalTimestamp));
-        sb.append(String.format("Global-timestamp before last valid: %d\n", globalTimestampBeforeLastValid));
+        if (histogramPulseIdIncrements.getCount() > 0) {
+            sb.append(String.format("Pulse-id increments: %s\n", histogramPulseIdIncrements));
+        }
+        if (histogramDelays.getCount() > 0) {
+            sb.append(String.format("Delays (ms): %s\n", histogramDelays));
+        }
 
         return sb.toString();
     }
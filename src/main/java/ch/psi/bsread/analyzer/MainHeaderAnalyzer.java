@@ -1,12 +1,18 @@
 package ch.psi.bsread.analyzer;
 
 import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.Timestamp;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * MainHeader validator - checks if the header information (pulse-id and global timestamp)
@@ -15,37 +21,43 @@ import java.util.concurrent.TimeUnit;
  * The basic assumption for this validator to work correctly is that the first message analyzed need to be
  * correct - to have rough idea of correctness we check if pulse-id is not 0 and the global time is within
  * a reasonable timerange around the current time.
+ *
+ * The validator is lock-free and can be shared by several receiving threads. The last valid pulse-id
+ * and global timestamp are kept together in one small immutable holder (instead of the whole header).
+ * This costs one short-lived allocation per accepted header, which is the price of updating both
+ * values consistently with a single compare-and-set (rejected headers do not allocate).
  */
 public class MainHeaderAnalyzer {
 
     private static final Logger logger = LoggerFactory.getLogger(MainHeaderAnalyzer.class);
 
     private static final String DEFAULT_MIN_LOG_INTERVAL_PARAM = "MinLogInterval";
-    
-    
-    private MainHeader lastValid = null;
+
+
+    // the last valid header (null if there is none) - pulse-id and timestamp are always updated together
+    private final AtomicReference<LastValid> lastValid = new AtomicReference<>();
     private final String streamName;
-    private final int  minLogInterval;    
+    private final int  minLogInterval;
 
-    private long lastLogTimestam;
-    private long missedLogCount;
+    private final AtomicLong lastLogTimestamp = new AtomicLong();
+    private final AtomicLong missedLogCount = new AtomicLong();
 
-    private boolean createHistograms = false;
-    private boolean checkPulseIdTime = true;
-    
+    private volatile boolean createHistograms = false;
+    private volatile boolean checkPulseIdTime = true;
 
-    private long validTimeDelta = TimeUnit.MINUTES.toMillis(10);
-    private long validPulseIdDelta = TimeUnit.DAYS.toSeconds(1) *100;
 
-    private AnalyzerReport report;
+    private volatile long validTimeDelta = TimeUnit.MINUTES.toMillis(10);
+    private volatile long validPulseIdDelta = TimeUnit.DAYS.toSeconds(1) *100;
+
+    private final AnalyzerReport report;
 
     static int defaultMinLogInterval;
     static {
         try{
-            defaultMinLogInterval =  Integer.valueOf(System.getProperty(DEFAULT_MIN_LOG_INTERVAL_PARAM));            
-        } catch (Exception ex){            
+            defaultMinLogInterval =  Integer.valueOf(System.getProperty(DEFAULT_MIN_LOG_INTERVAL_PARAM));
+        } catch (Exception ex){
             defaultMinLogInterval = 10000;
-        }                
+        }
     }
     /**
      * Create validator
@@ -60,7 +72,7 @@ public class MainHeaderAnalyzer {
         this.report = new AnalyzerReport();
         this.minLogInterval = minLogInterval;
     }
-    
+
     /**
      * Validate pulse-id and global-timestamp based on the state of previous messages
      *
@@ -71,7 +83,8 @@ public class MainHeaderAnalyzer {
 
         final long currentTime = System.currentTimeMillis();
 
-        final long headerTimestamp = header.getGlobalTimestamp().getAsMillis();
+        final Timestamp globalTimestamp = header.getGlobalTimestamp();
+        final long headerTimestamp = globalTimestamp.getAsMillis();
         final long headerPulseId = header.getPulseId();
 
         report.incrementNumberOfMessages();
@@ -79,10 +92,12 @@ public class MainHeaderAnalyzer {
         // Check for 0 pulse-id
         if (headerPulseId == 0) {
             report.incrementZeroPulseIds();
-            _warn("stream: {} - pulse-id: {} at timestamp: {} - 0 pulse-id",
-                    streamName,
-                    headerPulseId,
-                    header.getGlobalTimestamp());
+            if (isLogging(currentTime)) {
+                warn("stream: {} - pulse-id: {} at timestamp: {} - 0 pulse-id" + getMissedWarnings(),
+                        streamName,
+                        headerPulseId,
+                        globalTimestamp);
+            }
 
             return false;
         }
@@ -91,160 +106,186 @@ public class MainHeaderAnalyzer {
         // Note: this check might lead to problems if the receiving nodes local time largely differs
         // from the actual time of the other systems
         // Only logging old messages, but accept them. refusing messages in the future.
+        final long validTimeDelta = this.validTimeDelta;
         if (headerTimestamp < (currentTime - validTimeDelta) ) {
             //report.incrementGlobalTimestampOutOfValidTimeRange();
-            _warn("stream: {} - pulse-id: {} at timestamp: {} - too old {} +/- {} ms",
-                    streamName,
-                    headerPulseId,
-                    header.getGlobalTimestamp(),
-                    currentTime,
-                    validTimeDelta);
+            if (isLogging(currentTime)) {
+                warn("stream: {} - pulse-id: {} at timestamp: {} - too old {} +/- {} ms" + getMissedWarnings(),
+                        streamName,
+                        headerPulseId,
+                        globalTimestamp,
+                        currentTime,
+                        validTimeDelta);
+            }
 
             //return false;
         } else if ( headerTimestamp > (currentTime + validTimeDelta)) {
             report.incrementGlobalTimestampOutOfValidTimeRange();
-            _warn("stream: {} - pulse-id: {} at timestamp: {} - out of valid time range {} +/- {} ms",
-                    streamName,
-                    headerPulseId,
-                    header.getGlobalTimestamp(),
-                    currentTime,
-                    validTimeDelta);
+            if (isLogging(currentTime)) {
+                warn("stream: {} - pulse-id: {} at timestamp: {} - out of valid time range {} +/- {} ms" + getMissedWarnings(),
+                        streamName,
+                        headerPulseId,
+                        globalTimestamp,
+                        currentTime,
+                        validTimeDelta);
+            }
 
             return false;
-        }      
-        
-        if (checkPulseIdTime){
-            
-            long timestampNanos =  header.getGlobalTimestamp().getAsLongArray()[1] % 1000000;
-            if (!checkPulseId(headerPulseId,timestampNanos)){
-                _warn("stream: {} - pulse-id: {} at timestamp: {} - pulse-id does not match timestamp nanos {}",
-                    streamName,
-                    headerPulseId,
-                    header.getGlobalTimestamp(),
-                    timestampNanos);
-                return false;                
-            }
-            
-            
-            if ((headerPulseId - getSimulatedPulseId()) > validPulseIdDelta) {
-                _warn("stream: {} - pulse-id: {} at timestamp: {} - out of valid pulse-id time range +{} ms",
-                    streamName,
-                    headerPulseId,
-                    header.getGlobalTimestamp(),                    
-                    validPulseIdDelta);
-                return false;
-            }        
         }
 
-        // For the following checks a last valid header is necessary
-        // Note: Assumption first message we get is correct - if this is not true all following checks might fail
-        if(lastValid != null) {
-
-            final long validPulseId = lastValid.getPulseId();
-            final long validTimestamp = lastValid.getGlobalTimestamp().getAsMillis();
+        if (checkPulseIdTime){
 
-            // Check for duplicated pulse-id
-            if (validPulseId == headerPulseId) {
-                report.incrementDuplicatedPulseIds();
-                _warn("stream: {} - pulse-id: {} at timestamp: {} - duplicate pulse-id {}",
+            long timestampNanos =  globalTimestamp.getNs() % 1000000;
+            if (!checkPulseId(headerPulseId,timestampNanos)){
+                if (isLogging(currentTime)) {
+                    warn("stream: {} - pulse-id: {} at timestamp: {} - pulse-id does not match timestamp nanos {}" + getMissedWarnings(),
                         streamName,
                         headerPulseId,
-                        header.getGlobalTimestamp(),
-                        validPulseId);
-
+                        globalTimestamp,
+                        timestampNanos);
+                }
                 return false;
             }
 
 
-            // Check for equal or smaller pulse-id
-            if (validPulseId > headerPulseId) {
-                report.incrementPulseIdsBeforeLastValid();
-                _warn("stream: {} - pulse-id: {} at timestamp: {} - pulse-id before last valid pulse-id {}",
+            if ((headerPulseId - getSimulatedPulseId(currentTime)) > validPulseIdDelta) {
+                if (isLogging(currentTime)) {
+                    warn("stream: {} - pulse-id: {} at timestamp: {} - out of valid pulse-id time range +{} ms" + getMissedWarnings(),
                         streamName,
                         headerPulseId,
-                        header.getGlobalTimestamp(),
-                        validPulseId);
-
+                        globalTimestamp,
+                        validPulseIdDelta);
+                }
                 return false;
             }
+        }
 
-            // Check if timestamp is after last valid message
-            // We ignore the nanoseconds part as it is invalid anyway i.e. it is used to hold parts of the pulse-id
-            if (validTimestamp == headerTimestamp ) {
-                report.incrementDuplicatedGlobalTimestamp();
-                _warn("stream: {} - pulse-id: {} at timestamp: {} - duplicate global-timestamp {}",
-                        streamName,
-                        headerPulseId,
-                        header.getGlobalTimestamp(),
-                        lastValid.getGlobalTimestamp());
-
-                return false;
+        // For the following checks a last valid header is necessary
+        // Note: Assumption first message we get is correct - if this is not true all following checks might fail
+        LastValid next = null;
+        LastValid valid;
+        do {
+            valid = lastValid.get();
+
+            if (valid != null) {
+                // consistent pair (both belong to the same header)
+                final long validPulseId = valid.pulseId;
+                final long validTimestamp = valid.timestamp;
+
+                // Check for duplicated pulse-id
+                if (validPulseId == headerPulseId) {
+                    report.incrementDuplicatedPulseIds();
+                    if (isLogging(currentTime)) {
+                        warn("stream: {} - pulse-id: {} at timestamp: {} - duplicate pulse-id {}" + getMissedWarnings(),
+                                streamName,
+                                headerPulseId,
+                                globalTimestamp,
+                                validPulseId);
+                    }
+
+                    return false;
+                }
+
+
+                // Check for equal or smaller pulse-id
+                if (validPulseId > headerPulseId) {
+                    report.incrementPulseIdsBeforeLastValid();
+                    if (isLogging(currentTime)) {
+                        warn("stream: {} - pulse-id: {} at timestamp: {} - pulse-id before last valid pulse-id {}" + getMissedWarnings(),
+                                streamName,
+                                headerPulseId,
+                                globalTimestamp,
+                                validPulseId);
+                    }
+
+                    return false;
+                }
+
+                // Check if timestamp is after last valid message
+                // We ignore the nanoseconds part as it is invalid anyway i.e. it is used to hold parts of the pulse-id
+                if (validTimestamp == headerTimestamp ) {
+                    report.incrementDuplicatedGlobalTimestamp();
+                    if (isLogging(currentTime)) {
+                        warn("stream: {} - pulse-id: {} at timestamp: {} - duplicate global-timestamp {}" + getMissedWarnings(),
+                                streamName,
+                                headerPulseId,
+                                globalTimestamp,
+                                Timestamp.ofMillis(validTimestamp));
+                    }
+
+                    return false;
+                }
+
+                if (validTimestamp > headerTimestamp ) {
+                    report.incrementGlobalTimestampBeforeLastValid();
+                    if (isLogging(currentTime)) {
+                        warn("stream: {} - pulse-id: {} at timestamp: {} - global-timestamp before last valid timestamp {}" + getMissedWarnings(),
+                                streamName,
+                                headerPulseId,
+                                globalTimestamp,
+                                Timestamp.ofMillis(validTimestamp));
+                    }
+
+                    return false;
+                }
             }
-
-            if (validTimestamp > headerTimestamp ) {
-                report.incrementGlobalTimestampBeforeLastValid();
-                _warn("stream: {} - pulse-id: {} at timestamp: {} - global-timestamp before last valid timestamp {}",
-                        streamName,
-                        headerPulseId,
-                        header.getGlobalTimestamp(),
-                        lastValid.getGlobalTimestamp());
-
-                return false;
+            if (next == null) {
+                next = new LastValid(headerPulseId, headerTimestamp);
             }
+            // retry if another thread accepted a header in the meantime
+        } while (!lastValid.compareAndSet(valid, next));
 
+        if (valid != null) {
             if(createHistograms) {
                 // Update pulse-id increment histogram
-                report.updateHistogramPulseIdIncrements((int) (headerPulseId - validPulseId)); // cast to int needed
+                report.updateHistogramPulseIdIncrements(headerPulseId - valid.pulseId);
                 // Update delay histogram
-                report.updateHistogramDelays((int) (currentTime - headerTimestamp));
+                report.updateHistogramDelays(currentTime - headerTimestamp);
             }
 
 
             report.incrementNumberOfCorrectMessages();
         }
 
-        lastValid = header;
-
         return true;
     }
-    
 
-    private void _warn(String string, Object... os){
+    /*
+     * Rate limits the warnings (warnings that are not logged are counted).
+     */
+    private boolean isLogging(long now){
         if (minLogInterval > 0){
-            long now = System.currentTimeMillis();
-            if ((now - lastLogTimestam) < minLogInterval){
-                missedLogCount ++;
-                return;
-            }
-            lastLogTimestam = now;
-            if (missedLogCount>0){
-                string = string + String.format(" - missed warnings: %d", missedLogCount);
+            final long lastLog = lastLogTimestamp.get();
+            if ((now - lastLog) < minLogInterval || !lastLogTimestamp.compareAndSet(lastLog, now)){
+                missedLogCount.incrementAndGet();
+                return false;
             }
-            missedLogCount = 0;            
         }
-        warn(string, os);
+        return true;
+    }
+
+    private String getMissedWarnings(){
+        final long missed = missedLogCount.getAndSet(0);
+        return missed > 0 ? String.format(" - missed warnings: %d", missed) : "";
     }
-    
+
     protected void warn(String string, Object... os){
         logger.warn(string, os);
-    }    
+    }
 
     /**
-     * Reset the validator state
+     * Reset the validator state. The report is cleared in place, i.e. a report obtained by
+     * {@link #getReport()} before is reset as well (use {@link AnalyzerReport#snapshotAndReset()}
+     * to keep its values).
      * @return true if a state was reset, false if no reset was needed
      */
     public boolean reset(){
         // Always reset the report
-        report = new AnalyzerReport();
-        lastLogTimestam = 0;
-        missedLogCount = 0;
+        report.reset();
+        lastLogTimestamp.set(0);
+        missedLogCount.set(0);
 
-        if(lastValid == null){
-            return false;
-        }
-
-        lastValid = null;
-        return true;
+        return lastValid.getAndSet(null) != null;
     }
 
     public long getValidTimeDelta() {
@@ -254,7 +295,7 @@ public class MainHeaderAnalyzer {
     public void setValidTimeDelta(long validTimeDelta) {
         this.validTimeDelta = validTimeDelta;
     }
-    
+
 
     public boolean isCreateHistograms() {
         return createHistograms;
@@ -263,7 +304,7 @@ public class MainHeaderAnalyzer {
     public void setCreateHistograms(boolean createHistograms) {
         this.createHistograms = createHistograms;
     }
-    
+
     public boolean isCheckPulseIdTime() {
         return checkPulseIdTime;
     }
@@ -271,7 +312,7 @@ public class MainHeaderAnalyzer {
     public void setCheckPulseIdTime(boolean checkPulseIdTime) {
         this.checkPulseIdTime = checkPulseIdTime;
     }
-    
+
     public long getValidPulseIdDelta() {
         return validPulseIdDelta;
     }
@@ -279,24 +320,58 @@ public class MainHeaderAnalyzer {
     public void setValidPidDelta(long validPulseIdDelta) {
         this.validPulseIdDelta = validPulseIdDelta;
     }
-    
-    
 
+
+
+    /**
+     * The report of this validator (use {@link AnalyzerReport#snapshotAndReset()} for interval
+     * reports and {@link AnalyzerReport#merge(AnalyzerReport)} to aggregate several validators).
+     *
+     * @return AnalyzerReport The report
+     */
     public AnalyzerReport getReport() {
         return report;
     }
-    
-    public static final LocalDateTime startPulseId = LocalDateTime.of(2017, 9, 4, 11, 11, 18);     
-    
+
+    public static final LocalDateTime startPulseId = LocalDateTime.of(2017, 9, 4, 11, 11, 18);
+    // local wall-clock time (as LocalDateTime) in millis, i.e. independent of the zone offset
+    private static final long startPulseIdLocalMillis = startPulseId.toEpochSecond(ZoneOffset.UTC) * 1000;
+    private static final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+
     public static long getSimulatedPulseId() {
-        LocalDateTime now = LocalDateTime.now();
-        long  millis = ChronoUnit.MILLIS.between(startPulseId, now); 
+        return getSimulatedPulseId(System.currentTimeMillis());
+    }
+
+    /**
+     * Simulates the pulse-id from the local wall-clock time elapsed since {@link #startPulseId}
+     * (same as the difference of the two LocalDateTimes, i.e. daylight saving time shifts it).
+     *
+     * @param currentTimeMillis The current time (millis since epoch)
+     * @return long The simulated pulse-id
+     */
+    public static long getSimulatedPulseId(long currentTimeMillis) {
+        final long offsetMillis =
+                zoneRules.getOffset(Instant.ofEpochMilli(currentTimeMillis)).getTotalSeconds() * 1000L;
+        long  millis = currentTimeMillis + offsetMillis - startPulseIdLocalMillis;
         long pid = millis/10;
         return pid;
     }
-        
+
     public static boolean checkPulseId(long pulseId, long timestampNanos) {
         return ((pulseId % 1000000) == (timestampNanos % 1000000));
-    }       
-    
-}
\ No newline at end of file
+    }
+
+
+    /*
+     * Pulse-id and global timestamp (millis) of the last valid header.
+     */
+    private static final class LastValid {
+        private final long pulseId;
+        private final long timestamp;
+
+        private LastValid(long pulseId, long timestamp) {
+            this.pulseId = pulseId;
+            this.timestamp = timestamp;
+        }
+    }
+}
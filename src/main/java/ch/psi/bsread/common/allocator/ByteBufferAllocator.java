@@ -29,37 +29,13 @@ public class ByteBufferAllocator implements IntFunction<ByteBuffer> {
 
 
     static {
-        long directAllocationThreshold = Integer.MAX_VALUE; // 64 * 1024; // 64KB
-        String thresholdStr = System.getProperty(DEFAULT_DIRECT_ALLOCATION_THRESHOLD_PARAM);
-
-        long multiplier = 1; // for the byte case.
-        if (thresholdStr != null) {
-            thresholdStr = thresholdStr.toLowerCase().trim();
-
-            if (thresholdStr.contains("k")) {
-                multiplier = 1024;
-            } else if (thresholdStr.contains("m")) {
-                multiplier = 1048576;
-            } else if (thresholdStr.contains("g")) {
-                multiplier = 1073741824;
-            } else if (thresholdStr.contains("t")) {
-                multiplier = 1073741824 * 1024;
-            }
-            thresholdStr = thresholdStr.replaceAll("[^\\d]", "");
-
-            try {
-                directAllocationThreshold = Long.parseLong(thresholdStr) * multiplier;
-            } catch (Exception e) {
-                LOGGER.warn("Could not parse '{}' containing '{}' as bytes.", DEFAULT_DIRECT_ALLOCATION_THRESHOLD_PARAM,
-                        thresholdStr, e);
-            }
-        }
+        long directAllocationThreshold = getBytesProperty(DEFAULT_DIRECT_ALLOCATION_THRESHOLD_PARAM, Integer.MAX_VALUE); // 64 * 1024; // 64KB
 
         DIRECT_ALLOCATION_THRESHOLD = directAllocationThreshold;
         LOGGER.info("Allocate direct memory if junks get bigger than '{}' bytes.", directAllocationThreshold);
 
         double directMemoryCleanerThreshold = 0.9;
-        thresholdStr = System.getProperty(DEFAULT_DIRECT_CLEANER_THRESHOLD_PARAM);
+        String thresholdStr = System.getProperty(DEFAULT_DIRECT_CLEANER_THRESHOLD_PARAM);
         if (thresholdStr != null) {
             try {
                 directMemoryCleanerThreshold = Double.parseDouble(thresholdStr);
@@ -188,6 +164,41 @@ public class ByteBufferAllocator implements IntFunction<ByteBuffer> {
         }
     }
 
+    /**
+     * Parses a system property defining a number of bytes (e.g. '64k', '4m', '1g').
+     * 
+     * @param propertyName The name of the system property
+     * @param defaultValue The value used if the property is not defined or can not be parsed
+     * @return long The number of bytes
+     */
+    public static long getBytesProperty(String propertyName, long defaultValue) {
+        long bytes = defaultValue;
+        String bytesStr = System.getProperty(propertyName);
+
+        long multiplier = 1; // for the byte case.
+        if (bytesStr != null) {
+            bytesStr = bytesStr.toLowerCase().trim();
+
+            if (bytesStr.contains("k")) {
+                multiplier = 1024;
+            } else if (bytesStr.contains("m")) {
+                multiplier = 1048576;
+            } else if (bytesStr.contains("g")) {
+                multiplier = 1073741824;
+            } else if (bytesStr.contains("t")) {
+                multiplier = 1073741824 * 1024;
+            }
+            bytesStr = bytesStr.replaceAll("[^\\d]", "");
+
+            try {
+                bytes = Long.parseLong(bytesStr) * multiplier;
+            } catch (Exception e) {
+                LOGGER.warn("Could not parse '{}' containing '{}' as bytes.", propertyName, bytesStr, e);
+            }
+        }
+        return bytes;
+    }
+
     public static long getDirectMemoryUsage() {
         return POOL_DIRECT.getMemoryUsed();
     }
@@ -0,0 +1,129 @@
+package ch.psi.bsread.common.allocator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Allocator keeping ByteBuffers in power of two size classes. In contrast to
+ * {@link ReuseByteBufferAllocator}, a buffer is only handed out again after it was given back with
+ * {@link #release(ByteBuffer)}, i.e. the allocator can be shared by several threads and a buffer
+ * can be kept as long as something still reads it. Buffers that are never released are simply
+ * reclaimed by the GC.
+ */
+public class PooledByteBufferAllocator implements IntFunction<ByteBuffer> {
+   public static final long DEFAULT_MAX_POOLED_BYTES = 256L * 1024 * 1024;
+   // biggest size class is 2^30
+   private static final int MAX_SIZE_CLASS = 30;
+
+   private final IntFunction<ByteBuffer> allocator;
+   private final long maxPooledBytes;
+   private final Queue<ByteBuffer>[] pools;
+   private final AtomicLong pooledBytes = new AtomicLong();
+   private final AtomicLong allocatedBytes = new AtomicLong();
+
+   public PooledByteBufferAllocator() {
+      this(ByteBufferAllocator.DEFAULT_ALLOCATOR, DEFAULT_MAX_POOLED_BYTES);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param allocator The allocator for new buffers (e.g. to decide between heap and direct
+    *        memory)
+    * @param maxPooledBytes The maximal number of bytes kept in the pool (buffers released when the
+    *        pool is full are left to the GC)
+    */
+   public PooledByteBufferAllocator(IntFunction<ByteBuffer> allocator, long maxPooledBytes) {
+      this.allocator = allocator;
+      this.maxPooledBytes = maxPooledBytes;
+      this.pools = newPools(MAX_SIZE_CLASS + 1);
+   }
+
+   // arrays of generic types can only be created raw (all elements are Queue<ByteBuffer>)
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static Queue<ByteBuffer>[] newPools(int nrOfPools) {
+      final Queue<ByteBuffer>[] pools = new Queue[nrOfPools];
+      for (int i = 0; i < pools.length; ++i) {
+         pools[i] = new ConcurrentLinkedQueue<>();
+      }
+      return pools;
+   }
+
+   /**
+    * Provides a buffer (with position 0, limit nBytes and big endian byte order) from the pool or
+    * allocates a new one.
+    */
+   @Override
+   public ByteBuffer apply(int nBytes) {
+      final int sizeClass = getSizeClass(nBytes);
+      ByteBuffer buffer = null;
+
+      if (sizeClass <= MAX_SIZE_CLASS) {
+         buffer = pools[sizeClass].poll();
+         if (buffer != null) {
+            pooledBytes.addAndGet(-buffer.capacity());
+         } else {
+            buffer = allocator.apply(1 << sizeClass);
+            allocatedBytes.addAndGet(buffer.capacity());
+         }
+      } else {
+         buffer = allocator.apply(nBytes);
+         allocatedBytes.addAndGet(buffer.capacity());
+      }
+
+      buffer.clear();
+      buffer.limit(nBytes);
+      return buffer.order(ByteOrder.BIG_ENDIAN);
+   }
+
+   /**
+    * Returns a buffer provided by {@link #apply(int)} (or a duplicate of it) to the pool. Each
+    * buffer must be released only once and must not be accessed afterwards.
+    *
+    * @param buffer The buffer
+    * @return boolean <tt>true</tt> if the buffer was pooled, <tt>false</tt> otherwise (e.g. pool
+    *         is full)
+    */
+   public boolean release(ByteBuffer buffer) {
+      final int capacity = buffer.capacity();
+      if (buffer.isReadOnly() || Integer.bitCount(capacity) != 1) {
+         return false;
+      }
+
+      final int sizeClass = Integer.numberOfTrailingZeros(capacity);
+      if (sizeClass > MAX_SIZE_CLASS) {
+         return false;
+      }
+
+      if (pooledBytes.addAndGet(capacity) <= maxPooledBytes) {
+         pools[sizeClass].offer(buffer);
+         return true;
+      } else {
+         pooledBytes.addAndGet(-capacity);
+         return false;
+      }
+   }
+
+   public long getPooledBytes() {
+      return pooledBytes.get();
+   }
+
+   /**
+    * Provides the number of bytes that had to be allocated (i.e. could not be served from the
+    * pool) since creation.
+    *
+    * @return long The allocated bytes
+    */
+   public long getAllocatedBytes() {
+      return allocatedBytes.get();
+   }
+
+   private static int getSizeClass(int size) {
+      // ceil(log2(size))
+      return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+   }
+}
@@ -0,0 +1,378 @@
+package ch.psi.bsread.common.concurrent;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.psi.bsread.common.concurrent.executor.CommonExecutors;
+
+/**
+ * Dispatches events to handlers on a dedicated pool. Every handler gets its own bounded ring
+ * buffer (lane) which is processed by one worker at a time, i.e. a handler sees its events in
+ * dispatch order and a slow handler only delays itself. What happens if a lane is full is defined
+ * by the {@link OverflowStrategy}.
+ * <p>
+ * Dispatching is meant to be done by one thread (e.g. the receiving thread). Once closed, events
+ * are handled on the dispatching thread.
+ */
+public class HandlerDispatcher implements Closeable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(HandlerDispatcher.class);
+   public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+   private final String name;
+   private final int queueSize;
+   private final OverflowStrategy overflowStrategy;
+   private final ExecutorService executor;
+   private final Map<Object, Lane> lanes = new ConcurrentHashMap<>();
+   private volatile boolean closed;
+
+   public HandlerDispatcher(String name) {
+      this(name, DEFAULT_QUEUE_SIZE, OverflowStrategy.BLOCK);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param name The name (used for the threads)
+    * @param queueSize The max number of queued events per handler (ignored for
+    *        {@link OverflowStrategy#KEEP_LATEST})
+    * @param overflowStrategy The strategy applied when a handler does not keep up
+    */
+   public HandlerDispatcher(String name, int queueSize, OverflowStrategy overflowStrategy) {
+      if (queueSize <= 0) {
+         throw new IllegalArgumentException("Queue size must be positive.");
+      }
+
+      this.name = name;
+      this.queueSize = OverflowStrategy.KEEP_LATEST.equals(overflowStrategy) ? 1 : queueSize;
+      this.overflowStrategy = overflowStrategy;
+      // one worker per busy handler (idle workers terminate)
+      this.executor = CommonExecutors.newCachedThreadPool(0, Integer.MAX_VALUE, name);
+   }
+
+   /**
+    * Dispatches an event to a handler.
+    *
+    * @param <T> The JAVA type of the event
+    * @param handler The handler
+    * @param event The event
+    */
+   public <T> void dispatch(Consumer<? super T> handler, T event) {
+      dispatch(handler, Consumer::accept, event, null);
+   }
+
+   /**
+    * Dispatches an event to a handler.
+    *
+    * @param <H> The JAVA type of the handler
+    * @param <T> The JAVA type of the event
+    * @param handler The handler (identifies the lane)
+    * @param invoker Passes the event to the handler
+    * @param event The event
+    * @param afterHandling Called once the event was handled or dropped (might be null)
+    */
+   public <H, T> void dispatch(H handler, BiConsumer<? super H, ? super T> invoker, T event,
+         Runnable afterHandling) {
+      if (closed) {
+         try {
+            invoke(handler, invoker, event);
+         } finally {
+            if (afterHandling != null) {
+               afterHandling.run();
+            }
+         }
+      } else {
+         lanes.computeIfAbsent(handler, Lane::new).offer(invoker, event, afterHandling);
+      }
+   }
+
+   /**
+    * Dispatches an event to several handlers.
+    *
+    * @param <H> The JAVA type of the handlers
+    * @param <T> The JAVA type of the event
+    * @param handlers The handlers
+    * @param invoker Passes the event to a handler
+    * @param event The event
+    * @param awaitHandling Defines if the call returns only once all handlers handled the event
+    *        (i.e. handlers run in parallel but not pipelined)
+    */
+   public <H, T> void dispatchAll(Collection<? extends H> handlers, BiConsumer<? super H, ? super T> invoker,
+         T event, boolean awaitHandling) {
+      if (!awaitHandling) {
+         for (final H handler : handlers) {
+            dispatch(handler, invoker, event, null);
+         }
+      } else if (!handlers.isEmpty()) {
+         final Iterator<? extends H> iter = handlers.iterator();
+         // lanes are empty when always awaiting -> first one can run here without breaking order
+         final H first = iter.next();
+         final CountDownLatch latch = new CountDownLatch(handlers.size() - 1);
+         while (iter.hasNext()) {
+            dispatch(iter.next(), invoker, event, latch::countDown);
+         }
+
+         invoke(first, invoker, event);
+
+         boolean interrupted = false;
+         while (latch.getCount() > 0) {
+            try {
+               latch.await();
+            } catch (InterruptedException e) {
+               interrupted = true;
+            }
+         }
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   private <H, T> void invoke(H handler, BiConsumer<? super H, ? super T> invoker, T event) {
+      try {
+         invoker.accept(handler, event);
+      } catch (Exception e) {
+         LOGGER.warn("Handler of '{}' failed.", name, e);
+      }
+   }
+
+   /**
+    * Provides the statistics of the handlers (e.g. to publish queue depth and lag).
+    *
+    * @return Collection The statistics
+    */
+   public Collection<HandlerStatistics> getHandlerStatistics() {
+      return Collections.unmodifiableCollection(lanes.values());
+   }
+
+   /**
+    * Provides the statistics of a handler.
+    *
+    * @param handler The handler
+    * @return HandlerStatistics The statistics or null if no event was dispatched to the handler
+    */
+   public HandlerStatistics getHandlerStatistics(Object handler) {
+      return lanes.get(handler);
+   }
+
+   /**
+    * Stops the workers once the queued events are handled. Events dispatched afterwards are handled
+    * by the dispatching thread.
+    */
+   @Override
+   public void close() {
+      closed = true;
+      executor.shutdown();
+      for (final Lane lane : lanes.values()) {
+         synchronized (lane) {
+            // release blocked producers
+            lane.notifyAll();
+         }
+      }
+   }
+
+   public interface HandlerStatistics {
+
+      /**
+       * Provides the handler.
+       *
+       * @return Object The handler
+       */
+      Object getHandler();
+
+      /**
+       * Provides the number of queued events.
+       *
+       * @return int The number of queued events
+       */
+      int getQueueDepth();
+
+      /**
+       * Provides the time the oldest queued event is waiting.
+       *
+       * @return long The lag in nanoseconds (0 if no events are queued)
+       */
+      long getLagNanos();
+
+      /**
+       * Provides the number of handled events.
+       *
+       * @return long The number of handled events
+       */
+      long getNrOfHandled();
+
+      /**
+       * Provides the number of events dropped due to the OverflowStrategy.
+       *
+       * @return long The number of dropped events
+       */
+      long getNrOfDropped();
+   }
+
+   private class Lane implements Runnable, HandlerStatistics {
+      private final Object handler;
+      // ring buffer (guarded by this)
+      private final Object[] events = new Object[queueSize];
+      @SuppressWarnings("rawtypes")
+      private final BiConsumer[] invokers = new BiConsumer[queueSize];
+      private final Runnable[] afterHandlings = new Runnable[queueSize];
+      private final long[] enqueueTimes = new long[queueSize];
+      private int head;
+      private int size;
+      private int waitingProducers;
+
+      private final AtomicBoolean scheduled = new AtomicBoolean();
+      private final AtomicLong handled = new AtomicLong();
+      private final AtomicLong dropped = new AtomicLong();
+
+      public Lane(Object handler) {
+         this.handler = handler;
+      }
+
+      public void offer(BiConsumer<?, ?> invoker, Object event, Runnable afterHandling) {
+         Runnable droppedAfterHandling = null;
+         boolean isDropped = false;
+
+         synchronized (this) {
+            while (size == queueSize && OverflowStrategy.BLOCK.equals(overflowStrategy) && !closed) {
+               ++waitingProducers;
+               try {
+                  wait();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  break;
+               } finally {
+                  --waitingProducers;
+               }
+            }
+
+            if (size < queueSize || OverflowStrategy.BLOCK.equals(overflowStrategy)) {
+               if (size == queueSize) {
+                  // interrupted or closed while blocking
+                  isDropped = true;
+                  droppedAfterHandling = afterHandling;
+               } else {
+                  put(invoker, event, afterHandling);
+               }
+            } else if (OverflowStrategy.DROP_NEWEST.equals(overflowStrategy)) {
+               isDropped = true;
+               droppedAfterHandling = afterHandling;
+            } else {
+               isDropped = true;
+               droppedAfterHandling = afterHandlings[head];
+               clear(head);
+               head = (head + 1) % queueSize;
+               --size;
+               put(invoker, event, afterHandling);
+            }
+         }
+
+         if (isDropped) {
+            dropped.incrementAndGet();
+            if (droppedAfterHandling != null) {
+               droppedAfterHandling.run();
+            }
+         }
+         schedule();
+      }
+
+      private void put(BiConsumer<?, ?> invoker, Object event, Runnable afterHandling) {
+         final int tail = (head + size) % queueSize;
+         events[tail] = event;
+         invokers[tail] = invoker;
+         afterHandlings[tail] = afterHandling;
+         enqueueTimes[tail] = System.nanoTime();
+         ++size;
+      }
+
+      private void clear(int index) {
+         events[index] = null;
+         invokers[index] = null;
+         afterHandlings[index] = null;
+      }
+
+      private void schedule() {
+         if (scheduled.compareAndSet(false, true)) {
+            try {
+               executor.execute(this);
+            } catch (RejectedExecutionException e) {
+               // closed -> handle here
+               run();
+            }
+         }
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public void run() {
+         while (true) {
+            final Object event;
+            final BiConsumer<Object, Object> invoker;
+            final Runnable afterHandling;
+            synchronized (this) {
+               if (size == 0) {
+                  scheduled.set(false);
+                  return;
+               }
+
+               event = events[head];
+               invoker = invokers[head];
+               afterHandling = afterHandlings[head];
+               clear(head);
+               head = (head + 1) % queueSize;
+               --size;
+               if (waitingProducers > 0) {
+                  notifyAll();
+               }
+            }
+
+            try {
+               invoke(handler, invoker, event);
+            } finally {
+               handled.incrementAndGet();
+               if (afterHandling != null) {
+                  afterHandling.run();
+               }
+            }
+         }
+      }
+
+      @Override
+      public Object getHandler() {
+         return handler;
+      }
+
+      @Override
+      public synchronized int getQueueDepth() {
+         return size;
+      }
+
+      @Override
+      public synchronized long getLagNanos() {
+         return size > 0 ? System.nanoTime() - enqueueTimes[head] : 0;
+      }
+
+      @Override
+      public long getNrOfHandled() {
+         return handled.get();
+      }
+
+      @Override
+      public long getNrOfDropped() {
+         return dropped.get();
+      }
+   }
+}
@@ -0,0 +1,25 @@
+package ch.psi.bsread.common.concurrent;
+
+/**
+ * Defines what happens with new elements when a bounded buffer between a producer and a slower
+ * consumer is full.
+ */
+public enum OverflowStrategy {
+   /**
+    * The producer waits until there is space (i.e. backpressure is propagated to the producer).
+    */
+   BLOCK,
+   /**
+    * The oldest buffered element is dropped in favor of the new element.
+    */
+   DROP_OLDEST,
+   /**
+    * The new element is dropped.
+    */
+   DROP_NEWEST,
+   /**
+    * Only the latest element is kept (the buffer holds at most one element which is replaced by
+    * newer elements).
+    */
+   KEEP_LATEST;
+}
@@ -0,0 +1,237 @@
+package ch.psi.bsread.common.helper;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A hashed timing wheel. Scheduling and cancelling a timeout is O(1) and expiring timeouts only
+ * visits the buckets of the ticks that passed (instead of checking every element). Timeouts are
+ * expired once their tick passed completely (i.e. at most one tick late).
+ * <p>
+ * Instances are not thread-safe and are meant to be used by a single (e.g. event loop) thread.
+ *
+ * @param <T> The JAVA type of the elements
+ */
+public class TimingWheel<T> {
+   private final long tickDuration;
+   private final Timeout<T>[] buckets;
+   private final int mask;
+   // the last tick that was expired (ticks are expired once they passed completely)
+   private long currentTick;
+   private int size;
+
+   /**
+    * Constructor
+    *
+    * @param tickDuration The duration of a tick (in the unit of the deadlines, e.g. millis)
+    * @param wheelSize The number of buckets (rounded up to the next power of two)
+    * @param startTime The current time
+    */
+   public TimingWheel(long tickDuration, int wheelSize, long startTime) {
+      if (tickDuration <= 0) {
+         throw new IllegalArgumentException("The tick duration must be positive.");
+      }
+
+      this.tickDuration = tickDuration;
+      final int nrOfBuckets = wheelSize <= 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+      this.buckets = newBuckets(nrOfBuckets);
+      this.mask = nrOfBuckets - 1;
+      this.currentTick = Math.floorDiv(startTime, tickDuration) - 1;
+   }
+
+   // arrays of generic types can only be created raw (all elements are Timeout<T>)
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static <T> Timeout<T>[] newBuckets(int nrOfBuckets) {
+      final Timeout<T>[] buckets = new Timeout[nrOfBuckets];
+      for (int i = 0; i < nrOfBuckets; ++i) {
+         // sentinel of a circular doubly linked list
+         final Timeout<T> sentinel = new Timeout<>(null, null, Long.MAX_VALUE);
+         sentinel.next = sentinel;
+         sentinel.prev = sentinel;
+         buckets[i] = sentinel;
+      }
+      return buckets;
+   }
+
+   /**
+    * Schedules an element to expire at a deadline.
+    *
+    * @param element The element
+    * @param deadline The deadline
+    * @return Timeout The Timeout (allows to cancel)
+    */
+   public Timeout<T> schedule(T element, long deadline) {
+      // expired deadlines go into the next bucket that will be visited
+      final long tick = Math.max(Math.floorDiv(deadline, tickDuration), currentTick + 1);
+      final Timeout<T> sentinel = buckets[(int) (tick & mask)];
+      final Timeout<T> timeout = new Timeout<>(this, element, deadline);
+
+      timeout.prev = sentinel.prev;
+      timeout.next = sentinel;
+      sentinel.prev.next = timeout;
+      sentinel.prev = timeout;
+      ++size;
+
+      return timeout;
+   }
+
+   private void remove(Timeout<T> timeout) {
+      timeout.prev.next = timeout.next;
+      timeout.next.prev = timeout.prev;
+      timeout.prev = null;
+      timeout.next = null;
+      --size;
+   }
+
+   /**
+    * Expires all elements whose deadline passed. The consumer is allowed to schedule new
+    * timeouts.
+    *
+    * @param now The current time
+    * @param consumer The consumer of the expired elements
+    * @return int The number of expired elements
+    */
+   public int expire(long now, Consumer<? super T> consumer) {
+      final long passedTick = Math.floorDiv(now, tickDuration) - 1;
+      if (passedTick <= currentTick) {
+         return 0;
+      }
+
+      // collect first (consumers might schedule into visited buckets)
+      Timeout<T> expired = null;
+      // all buckets need to be visited at most once
+      final long lastTick = Math.min(passedTick, currentTick + buckets.length);
+      for (long tick = currentTick + 1; tick <= lastTick; ++tick) {
+         final Timeout<T> sentinel = buckets[(int) (tick & mask)];
+         Timeout<T> timeout = sentinel.next;
+         while (timeout != sentinel) {
+            final Timeout<T> next = timeout.next;
+            if (timeout.deadline <= now) {
+               remove(timeout);
+               timeout.nextExpired = expired;
+               expired = timeout;
+            }
+            timeout = next;
+         }
+      }
+      currentTick = passedTick;
+
+      int count = 0;
+      // (reversed order does not matter within tick granularity)
+      while (expired != null) {
+         final Timeout<T> timeout = expired;
+         expired = timeout.nextExpired;
+         timeout.nextExpired = null;
+         timeout.expired = true;
+         consumer.accept(timeout.element);
+         ++count;
+      }
+      return count;
+   }
+
+   /**
+    * Provides the earliest time {@link #expire(long, Consumer)} will expire an element (allows to
+    * sleep instead of expiring every tick). Only one rotation is looked ahead, i.e. the time might
+    * be earlier than the earliest deadline.
+    *
+    * @return long The time or <tt>Long.MAX_VALUE</tt> if nothing is scheduled
+    */
+   public long nextExpiration() {
+      if (size == 0) {
+         return Long.MAX_VALUE;
+      }
+
+      final long lastTick = currentTick + buckets.length;
+      for (long tick = currentTick + 1; tick <= lastTick; ++tick) {
+         final Timeout<T> sentinel = buckets[(int) (tick & mask)];
+         for (Timeout<T> timeout = sentinel.next; timeout != sentinel; timeout = timeout.next) {
+            // elements of later rotations share the bucket
+            if (Math.floorDiv(timeout.deadline, tickDuration) <= tick) {
+               // tick needs to pass completely
+               return (tick + 1) * tickDuration;
+            }
+         }
+      }
+      return (lastTick + 1) * tickDuration;
+   }
+
+   /**
+    * Cancels all elements matching a filter (e.g. the elements of a closed resource). This visits
+    * every scheduled timeout.
+    *
+    * @param filter The filter
+    * @return int The number of cancelled elements
+    */
+   public int cancelIf(Predicate<? super T> filter) {
+      int count = 0;
+      for (final Timeout<T> sentinel : buckets) {
+         Timeout<T> timeout = sentinel.next;
+         while (timeout != sentinel) {
+            final Timeout<T> next = timeout.next;
+            if (filter.test(timeout.element)) {
+               remove(timeout);
+               ++count;
+            }
+            timeout = next;
+         }
+      }
+      return count;
+   }
+
+   /**
+    * Provides the number of scheduled (not expired and not cancelled) timeouts.
+    *
+    * @return int The number of timeouts
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * A scheduled element.
+    *
+    * @param <T> The JAVA type of the element
+    */
+   public static class Timeout<T> {
+      private final TimingWheel<T> wheel;
+      private final T element;
+      private final long deadline;
+      private Timeout<T> prev;
+      private Timeout<T> next;
+      private Timeout<T> nextExpired;
+      private boolean expired;
+
+      private Timeout(TimingWheel<T> wheel, T element, long deadline) {
+         this.wheel = wheel;
+         this.element = element;
+         this.deadline = deadline;
+      }
+
+      public T getElement() {
+         return element;
+      }
+
+      public long getDeadline() {
+         return deadline;
+      }
+
+      public boolean isExpired() {
+         return expired;
+      }
+
+      /**
+       * Cancels the timeout (must be called by the thread using the TimingWheel).
+       *
+       * @return boolean <tt>true</tt> if the timeout was cancelled, <tt>false</tt> if it expired
+       *         or was already cancelled
+       */
+      public boolean cancel() {
+         if (next != null) {
+            wheel.remove(this);
+            return true;
+         } else {
+            return false;
+         }
+      }
+   }
+}
@@ -2,24 +2,60 @@ package ch.psi.bsread.compression.bitshufflelz4;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.IntFunction;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import ch.psi.bitshuffle.BitShuffleLZ4Compressor;
 import ch.psi.bitshuffle.BitShuffleLZ4Decompressor;
 import ch.psi.bitshuffle.BitShuffleLZ4JNICompressor;
 import ch.psi.bitshuffle.BitShuffleLZ4JNIDecompressor;
+import ch.psi.bsread.common.allocator.ByteBufferAllocator;
 import ch.psi.bsread.compression.Compressor;
 import ch.psi.bsread.converter.ValueConverter;
-import java.util.Arrays;
 
 public class BitshuffleLZ4Compressor implements Compressor {
+   private static final Logger LOGGER = LoggerFactory.getLogger(BitshuffleLZ4Compressor.class);
+   private static final String PARALLEL_THRESHOLD_PARAM = "BitshuffleLZ4ParallelThreshold";
+   private static final String PARALLEL_CHUNK_SIZE_PARAM = "BitshuffleLZ4ParallelChunkSize";
+   // blobs bigger than this are (de)compressed in parallel chunks (of independent lz4 blocks)
+   public static final long PARALLEL_THRESHOLD;
+   public static final long PARALLEL_CHUNK_SIZE;
+
+   static {
+      PARALLEL_THRESHOLD = ByteBufferAllocator.getBytesProperty(PARALLEL_THRESHOLD_PARAM, 1024 * 1024);
+      PARALLEL_CHUNK_SIZE =
+            Math.max(1, ByteBufferAllocator.getBytesProperty(PARALLEL_CHUNK_SIZE_PARAM, 256 * 1024));
+      LOGGER.info("(De)compress bitshuffle-lz4 blobs bigger than '{}' bytes in parallel chunks of '{}' bytes.",
+            PARALLEL_THRESHOLD, PARALLEL_CHUNK_SIZE);
+   }
 
    private BitShuffleLZ4Compressor compressor;
    private BitShuffleLZ4Decompressor decompressor;
+   private long parallelThreshold;
+   private long parallelChunkSize;
 
    public BitshuffleLZ4Compressor() {
+      this(PARALLEL_THRESHOLD, PARALLEL_CHUNK_SIZE);
+   }
+
+   /**
+    * Constructor
+    * 
+    * @param parallelThreshold Blobs of at least this (uncompressed) size are (de)compressed in
+    *        parallel
+    * @param parallelChunkSize The approximate (uncompressed) size of a chunk (de)compressed by one
+    *        task (rounded to block boundaries)
+    */
+   public BitshuffleLZ4Compressor(long parallelThreshold, long parallelChunkSize) {
       compressor = new BitShuffleLZ4JNICompressor();
       decompressor = new BitShuffleLZ4JNIDecompressor();
+      this.parallelThreshold = parallelThreshold;
+      this.parallelChunkSize = parallelChunkSize;
    }
 
    protected ByteBuffer compress(ByteBuffer src, int srcOff, int srcLen, ByteOrder sizeOrder, int destOff,
@@ -59,8 +95,17 @@ public class BitshuffleLZ4Compressor implements Compressor {
       // set position for compressed part (after header info)
       dest.position(startCompressedPos);
 
-      int compressedLength =
-            compressor.compress(src, srcOff, dest, startCompressedPos, nElements, nBytesPerElement, blockSize);
+      final int chunkElements = getChunkElements(uncompressedSize, nElements, nBytesPerElement, blockSize);
+      int compressedLength;
+      // concurrent writes into heap buffers might not be safe with JNI (arrays could be copied)
+      if (chunkElements < nElements && dest.isDirect()) {
+         compressedLength =
+               compressParallel(src, srcOff, dest, startCompressedPos, nElements, nBytesPerElement, blockSize,
+                     chunkElements);
+      } else {
+         compressedLength =
+               compressor.compress(src, srcOff, dest, startCompressedPos, nElements, nBytesPerElement, blockSize);
+      }
       // make buffer ready for read
       dest.position(0);
       dest.limit(startCompressedPos + compressedLength);
@@ -104,12 +149,121 @@ public class BitshuffleLZ4Compressor implements Compressor {
       ByteBuffer dest = bufferAllocator.apply(uncompressedSize);
       dest.order(src.order());
 
-      decompressor.decompress(src, srcOff + startCompressedPos, dest, 0, nElements, nBytesPerElement, blockSize);
+      final int chunkElements = getChunkElements(uncompressedSize, nElements, nBytesPerElement, blockSize);
+      // concurrent writes into heap buffers might not be safe with JNI (arrays could be copied)
+      if (chunkElements < nElements && dest.isDirect()) {
+         decompressParallel(src, srcOff + startCompressedPos, dest, 0, nElements, nBytesPerElement, blockSize,
+               chunkElements);
+      } else {
+         decompressor.decompress(src, srcOff + startCompressedPos, dest, 0, nElements, nBytesPerElement,
+               blockSize);
+      }
       dest.position(0);
       dest.limit(uncompressedSize);      
       return dest;
    }
 
+   /**
+    * Determines the number of elements (a multiple of the block size) (de)compressed by one task.
+    * 
+    * @param uncompressedSize The uncompressed size in bytes
+    * @param nElements The number of elements
+    * @param nBytesPerElement The number of bytes per element
+    * @param blockSize The block size in elements
+    * @return int The number of elements of a chunk (nElements if (de)compression should not be
+    *         split)
+    */
+   protected int getChunkElements(int uncompressedSize, int nElements, int nBytesPerElement, int blockSize) {
+      if (uncompressedSize < parallelThreshold || blockSize <= 0) {
+         return nElements;
+      }
+
+      final long blocksPerChunk = Math.max(1, parallelChunkSize / ((long) blockSize * nBytesPerElement));
+      final long chunkElements = blocksPerChunk * blockSize;
+      return chunkElements < nElements ? (int) chunkElements : nElements;
+   }
+
+   /*
+    * Blocks are compressed independently, i.e., compressing chunks of full blocks and concatenating
+    * them results in the same bytes as compressing everything at once. The worst-case size of the
+    * blob is the sum of the worst-case sizes of its chunks, i.e. every chunk is compressed into its
+    * own (disjoint) region of dest and the regions are moved together afterwards (no temporary
+    * buffers).
+    */
+   private int compressParallel(ByteBuffer src, int srcOff, ByteBuffer dest, int destOff, int nElements,
+         int nBytesPerElement, int blockSize, int chunkElements) {
+      final int nChunks = (nElements + chunkElements - 1) / chunkElements;
+      final int[] chunkDestOffs = new int[nChunks];
+      final int[] chunkLengths = new int[nChunks];
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>(nChunks);
+
+      int chunkDestOff = destOff;
+      for (int i = 0; i < nChunks; ++i) {
+         final int chunk = i;
+         final int chunkStart = chunk * chunkElements;
+         final int chunkSize = Math.min(chunkElements, nElements - chunkStart);
+         chunkDestOffs[chunk] = chunkDestOff;
+
+         tasks.add(ForkJoinTask.adapt(() -> {
+            chunkLengths[chunk] =
+                  compressor.compress(src, srcOff + chunkStart * nBytesPerElement, dest, chunkDestOffs[chunk],
+                        chunkSize, nBytesPerElement, blockSize);
+         }));
+         chunkDestOff += compressor.maxCompressedLength(chunkSize, nBytesPerElement, blockSize);
+      }
+      ForkJoinTask.invokeAll(tasks);
+
+      // the first chunk is already at its final position
+      int length = chunkLengths[0];
+      final ByteBuffer destDub = dest.duplicate();
+      final ByteBuffer chunkDub = dest.duplicate();
+      for (int i = 1; i < nChunks; ++i) {
+         if (chunkDestOffs[i] != destOff + length) {
+            // moves to lower positions (overlapping regions are fine, as for ByteBuffer.compact())
+            chunkDub.limit(chunkDestOffs[i] + chunkLengths[i]);
+            chunkDub.position(chunkDestOffs[i]);
+            destDub.position(destOff + length);
+            destDub.put(chunkDub);
+         }
+         length += chunkLengths[i];
+      }
+      return length;
+   }
+
+   /*
+    * The compressed blob consists of independent blocks (4 byte big endian compressed length
+    * followed by the lz4 compressed block) which allows to decompress chunks of blocks in parallel
+    * into disjoint ranges of dest.
+    */
+   private void decompressParallel(ByteBuffer src, int srcOff, ByteBuffer dest, int destOff, int nElements,
+         int nBytesPerElement, int blockSize, int chunkElements) {
+      // make sure src does not change in any way (also not temporary)
+      final ByteBuffer sizeBuf = src.duplicate().order(ByteOrder.BIG_ENDIAN);
+      final int blocksPerChunk = chunkElements / blockSize;
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>((nElements + chunkElements - 1) / chunkElements);
+
+      int chunkSrcOff = srcOff;
+      int chunkStart = 0;
+      while (chunkStart < nElements) {
+         final int chunkSize = Math.min(chunkElements, nElements - chunkStart);
+         final int taskSrcOff = chunkSrcOff;
+         final int taskDestOff = destOff + chunkStart * nBytesPerElement;
+
+         tasks.add(ForkJoinTask.adapt(() -> {
+            decompressor.decompress(src, taskSrcOff, dest, taskDestOff, chunkSize, nBytesPerElement, blockSize);
+         }));
+
+         chunkStart += chunkSize;
+         if (chunkStart < nElements) {
+            // skip the (full) blocks of this chunk
+            for (int i = 0; i < blocksPerChunk; ++i) {
+               chunkSrcOff += 4 + sizeBuf.getInt(chunkSrcOff);
+            }
+         }
+      }
+      ForkJoinTask.invokeAll(tasks);
+   }
+
    @Override
    public ByteBuffer compressData(ByteBuffer src, int srcOff, int srcLen, int destOff,
          IntFunction<ByteBuffer> bufferAllocator, int nBytesPerElement) {
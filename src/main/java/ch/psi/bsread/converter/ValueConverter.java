@@ -40,6 +40,33 @@ public interface ValueConverter {
 		return new ValueImpl<>(getValue(mainHeader, dataHeader, channelConfig, byteValue, iocTimestamp), iocTimestamp);
 	}
 
+	/**
+	 * Converts a byte representation of a value into the actual value. The byte representation is a
+	 * view of a receive buffer which can be handed back (e.g. to a pool) using the releaser once it
+	 * is no longer referenced. Converters that do not take care of the releaser simply leave the
+	 * buffer to the GC (i.e. it is safe to ignore the releaser).
+	 * 
+	 * @param <V>
+	 *            The JAVA type
+	 * @param mainHeader
+	 *            The MainHeader
+	 * @param dataHeader
+	 *            The DataHeader
+	 * @param channelConfig
+	 *            The ChannelConfig
+	 * @param byteValue
+	 *            The byte representation of a value (might be compressed)
+	 * @param iocTimestamp
+	 *            The ioc Timestamp
+	 * @param releaser
+	 *            Hands the receive buffer of byteValue back (null if not available)
+	 * @return The converted value
+	 */
+	default public <V> Value<V> getMessageValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer byteValue,
+			Timestamp iocTimestamp, Runnable releaser) {
+		return getMessageValue(mainHeader, dataHeader, channelConfig, byteValue, iocTimestamp);
+	}
+
 	/**
 	 * Converts a byte representation of a value into the actual value.
 	 * 
@@ -2,9 +2,13 @@ package ch.psi.bsread.impl;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,13 +19,21 @@ import zmq.Msg;
 
 import ch.psi.bsread.ConfigIReceiver;
 import ch.psi.bsread.MessageExtractor;
+import ch.psi.bsread.ReceiverConfig;
+import ch.psi.bsread.RequestedChannelFilter;
+import ch.psi.bsread.allocator.PooledMsgAllocator.PooledMsg;
+import ch.psi.bsread.compression.Compression;
 import ch.psi.bsread.converter.ValueConverter;
 import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.ChannelIndex;
 import ch.psi.bsread.message.DataHeader;
+import ch.psi.bsread.message.IndexedValueMap;
 import ch.psi.bsread.message.MainHeader;
 import ch.psi.bsread.message.Message;
 import ch.psi.bsread.message.Timestamp;
 import ch.psi.bsread.message.Value;
+import ch.psi.bsread.metrics.ReceiverMetrics;
+import ch.psi.bsread.sync.PulsePhaseTable;
 
 /**
  * A MessageExtractor that allows to use DirectBuffers to store data blobs that are bigger than a
@@ -32,7 +44,10 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractMessageExtractor.class.getName());
 
    private DataHeader dataHeader;
+   private ChannelIndex channelIndex;
    private ValueConverter valueConverter;
+   // only used by the receiving thread
+   private int decompressionCount;
 
    public AbstractMessageExtractor(ValueConverter valueConverter) {
       this.valueConverter = valueConverter;
@@ -45,16 +60,49 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
    @Override
    public Message<V> extractMessage(ConfigIReceiver<V> receiver, Socket socket, MainHeader mainHeader,
          Set<String> requestedChannels) {
-      Message<V> message = new Message<V>();
+      return extractMessage(receiver, socket, mainHeader, requestedChannels, null);
+   }
+
+   @Override
+   public Message<V> extractMessage(ConfigIReceiver<V> receiver, Socket socket, MainHeader mainHeader,
+         RequestedChannelFilter requestedChannels) {
+      return extractMessage(receiver, socket, mainHeader, null,
+            requestedChannels != null ? requestedChannels.getSlotTable(dataHeader) : null);
+   }
+
+   protected Message<V> extractMessage(ConfigIReceiver<V> receiver, Socket socket, MainHeader mainHeader,
+         Set<String> requestedChannels, PulsePhaseTable requestedSlots) {
+      final long pulseId = mainHeader.getPulseId();
+      // values are stored by their position in the DataHeader (no hashing of channel names)
+      final IndexedValueMap<V> values = new IndexedValueMap<>(channelIndex);
+      Message<V> message = new Message<V>(values);
       message.setMainHeader(mainHeader);
       message.setDataHeader(dataHeader);
-      Map<String, Value<V>> values = message.getValues();
+      final ReceiverConfig<V> receiverConfig = receiver.getReceiverConfig();
+      final Executor conversionService = receiverConfig.getValueConversionService();
+      final int conversionThreshold = receiverConfig.getValueConversionThreshold();
+      final zmq.msg.MsgAllocator msgAllocator = receiverConfig.getMsgAllocator();
+      final ReceiverMetrics metrics = receiver.getReceiverMetrics();
+      // added once per message (keeps metrics overhead independent of the number of channels)
+      long nrOfBytes = 0;
+      int nrOfDecompressions = 0;
+      List<Integer> asyncSlots = null;
+      List<CompletableFuture<Value<V>>> asyncValues = null;
 
       final Iterator<ChannelConfig> configIter = dataHeader.getChannels().iterator();
+      int slot = -1;
       while (configIter.hasNext() && socket.hasReceiveMore()) {
          final ChannelConfig currentConfig = configIter.next();
+         ++slot;
 
-         if (requestedChannels == null || requestedChannels.contains(currentConfig.getName())) {
+         final boolean requested;
+         if (requestedSlots != null) {
+            requested = requestedSlots.isSet(pulseId, slot);
+         } else {
+            requested = requestedChannels == null || requestedChannels.contains(currentConfig.getName());
+         }
+
+         if (requested) {
             final ByteOrder byteOrder = currentConfig.getByteOrder();
 
             // # read data blob #
@@ -67,6 +115,7 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
 
             final Msg valueMsg = receiveMsg(socket);
             ByteBuffer receivedValueBytes = valueMsg.buf().order(byteOrder);
+            nrOfBytes += valueMsg.size();
 
             // # read timestamp blob #
             // #######################
@@ -78,6 +127,7 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
             }
             final Msg timeMsg = receiveMsg(socket);
             ByteBuffer timestampBytes = timeMsg.buf();
+            nrOfBytes += timeMsg.size();
 
             // Create value object
             if (receivedValueBytes != null && receivedValueBytes.remaining() > 0) {
@@ -93,16 +143,32 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
                   iocTimestamp = mainHeader.getGlobalTimestamp();
                }
 
-               final Value<V> value = valueConverter.getMessageValue(mainHeader, dataHeader, currentConfig,
-                     receivedValueBytes, iocTimestamp);
-               values.put(currentConfig.getName(), value);
-               // try{ -> ???
-               // CompletableFuture<V> futureValue =
-               // CompletableFuture.supplyAsync(
-               // () -> valueConverter.getValue(receivedValueBytes,
-               // currentConfig, mainHeader, iocTimestamp),
-               // receiverConfig.getValueConversionService());
-               // value.setFutureValue(futureValue);
+               final Runnable releaser = valueMsg instanceof PooledMsg ? ((PooledMsg) valueMsg)::release : null;
+               // only (a sample of) decompressions are timed (keeps plain conversions cheap)
+               ReceiverMetrics decompressionMetrics = null;
+               if (metrics != null && !Compression.none.equals(currentConfig.getCompression())) {
+                  ++nrOfDecompressions;
+                  if (++decompressionCount % ReceiverMetrics.DECOMPRESSION_SAMPLING == 0) {
+                     decompressionMetrics = metrics;
+                  }
+               }
+               final ReceiverMetrics timingMetrics = decompressionMetrics;
+               if (conversionService != null && receivedValueBytes.remaining() >= conversionThreshold) {
+                  if (asyncValues == null) {
+                     asyncSlots = new ArrayList<>();
+                     asyncValues = new ArrayList<>();
+                  }
+                  final ByteBuffer valueBytes = receivedValueBytes;
+                  asyncSlots.add(slot);
+                  asyncValues.add(CompletableFuture.supplyAsync(
+                        () -> convertValue(mainHeader, currentConfig, valueBytes, iocTimestamp, releaser,
+                              timingMetrics),
+                        conversionService));
+               } else {
+                  final Value<V> value = convertValue(mainHeader, currentConfig, receivedValueBytes, iocTimestamp,
+                        releaser, timingMetrics);
+                  values.setValue(slot, value);
+               }
             }
          } else {
             // # read data blob #
@@ -112,7 +178,7 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
                LOGGER.error(errorMessage);
                throw new RuntimeException(errorMessage);
             }
-            receiveMsg(socket);
+            nrOfBytes += skipMsg(socket, msgAllocator);
 
             // # read timestamp blob #
             // #######################
@@ -122,19 +188,35 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
                LOGGER.error(errorMessage);
                throw new RuntimeException(errorMessage);
             }
-            receiveMsg(socket);
+            nrOfBytes += skipMsg(socket, msgAllocator);
+         }
+      }
+      if (metrics != null) {
+         metrics.bytesReceived(nrOfBytes);
+         if (nrOfDecompressions > 0) {
+            metrics.valuesDecompressed(nrOfDecompressions);
          }
       }
 
-      // // ensure async conversion is completed
-      // for (Entry<String, Value<V>> entry : values.entrySet()) {
-      // entry.getValue().getValue();
-      // }
+      // ensure async conversion is completed
+      if (asyncValues != null) {
+         try {
+            joinValues(values, asyncSlots, asyncValues);
+         } catch (RuntimeException e) {
+            // hand back (pooled) receive buffers of the converted values (message will not be returned)
+            message.release();
+            throw e;
+         }
+      }
 
       if (configIter.hasNext()) {
          LOGGER.warn("'{}' provided less values '{}' than specified in DataHeader '{}'. Message will be ignored.",
                receiver.getReceiverConfig().getAddress(), values.size(), dataHeader.getChannels().size());
-         // set message to null -> will be ignored
+         if (metrics != null) {
+            metrics.messageIncomplete();
+         }
+         // hand back (pooled) receive buffers and set message to null -> will be ignored
+         message.release();
          message = null;
       } else if (socket.hasReceiveMore()) {
          final int messagesDrained = receiver.drain();
@@ -142,16 +224,65 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
          LOGGER.warn("'{}' provided more values '{}' than specified in DataHeader '{}'. Message will be ignored.",
                receiver.getReceiverConfig().getAddress(), values.size() + (messagesDrained / 2.0),
                dataHeader.getChannels().size());
-         // set message to null -> will be ignored
+         if (metrics != null) {
+            metrics.messageIncomplete();
+            metrics.messageDrained();
+         }
+         // hand back (pooled) receive buffers and set message to null -> will be ignored
+         message.release();
          message = null;
       }
 
       return message;
    }
 
+   private Value<V> convertValue(MainHeader mainHeader, ChannelConfig channelConfig, ByteBuffer valueBytes,
+         Timestamp iocTimestamp, Runnable releaser, ReceiverMetrics timingMetrics) {
+      try {
+         if (timingMetrics != null) {
+            final long start = System.nanoTime();
+            final Value<V> value =
+                  valueConverter.getMessageValue(mainHeader, dataHeader, channelConfig, valueBytes, iocTimestamp,
+                        releaser);
+            timingMetrics.recordDecompressionTime(System.nanoTime() - start);
+            return value;
+         } else {
+            return valueConverter.getMessageValue(mainHeader, dataHeader, channelConfig, valueBytes, iocTimestamp,
+                  releaser);
+         }
+      } catch (RuntimeException e) {
+         // no value references the receive buffer (releasing twice has no effect)
+         if (releaser != null) {
+            releaser.run();
+         }
+         throw e;
+      }
+   }
+
    @Override
    public void accept(DataHeader dataHeader) {
       this.dataHeader = dataHeader;
+      // only rebuilt when the DataHeader changes
+      this.channelIndex = dataHeader.getChannelIndex();
+   }
+
+   private static <V> void joinValues(IndexedValueMap<V> values, List<Integer> slots,
+         List<CompletableFuture<Value<V>>> futureValues) {
+      RuntimeException exception = null;
+      for (int i = 0; i < futureValues.size(); ++i) {
+         try {
+            values.setValue(slots.get(i), futureValues.get(i).join());
+         } catch (CompletionException e) {
+            // wait for remaining conversions before rethrowing
+            if (exception == null) {
+               exception = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+         }
+      }
+
+      if (exception != null) {
+         throw exception;
+      }
    }
 
    public static Msg receiveMsg(Socket socket) {
@@ -164,6 +295,27 @@ public abstract class AbstractMessageExtractor<V> implements MessageExtractor<V>
       return msg;
    }
 
+   /**
+    * Receives a frame that is not of interest and hands it back to the MsgAllocator (see
+    * {@link ch.psi.bsread.MsgAllocator#discard(Msg)}) so that its memory can be recycled.
+    * 
+    * @param socket The Socket
+    * @param msgAllocator The MsgAllocator of the Socket (might be null)
+    * @return int The size of the frame in bytes
+    */
+   public static int skipMsg(Socket socket, zmq.msg.MsgAllocator msgAllocator) {
+      final Msg msg = receiveMsg(socket);
+      if (msg == null) {
+         return 0;
+      }
+
+      final int size = msg.size();
+      if (msgAllocator instanceof ch.psi.bsread.MsgAllocator) {
+         ((ch.psi.bsread.MsgAllocator) msgAllocator).discard(msg);
+      }
+      return size;
+   }
+
    private static void mayRaise(Socket socket) {
       int errno = socket.base().errno();
       if (errno != 0 && errno != zmq.ZError.EAGAIN) {
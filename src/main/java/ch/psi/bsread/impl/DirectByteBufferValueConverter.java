@@ -25,6 +25,20 @@ public class DirectByteBufferValueConverter implements ValueConverter {
 		this.allocator = new ByteBufferAllocator(directThreshold);
 	}
 
+	/**
+	 * Constructor
+	 *
+	 * @param directThreshold
+	 *            Values bigger than this threshold are copied into direct
+	 *            buffers (if they are not direct already)
+	 * @param allocator
+	 *            The allocator for decompressed values
+	 */
+	protected DirectByteBufferValueConverter(long directThreshold, IntFunction<ByteBuffer> allocator) {
+		this.directThreshold = directThreshold;
+		this.allocator = allocator;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public ByteBuffer getValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer receivedValueBytes,
@@ -0,0 +1,60 @@
+package ch.psi.bsread.impl;
+
+import java.nio.ByteBuffer;
+
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.converter.ValueConverter;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.DataHeader;
+import ch.psi.bsread.message.LazyValueImpl;
+import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Value;
+
+/**
+ * A ValueConverter that defers the conversion (e.g. decompression) of the delegate ValueConverter
+ * until the value is accessed for the first time. Values that are never accessed are never
+ * decompressed and the receiving thread only needs to read the blobs.
+ */
+public class LazyValueConverter implements ValueConverter {
+	private ValueConverter delegate;
+
+	public LazyValueConverter() {
+		this(new DirectByteBufferValueConverter());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param delegate
+	 *            The ValueConverter doing the actual conversion
+	 */
+	public LazyValueConverter(ValueConverter delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public <V> Value<V> getMessageValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer byteValue,
+			Timestamp iocTimestamp) {
+		return getMessageValue(mainHeader, dataHeader, channelConfig, byteValue, iocTimestamp, null);
+	}
+
+	@Override
+	public <V> Value<V> getMessageValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer byteValue,
+			Timestamp iocTimestamp, Runnable releaser) {
+		return new LazyValueImpl<V>(() -> {
+			final V value = delegate.getValue(mainHeader, dataHeader, channelConfig, byteValue, iocTimestamp);
+			// uncompressed values might still be a view of the receive buffer (leave it to the GC)
+			if (releaser != null && !Compression.none.equals(channelConfig.getCompression())) {
+				releaser.run();
+			}
+			return value;
+		}, iocTimestamp);
+	}
+
+	@Override
+	public <V> V getValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer byteValue,
+			Timestamp iocTimestamp) {
+		return delegate.getValue(mainHeader, dataHeader, channelConfig, byteValue, iocTimestamp);
+	}
+}
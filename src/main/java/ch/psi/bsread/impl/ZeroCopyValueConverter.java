@@ -0,0 +1,64 @@
+package ch.psi.bsread.impl;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+
+import ch.psi.bsread.common.allocator.ByteBufferAllocator;
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.converter.ValueConverter;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.DataHeader;
+import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.ReleasableValueImpl;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Value;
+import ch.psi.bsread.message.ValueImpl;
+
+/**
+ * A ValueConverter that does not copy uncompressed values. The Value is a view of the receive
+ * buffer and hands it back (e.g. to a {@link ch.psi.bsread.allocator.PooledMsgAllocator}) on
+ * {@link Value#release()}. Compressed values are decompressed into a new buffer and the receive
+ * buffer is handed back immediately (values are converted by a
+ * {@link DirectByteBufferValueConverter} that never copies into direct buffers).
+ */
+public class ZeroCopyValueConverter implements ValueConverter {
+	private final ValueConverter converter;
+
+	public ZeroCopyValueConverter() {
+		this(ByteBufferAllocator.DEFAULT_ALLOCATOR);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param allocator
+	 *            The allocator for decompressed values
+	 */
+	public ZeroCopyValueConverter(IntFunction<ByteBuffer> allocator) {
+		this.converter = new DirectByteBufferValueConverter(Long.MAX_VALUE, allocator);
+	}
+
+	@Override
+	public <V> V getValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer receivedValueBytes,
+			Timestamp iocTimestamp) {
+		return converter.getValue(mainHeader, dataHeader, channelConfig, receivedValueBytes, iocTimestamp);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <V> Value<V> getMessageValue(MainHeader mainHeader, DataHeader dataHeader, ChannelConfig channelConfig, ByteBuffer byteValue,
+			Timestamp iocTimestamp, Runnable releaser) {
+		final ByteBuffer value = getValue(mainHeader, dataHeader, channelConfig, byteValue, iocTimestamp);
+
+		if (releaser == null) {
+			return new ValueImpl<>((V) value, iocTimestamp);
+		} else if (Compression.none.equals(channelConfig.getCompression())) {
+			// value is a view of the receive buffer
+			return new ReleasableValueImpl<>((V) value, iocTimestamp, releaser);
+		} else {
+			// value was decompressed into its own buffer
+			releaser.run();
+			return new ValueImpl<>((V) value, iocTimestamp);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package ch.psi.bsread.message;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable mapping of channel names to their position (slot) in the DataHeader. The order of
+ * the channels is fixed as long as the DataHeader hash does not change and therefore the
+ * ChannelIndex can be shared by all messages of a DataHeader (see
+ * {@link DataHeader#getChannelIndex()}).
+ */
+public final class ChannelIndex implements Serializable {
+	private static final long serialVersionUID = 2871093651739472405L;
+
+	private final String[] names;
+	private final Map<String, Integer> slots;
+
+	/**
+	 * Constructor
+	 *
+	 * @param channels
+	 *            The channels (in DataHeader order)
+	 */
+	public ChannelIndex(Collection<ChannelConfig> channels) {
+		this.names = new String[channels.size()];
+		this.slots = new HashMap<>(channels.size() * 4 / 3 + 1);
+
+		int slot = 0;
+		for (ChannelConfig channel : channels) {
+			names[slot] = channel.getName();
+			slots.put(channel.getName(), slot);
+			++slot;
+		}
+	}
+
+	/**
+	 * Provides the slot of a channel.
+	 *
+	 * @param name
+	 *            The channel name
+	 * @return int The slot or -1 if the channel is not part of the DataHeader
+	 */
+	public int getSlot(Object name) {
+		final Integer slot = slots.get(name);
+		return slot != null ? slot.intValue() : -1;
+	}
+
+	/**
+	 * Provides the name of the channel at a slot.
+	 *
+	 * @param slot
+	 *            The slot
+	 * @return String The channel name
+	 */
+	public String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 * Provides the number of channels.
+	 *
+	 * @return int The number of channels
+	 */
+	public int size() {
+		return names.length;
+	}
+}
@@ -18,6 +18,8 @@ public class DataHeader implements Serializable {
    @JsonInclude
    private String htype = DEFAULT_HTYPE;
    private Map<String, ChannelConfig> channelsMapping = new LinkedHashMap<>();
+   // built on first access (DataHeaders are usually not modified after deserialization)
+   private transient volatile ChannelIndex channelIndex;
 
    public DataHeader() {}
 
@@ -42,10 +44,27 @@ public class DataHeader implements Serializable {
       for (ChannelConfig channelConfig : channels) {
          this.channelsMapping.put(channelConfig.getName(), channelConfig);
       }
+      this.channelIndex = null;
    }
 
    public void addChannel(ChannelConfig channel) {
       this.channelsMapping.put(channel.getName(), channel);
+      this.channelIndex = null;
+   }
+
+   /**
+    * Provides the (immutable) mapping of channel names to their position in this DataHeader.
+    * 
+    * @return ChannelIndex The ChannelIndex
+    */
+   @JsonIgnore
+   public ChannelIndex getChannelIndex() {
+      ChannelIndex index = channelIndex;
+      if (index == null) {
+         index = new ChannelIndex(getChannels());
+         channelIndex = index;
+      }
+      return index;
    }
 
    @JsonIgnore
@@ -0,0 +1,271 @@
+package ch.psi.bsread.message;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A Map of channel names to values that stores the values of the channels of the DataHeader in an
+ * array indexed by their slot (see {@link ChannelIndex}). Lookups of these channels need no
+ * hashing once the slot is known (see {@link #getValue(int)}). Other channels are stored in an
+ * overflow map. Iteration order is DataHeader order followed by the other channels. Null keys and
+ * values are not supported.
+ */
+public class IndexedValueMap<V> extends AbstractMap<String, Value<V>> implements Serializable {
+	private static final long serialVersionUID = -3317934726254012466L;
+
+	private final ChannelIndex channelIndex;
+	private final Value<V>[] values;
+	private int size;
+	private Map<String, Value<V>> overflow;
+	private transient Set<Map.Entry<String, Value<V>>> entrySet;
+
+	/**
+	 * Constructor
+	 *
+	 * @param channelIndex
+	 *            The ChannelIndex of the DataHeader
+	 */
+	public IndexedValueMap(ChannelIndex channelIndex) {
+		this.channelIndex = channelIndex;
+		this.values = newValues(channelIndex.size());
+	}
+
+	// arrays of generic types can only be created raw (all elements are Value<V>)
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <V> Value<V>[] newValues(int size) {
+		return new Value[size];
+	}
+
+	/**
+	 * Provides the ChannelIndex.
+	 *
+	 * @return ChannelIndex The ChannelIndex
+	 */
+	public ChannelIndex getChannelIndex() {
+		return channelIndex;
+	}
+
+	/**
+	 * Provides the value of the channel at a slot of the DataHeader.
+	 *
+	 * @param slot
+	 *            The slot
+	 * @return Value The Value or null if there is no value for this channel
+	 */
+	public Value<V> getValue(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Sets the value of the channel at a slot of the DataHeader.
+	 *
+	 * @param slot
+	 *            The slot
+	 * @param value
+	 *            The Value
+	 * @return Value The previous Value or null
+	 */
+	public Value<V> setValue(int slot, Value<V> value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not supported.");
+		}
+
+		final Value<V> old = values[slot];
+		values[slot] = value;
+		if (old == null) {
+			++size;
+		}
+		return old;
+	}
+
+	@Override
+	public int size() {
+		return overflow == null ? size : size + overflow.size();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public Value<V> get(Object key) {
+		final int slot = channelIndex.getSlot(key);
+		if (slot >= 0) {
+			return values[slot];
+		} else {
+			return overflow != null ? overflow.get(key) : null;
+		}
+	}
+
+	@Override
+	public Value<V> put(String key, Value<V> value) {
+		final int slot = channelIndex.getSlot(key);
+		if (slot >= 0) {
+			return setValue(slot, value);
+		} else {
+			if (key == null || value == null) {
+				throw new NullPointerException("Null keys and values are not supported.");
+			}
+			if (overflow == null) {
+				overflow = new HashMap<>();
+			}
+			return overflow.put(key, value);
+		}
+	}
+
+	@Override
+	public Value<V> remove(Object key) {
+		final int slot = channelIndex.getSlot(key);
+		if (slot >= 0) {
+			return removeSlot(slot);
+		} else {
+			return overflow != null ? overflow.remove(key) : null;
+		}
+	}
+
+	private Value<V> removeSlot(int slot) {
+		final Value<V> old = values[slot];
+		if (old != null) {
+			values[slot] = null;
+			--size;
+		}
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = null;
+		}
+		size = 0;
+		overflow = null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Value<V>>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Value<V>>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Value<V>>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return IndexedValueMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			IndexedValueMap.this.clear();
+		}
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<String, Value<V>>> {
+		private int nextSlot = advance(0);
+		private int lastSlot = -1;
+		private Iterator<Map.Entry<String, Value<V>>> overflowIter;
+
+		private int advance(int slot) {
+			while (slot < values.length && values[slot] == null) {
+				++slot;
+			}
+			return slot;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (nextSlot < values.length) {
+				return true;
+			}
+			if (overflowIter == null && overflow != null) {
+				overflowIter = overflow.entrySet().iterator();
+			}
+			return overflowIter != null && overflowIter.hasNext();
+		}
+
+		@Override
+		public Map.Entry<String, Value<V>> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			if (nextSlot < values.length) {
+				lastSlot = nextSlot;
+				nextSlot = advance(nextSlot + 1);
+				return new SlotEntry(lastSlot);
+			} else {
+				lastSlot = -1;
+				return overflowIter.next();
+			}
+		}
+
+		@Override
+		public void remove() {
+			if (lastSlot >= 0) {
+				removeSlot(lastSlot);
+				lastSlot = -1;
+			} else if (overflowIter != null) {
+				overflowIter.remove();
+			} else {
+				throw new IllegalStateException();
+			}
+		}
+	}
+
+	private class SlotEntry implements Map.Entry<String, Value<V>> {
+		private final int slot;
+
+		public SlotEntry(int slot) {
+			this.slot = slot;
+		}
+
+		@Override
+		public String getKey() {
+			return channelIndex.getName(slot);
+		}
+
+		@Override
+		public Value<V> getValue() {
+			return values[slot];
+		}
+
+		@Override
+		public Value<V> setValue(Value<V> value) {
+			return IndexedValueMap.this.setValue(slot, value);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry)) {
+				return false;
+			}
+			final Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+			return getKey().equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
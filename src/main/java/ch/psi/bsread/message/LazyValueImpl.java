@@ -0,0 +1,62 @@
+package ch.psi.bsread.message;
+
+import java.util.function.Supplier;
+
+/**
+ * A Value that converts (e.g. decompresses) its content on the first call of {@link #getValue()}.
+ * The conversion is executed at most once, also when the Value is accessed by several threads.
+ */
+public class LazyValueImpl<V> extends ValueImpl<V> {
+	private static final long serialVersionUID = -6034869211187313502L;
+
+	// null once the value is materialized (deserialized values are always materialized)
+	private transient volatile Supplier<V> supplier;
+
+	public LazyValueImpl() {
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param supplier
+	 *            Provides the value on first access
+	 * @param timestamp
+	 *            The Timestamp
+	 */
+	public LazyValueImpl(Supplier<V> supplier, Timestamp timestamp) {
+		super(null, timestamp);
+		this.supplier = supplier;
+	}
+
+	@Override
+	public V getValue() {
+		if (supplier != null) {
+			synchronized (this) {
+				final Supplier<V> sup = supplier;
+				if (sup != null) {
+					super.setValue(sup.get());
+					// volatile write publishes the value
+					supplier = null;
+				}
+			}
+		}
+		return super.getValue();
+	}
+
+	@Override
+	public void setValue(V value) {
+		synchronized (this) {
+			super.setValue(value);
+			supplier = null;
+		}
+	}
+
+	/**
+	 * Determines if the value was already converted.
+	 *
+	 * @return boolean <tt>true</tt> if the value was converted, <tt>false</tt> otherwise
+	 */
+	public boolean isMaterialized() {
+		return supplier == null;
+	}
+}
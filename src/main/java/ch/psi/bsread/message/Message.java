@@ -17,7 +17,21 @@ public class Message<V> implements Serializable {
 	/**
 	 * Map holding all values of a channel - key: channel name value: value
 	 */
-	private Map<String, Value<V>> values = new HashMap<>();
+	private Map<String, Value<V>> values;
+
+	public Message() {
+		this(new HashMap<>());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param values
+	 *            The Map holding the values (e.g. an {@link IndexedValueMap})
+	 */
+	public Message(Map<String, Value<V>> values) {
+		this.values = values;
+	}
 
 	public void setMainHeader(MainHeader mainHeader) {
 		this.mainHeader = mainHeader;
@@ -50,4 +64,32 @@ public class Message<V> implements Serializable {
 	public Map<String, Value<V>> getValues() {
 		return values;
 	}
+
+	/**
+	 * Provides the value of the channel at a position (slot) of the DataHeader (see
+	 * {@link DataHeader#getChannelIndex()}). This avoids the lookup by channel name for values
+	 * extracted by the Receiver.
+	 * 
+	 * @param slot
+	 *            The slot
+	 * @return Value The Value or null if there is no value for this channel
+	 */
+	@SuppressWarnings("unchecked")
+	public Value<V> getValue(int slot) {
+		if (values instanceof IndexedValueMap) {
+			return ((IndexedValueMap<V>) values).getValue(slot);
+		} else {
+			return values.get(dataHeader.getChannelIndex().getName(slot));
+		}
+	}
+
+	/**
+	 * Releases all values backed by (pooled) resources of the receiver (see
+	 * {@link Value#release()}). The values must no longer be accessed afterwards.
+	 */
+	public void release() {
+		for (Value<V> value : values.values()) {
+			value.release();
+		}
+	}
 }
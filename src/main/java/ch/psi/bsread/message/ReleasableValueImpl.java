@@ -0,0 +1,92 @@
+package ch.psi.bsread.message;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A Value whose content is a view of a (pooled) receive buffer. The buffer is handed back once the
+ * reference count drops to zero (initial count is one).
+ */
+public class ReleasableValueImpl<V> extends ValueImpl<V> {
+	private static final long serialVersionUID = 8350457162637232493L;
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<ReleasableValueImpl> REF_COUNT_UPDATER =
+			AtomicIntegerFieldUpdater.newUpdater(ReleasableValueImpl.class, "refCount");
+
+	private transient volatile int refCount;
+	private transient volatile Runnable releaser;
+
+	public ReleasableValueImpl() {
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param value
+	 *            The value (a view of the buffer)
+	 * @param timestamp
+	 *            The Timestamp
+	 * @param releaser
+	 *            Hands the buffer back (might be null)
+	 */
+	public ReleasableValueImpl(V value, Timestamp timestamp, Runnable releaser) {
+		super(value, timestamp);
+		this.releaser = releaser;
+		this.refCount = 1;
+	}
+
+	@Override
+	public Value<V> retain() {
+		int count;
+		do {
+			count = refCount;
+			if (count <= 0) {
+				throw new IllegalStateException("Value was already released.");
+			}
+		} while (!REF_COUNT_UPDATER.compareAndSet(this, count, count + 1));
+
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		int count;
+		do {
+			count = refCount;
+			if (count <= 0) {
+				return false;
+			}
+		} while (!REF_COUNT_UPDATER.compareAndSet(this, count, count - 1));
+
+		if (count == 1) {
+			// make sure released buffers can not be accessed accidentally
+			setValue(null);
+			final Runnable rel = releaser;
+			releaser = null;
+			if (rel != null) {
+				rel.run();
+			}
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * Deserialized values are copies and do not reference a receive buffer anymore.
+	 */
+	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+		ois.defaultReadObject();
+		this.refCount = 1;
+	}
+
+	/**
+	 * Provides the current reference count.
+	 *
+	 * @return int The reference count
+	 */
+	public int getRefCount() {
+		return refCount;
+	}
+}
@@ -13,6 +13,27 @@ public interface Value<V> extends Serializable {
 
 	public V getValue();
 
+	/**
+	 * Increments the reference count of a Value whose content is backed by (pooled) resources of the
+	 * receiver (see {@link #release()}).
+	 * 
+	 * @return Value This Value
+	 */
+	default Value<V> retain() {
+		return this;
+	}
+
+	/**
+	 * Decrements the reference count of a Value whose content is backed by (pooled) resources of the
+	 * receiver. Once the count reaches zero, the resources are handed back and the value must no
+	 * longer be accessed. Values not backed by such resources ignore this call.
+	 * 
+	 * @return boolean <tt>true</tt> if the resources were handed back, <tt>false</tt> otherwise
+	 */
+	default boolean release() {
+		return false;
+	}
+
 	default <W> W getValue(Class<W> clazz) {
 		Object value = getValue();
 		if (clazz.isAssignableFrom(value.getClass())) {
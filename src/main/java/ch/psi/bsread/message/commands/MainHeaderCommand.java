@@ -4,9 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -20,14 +18,19 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import ch.psi.bsread.ConfigIReceiver;
 import ch.psi.bsread.ReceiverConfig;
 import ch.psi.bsread.ReceiverState;
+import ch.psi.bsread.RequestedChannelFilter;
 import ch.psi.bsread.command.Command;
+import ch.psi.bsread.common.concurrent.HandlerDispatcher;
 import ch.psi.bsread.common.helper.ByteBufferHelper;
 import ch.psi.bsread.compression.Compression;
 import ch.psi.bsread.configuration.Channel;
+import ch.psi.bsread.impl.AbstractMessageExtractor;
 import ch.psi.bsread.message.DataHeader;
 import ch.psi.bsread.message.MainHeader;
 import ch.psi.bsread.message.Message;
 import ch.psi.bsread.message.Value;
+import ch.psi.bsread.metrics.PulseLatencies;
+import ch.psi.bsread.metrics.ReceiverMetrics;
 
 public class MainHeaderCommand extends MainHeader implements Command {
    private static final Logger LOGGER = LoggerFactory.getLogger(MainHeaderCommand.class);
@@ -39,30 +42,33 @@ public class MainHeaderCommand extends MainHeader implements Command {
    public <V> Message<V> process(ConfigIReceiver<V> receiver) {
       ReceiverConfig<V> receiverConfig = receiver.getReceiverConfig();
 
-      Set<String> requestedChannels = null;
-      Collection<Channel> channelFilters = receiver.getReceiverConfig().getRequestedChannels();
+      ReceiverState receiverState = receiver.getReceiverState();
+      final ReceiverMetrics metrics = receiver.getReceiverMetrics();
+      if (metrics != null) {
+         metrics.getLatencies().record(PulseLatencies.Stage.RECEIVED, getGlobalTimestamp());
+      }
+      RequestedChannelFilter requestedChannels = null;
+      Collection<Channel> channelFilters = receiverConfig.getRequestedChannels();
       if (channelFilters != null && !channelFilters.isEmpty()) {
-         requestedChannels = new HashSet<>();
-         for (Channel channelFilter : channelFilters) {
-            if (isRequestedChannel(this.getPulseId(), channelFilter)) {
-               requestedChannels.add(channelFilter.getName());
-            }
-         }
+         // compiled once (lookup per message)
+         requestedChannels = receiverState.getRequestedChannelFilter(channelFilters);
       }
 
       // check if there is something to process
-      if (requestedChannels != null && requestedChannels.isEmpty()) {
+      if (requestedChannels != null && !requestedChannels.isAnyRequested(getPulseId())) {
          // stop here if channels are not requested
          // this also means, that clients might not get updated on DataHeader
          // changes (immediately). However, they stated that they are not
          // interested in the current pulse-id (and if the filter is applied
          // earlier in the chain (e.g. server) they would not be informed
          // either.
+         if (metrics != null) {
+            metrics.messageFiltered();
+         }
          receiver.drain();
          return null;
       }
 
-      ReceiverState receiverState = receiver.getReceiverState();
       Socket socket = receiver.getSocket();
       DataHeader dataHeader;
       boolean dataHeaderChanged = false;
@@ -75,12 +81,16 @@ public class MainHeaderCommand extends MainHeader implements Command {
                   String.format("Expect 'bsr_d-[version]' for 'htype' but was '%s'. Skip messge for '%s'", getHtype(),
                         receiverConfig.getAddress());
             LOGGER.error(message);
-            receiver.drain();
+            if (receiver.drain() > 0 && metrics != null) {
+               metrics.messageDrained();
+            }
             throw new RuntimeException(message);
          }
 
-         if (receiverConfig.isParallelHandlerProcessing()) {
-            receiver.getMainHeaderHandlers().parallelStream().forEach(handler -> handler.accept(this));
+         final HandlerDispatcher dispatcher = receiver.getHandlerDispatcher();
+         final boolean pipelined = receiverConfig.isPipelinedHandlerProcessing();
+         if (dispatcher != null) {
+            dispatcher.dispatchAll(receiver.getMainHeaderHandlers(), Consumer::accept, this, !pipelined);
          } else {
             for (final Consumer<MainHeader> handler : receiver.getMainHeaderHandlers()) {
                handler.accept(this);
@@ -93,10 +103,16 @@ public class MainHeaderCommand extends MainHeader implements Command {
                dataHeader = receiverState.getDataHeader();
                // The data header did not change so no interpretation of
                // the header ...
-               socket.base().recv(0);
+               final int nrOfBytes = AbstractMessageExtractor.skipMsg(socket, receiverConfig.getMsgAllocator());
+               if (metrics != null) {
+                  metrics.bytesReceived(nrOfBytes);
+               }
             } else {
                dataHeaderChanged = true;
                byte[] dataHeaderBytes = socket.recv();
+               if (metrics != null) {
+                  metrics.bytesReceived(dataHeaderBytes.length);
+               }
                Compression compression = getDataHeaderCompression();
                if (compression != null) {
                   ByteBuffer tmpBuf = compression.getCompressor().decompressDataHeader(ByteBuffer.wrap(dataHeaderBytes),
@@ -109,14 +125,26 @@ public class MainHeaderCommand extends MainHeader implements Command {
                   receiverState.setDataHeader(dataHeader);
                   receiverState.setDataHeaderHash(getHash());
 
-                  if (receiverConfig.isParallelHandlerProcessing()) {
-                     receiver.getDataHeaderHandlers().parallelStream().forEach(handler -> handler.accept(dataHeader));
+                  if (dispatcher != null && pipelined) {
+                     for (final Consumer<DataHeader> handler : receiver.getDataHeaderHandlers()) {
+                        if (handler == receiverConfig.getMessageExtractor()) {
+                           // needs the DataHeader before extracting the values
+                           handler.accept(dataHeader);
+                        } else {
+                           dispatcher.dispatch(handler, dataHeader);
+                        }
+                     }
+                  } else if (dispatcher != null) {
+                     dispatcher.dispatchAll(receiver.getDataHeaderHandlers(), Consumer::accept, dataHeader, true);
                   } else {
                      for (final Consumer<DataHeader> handler : receiver.getDataHeaderHandlers()) {
                         handler.accept(dataHeader);
                      }
                   }
                } catch (JsonParseException | JsonMappingException e) {
+                  if (metrics != null) {
+                     metrics.parseFailed();
+                  }
                   String message = String.format("Could not parse DataHeader of '%s'.", receiverConfig.getAddress());
                   LOGGER.error(message, e);
                   String dataHeaderJson = new String(dataHeaderBytes, StandardCharsets.UTF_8);
@@ -144,11 +172,21 @@ public class MainHeaderCommand extends MainHeader implements Command {
          if (message != null) {
             message.setDataHeaderChanged(dataHeaderChanged);
             final Map<String, Value<V>> values = message.getValues();
+            if (metrics != null) {
+               metrics.getLatencies().record(PulseLatencies.Stage.EXTRACTED, getGlobalTimestamp());
+               metrics.getLatencies().recordIocLatency(values.values());
+            }
 
             // notify hooks with complete values
             if (!values.isEmpty()) {
-               if (receiverConfig.isParallelHandlerProcessing()) {
-                  receiver.getValueHandlers().parallelStream().forEach(handler -> handler.accept(values));
+               if (dispatcher != null && pipelined) {
+                  for (final Consumer<Map<String, Value<V>>> handler : receiver.getValueHandlers()) {
+                     // values must stay valid until the handler returned
+                     retain(values);
+                     dispatcher.dispatch(handler, Consumer::accept, values, () -> release(values));
+                  }
+               } else if (dispatcher != null) {
+                  dispatcher.dispatchAll(receiver.getValueHandlers(), Consumer::accept, values, true);
                } else {
                   for (final Consumer<Map<String, Value<V>>> handler : receiver.getValueHandlers()) {
                      handler.accept(values);
@@ -165,8 +203,15 @@ public class MainHeaderCommand extends MainHeader implements Command {
       }
    }
 
-   private boolean isRequestedChannel(long pulseId, Channel channel) {
-      // Check if this channel sends data for given pulseId
-      return ((pulseId - channel.getOffset()) % channel.getModulo()) == 0;
+   private static <V> void retain(Map<String, Value<V>> values) {
+      for (final Value<V> value : values.values()) {
+         value.retain();
+      }
+   }
+
+   private static <V> void release(Map<String, Value<V>> values) {
+      for (final Value<V> value : values.values()) {
+         value.release();
+      }
    }
 }
@@ -0,0 +1,341 @@
+package ch.psi.bsread.message.commands;
+
+import java.nio.charset.StandardCharsets;
+
+import ch.psi.bsread.ReceiverState;
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.message.Timestamp;
+
+/**
+ * Streaming parser for the main header of data messages (htype 'bsr_m-1.1'). It reads the fields
+ * straight from the received bytes and avoids the token buffering Jackson needs to resolve the
+ * polymorphic 'htype' discriminator.
+ * <p>
+ * The parser only handles what it fully understands. Commands (e.g. 'bsr_reconnect', 'bsr_stop'),
+ * unknown htypes, unknown properties, escaped strings, non-integer numbers or illegal times make
+ * {@link #parse(byte[], ReceiverState)} return null and the caller is expected to fall back to
+ * Jackson (which then also produces the usual parse errors).
+ * <p>
+ * An instance keeps mutable parse state and must only be used by one (receiving) thread.
+ */
+public class MainHeaderParser {
+   private static final byte[] HTYPE_KEY = bytes("htype");
+   private static final byte[] PULSE_ID_KEY = bytes("pulse_id");
+   private static final byte[] GLOBAL_TIMESTAMP_KEY = bytes("global_timestamp");
+   private static final byte[] HASH_KEY = bytes("hash");
+   private static final byte[] DATA_HEADER_COMPRESSION_KEY = bytes("dh_compression");
+   private static final byte[] SEC_KEY = bytes("sec");
+   private static final byte[] NS_KEY = bytes("ns");
+   private static final byte[] NULL_LITERAL = bytes("null");
+   private static final byte[] MAIN_HEADER_HTYPE = bytes(MainHeaderCommand.DEFAULT_HTYPE);
+   // see Timestamp
+   private static final long MAX_SEC = Long.MAX_VALUE / 1000L;
+   private static final long MAX_NS = 1000000000L - 1L;
+   private static final Compression[] COMPRESSIONS = Compression.values();
+   private static final byte[][] COMPRESSION_NAMES = new byte[COMPRESSIONS.length][];
+   static {
+      for (int i = 0; i < COMPRESSIONS.length; ++i) {
+         COMPRESSION_NAMES[i] = bytes(COMPRESSIONS[i].name());
+      }
+   }
+
+   // parse state (reused for every header)
+   private byte[] bytes;
+   private int pos;
+   private int end;
+   private boolean htypeMatched;
+   private long pulseId;
+   private boolean timestampSet;
+   private long sec;
+   private long ns;
+   private int hashStart;
+   private int hashLength;
+   private Compression dataHeaderCompression;
+   // the value of the last parsed quoted string
+   private int stringStart;
+   private int stringLength;
+   // the value of the last parsed number
+   private long number;
+
+   public MainHeaderParser() {}
+
+   /**
+    * Parses the main header of a data message.
+    *
+    * @param mainHeaderBytes The received bytes
+    * @param receiverState The current state of the Receiver (used to reuse the hash String of the
+    *        current DataHeader)
+    * @return MainHeaderCommand The parsed header or null if the bytes need to be interpreted by
+    *         Jackson
+    */
+   public MainHeaderCommand parse(byte[] mainHeaderBytes, ReceiverState receiverState) {
+      if (!parse(mainHeaderBytes, 0, mainHeaderBytes.length)) {
+         return null;
+      }
+
+      final String hash;
+      if (receiverState != null && receiverState.isDataHeaderHash(mainHeaderBytes, hashStart, hashLength)) {
+         hash = receiverState.getDataHeaderHash();
+      } else {
+         hash = new String(mainHeaderBytes, hashStart, hashLength, StandardCharsets.UTF_8);
+      }
+
+      final MainHeaderCommand command = new MainHeaderCommand();
+      command.setPulseId(pulseId);
+      if (timestampSet) {
+         command.setGlobalTimestamp(new Timestamp(sec, ns));
+      }
+      command.setHash(hash);
+      command.setDataHeaderCompression(dataHeaderCompression);
+      return command;
+   }
+
+   private boolean parse(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.pos = offset;
+      this.end = offset + length;
+      this.htypeMatched = false;
+      this.pulseId = 0;
+      this.timestampSet = false;
+      this.sec = 0;
+      this.ns = 0;
+      this.hashStart = -1;
+      this.hashLength = 0;
+      this.dataHeaderCompression = null;
+
+      try {
+         if (!consume('{')) {
+            return false;
+         }
+         if (!consume('}')) {
+            do {
+               if (!parseString()) {
+                  return false;
+               }
+               final int keyStart = stringStart;
+               final int keyLength = stringLength;
+               if (!consume(':')) {
+                  return false;
+               }
+
+               if (isKey(keyStart, keyLength, HTYPE_KEY)) {
+                  if (!parseString()) {
+                     return false;
+                  }
+                  htypeMatched = equalsBytes(stringStart, stringLength, MAIN_HEADER_HTYPE);
+                  if (!htypeMatched) {
+                     // command or unknown htype -> let Jackson decide
+                     return false;
+                  }
+               } else if (isKey(keyStart, keyLength, PULSE_ID_KEY)) {
+                  if (!parseNumber()) {
+                     return false;
+                  }
+                  pulseId = number;
+               } else if (isKey(keyStart, keyLength, HASH_KEY)) {
+                  if (!parseString()) {
+                     return false;
+                  }
+                  hashStart = stringStart;
+                  hashLength = stringLength;
+               } else if (isKey(keyStart, keyLength, GLOBAL_TIMESTAMP_KEY)) {
+                  if (!parseTimestamp()) {
+                     return false;
+                  }
+               } else if (isKey(keyStart, keyLength, DATA_HEADER_COMPRESSION_KEY)) {
+                  if (!parseCompression()) {
+                     return false;
+                  }
+               } else {
+                  // unknown property
+                  return false;
+               }
+            } while (consume(','));
+
+            if (!consume('}')) {
+               return false;
+            }
+         }
+
+         skipWhitespace();
+         return pos == end && htypeMatched && hashStart >= 0;
+      } finally {
+         // do not keep a reference to the received bytes
+         this.bytes = null;
+      }
+   }
+
+   private boolean parseTimestamp() {
+      if (!consume('{')) {
+         return false;
+      }
+      long tmpSec = 0;
+      long tmpNs = 0;
+      if (!consume('}')) {
+         do {
+            if (!parseString()) {
+               return false;
+            }
+            final int keyStart = stringStart;
+            final int keyLength = stringLength;
+            if (!consume(':') || !parseNumber()) {
+               return false;
+            }
+
+            if (isKey(keyStart, keyLength, SEC_KEY)) {
+               tmpSec = number;
+            } else if (isKey(keyStart, keyLength, NS_KEY)) {
+               tmpNs = number;
+            } else {
+               return false;
+            }
+         } while (consume(','));
+
+         if (!consume('}')) {
+            return false;
+         }
+      }
+
+      if (tmpSec > MAX_SEC || tmpNs > MAX_NS || tmpNs < 0) {
+         // leave error handling of illegal times to Jackson
+         return false;
+      }
+      sec = tmpSec;
+      ns = tmpNs;
+      timestampSet = true;
+      return true;
+   }
+
+   private boolean parseCompression() {
+      skipWhitespace();
+      if (startsWith(NULL_LITERAL)) {
+         pos += NULL_LITERAL.length;
+         dataHeaderCompression = null;
+         return true;
+      }
+
+      if (!parseString()) {
+         return false;
+      }
+      for (int i = 0; i < COMPRESSION_NAMES.length; ++i) {
+         if (equalsBytes(stringStart, stringLength, COMPRESSION_NAMES[i])) {
+            dataHeaderCompression = COMPRESSIONS[i];
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private boolean parseString() {
+      skipWhitespace();
+      if (pos >= end || bytes[pos] != '"') {
+         return false;
+      }
+      final int start = ++pos;
+      while (pos < end) {
+         final byte b = bytes[pos];
+         if (b == '"') {
+            stringStart = start;
+            stringLength = pos - start;
+            ++pos;
+            return true;
+         } else if (b == '\\') {
+            // escape sequences are left to Jackson
+            return false;
+         }
+         ++pos;
+      }
+      return false;
+   }
+
+   private boolean parseNumber() {
+      skipWhitespace();
+      boolean negative = false;
+      if (pos < end && bytes[pos] == '-') {
+         negative = true;
+         ++pos;
+      }
+
+      final int start = pos;
+      long value = 0;
+      while (pos < end) {
+         final int digit = bytes[pos] - '0';
+         if (digit < 0 || digit > 9) {
+            break;
+         }
+         // accumulate negative to be able to represent Long.MIN_VALUE
+         if (value < (Long.MIN_VALUE + digit) / 10) {
+            // overflow
+            return false;
+         }
+         value = value * 10 - digit;
+         ++pos;
+      }
+
+      final int nrOfDigits = pos - start;
+      if (nrOfDigits == 0 || (nrOfDigits > 1 && bytes[start] == '0')) {
+         return false;
+      }
+      if (pos < end) {
+         final byte b = bytes[pos];
+         if (b == '.' || b == 'e' || b == 'E') {
+            // floating point numbers are left to Jackson
+            return false;
+         }
+      }
+
+      if (negative) {
+         number = value;
+      } else if (value == Long.MIN_VALUE) {
+         return false;
+      } else {
+         number = -value;
+      }
+      return true;
+   }
+
+   private boolean consume(char c) {
+      skipWhitespace();
+      if (pos < end && bytes[pos] == c) {
+         ++pos;
+         return true;
+      } else {
+         return false;
+      }
+   }
+
+   private void skipWhitespace() {
+      while (pos < end) {
+         final byte b = bytes[pos];
+         if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+            ++pos;
+         } else {
+            return;
+         }
+      }
+   }
+
+   private boolean startsWith(byte[] literal) {
+      return end - pos >= literal.length && equalsBytes(pos, literal.length, literal);
+   }
+
+   private boolean isKey(int start, int length, byte[] key) {
+      return equalsBytes(start, length, key);
+   }
+
+   private boolean equalsBytes(int start, int length, byte[] other) {
+      if (length != other.length) {
+         return false;
+      }
+      for (int i = 0; i < length; ++i) {
+         if (bytes[start + i] != other[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static byte[] bytes(String str) {
+      return str.getBytes(StandardCharsets.UTF_8);
+   }
+}
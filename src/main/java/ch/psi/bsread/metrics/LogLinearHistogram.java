@@ -0,0 +1,267 @@
+package ch.psi.bsread.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values with log-linear buckets (similar to HdrHistogram).
+ * Values below 2^precisionBits are counted exactly, larger values are counted in buckets that split
+ * every power of two into 2^precisionBits linear sub-buckets (i.e. the relative error of
+ * percentiles is at most 2^-precisionBits). The number of buckets is fixed (no resizing), so
+ * recording is allocation-free and thread-safe.
+ * <p>
+ * Snapshots ({@link #copy()}, {@link #snapshotAndReset()}) and {@link #add(LogLinearHistogram)}
+ * allow to aggregate histograms at the cost of O(buckets).
+ */
+public class LogLinearHistogram {
+   public static final int DEFAULT_PRECISION_BITS = 5;
+
+   private final int precisionBits;
+   private final int subBucketCount;
+   private final AtomicLongArray counts;
+   private final LongAdder sum = new LongAdder();
+   private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+   private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+   public LogLinearHistogram() {
+      this(DEFAULT_PRECISION_BITS);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param precisionBits The number of bits defining the linear sub-buckets per power of two
+    *        (1-16)
+    */
+   public LogLinearHistogram(int precisionBits) {
+      if (precisionBits < 1 || precisionBits > 16) {
+         throw new IllegalArgumentException("Precision bits must be within [1, 16] but was " + precisionBits);
+      }
+
+      this.precisionBits = precisionBits;
+      this.subBucketCount = 1 << precisionBits;
+      // one group of exact values and one group per remaining power of two
+      this.counts = new AtomicLongArray((Long.SIZE - precisionBits) * subBucketCount);
+   }
+
+   private int getIndex(long value) {
+      if (value < subBucketCount) {
+         return (int) value;
+      } else {
+         final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - precisionBits;
+         return (shift + 1) * subBucketCount + (int) ((value >>> shift) - subBucketCount);
+      }
+   }
+
+   private long getLowestValue(int index) {
+      if (index < subBucketCount) {
+         return index;
+      } else {
+         final int shift = index / subBucketCount - 1;
+         return ((long) subBucketCount + (index % subBucketCount)) << shift;
+      }
+   }
+
+   private long getHighestValue(int index) {
+      if (index < subBucketCount) {
+         return index;
+      } else {
+         final int shift = index / subBucketCount - 1;
+         return getLowestValue(index) + ((1L << shift) - 1);
+      }
+   }
+
+   /**
+    * Records a value (negative values are recorded as 0).
+    *
+    * @param value The value
+    */
+   public void record(long value) {
+      record(value, 1);
+   }
+
+   /**
+    * Records a value several times (negative values are recorded as 0).
+    *
+    * @param value The value
+    * @param count The number of times
+    */
+   public void record(long value, long count) {
+      if (value < 0) {
+         value = 0;
+      }
+
+      counts.addAndGet(getIndex(value), count);
+      sum.add(value * count);
+      updateMax(value);
+      updateMin(value);
+   }
+
+   private void updateMax(long value) {
+      long current;
+      while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+      }
+   }
+
+   private void updateMin(long value) {
+      long current;
+      while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+      }
+   }
+
+   /**
+    * Provides the number of recorded values.
+    *
+    * @return long The number of values
+    */
+   public long getCount() {
+      long count = 0;
+      for (int i = 0; i < counts.length(); ++i) {
+         count += counts.get(i);
+      }
+      return count;
+   }
+
+   /**
+    * Provides the sum of the recorded values.
+    *
+    * @return long The sum
+    */
+   public long getSum() {
+      return sum.sum();
+   }
+
+   /**
+    * Provides the mean of the recorded values.
+    *
+    * @return double The mean (0 if empty)
+    */
+   public double getMean() {
+      final long count = getCount();
+      return count > 0 ? (double) getSum() / count : 0;
+   }
+
+   /**
+    * Provides the max recorded value.
+    *
+    * @return long The max value (0 if empty)
+    */
+   public long getMax() {
+      final long value = max.get();
+      return value != Long.MIN_VALUE ? value : 0;
+   }
+
+   /**
+    * Provides the min recorded value.
+    *
+    * @return long The min value (0 if empty)
+    */
+   public long getMin() {
+      final long value = min.get();
+      return value != Long.MAX_VALUE ? value : 0;
+   }
+
+   /**
+    * Provides the value below which a percentage of the recorded values fall (the highest value of
+    * the bucket, i.e. the relative error is at most 2^-precisionBits).
+    *
+    * @param percentile The percentile (0-100)
+    * @return long The value (0 if empty)
+    */
+   public long getValueAtPercentile(double percentile) {
+      final long count = getCount();
+      if (count == 0) {
+         return 0;
+      }
+
+      final double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+      final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+      long accumulated = 0;
+      for (int i = 0; i < counts.length(); ++i) {
+         accumulated += counts.get(i);
+         if (accumulated >= rank) {
+            return Math.min(getHighestValue(i), getMax());
+         }
+      }
+      return getMax();
+   }
+
+   /**
+    * Adds the recorded values of another histogram (with the same precision) to this histogram.
+    *
+    * @param other The other histogram
+    */
+   public void add(LogLinearHistogram other) {
+      if (other.precisionBits != precisionBits) {
+         throw new IllegalArgumentException("Histograms must have the same precision.");
+      }
+
+      for (int i = 0; i < counts.length(); ++i) {
+         final long count = other.counts.get(i);
+         if (count != 0) {
+            counts.addAndGet(i, count);
+         }
+      }
+      sum.add(other.sum.sum());
+      if (other.max.get() != Long.MIN_VALUE) {
+         updateMax(other.max.get());
+      }
+      if (other.min.get() != Long.MAX_VALUE) {
+         updateMin(other.min.get());
+      }
+   }
+
+   /**
+    * Creates a copy of this histogram.
+    *
+    * @return LogLinearHistogram The copy
+    */
+   public LogLinearHistogram copy() {
+      final LogLinearHistogram copy = new LogLinearHistogram(precisionBits);
+      copy.add(this);
+      return copy;
+   }
+
+   /**
+    * Creates a copy of this histogram and resets it (values recorded concurrently are either part
+    * of the copy or remain in this histogram).
+    *
+    * @return LogLinearHistogram The copy
+    */
+   public LogLinearHistogram snapshotAndReset() {
+      final LogLinearHistogram snapshot = new LogLinearHistogram(precisionBits);
+      for (int i = 0; i < counts.length(); ++i) {
+         if (counts.get(i) != 0) {
+            snapshot.counts.set(i, counts.getAndSet(i, 0));
+         }
+      }
+      snapshot.sum.add(sum.sumThenReset());
+      snapshot.max.set(max.getAndSet(Long.MIN_VALUE));
+      snapshot.min.set(min.getAndSet(Long.MAX_VALUE));
+      return snapshot;
+   }
+
+   /**
+    * Resets the histogram.
+    */
+   public void reset() {
+      for (int i = 0; i < counts.length(); ++i) {
+         counts.set(i, 0);
+      }
+      sum.reset();
+      max.set(Long.MIN_VALUE);
+      min.set(Long.MAX_VALUE);
+   }
+
+   public int getPrecisionBits() {
+      return precisionBits;
+   }
+
+   @Override
+   public String toString() {
+      return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d", getCount(), getMean(),
+            getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+            getValueAtPercentile(99.9), getMax());
+   }
+}
@@ -0,0 +1,176 @@
+package ch.psi.bsread.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Value;
+
+/**
+ * Latencies between the time a pulse was taken (the global timestamp of the MainHeader) and the
+ * wall clock at the stages a message passes on the client side. Comparing the stages tells whether
+ * tail latency comes from the network (received), decompression/extraction (extracted),
+ * synchronization of several streams (synchronized) or the consumer (delivered). Additionally, the
+ * latency of the oldest IOC timestamp of the values of a message is recorded at extraction.
+ * <p>
+ * The latencies depend on the clock synchronization of the hosts (negative latencies are recorded
+ * as 0). Wall clock time is measured with {@link System#nanoTime()} calibrated against
+ * {@link System#currentTimeMillis()} (i.e. the absolute error is about a millisecond but latencies
+ * of the same stage are comparable at higher resolution).
+ */
+public class PulseLatencies {
+   private static final long RECALIBRATION_NANOS = TimeUnit.SECONDS.toNanos(1);
+   private static final long MAX_CLOCK_DEVIATION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   public enum Stage {
+      /** The MainHeader of the message was received from the socket. */
+      RECEIVED,
+      /** The values of the message were extracted. */
+      EXTRACTED,
+      /** The message was complete in a MessageSynchronizer. */
+      SYNCHRONIZED,
+      /** The message was delivered as (the current element of) a StreamSection. */
+      DELIVERED
+   }
+
+   private final Map<Stage, LogLinearHistogram> histograms = new EnumMap<>(Stage.class);
+   private final LogLinearHistogram iocHistogram;
+   private volatile long clockOffset;
+   private volatile long lastCalibration;
+
+   public PulseLatencies() {
+      for (final Stage stage : Stage.values()) {
+         histograms.put(stage, new LogLinearHistogram());
+      }
+      iocHistogram = new LogLinearHistogram();
+
+      lastCalibration = System.nanoTime();
+      clockOffset = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - lastCalibration;
+   }
+
+   private PulseLatencies(Map<Stage, LogLinearHistogram> histograms, LogLinearHistogram iocHistogram) {
+      this.histograms.putAll(histograms);
+      this.iocHistogram = iocHistogram;
+   }
+
+   /**
+    * Provides the current wall clock time.
+    *
+    * @return long The nanoseconds since the epoch
+    */
+   public long currentTimeNanos() {
+      final long nanoTime = System.nanoTime();
+      if (nanoTime - lastCalibration > RECALIBRATION_NANOS) {
+         lastCalibration = nanoTime;
+         // follow adjustments of the system clock but do not jitter by its granularity
+         final long offset = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - nanoTime;
+         if (Math.abs(offset - clockOffset) > MAX_CLOCK_DEVIATION_NANOS) {
+            clockOffset = offset;
+         }
+      }
+      return nanoTime + clockOffset;
+   }
+
+   /**
+    * Records the latency of a stage.
+    *
+    * @param stage The stage
+    * @param globalTimestamp The global timestamp of the pulse (ignored if null or 0)
+    */
+   public void record(Stage stage, Timestamp globalTimestamp) {
+      if (isDefined(globalTimestamp)) {
+         record(stage, globalTimestamp, currentTimeNanos());
+      }
+   }
+
+   /**
+    * Records the latency of a stage.
+    *
+    * @param stage The stage
+    * @param globalTimestamp The global timestamp of the pulse
+    * @param timeNanos The wall clock time of the stage (nanoseconds since the epoch)
+    */
+   public void record(Stage stage, Timestamp globalTimestamp, long timeNanos) {
+      histograms.get(stage).record(timeNanos - toNanos(globalTimestamp));
+   }
+
+   /**
+    * Records the latency of the oldest IOC timestamp of extracted values.
+    *
+    * @param values The values
+    */
+   public void recordIocLatency(Iterable<? extends Value<?>> values) {
+      long oldest = Long.MAX_VALUE;
+      for (final Value<?> value : values) {
+         final Timestamp iocTimestamp = value.getTimestamp();
+         if (isDefined(iocTimestamp)) {
+            oldest = Math.min(oldest, toNanos(iocTimestamp));
+         }
+      }
+
+      if (oldest != Long.MAX_VALUE) {
+         iocHistogram.record(currentTimeNanos() - oldest);
+      }
+   }
+
+   private static boolean isDefined(Timestamp timestamp) {
+      return timestamp != null && (timestamp.getSec() != 0 || timestamp.getNs() != 0);
+   }
+
+   private static long toNanos(Timestamp timestamp) {
+      return TimeUnit.SECONDS.toNanos(timestamp.getSec()) + timestamp.getNs();
+   }
+
+   /**
+    * Provides the latencies of a stage.
+    *
+    * @param stage The stage
+    * @return LogLinearHistogram The histogram (in nanoseconds)
+    */
+   public LogLinearHistogram getHistogram(Stage stage) {
+      return histograms.get(stage);
+   }
+
+   /**
+    * Provides the latencies of the oldest IOC timestamps at extraction.
+    *
+    * @return LogLinearHistogram The histogram (in nanoseconds)
+    */
+   public LogLinearHistogram getIocHistogram() {
+      return iocHistogram;
+   }
+
+   /**
+    * Creates a snapshot of the latencies and resets them (e.g. for periodic reporting of
+    * percentiles).
+    *
+    * @return PulseLatencies The snapshot
+    */
+   public PulseLatencies snapshotAndReset() {
+      final Map<Stage, LogLinearHistogram> snapshots = new EnumMap<>(Stage.class);
+      for (final Map.Entry<Stage, LogLinearHistogram> entry : histograms.entrySet()) {
+         snapshots.put(entry.getKey(), entry.getValue().snapshotAndReset());
+      }
+      return new PulseLatencies(snapshots, iocHistogram.snapshotAndReset());
+   }
+
+   /**
+    * Resets the latencies.
+    */
+   public void reset() {
+      for (final LogLinearHistogram histogram : histograms.values()) {
+         histogram.reset();
+      }
+      iocHistogram.reset();
+   }
+
+   @Override
+   public String toString() {
+      final StringBuilder buf = new StringBuilder();
+      for (final Map.Entry<Stage, LogLinearHistogram> entry : histograms.entrySet()) {
+         buf.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+      }
+      return buf.append("IOC: ").append(iocHistogram).toString();
+   }
+}
@@ -0,0 +1,353 @@
+package ch.psi.bsread.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics of a Receiver. Counters are striped ({@link LongAdder}) and histograms are
+ * allocation-free ({@link LogLinearHistogram}) so that updating them from the receiving (and value
+ * conversion) threads is cheap. The metrics can be registered as MBean (see
+ * {@link #registerMBean(String)}).
+ */
+public class ReceiverMetrics implements ReceiverMetricsMBean {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ReceiverMetrics.class);
+   public static final String MBEAN_DOMAIN = "ch.psi.bsread";
+   // every n-th decompression is timed (two System.nanoTime() calls per value would dominate the
+   // overhead for messages with many small channels)
+   public static final int DECOMPRESSION_SAMPLING = 16;
+   // the minimal window message and byte rates are computed over
+   public static final long RATE_WINDOW_MILLIS = 5000;
+
+   private final LongAdder messages = new LongAdder();
+   private final LongAdder bytes = new LongAdder();
+   private final LongAdder filteredMessages = new LongAdder();
+   private final LongAdder drainedMessages = new LongAdder();
+   private final LongAdder misalignedMessages = new LongAdder();
+   private final LongAdder incompleteMessages = new LongAdder();
+   private final LongAdder parseFailures = new LongAdder();
+   private final LongAdder reconnects = new LongAdder();
+   private final LongAdder decompressions = new LongAdder();
+   private final LogLinearHistogram decompressionNanos = new LogLinearHistogram();
+   private final PulseLatencies latencies = new PulseLatencies();
+
+   private final Rate messageRate = new Rate();
+   private final Rate byteRate = new Rate();
+   private String address;
+   private ObjectName objectName;
+
+   /**
+    * A message was received and returned.
+    */
+   public void messageReceived() {
+      messages.increment();
+   }
+
+   /**
+    * Frames were received.
+    *
+    * @param nrOfBytes The number of bytes
+    */
+   public void bytesReceived(long nrOfBytes) {
+      bytes.add(nrOfBytes);
+   }
+
+   /**
+    * A message was skipped since none of its channels is requested.
+    */
+   public void messageFiltered() {
+      filteredMessages.increment();
+   }
+
+   /**
+    * A message was dropped after some of its frames were received (its remaining frames were
+    * drained).
+    */
+   public void messageDrained() {
+      drainedMessages.increment();
+   }
+
+   /**
+    * Received frames were not aligned with the start of a message.
+    */
+   public void messageMisaligned() {
+      misalignedMessages.increment();
+   }
+
+   /**
+    * A message provided less or more values than specified in its DataHeader.
+    */
+   public void messageIncomplete() {
+      incompleteMessages.increment();
+   }
+
+   /**
+    * A header could not be parsed.
+    */
+   public void parseFailed() {
+      parseFailures.increment();
+   }
+
+   /**
+    * The Receiver reconnected.
+    */
+   public void reconnected() {
+      reconnects.increment();
+   }
+
+   /**
+    * Values were decompressed.
+    *
+    * @param nrOfValues The number of values
+    */
+   public void valuesDecompressed(int nrOfValues) {
+      decompressions.add(nrOfValues);
+   }
+
+   /**
+    * Records the time a (sampled, see {@link #DECOMPRESSION_SAMPLING}) decompression (and
+    * conversion) of a value took.
+    *
+    * @param nanos The time it took
+    */
+   public void recordDecompressionTime(long nanos) {
+      decompressionNanos.record(nanos);
+   }
+
+   @Override
+   public String getAddress() {
+      return address;
+   }
+
+   @Override
+   public long getNrOfMessages() {
+      return messages.sum();
+   }
+
+   @Override
+   public long getNrOfBytes() {
+      return bytes.sum();
+   }
+
+   @Override
+   public double getMessageRate() {
+      return messageRate.get(getNrOfMessages());
+   }
+
+   @Override
+   public double getByteRate() {
+      return byteRate.get(getNrOfBytes());
+   }
+
+   @Override
+   public long getNrOfFilteredMessages() {
+      return filteredMessages.sum();
+   }
+
+   @Override
+   public long getNrOfDrainedMessages() {
+      return drainedMessages.sum();
+   }
+
+   @Override
+   public long getNrOfMisalignedMessages() {
+      return misalignedMessages.sum();
+   }
+
+   @Override
+   public long getNrOfIncompleteMessages() {
+      return incompleteMessages.sum();
+   }
+
+   @Override
+   public long getNrOfParseFailures() {
+      return parseFailures.sum();
+   }
+
+   @Override
+   public long getNrOfReconnects() {
+      return reconnects.sum();
+   }
+
+   @Override
+   public long getNrOfDecompressions() {
+      return decompressions.sum();
+   }
+
+   @Override
+   public double getDecompressionTimeMeanMicros() {
+      return decompressionNanos.getMean() / 1000;
+   }
+
+   @Override
+   public double getDecompressionTime99Micros() {
+      return decompressionNanos.getValueAtPercentile(99) / 1000.0;
+   }
+
+   @Override
+   public double getDecompressionTimeMaxMicros() {
+      return decompressionNanos.getMax() / 1000.0;
+   }
+
+   /**
+    * Provides the histogram of the (sampled) decompression times.
+    *
+    * @return LogLinearHistogram The histogram (in nanoseconds)
+    */
+   public LogLinearHistogram getDecompressionNanos() {
+      return decompressionNanos;
+   }
+
+   /**
+    * Provides the latencies of the pulses (see {@link PulseLatencies}).
+    *
+    * @return PulseLatencies The latencies
+    */
+   public PulseLatencies getLatencies() {
+      return latencies;
+   }
+
+   @Override
+   public double getReceivedLatency99Millis() {
+      return getLatency99Millis(latencies.getHistogram(PulseLatencies.Stage.RECEIVED));
+   }
+
+   @Override
+   public double getExtractedLatency99Millis() {
+      return getLatency99Millis(latencies.getHistogram(PulseLatencies.Stage.EXTRACTED));
+   }
+
+   @Override
+   public double getSynchronizedLatency99Millis() {
+      return getLatency99Millis(latencies.getHistogram(PulseLatencies.Stage.SYNCHRONIZED));
+   }
+
+   @Override
+   public double getDeliveredLatency99Millis() {
+      return getLatency99Millis(latencies.getHistogram(PulseLatencies.Stage.DELIVERED));
+   }
+
+   @Override
+   public double getIocLatency99Millis() {
+      return getLatency99Millis(latencies.getIocHistogram());
+   }
+
+   @Override
+   public String getLatencySummary() {
+      return latencies.toString();
+   }
+
+   private static double getLatency99Millis(LogLinearHistogram histogram) {
+      return histogram.getValueAtPercentile(99) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   @Override
+   public void reset() {
+      messages.reset();
+      bytes.reset();
+      filteredMessages.reset();
+      drainedMessages.reset();
+      misalignedMessages.reset();
+      incompleteMessages.reset();
+      parseFailures.reset();
+      reconnects.reset();
+      decompressions.reset();
+      decompressionNanos.reset();
+      latencies.reset();
+      messageRate.reset();
+      byteRate.reset();
+   }
+
+   /**
+    * Registers the metrics with the platform MBeanServer (named after the address of the Receiver).
+    *
+    * @param address The address of the Receiver
+    */
+   public synchronized void registerMBean(String address) {
+      if (objectName != null) {
+         return;
+      }
+
+      this.address = address;
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final String baseName = MBEAN_DOMAIN + ":type=Receiver,address=" + ObjectName.quote(address);
+      try {
+         ObjectName name = new ObjectName(baseName);
+         // several Receivers might connect to the same address
+         for (int id = 1; objectName == null; ++id) {
+            try {
+               server.registerMBean(this, name);
+               objectName = name;
+            } catch (InstanceAlreadyExistsException e) {
+               name = new ObjectName(baseName + ",id=" + id);
+            }
+         }
+      } catch (Exception e) {
+         LOGGER.warn("Could not register metrics of '{}'.", address, e);
+      }
+   }
+
+   /**
+    * Unregisters the metrics from the platform MBeanServer.
+    */
+   public synchronized void unregisterMBean() {
+      if (objectName != null) {
+         try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+         } catch (Exception e) {
+            LOGGER.warn("Could not unregister metrics of '{}'.", address, e);
+         }
+         objectName = null;
+      }
+   }
+
+   /**
+    * Provides the name the metrics are registered with.
+    *
+    * @return ObjectName The name or null if not registered
+    */
+   public synchronized ObjectName getObjectName() {
+      return objectName;
+   }
+
+   /**
+    * Rate over fixed windows (of at least {@link #RATE_WINDOW_MILLIS}). Reading does not modify the
+    * counters and a window is only completed once it lasted long enough (i.e. all reads within a
+    * window provide the same value, independent of the number of JMX clients).
+    */
+   private static class Rate {
+      private long windowStartTime = System.nanoTime();
+      private long windowStartCount;
+      // rate of the last completed window (NaN if none completed yet)
+      private double rate = Double.NaN;
+
+      public synchronized double get(long count) {
+         final long time = System.nanoTime();
+         final long elapsed = time - windowStartTime;
+         final double windowRate =
+               (count - windowStartCount) / Math.max(1e-9, elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+         if (elapsed >= TimeUnit.MILLISECONDS.toNanos(RATE_WINDOW_MILLIS)) {
+            rate = windowRate;
+            windowStartTime = time;
+            windowStartCount = count;
+         } else if (Double.isNaN(rate)) {
+            // first window (rate since the metrics were created/reset)
+            return windowRate;
+         }
+         return rate;
+      }
+
+      public synchronized void reset() {
+         windowStartTime = System.nanoTime();
+         windowStartCount = 0;
+         rate = Double.NaN;
+      }
+   }
+}
@@ -0,0 +1,90 @@
+package ch.psi.bsread.metrics;
+
+/**
+ * JMX view of the {@link ReceiverMetrics}.
+ */
+public interface ReceiverMetricsMBean {
+
+   String getAddress();
+
+   long getNrOfMessages();
+
+   long getNrOfBytes();
+
+   /**
+    * Provides the messages per second over the last completed window of at least
+    * {@link ReceiverMetrics#RATE_WINDOW_MILLIS} (or since the metrics were created as long as no
+    * window completed). Reading the rate does not reset it.
+    *
+    * @return double The message rate
+    */
+   double getMessageRate();
+
+   /**
+    * Provides the bytes per second over the last completed window of at least
+    * {@link ReceiverMetrics#RATE_WINDOW_MILLIS} (or since the metrics were created as long as no
+    * window completed). Reading the rate does not reset it.
+    *
+    * @return double The byte rate
+    */
+   double getByteRate();
+
+   long getNrOfFilteredMessages();
+
+   /**
+    * Provides the number of messages that were dropped after some of their frames were received
+    * (their remaining frames were drained, e.g. due to parse failures, misaligned frames or more
+    * values than specified in the DataHeader). Messages skipped since none of their channels is
+    * requested are only counted as filtered.
+    *
+    * @return long The number of drained messages
+    */
+   long getNrOfDrainedMessages();
+
+   long getNrOfMisalignedMessages();
+
+   long getNrOfIncompleteMessages();
+
+   long getNrOfParseFailures();
+
+   long getNrOfReconnects();
+
+   long getNrOfDecompressions();
+
+   double getDecompressionTimeMeanMicros();
+
+   double getDecompressionTime99Micros();
+
+   double getDecompressionTimeMaxMicros();
+
+   /**
+    * Provides the 99th percentile of the latency between the global timestamp and the receipt of
+    * the MainHeader.
+    *
+    * @return double The latency in milliseconds
+    */
+   double getReceivedLatency99Millis();
+
+   double getExtractedLatency99Millis();
+
+   double getSynchronizedLatency99Millis();
+
+   double getDeliveredLatency99Millis();
+
+   /**
+    * Provides the 99th percentile of the latency between the oldest IOC timestamp of a message and
+    * its extraction.
+    *
+    * @return double The latency in milliseconds
+    */
+   double getIocLatency99Millis();
+
+   /**
+    * Provides the percentiles of the latencies of all stages.
+    *
+    * @return String The summary (in nanoseconds)
+    */
+   String getLatencySummary();
+
+   void reset();
+}
@@ -5,6 +5,7 @@ import java.util.NavigableMap;
 import java.util.Spliterator;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
@@ -30,6 +31,7 @@ public class AsyncTransferSpliterator<T> implements Spliterator<StreamSection<T>
 
    private AtomicBoolean isRunning = new AtomicBoolean(true);
    private ConcurrentSkipListMap<Long, CompletableFuture<T>> values = new ConcurrentSkipListMap<>();
+   private ConcurrentHashMap<Long, Runnable> deliveryCallbacks = new ConcurrentHashMap<>();
    private int pastElements;
    private int futureElements;
    private long backpressureSize;
@@ -117,7 +119,23 @@ public class AsyncTransferSpliterator<T> implements Spliterator<StreamSection<T>
     * @param mapper The mapper function
     */
    public <V> void onAvailable(V origValue, Function<V, T> mapper) {
+      this.onAvailable(origValue, mapper, null);
+   }
+
+   /**
+    * A value got available that should be mapped to another value for later processing.
+    * 
+    * @param <V> The JAVA type
+    * @param origValue The original value
+    * @param mapper The mapper function
+    * @param onDelivery Called once the value is delivered as the current value of a
+    *        {@link StreamSection} (might be null)
+    */
+   public <V> void onAvailable(V origValue, Function<V, T> mapper, Runnable onDelivery) {
       long valueIndex = idGenerator.getAndIncrement();
+      if (onDelivery != null && isRunning.get()) {
+         deliveryCallbacks.put(valueIndex, onDelivery);
+      }
 
       // offload mapping work from receiving thread (most likely, mapping will access
       // Values<T>.getValue() which would again onload the value conversion work to the receiver
@@ -160,6 +178,9 @@ public class AsyncTransferSpliterator<T> implements Spliterator<StreamSection<T>
          while (!consumers.isEmpty()) {
             LockSupport.unpark(consumers.poll());
          }
+
+         // values will not be delivered anymore (callbacks might reference resources)
+         deliveryCallbacks.clear();
       }
    }
 
@@ -232,6 +253,13 @@ public class AsyncTransferSpliterator<T> implements Spliterator<StreamSection<T>
          }
          streamSection = new StreamSectionImpl<T>(processIdx, subMap);
 
+         if (!deliveryCallbacks.isEmpty()) {
+            final Runnable onDelivery = deliveryCallbacks.remove(processIdx);
+            if (onDelivery != null) {
+               onDelivery.run();
+            }
+         }
+
          // delete elements that are not needed anymore
          Entry<Long, CompletableFuture<T>> oldestEntry = values.firstEntry();
          while (oldestEntry != null && processIdx - oldestEntry.getKey() > pastElements) {
@@ -28,9 +28,13 @@ import ch.psi.bsread.impl.DirectByteBufferValueConverter;
 import ch.psi.bsread.impl.StandardMessageExtractor;
 import ch.psi.bsread.message.DataHeader;
 import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.metrics.PulseLatencies;
+import ch.psi.bsread.metrics.ReceiverMetrics;
 
 public class MessageStreamer<Value, Mapped> implements Closeable {
    private static final Logger LOGGER = LoggerFactory.getLogger(MessageStreamer.class);
+   private static final int RECEIVE_BATCH_SIZE = 64;
 
    private List<Receiver<Value>> receivers = new ArrayList<>();
 
@@ -303,7 +307,8 @@ public class MessageStreamer<Value, Mapped> implements Closeable {
          syncDataHeaderHandler = null;
       }
 
-      // streamSplit > 1 -> messages might be processed out of order
+      // streamSplit > 1 -> messages might be processed out of order (keep it as small as possible)
+      final int batchSize = streamSplit > 1 ? 1 : RECEIVE_BATCH_SIZE;
       for (int i = 0; i < streamSplit; ++i) {
          final Receiver<Value> receiver = new Receiver<>(receiverConfig);
          receivers.add(receiver);
@@ -315,9 +320,20 @@ public class MessageStreamer<Value, Mapped> implements Closeable {
 
          executorFutures.add(executor.submit(() -> {
             try {
-               Message<Value> message;
-               while ((message = receiver.receive()) != null) {
-                  spliterator.onAvailable(message, messageMapper);
+               final List<Message<Value>> batch = new ArrayList<>(batchSize);
+               // drain what is already queued at once (bookkeeping only once per batch)
+               while (receiver.receive(batch, batchSize, -1) >= 0) {
+                  final ReceiverMetrics metrics = receiver.getReceiverMetrics();
+                  for (final Message<Value> message : batch) {
+                     if (metrics != null) {
+                        final Timestamp globalTimestamp = message.getMainHeader().getGlobalTimestamp();
+                        spliterator.onAvailable(message, messageMapper,
+                              () -> metrics.getLatencies().record(PulseLatencies.Stage.DELIVERED, globalTimestamp));
+                     } else {
+                        spliterator.onAvailable(message, messageMapper);
+                     }
+                  }
+                  batch.clear();
                }
             } catch (ZMQException e) {
                LOGGER.debug("Close streamer since ZMQ stream closed.", e);
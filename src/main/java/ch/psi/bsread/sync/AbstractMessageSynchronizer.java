@@ -1,15 +1,20 @@
 package ch.psi.bsread.sync;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.metrics.PulseLatencies;
+
 public abstract class AbstractMessageSynchronizer<Msg> implements MessageSynchronizer<Msg> {
    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractMessageSynchronizer.class);
    protected static final long INITIAL_LAST_SENT_OR_DELETE_PULSEID = Long.MIN_VALUE;
@@ -19,13 +24,42 @@ public abstract class AbstractMessageSynchronizer<Msg> implements MessageSynchro
 
    protected final AtomicReference<Runnable> onFirstMessage = new AtomicReference<Runnable>();
    protected final Map<String, SyncChannel> channelConfigs;
+   // config and dense index (used by TimedMessages) of a channel
+   protected final Map<String, IndexedChannel> indexedChannels;
+   private final String[] channelNames;
+   // expected channels per pulse-id (bit = channel index)
+   private final PulsePhaseTable phaseTable;
+   private volatile LatencyRecorder<Msg> latencyRecorder;
 
    public AbstractMessageSynchronizer(Collection<? extends SyncChannel> channels) {
       this.channelConfigs = new HashMap<>(channels.size());
+      final Map<String, Integer> channelIndexes = new HashMap<>(channels.size());
       for (SyncChannel channel : channels) {
          // this.channelConfigs.put(channel.getName(), new SyncChannelImpl(channel));
          this.channelConfigs.put(channel.getName(), channel);
+         channelIndexes.putIfAbsent(channel.getName(), channelIndexes.size());
+      }
+
+      this.indexedChannels = new HashMap<>(channelIndexes.size());
+      this.channelNames = new String[channelIndexes.size()];
+      final SyncChannel[] channelsByIndex = new SyncChannel[channelNames.length];
+      for (Map.Entry<String, Integer> entry : channelIndexes.entrySet()) {
+         final SyncChannel channel = channelConfigs.get(entry.getKey());
+         this.indexedChannels.put(entry.getKey(), new IndexedChannel(channel, entry.getValue()));
+         this.channelNames[entry.getValue()] = entry.getKey();
+         channelsByIndex[entry.getValue()] = channel;
       }
+      this.phaseTable = new PulsePhaseTable(Arrays.asList(channelsByIndex));
+   }
+
+   /**
+    * Creates the container for the messages of a pulse.
+    *
+    * @param submitTime The time the first message of the pulse arrived
+    * @return TimedMessages The container
+    */
+   protected TimedMessages<Msg> newTimedMessages(long submitTime) {
+      return new TimedMessages<>(submitTime, channelNames);
    }
 
    @Override
@@ -44,15 +78,48 @@ public abstract class AbstractMessageSynchronizer<Msg> implements MessageSynchro
       }
    }
 
+   /**
+    * Records the latency of pulses at the time they become complete (see
+    * {@link PulseLatencies.Stage#SYNCHRONIZED}).
+    *
+    * @param latencies The latencies (null to stop recording)
+    * @param globalTimestampProvider Provides the global timestamp of a message (e.g.
+    *        msg.getMainHeader().getGlobalTimestamp())
+    */
+   public void setPulseLatencies(PulseLatencies latencies, Function<? super Msg, Timestamp> globalTimestampProvider) {
+      this.latencyRecorder = latencies != null ? new LatencyRecorder<>(latencies, globalTimestampProvider) : null;
+   }
+
+   /**
+    * Records the latency of a pulse once its last expected message was added (i.e. independent of
+    * when a consumer takes the pulse).
+    *
+    * @param msg The added message
+    * @param pulseId The pulse-id of the message
+    * @param nrOfAvailableChannels The number of available channels of the pulse after adding
+    */
+   protected void onMessageAdded(Msg msg, long pulseId, int nrOfAvailableChannels) {
+      final LatencyRecorder<Msg> recorder = latencyRecorder;
+      if (recorder != null && nrOfAvailableChannels == getNumberOfExpectedChannels(pulseId)) {
+         // all messages of a pulse share the global timestamp
+         recorder.latencies.record(PulseLatencies.Stage.SYNCHRONIZED, recorder.globalTimestampProvider.apply(msg));
+      }
+   }
+
    @Override
    public Collection<SyncChannel> getChannels() {
       return Collections.unmodifiableCollection(channelConfigs.values());
    }
 
    protected boolean isPulseIdMissing(long nextGroupPulseId) {
-      return AbstractMessageSynchronizer.isPulseIdMissing(
-            Math.max(this.smallestEverReceivedPulseId.get(), this.lastSentOrDeletedPulseId.get()), nextGroupPulseId,
-            channelConfigs.values());
+      final long lastPulseId =
+            Math.max(this.smallestEverReceivedPulseId.get(), this.lastSentOrDeletedPulseId.get());
+      if (phaseTable.getPeriod() > 0) {
+         // optimization for 100Hz case
+         return nextGroupPulseId - lastPulseId > 1 && phaseTable.isAnySetBetween(lastPulseId, nextGroupPulseId);
+      } else {
+         return AbstractMessageSynchronizer.isPulseIdMissing(lastPulseId, nextGroupPulseId, channelConfigs.values());
+      }
    }
 
    // make this thing testable from outside
@@ -100,14 +167,7 @@ public abstract class AbstractMessageSynchronizer<Msg> implements MessageSynchro
    }
 
    protected int getNumberOfExpectedChannels(long pulseId) {
-      int nrOfChannels = 0;
-
-      for (SyncChannel channelConfig : channelConfigs.values()) {
-         if (this.isRequestedPulseId(pulseId, channelConfig)) {
-            ++nrOfChannels;
-         }
-      }
-      return nrOfChannels;
+      return phaseTable.getCount(pulseId);
    }
 
    protected boolean isRequestedPulseId(long pulseId, SyncChannel channelConfig) {
@@ -120,4 +180,35 @@ public abstract class AbstractMessageSynchronizer<Msg> implements MessageSynchro
     * @return int The buffer size
     */
    public abstract int getBufferSize();
+
+   /**
+    * The config of a channel together with its index in {@link TimedMessages}.
+    */
+   protected static final class IndexedChannel {
+      private final SyncChannel config;
+      private final int index;
+
+      public IndexedChannel(SyncChannel config, int index) {
+         this.config = config;
+         this.index = index;
+      }
+
+      public SyncChannel getConfig() {
+         return config;
+      }
+
+      public int getIndex() {
+         return index;
+      }
+   }
+
+   private static class LatencyRecorder<Msg> {
+      private final PulseLatencies latencies;
+      private final Function<? super Msg, Timestamp> globalTimestampProvider;
+
+      public LatencyRecorder(PulseLatencies latencies, Function<? super Msg, Timestamp> globalTimestampProvider) {
+         this.latencies = latencies;
+         this.globalTimestampProvider = globalTimestampProvider;
+      }
+   }
 }
@@ -1,28 +1,51 @@
 package ch.psi.bsread.sync;
 
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.LockSupport;
 
 public abstract class AbstractMessageSynchronizerLockFree<Msg> extends AbstractMessageSynchronizer<Msg> {
+   // number of checks before a spinning consumer yields
+   private static final int SPIN_TRIES = 100;
+
+   public enum WaitStrategy {
+      /**
+       * Consumers park. A pulse ready for consumption wakes a single consumer, which wakes the next
+       * one if there are more pulses ready.
+       */
+      BLOCKING,
+      /** Consumers yield the processor instead of parking (lower latency, keeps cores busy). */
+      YIELDING,
+      /** Consumers spin for a while and then yield (lowest latency, keeps cores busy). */
+      BUSY_SPIN
+   }
+
    protected final long messageSendTimeoutMillis;
 
    protected final AtomicBoolean isRunning = new AtomicBoolean(true);
    private final AtomicBoolean isUnparking = new AtomicBoolean(false);
    protected final NavigableMap<Long, Boolean> completePulseIds = new ConcurrentSkipListMap<>();
-   // ConcurrentLinkedHashMap would be fairer (load distributed more equally)
-   private final ConcurrentMap<Long, Thread> consumers = new ConcurrentHashMap<>(4, 0.75f, 4);
+   // parked (or about to park) consumers (FIFO, i.e. the longest waiting consumer is woken first)
+   private final Queue<Thread> consumers = new ConcurrentLinkedQueue<>();
+   private volatile WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+   private final LongAdder parks = new LongAdder();
+   private final LongAdder wakeups = new LongAdder();
 
    // map[ pulseId -> map[channel -> value] ]
    protected final ConcurrentSkipListMap<Long, TimedMessages<Msg>> sortedMap = new ConcurrentSkipListMap<>();
+   // true once time eviction is signalled by the EvictionTimer (consumers do not need to wake up
+   // on their own)
+   private volatile boolean usesEvictionTimer;
+   // the EvictionTimer only references the synchronizer weakly
+   private final EvictionTimer.Target evictionTarget = new EvictionTimer.Target(this);
 
    public AbstractMessageSynchronizerLockFree(
          long messageSendTimeoutMillis,
@@ -31,42 +54,112 @@ public abstract class AbstractMessageSynchronizerLockFree<Msg> extends AbstractM
       this.messageSendTimeoutMillis = messageSendTimeoutMillis;
    }
 
+   public WaitStrategy getWaitStrategy() {
+      return waitStrategy;
+   }
+
+   /**
+    * Defines how consumers wait for pulses (see {@link WaitStrategy}).
+    *
+    * @param waitStrategy The WaitStrategy
+    */
+   public void setWaitStrategy(WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+   }
+
+   /**
+    * Provides the number of times consumers parked.
+    *
+    * @return long The number of parks
+    */
+   public long getNumberOfParks() {
+      return parks.sum();
+   }
+
+   /**
+    * Provides the number of times consumers were woken up (by producers or by other consumers
+    * handing over).
+    *
+    * @return long The number of wakeups
+    */
+   public long getNumberOfWakeups() {
+      return wakeups.sum();
+   }
+
    protected void unparkAll() {
       if (isUnparking.compareAndSet(false, true)) {
 
-         Iterator<Entry<Long, Thread>> iter = consumers.entrySet().iterator();
-         while (iter.hasNext()) {
-            LockSupport.unpark(iter.next().getValue());
+         for (final Thread consumer : consumers) {
+            wakeups.increment();
+            LockSupport.unpark(consumer);
          }
 
          isUnparking.set(false);
       }
    }
 
+   /**
+    * Wakes up a single parked consumer. Callers need to make the reason visible first (e.g. by
+    * marking a pulse as complete, see {@link #hasCompletePulseIds()}) so that a consumer that is
+    * about to park does not park.
+    */
+   protected void unparkOne() {
+      final Thread consumer = consumers.poll();
+      if (consumer != null) {
+         wakeups.increment();
+         LockSupport.unpark(consumer);
+      }
+   }
+
    @Override
    public void close() {
       if (isRunning.compareAndSet(true, false)) {
+         if (usesEvictionTimer) {
+            // pending deadlines are not of interest anymore
+            EvictionTimer.getInstance().cancel(evictionTarget);
+         }
          // release all threads that are waiting for new elements to process
          unparkAll();
       }
    }
 
    protected void parkIfNeeded(final Map<String, Msg> msgMap, final boolean reCheck) {
+      if (msgMap != null) {
+         // hand over to the next consumer if there is more to do (the EvictionTimer only signals a
+         // pulse that timed out while it was the first one)
+         if (hasCompletePulseIds() || isFirstMessagesTimedOut()) {
+            unparkOne();
+         }
+         return;
+      }
+
       // there was no message available
-      if (isRunning.get() && msgMap == null && !isUnparking.get() && completePulseIds.isEmpty() && !reCheck) {
+      if (isRunning.get() && !isUnparking.get() && !hasCompletePulseIds() && !reCheck) {
+         final WaitStrategy strategy = waitStrategy;
+         if (WaitStrategy.YIELDING.equals(strategy)) {
+            Thread.yield();
+            return;
+         } else if (WaitStrategy.BUSY_SPIN.equals(strategy)) {
+            for (int i = 0; i < SPIN_TRIES && isRunning.get() && !hasCompletePulseIds(); ++i) {
+               // spin
+            }
+            Thread.yield();
+            return;
+         }
+
          // need to add Thread before isUnparking "barrier" to ensure it gets unparked
          final Thread thread = Thread.currentThread();
-         consumers.put(thread.getId(), thread);
+         consumers.add(thread);
 
          // double check (might save some puts into consumer and parks)
-         if (isRunning.get() && msgMap == null && !isUnparking.get() && completePulseIds.isEmpty() && !reCheck) {
+         if (isRunning.get() && !isUnparking.get() && !hasCompletePulseIds() && !reCheck) {
 
             long parkNanos = -1;
-            if (messageSendTimeoutMillis < Long.MAX_VALUE) {
-               final Entry<Long, TimedMessages<Msg>> entry = this.sortedMap.firstEntry();
-               if (entry != null) {
+            if (messageSendTimeoutMillis < Long.MAX_VALUE && !usesEvictionTimer) {
+               final TimedMessages<Msg> first = getFirstMessages();
+               if (first != null) {
                   // in millis
-                  parkNanos = entry.getValue().getSubmitTime() + messageSendTimeoutMillis - System.currentTimeMillis();
+                  parkNanos = first.getSubmitTime() + messageSendTimeoutMillis - System.currentTimeMillis();
                } else {
                   // in millis
                   parkNanos = messageSendTimeoutMillis;
@@ -77,6 +170,7 @@ public abstract class AbstractMessageSynchronizerLockFree<Msg> extends AbstractM
 
             // make sure consumer wakes up periodically to check for timed-out messages (in case
             // no new messages arrive)
+            parks.increment();
             if (parkNanos >= 0) {
                LockSupport.parkNanos(parkNanos);
             } else {
@@ -84,10 +178,73 @@ public abstract class AbstractMessageSynchronizerLockFree<Msg> extends AbstractM
             }
          }
 
-         consumers.remove(thread.getId());
+         // (already removed if woken up by unparkOne())
+         consumers.remove(thread);
       }
    }
 
+   /**
+    * Determines if the first pulse in the buffer passed its deadline while the EvictionTimer is in
+    * use (i.e. nothing might signal it anymore since its deadline fired while an earlier pulse was
+    * the first one).
+    *
+    * @return boolean true if a consumer should evict the first pulse, false otherwise
+    */
+   private boolean isFirstMessagesTimedOut() {
+      if (usesEvictionTimer) {
+         final TimedMessages<Msg> first = getFirstMessages();
+         return first != null && System.currentTimeMillis() - first.getSubmitTime() >= messageSendTimeoutMillis;
+      }
+      return false;
+   }
+
+   /**
+    * Schedules the time eviction of a newly created pulse (see
+    * {@link #onEvictionTimeout(long, long)}). Consumers then park until they are woken up instead
+    * of waking up for the timeout of the first pulse.
+    *
+    * @param pulseId The pulse-id
+    * @param submitTime The time the pulse was created
+    */
+   protected void scheduleEviction(long pulseId, long submitTime) {
+      if (messageSendTimeoutMillis < Long.MAX_VALUE) {
+         usesEvictionTimer = true;
+         EvictionTimer.getInstance().schedule(evictionTarget, pulseId, submitTime + messageSendTimeoutMillis);
+      }
+   }
+
+   /**
+    * Called by the EvictionTimer once the messageSendTimeoutMillis of a pulse passed. Synchronizers
+    * that use {@link #scheduleEviction(long, long)} need to signal consumers in a way that keeps
+    * them from parking (e.g. by marking the first pulse as complete) if the first pulse in the
+    * buffer timed out (it is not necessarily the pulse that timed out but every pulse has its own
+    * timeout).
+    *
+    * @param pulseId The pulse-id
+    * @param now The current time
+    */
+   protected void onEvictionTimeout(long pulseId, long now) {}
+
+   /**
+    * Determines if there are complete (or evicted) pulse-ids consumers should handle.
+    *
+    * @return boolean true if consumers should not park, false otherwise
+    */
+   protected boolean hasCompletePulseIds() {
+      return !completePulseIds.isEmpty();
+   }
+
+   /**
+    * Provides the messages of the smallest pulse-id in the buffer (used to park consumers until
+    * they time out).
+    *
+    * @return TimedMessages The messages or null if the buffer is empty
+    */
+   protected TimedMessages<Msg> getFirstMessages() {
+      final Entry<Long, TimedMessages<Msg>> entry = this.sortedMap.firstEntry();
+      return entry != null ? entry.getValue() : null;
+   }
+
    protected void clearHead(NavigableMap<Long, ?> map, Long pulseId, boolean inclusive) {
       map.headMap(pulseId, inclusive).clear();
 
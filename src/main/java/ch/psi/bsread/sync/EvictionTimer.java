@@ -0,0 +1,156 @@
+package ch.psi.bsread.sync;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.psi.bsread.common.helper.TimingWheel;
+
+/**
+ * Fires the time eviction (messageSendTimeoutMillis) of pulses of lock-free synchronizers. A single
+ * daemon thread keeps the deadlines of all synchronizers in a {@link TimingWheel} (i.e. the cost
+ * does not depend on the number of pulses in the buffers) and notifies a synchronizer once a
+ * deadline passed. The thread parks until the next deadline (or while nothing is scheduled).
+ * <p>
+ * Synchronizers are only referenced weakly (see {@link Target}) and their deadlines are dropped
+ * once they are cancelled (e.g. on close).
+ */
+class EvictionTimer implements Runnable {
+   private static final Logger LOGGER = LoggerFactory.getLogger(EvictionTimer.class);
+   public static final long TICK_MILLIS = 1;
+   private static final int WHEEL_SIZE = 1024;
+   // the timer thread is running (i.e. will see newly scheduled evictions)
+   private static final long RUNNING = Long.MIN_VALUE;
+
+   private static class Holder {
+      private static final EvictionTimer INSTANCE = new EvictionTimer();
+   }
+
+   private final Queue<Eviction> pending = new ConcurrentLinkedQueue<>();
+   private final AtomicBoolean hasCancelled = new AtomicBoolean();
+   private final Thread thread;
+   // the time the timer thread parks until (RUNNING while it is not parked)
+   private volatile long wakeUpTime = RUNNING;
+   // only written by the timer thread
+   private volatile int nrOfScheduled;
+
+   private EvictionTimer() {
+      thread = new Thread(this, "MessageSynchronizerEvictionTimer");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   public static EvictionTimer getInstance() {
+      return Holder.INSTANCE;
+   }
+
+   /**
+    * Schedules the time eviction of a pulse.
+    *
+    * @param target The synchronizer
+    * @param pulseId The pulse-id
+    * @param deadline The time (in millis) the pulse times out
+    */
+   public void schedule(Target target, long pulseId, long deadline) {
+      pending.add(new Eviction(target, pulseId, deadline));
+      // only wake up if the deadline is earlier than the one the thread waits for
+      if (deadline < wakeUpTime) {
+         LockSupport.unpark(thread);
+      }
+   }
+
+   /**
+    * Drops the scheduled evictions of a synchronizer (it will not be notified anymore).
+    *
+    * @param target The synchronizer
+    */
+   public void cancel(Target target) {
+      target.clear();
+      hasCancelled.set(true);
+      LockSupport.unpark(thread);
+   }
+
+   /**
+    * Provides the number of scheduled evictions (mainly for testing purposes).
+    *
+    * @return int The number of evictions
+    */
+   int getNrOfScheduled() {
+      return nrOfScheduled + pending.size();
+   }
+
+   @Override
+   public void run() {
+      final TimingWheel<Eviction> timingWheel =
+            new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+
+      while (true) {
+         if (hasCancelled.compareAndSet(true, false)) {
+            timingWheel.cancelIf((eviction) -> eviction.target.get() == null);
+         }
+
+         Eviction eviction;
+         while ((eviction = pending.poll()) != null) {
+            if (eviction.target.get() != null) {
+               timingWheel.schedule(eviction, eviction.deadline);
+            }
+         }
+
+         final long now = System.currentTimeMillis();
+         timingWheel.expire(now, (expired) -> {
+            final AbstractMessageSynchronizerLockFree<?> synchronizer = expired.target.get();
+            if (synchronizer != null) {
+               try {
+                  synchronizer.onEvictionTimeout(expired.pulseId, now);
+               } catch (Exception e) {
+                  LOGGER.warn("Could not evict pulse '{}'.", expired.pulseId, e);
+               }
+            }
+         });
+         nrOfScheduled = timingWheel.size();
+
+         final long nextExpiration = timingWheel.nextExpiration();
+         wakeUpTime = nextExpiration;
+         // double check (schedule() and cancel() might not have seen wakeUpTime)
+         if (pending.isEmpty() && !hasCancelled.get()) {
+            if (nextExpiration == Long.MAX_VALUE) {
+               LockSupport.park(this);
+            } else {
+               final long waitMillis = nextExpiration - System.currentTimeMillis();
+               if (waitMillis > 0) {
+                  LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(waitMillis));
+               }
+            }
+         }
+         wakeUpTime = RUNNING;
+      }
+   }
+
+   /**
+    * Weak reference to a synchronizer (shared by all its scheduled evictions).
+    */
+   static class Target extends WeakReference<AbstractMessageSynchronizerLockFree<?>> {
+
+      public Target(AbstractMessageSynchronizerLockFree<?> synchronizer) {
+         super(synchronizer);
+      }
+   }
+
+   private static class Eviction {
+      private final Target target;
+      private final long pulseId;
+      private final long deadline;
+
+      public Eviction(Target target, long pulseId, long deadline) {
+         this.target = target;
+         this.pulseId = pulseId;
+         this.deadline = deadline;
+      }
+   }
+}
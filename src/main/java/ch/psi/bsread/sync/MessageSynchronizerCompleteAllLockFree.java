@@ -80,26 +80,27 @@ public class MessageSynchronizerCompleteAllLockFree<Msg> extends AbstractMessage
          final long currentTime = System.currentTimeMillis();
 
          if (pulseId > lastPulseId) {
-            final SyncChannel channelConfig = this.channelConfigs.get(channelName);
-            if (channelConfig != null) {
+            // one lookup for the config and the index of the channel
+            final IndexedChannel channel = this.indexedChannels.get(channelName);
+            if (channel != null) {
+               final SyncChannel channelConfig = channel.getConfig();
                // check if message is in the requested period
                if (this.isRequestedPulseId(pulseId, channelConfig)) {
 
-                  // Create ConcurrentHashMap using a functional interface
-                  // A ConcurrentMap is needed due to later put (addMessage is
-                  // called concurrently when subscribed to more than one
-                  // ITopic.
-                  final Map<String, Msg> pulseIdMap = this.sortedMap.computeIfAbsent(
+                  // addMessage is called concurrently when subscribed to more than one
+                  // ITopic (TimedMessages handles concurrent puts).
+                  final int nrOfAvailableChannels = this.sortedMap.computeIfAbsent(
                         pulseId,
-                        (k) -> new TimedMessages<>(
-                              currentTime,
-                              channelConfigs.size()))
-                        .getMessagesMap();
-                  pulseIdMap.put(channelName, msg);
+                        (k) -> {
+                           scheduleEviction(k, currentTime);
+                           return newTimedMessages(currentTime);
+                        })
+                        .put(channel.getIndex(), msg);
+                  onMessageAdded(msg, pulseId, nrOfAvailableChannels);
 
                   if (lastPulseId == INITIAL_LAST_SENT_OR_DELETE_PULSEID
                         && sendFirstComplete
-                        && (pulseIdMap.size() >= this.getNumberOfExpectedChannels(pulseId))
+                        && (nrOfAvailableChannels >= this.getNumberOfExpectedChannels(pulseId))
                         || (pulseId <= this.lastSentOrDeletedPulseId.get())) {
                      // several threads might enter this code block but it is
                      // important that they cleanup
@@ -127,24 +128,16 @@ public class MessageSynchronizerCompleteAllLockFree<Msg> extends AbstractMessage
                   pulseId, channelName, lastPulseId);
          }
 
-         this.checkForCompleteMessages(currentTime);
+         this.checkForCompleteMessages();
       } else {
          LOGGER.warn("'{}' stopped running.", this.getClass());
       }
    }
 
-   private void checkForCompleteMessages(final long currentTime) {
+   private void checkForCompleteMessages() {
       Entry<Long, TimedMessages<Msg>> entry = this.sortedMap.firstEntry();
 
-      // Time eviction: Handle all messages that are older than specified
-      // timeout
-      if (messageSendTimeoutMillis < Long.MAX_VALUE) {
-         if (entry != null && currentTime - entry.getValue().getSubmitTime() >= messageSendTimeoutMillis) {
-            onComplete(entry.getKey());
-            // no need to check further as consumer will take over
-            return;
-         }
-      }
+      // Time eviction: signalled by the EvictionTimer (see onEvictionTimeout())
 
       // Size eviction: Handle all messages that exceed the messages to keep
       if (maxNumberOfMessagesToKeep < Integer.MAX_VALUE) {
@@ -173,10 +166,20 @@ public class MessageSynchronizerCompleteAllLockFree<Msg> extends AbstractMessage
       }
    }
 
+   @Override
+   protected void onEvictionTimeout(long pulseId, long now) {
+      // Time eviction: Handle all messages that are older than specified
+      // timeout
+      final Entry<Long, TimedMessages<Msg>> entry = this.sortedMap.firstEntry();
+      if (isRunning.get() && entry != null && now - entry.getValue().getSubmitTime() >= messageSendTimeoutMillis) {
+         onComplete(entry.getKey());
+      }
+   }
+
    private void onComplete(final Long pulseId) {
       if (completePulseIds.putIfAbsent(pulseId, Boolean.TRUE) == null) {
-         // give all consumers a chance
-         unparkAll();
+         // one consumer is enough (it hands over to the next if there is more)
+         unparkOne();
       }
    }
 
@@ -201,36 +204,43 @@ public class MessageSynchronizerCompleteAllLockFree<Msg> extends AbstractMessage
                         && this.sortedMap.size() > this.maxNumberOfMessagesToKeep)) {
                // potentially incomplete message
                //
-               this.updateLastSentOrDeletedPulseId(pulseId);
-               // Remove current pulse-id (might be accessed by several consumers -> one will
-               // win)
-               final TimedMessages<Msg> messages = this.sortedMap.remove(entry.getKey());
-               // in case there was another consumer Thread that was also checking this
-               // pulse and was faster
-               if (messages != null) {
-                  clearHead(completePulseIds, pulseId, true);
-                  clearHead(sortedMap, pulseId, true);
+               // an older pulse might have been added in the meantime (evicting the later pulse
+               // would drop it)
+               final Entry<Long, TimedMessages<Msg>> firstEntry = this.sortedMap.firstEntry();
+               if (firstEntry == null || firstEntry.getKey() != pulseId) {
+                  reCheck = true;
+               } else {
+                  this.updateLastSentOrDeletedPulseId(pulseId);
+                  // Remove current pulse-id (might be accessed by several consumers -> one will
+                  // win)
+                  final TimedMessages<Msg> messages = this.sortedMap.remove(entry.getKey());
+                  // in case there was another consumer Thread that was also checking this
+                  // pulse and was faster
+                  if (messages != null) {
+                     clearHead(completePulseIds, pulseId, true);
+                     clearHead(sortedMap, pulseId, true);
 
-                  // check if message is complete
-                  if (entry.getValue().availableChannels() >= nrOfExpectedChannels) {
-                     // we send complete messages by definition
-                     LOGGER.debug("Send complete pulse '{}' due to eviction.", entry.getKey());
-                     msgMap = entry.getValue().getMessagesMap();
-                  } else if (this.sendIncompleteMessages) {
-                     // the user also wants incomplete messages
-                     LOGGER.debug("Send incomplete pulse '{}' due to eviction.", entry.getKey());
-                     msgMap = entry.getValue().getMessagesMap();
+                     // check if message is complete
+                     if (entry.getValue().availableChannels() >= nrOfExpectedChannels) {
+                        // we send complete messages by definition
+                        LOGGER.debug("Send complete pulse '{}' due to eviction.", entry.getKey());
+                        msgMap = entry.getValue().getMessagesMap();
+                     } else if (this.sendIncompleteMessages) {
+                        // the user also wants incomplete messages
+                        LOGGER.debug("Send incomplete pulse '{}' due to eviction.", entry.getKey());
+                        msgMap = entry.getValue().getMessagesMap();
+                     } else {
+                        LOGGER.debug(
+                              "Drop messages for pulse '{}' due to eviction. Requested number of channels '{}' but got only '{}'.",
+                              entry.getKey(), nrOfExpectedChannels, entry.getValue().availableChannels());
+                        // there might be more messages available ready for send
+                        reCheck = true;
+                     }
                   } else {
-                     LOGGER.debug(
-                           "Drop messages for pulse '{}' due to eviction. Requested number of channels '{}' but got only '{}'.",
-                           entry.getKey(), nrOfExpectedChannels, entry.getValue().getMessagesMap().size());
-                     // there might be more messages available ready for send
-                     reCheck = true;
+                     // LOGGER.debug("Another consumer thread is handling message of pulse '{}'. Let it
+                     // do the work.",
+                     // pulseId);
                   }
-               } else {
-                  // LOGGER.debug("Another consumer thread is handling message of pulse '{}'. Let it
-                  // do the work.",
-                  // pulseId);
                }
             } else if (entry.getValue().availableChannels() >= nrOfExpectedChannels) {
                // potentially complete message
@@ -100,26 +100,24 @@ public class MessageSynchronizerCompleteAllLocking<Msg> extends AbstractMessageS
          final long currentTime = System.currentTimeMillis();
 
          if (pulseId > lastPulseId) {
-            final SyncChannel channelConfig = this.channelConfigs.get(channelName);
-            if (channelConfig != null) {
+            // one lookup for the config and the index of the channel
+            final IndexedChannel channel = this.indexedChannels.get(channelName);
+            if (channel != null) {
+               final SyncChannel channelConfig = channel.getConfig();
                // check if message is in the requested period
                if (this.isRequestedPulseId(pulseId, channelConfig)) {
 
-                  // Create ConcurrentHashMap using a functional interface
-                  // A ConcurrentMap is needed due to later put (addMessage is
-                  // called concurrently when subscribed to more than one
-                  // ITopic.
-                  final Map<String, Msg> pulseIdMap = this.sortedMap.computeIfAbsent(
+                  // addMessage is called concurrently when subscribed to more than one
+                  // ITopic (TimedMessages handles concurrent puts).
+                  final int nrOfAvailableChannels = this.sortedMap.computeIfAbsent(
                         pulseId,
-                        (k) -> new TimedMessages<>(
-                              currentTime,
-                              channelConfigs.size()))
-                        .getMessagesMap();
-                  pulseIdMap.put(channelName, msg);
+                        (k) -> newTimedMessages(currentTime))
+                        .put(channel.getIndex(), msg);
+                  onMessageAdded(msg, pulseId, nrOfAvailableChannels);
 
                   if (lastPulseId == INITIAL_LAST_SENT_OR_DELETE_PULSEID
                         && sendFirstComplete
-                        && (pulseIdMap.size() >= this.getNumberOfExpectedChannels(pulseId))
+                        && (nrOfAvailableChannels >= this.getNumberOfExpectedChannels(pulseId))
                         || (pulseId <= this.lastSentOrDeletedPulseId.get())) {
                      // several threads might enter this code block but it is
                      // important that they
@@ -266,7 +264,7 @@ public class MessageSynchronizerCompleteAllLocking<Msg> extends AbstractMessageS
             } else {
                LOGGER.debug(
                      "Drop messages for pulse '{}' due to size eviction. Requested number of channels '{}' but got only '{}'.",
-                     entry.getKey(), numberOfChannels, entry.getValue().getMessagesMap().size());
+                     entry.getKey(), numberOfChannels, entry.getValue().availableChannels());
                this.updateLastSentOrDeletedPulseId(entry.getKey());
             }
             // keep going
@@ -0,0 +1,369 @@
+package ch.psi.bsread.sync;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Same contract and eviction semantics as {@link MessageSynchronizerCompleteAllLockFree} but
+ * pulses are kept in a {@link PulseRing} instead of a ConcurrentSkipListMap (pulse-ids are dense
+ * and monotonic, i.e. insertion, lookup and removal of the head are array accesses and the buffer
+ * size is a counter). Instead of a map of complete pulse-ids, the biggest pulse-id consumers were
+ * woken up for is kept.
+ * <p>
+ * Pulse-ids need to stay within the capacity of the ring. Messages of pulse-ids that fall out of
+ * the ring (e.g. because consumers do not keep up) are dropped.
+ */
+public class MessageSynchronizerCompleteAllRing<Msg> extends AbstractMessageSynchronizerLockFree<Msg> {
+   private static final Logger LOGGER = LoggerFactory.getLogger(MessageSynchronizerCompleteAllRing.class);
+
+   private final int maxNumberOfMessagesToKeep;
+   private final boolean sendIncompleteMessages;
+
+   private final Function<Msg, String> channelNameProvider;
+   private final ToLongFunction<Msg> pulseIdProvider;
+   private final boolean sendFirstComplete;
+
+   private final PulseRing<TimedMessages<Msg>> ring;
+   // the biggest pulse-id consumers were woken up for
+   private final AtomicLong completePulseId = new AtomicLong(INITIAL_LAST_SENT_OR_DELETE_PULSEID);
+
+   public MessageSynchronizerCompleteAllRing(
+         int maxNumberOfMessagesToKeep,
+         boolean sendIncompleteMessages,
+         boolean sendFirstComplete,
+         Collection<? extends SyncChannel> channels,
+         Function<Msg, String> channelNameProvider,
+         ToLongFunction<Msg> pulseIdProvider) {
+      this(maxNumberOfMessagesToKeep,
+            Long.MAX_VALUE,
+            sendIncompleteMessages,
+            sendFirstComplete,
+            channels,
+            channelNameProvider,
+            pulseIdProvider);
+   }
+
+   public MessageSynchronizerCompleteAllRing(
+         long messageSendTimeoutMillis,
+         boolean sendIncompleteMessages,
+         boolean sendFirstComplete,
+         Collection<? extends SyncChannel> channels,
+         Function<Msg, String> channelNameProvider,
+         ToLongFunction<Msg> pulseIdProvider) {
+      this(Integer.MAX_VALUE,
+            messageSendTimeoutMillis,
+            sendIncompleteMessages,
+            sendFirstComplete,
+            channels,
+            channelNameProvider,
+            pulseIdProvider);
+   }
+
+   public MessageSynchronizerCompleteAllRing(
+         int maxNumberOfMessagesToKeep,
+         long messageSendTimeoutMillis,
+         boolean sendIncompleteMessages,
+         boolean sendFirstComplete,
+         Collection<? extends SyncChannel> channels,
+         Function<Msg, String> channelNameProvider,
+         ToLongFunction<Msg> pulseIdProvider) {
+      this(maxNumberOfMessagesToKeep,
+            messageSendTimeoutMillis,
+            sendIncompleteMessages,
+            sendFirstComplete,
+            channels,
+            channelNameProvider,
+            pulseIdProvider,
+            getDefaultCapacity(maxNumberOfMessagesToKeep));
+   }
+
+   /**
+    * Constructor
+    *
+    * @param maxNumberOfMessagesToKeep The max number of pulses to keep (size eviction)
+    * @param messageSendTimeoutMillis The max time to wait for missing messages (time eviction)
+    * @param sendIncompleteMessages Defines if incomplete pulses are sent on eviction
+    * @param sendFirstComplete Defines if everything before the first complete pulse is dropped
+    * @param channels The channels
+    * @param channelNameProvider Provides the channel name of a message
+    * @param pulseIdProvider Provides the pulse-id of a message
+    * @param ringCapacity The number of pulse-ids the ring can hold (rounded up to a power of two)
+    */
+   public MessageSynchronizerCompleteAllRing(
+         int maxNumberOfMessagesToKeep,
+         long messageSendTimeoutMillis,
+         boolean sendIncompleteMessages,
+         boolean sendFirstComplete,
+         Collection<? extends SyncChannel> channels,
+         Function<Msg, String> channelNameProvider,
+         ToLongFunction<Msg> pulseIdProvider,
+         int ringCapacity) {
+      super(messageSendTimeoutMillis, channels);
+      this.maxNumberOfMessagesToKeep = maxNumberOfMessagesToKeep;
+      this.sendIncompleteMessages = sendIncompleteMessages;
+      this.channelNameProvider = channelNameProvider;
+      this.pulseIdProvider = pulseIdProvider;
+      this.sendFirstComplete = sendFirstComplete;
+      this.ring = new PulseRing<>(ringCapacity);
+   }
+
+   private static int getDefaultCapacity(int maxNumberOfMessagesToKeep) {
+      if (maxNumberOfMessagesToKeep < Integer.MAX_VALUE) {
+         // leave room for channels with modulo > 1 and for pulses added while evicting
+         return (int) Math.min(1 << 30, Math.max(PulseRing.DEFAULT_CAPACITY, 2L * maxNumberOfMessagesToKeep));
+      } else {
+         return PulseRing.DEFAULT_CAPACITY;
+      }
+   }
+
+   @Override
+   public void addMessage(Msg msg) {
+      if (isRunning.get()) {
+         onFirstMessage();
+
+         final long pulseId = pulseIdProvider.applyAsLong(msg);
+         final String channelName = channelNameProvider.apply(msg);
+         this.updateSmallestEverReceivedPulseId(pulseId);
+         final long lastPulseId = lastSentOrDeletedPulseId.get();
+         final long currentTime = System.currentTimeMillis();
+
+         if (pulseId > lastPulseId) {
+            // one lookup for the config and the index of the channel
+            final IndexedChannel channel = this.indexedChannels.get(channelName);
+            if (channel != null) {
+               final SyncChannel channelConfig = channel.getConfig();
+               // check if message is in the requested period
+               if (this.isRequestedPulseId(pulseId, channelConfig)) {
+                  final TimedMessages<Msg> timedMessages = getOrCreate(pulseId, currentTime);
+                  if (timedMessages != null) {
+                     final int nrOfAvailableChannels = timedMessages.put(channel.getIndex(), msg);
+                     onMessageAdded(msg, pulseId, nrOfAvailableChannels);
+
+                     if (lastPulseId == INITIAL_LAST_SENT_OR_DELETE_PULSEID
+                           && sendFirstComplete
+                           && (nrOfAvailableChannels >= this.getNumberOfExpectedChannels(pulseId))
+                           || (pulseId <= this.lastSentOrDeletedPulseId.get())) {
+                        // several threads might enter this code block but it is
+                        // important that they cleanup
+                        this.updateLastSentOrDeletedPulseId(pulseId - 1);
+                        long firstPulseId = this.ring.firstPulseId();
+                        while (firstPulseId != Long.MIN_VALUE && firstPulseId < pulseId) {
+                           LOGGER.info(
+                                 "Drop message of pulse '{}' from channel '{}' as there is a later complete start.",
+                                 firstPulseId, channelName);
+                           this.ring.clearHead(firstPulseId, true);
+                           firstPulseId = this.ring.firstPulseId();
+                        }
+                     }
+                  } else {
+                     LOGGER.debug(
+                           "Drop message of pulse '{}' from channel '{}' since it is older than the pulses in the ring.",
+                           pulseId, channelName);
+                  }
+               } else {
+                  LOGGER.debug(
+                        "Drop message of pulse '{}' from channel '{}' that does not match modulo/offset '{}'.",
+                        pulseId, channelName, channelConfig);
+               }
+            } else {
+               LOGGER.debug("Received message from channel '{}' but that channel is not part of the configuration.",
+                     channelName);
+            }
+         } else {
+            LOGGER.debug(
+                  "Drop message of pulse '{}' from channel '{}' since it is smaller than the last send/deleted pulse '{}'",
+                  pulseId, channelName, lastPulseId);
+         }
+
+         this.checkForCompleteMessages();
+      } else {
+         LOGGER.warn("'{}' stopped running.", this.getClass());
+      }
+   }
+
+   private TimedMessages<Msg> getOrCreate(final long pulseId, final long currentTime) {
+      final LongFunction<TimedMessages<Msg>> creator = (k) -> {
+         scheduleEviction(k, currentTime);
+         return newTimedMessages(currentTime);
+      };
+      TimedMessages<Msg> timedMessages = this.ring.computeIfAbsent(pulseId, creator);
+
+      final long lastToDrop = pulseId - this.ring.getCapacity();
+      if (timedMessages == null && lastToDrop > this.lastSentOrDeletedPulseId.get()) {
+         // the slot is occupied by a pulse that is at least one ring capacity older
+         LOGGER.info("Drop messages of pulses up to '{}' since they do not fit into the ring of '{}' pulses.",
+               lastToDrop, this.ring.getCapacity());
+         this.updateLastSentOrDeletedPulseId(lastToDrop);
+         this.ring.clearHead(lastToDrop, true);
+         timedMessages = this.ring.computeIfAbsent(pulseId, creator);
+      }
+      return timedMessages;
+   }
+
+   private void checkForCompleteMessages() {
+      final long pulseId = this.ring.firstPulseId();
+      final TimedMessages<Msg> timedMessages = pulseId != Long.MIN_VALUE ? this.ring.get(pulseId) : null;
+      if (timedMessages == null) {
+         return;
+      }
+
+      // Time eviction: signalled by the EvictionTimer (see onEvictionTimeout())
+
+      // Size eviction: Handle all messages that exceed the messages to keep
+      if (maxNumberOfMessagesToKeep < Integer.MAX_VALUE) {
+         if (this.ring.size() > this.maxNumberOfMessagesToKeep) {
+            onComplete(pulseId);
+            // no need to check further as consumer will take over
+            return;
+         }
+      }
+
+      // handle all complete messages
+      if (timedMessages.availableChannels() >= this.getNumberOfExpectedChannels(pulseId)) {
+         // make sure there is no pulse missing (i.e. there should be a pulse
+         // before the currently handled one but we have not yet received a
+         // message for this pulse
+         if (!this.isPulseIdMissing(pulseId)) {
+            onComplete(pulseId);
+            // no need to check further as consumer will take over
+            return;
+         }
+      }
+   }
+
+   @Override
+   protected void onEvictionTimeout(long timedOutPulseId, long now) {
+      // Time eviction: Handle all messages that are older than specified
+      // timeout
+      final long pulseId = this.ring.firstPulseId();
+      final TimedMessages<Msg> timedMessages = pulseId != Long.MIN_VALUE ? this.ring.get(pulseId) : null;
+      if (isRunning.get() && timedMessages != null
+            && now - timedMessages.getSubmitTime() >= messageSendTimeoutMillis) {
+         onComplete(pulseId);
+      }
+   }
+
+   private void onComplete(final long pulseId) {
+      long current = completePulseId.get();
+      while (pulseId > current) {
+         if (completePulseId.compareAndSet(current, pulseId)) {
+            // one consumer is enough (it hands over to the next if there is more)
+            unparkOne();
+            return;
+         }
+         current = completePulseId.get();
+      }
+   }
+
+   @Override
+   protected boolean hasCompletePulseIds() {
+      return completePulseId.get() > lastSentOrDeletedPulseId.get();
+   }
+
+   @Override
+   protected TimedMessages<Msg> getFirstMessages() {
+      return this.ring.first();
+   }
+
+   @Override
+   public Map<String, Msg> nextMessage() {
+      Map<String, Msg> msgMap = null;
+
+      while (isRunning.get() && msgMap == null) {
+         final long pulseId = this.ring.firstPulseId();
+         final TimedMessages<Msg> timedMessages = pulseId != Long.MIN_VALUE ? this.ring.get(pulseId) : null;
+         final long currentTime = System.currentTimeMillis();
+         // pulse was removed concurrently
+         boolean reCheck = pulseId != Long.MIN_VALUE && timedMessages == null;
+
+         if (timedMessages != null) {
+            final int nrOfExpectedChannels = this.getNumberOfExpectedChannels(pulseId);
+
+            // check time and size eviction
+            if ((messageSendTimeoutMillis < Long.MAX_VALUE
+                  && currentTime - timedMessages.getSubmitTime() >= messageSendTimeoutMillis)
+                  || (maxNumberOfMessagesToKeep < Integer.MAX_VALUE
+                        && this.ring.size() > this.maxNumberOfMessagesToKeep)) {
+               // potentially incomplete message
+               //
+               // an older pulse might have been added in the meantime (evicting the later pulse
+               // would drop it)
+               if (pulseId != this.ring.firstPulseId()) {
+                  reCheck = true;
+               } else {
+                  this.updateLastSentOrDeletedPulseId(pulseId);
+                  // Remove current pulse-id (might be accessed by several consumers -> one will
+                  // win)
+                  final TimedMessages<Msg> messages = this.ring.remove(pulseId);
+                  // in case there was another consumer Thread that was also checking this
+                  // pulse and was faster
+                  if (messages != null) {
+                     this.ring.clearHead(pulseId, true);
+
+                     // check if message is complete
+                     if (messages.availableChannels() >= nrOfExpectedChannels) {
+                        // we send complete messages by definition
+                        LOGGER.debug("Send complete pulse '{}' due to eviction.", pulseId);
+                        msgMap = messages.getMessagesMap();
+                     } else if (this.sendIncompleteMessages) {
+                        // the user also wants incomplete messages
+                        LOGGER.debug("Send incomplete pulse '{}' due to eviction.", pulseId);
+                        msgMap = messages.getMessagesMap();
+                     } else {
+                        LOGGER.debug(
+                              "Drop messages for pulse '{}' due to eviction. Requested number of channels '{}' but got only '{}'.",
+                              pulseId, nrOfExpectedChannels, messages.availableChannels());
+                        // there might be more messages available ready for send
+                        reCheck = true;
+                     }
+                  }
+               }
+            } else if (timedMessages.availableChannels() >= nrOfExpectedChannels) {
+               // potentially complete message
+               //
+               if (!this.isPulseIdMissing(pulseId)) {
+                  // in start phase, it can happen that a later pulse is complete before the very
+                  // first was added
+                  if (pulseId == this.ring.firstPulseId()) {
+                     // Remove current pulse-id (might be accessed by several consumers -> one will
+                     // win)
+                     this.updateLastSentOrDeletedPulseId(pulseId);
+                     final TimedMessages<Msg> messages = this.ring.remove(pulseId);
+                     // in case there was another consumer Thread that was also checking this
+                     // pulse and was faster
+                     if (messages != null) {
+                        this.ring.clearHead(pulseId, true);
+
+                        msgMap = messages.getMessagesMap();
+                     }
+                  } else {
+                     reCheck = true;
+                  }
+               }
+            }
+         }
+
+         // if there was no message available
+         parkIfNeeded(msgMap, reCheck);
+      }
+
+      return msgMap;
+   }
+
+   /**
+    * Get size of the current pulseId buffer. This function is mainly for testing purposes.
+    *
+    * @return int The buffer size
+    */
+   @Override
+   public int getBufferSize() {
+      return ring.size();
+   }
+}
@@ -84,22 +84,20 @@ public class MessageSynchronizerCompleteLatestLockFree<Msg> extends AbstractMess
          final long currentTime = System.currentTimeMillis();
 
          if (pulseId > lastPulseId) {
-            final SyncChannel channelConfig = this.channelConfigs.get(channelName);
-            if (channelConfig != null) {
+            // one lookup for the config and the index of the channel
+            final IndexedChannel channel = this.indexedChannels.get(channelName);
+            if (channel != null) {
+               final SyncChannel channelConfig = channel.getConfig();
                // check if message is in the requested period
                if (this.isRequestedPulseId(pulseId, channelConfig)) {
 
-                  // Create ConcurrentHashMap using a functional interface
-                  // A ConcurrentMap is needed due to later put (addMessage is
-                  // called concurrently when subscribed to more than one
-                  // ITopic.
-                  final Map<String, Msg> pulseIdMap = this.sortedMap.computeIfAbsent(
+                  // addMessage is called concurrently when subscribed to more than one
+                  // ITopic (TimedMessages handles concurrent puts).
+                  final int nrOfAvailableChannels = this.sortedMap.computeIfAbsent(
                         pulseId,
-                        (k) -> new TimedMessages<>(
-                              currentTime,
-                              channelConfigs.size()))
-                        .getMessagesMap();
-                  pulseIdMap.put(channelName, msg);
+                        (k) -> newTimedMessages(currentTime))
+                        .put(channel.getIndex(), msg);
+                  onMessageAdded(msg, pulseId, nrOfAvailableChannels);
                } else {
                   LOGGER.debug(
                         "Drop message of pulse '{}' from channel '{}' that does not match modulo/offset '{}'",
@@ -227,7 +225,7 @@ public class MessageSynchronizerCompleteLatestLockFree<Msg> extends AbstractMess
                   } else {
                      LOGGER.debug(
                            "Drop messages for pulse '{}' due to eviction. Requested number of channels '{}' but got only '{}'.",
-                           entry.getKey(), nrOfExpectedChannels, entry.getValue().getMessagesMap().size());
+                           entry.getKey(), nrOfExpectedChannels, entry.getValue().availableChannels());
                      // there might be more messages available ready for send
                      reCheck = true;
                   }
@@ -261,7 +259,7 @@ public class MessageSynchronizerCompleteLatestLockFree<Msg> extends AbstractMess
                      } else {
                         LOGGER.debug(
                               "Drop messages for pulse '{}'. Requested number of channels '{}' but got only '{}'.",
-                              entry.getKey(), nrOfExpectedChannels, entry.getValue().getMessagesMap().size());
+                              entry.getKey(), nrOfExpectedChannels, entry.getValue().availableChannels());
                         reCheck = true;
                      }
                   } else {
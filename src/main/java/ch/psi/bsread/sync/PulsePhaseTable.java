@@ -0,0 +1,268 @@
+package ch.psi.bsread.sync;
+
+import java.util.List;
+
+/**
+ * Precomputes which channels (modulo/offset pairs) send data for a pulse-id. The pattern of a set
+ * of channels repeats after the least common multiple (LCM) of their moduli. As long as the
+ * resulting table stays small, the expected channels of a pulse-id are stored as a bitmask per
+ * phase (pulse-id modulo LCM) and a lookup is an array access and a bit test. Otherwise (or for
+ * illegal moduli), the modulo/offset pairs are evaluated and the counts of the most recent
+ * pulse-ids are cached (pulse-ids are dense, i.e. the same pulse-id is usually queried several
+ * times).
+ * <p>
+ * Several channels can be mapped to the same bit (a bit is set if any of its channels sends data
+ * for the pulse-id). Instances can be shared between threads.
+ */
+public class PulsePhaseTable {
+   // max number of longs of the table (512KB)
+   public static final int DEFAULT_MAX_TABLE_SIZE = 1 << 16;
+   // number of cached pulse-ids if not tabulated (power of two)
+   private static final int CACHE_SIZE = 1 << 10;
+
+   private final int nrOfBits;
+   private final int nrOfWords;
+   // channel configuration (used when not tabulated)
+   private final int[] moduli;
+   private final int[] offsets;
+   private final int[][] channelsOfBit;
+   // period of the table (LCM of the moduli) or 0 if not tabulated
+   private final int period;
+   private final long[] masks;
+   private final int[] counts;
+   // true if any bit is set for any phase
+   private final boolean anySet;
+   // slot per pulse-id & (CACHE_SIZE - 1) (entries are immutable, i.e. races are benign)
+   private final CachedCount[] cache;
+
+   /**
+    * Constructor (one bit per channel)
+    *
+    * @param channels The channels
+    */
+   public PulsePhaseTable(List<? extends SyncChannel> channels) {
+      this(channels, null, channels.size(), DEFAULT_MAX_TABLE_SIZE);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param channels The channels
+    * @param bits The bit of each channel (null means one bit per channel)
+    * @param nrOfBits The number of bits
+    * @param maxTableSize The max number of longs the table can use before falling back to
+    *        evaluating the channels for every pulse-id
+    */
+   public PulsePhaseTable(List<? extends SyncChannel> channels, int[] bits, int nrOfBits, int maxTableSize) {
+      this.nrOfBits = nrOfBits;
+      this.nrOfWords = Math.max(1, (nrOfBits + Long.SIZE - 1) / Long.SIZE);
+      this.moduli = new int[channels.size()];
+      this.offsets = new int[channels.size()];
+
+      final int[] channelsPerBit = new int[nrOfBits];
+      long lcm = 1;
+      for (int i = 0; i < moduli.length; ++i) {
+         final SyncChannel channel = channels.get(i);
+         moduli[i] = channel.getModulo();
+         offsets[i] = channel.getOffset();
+         ++channelsPerBit[getBit(bits, i)];
+
+         if (moduli[i] <= 0) {
+            lcm = Long.MAX_VALUE;
+         } else if (lcm <= maxTableSize) {
+            lcm = lcm / gcd(lcm, moduli[i]) * moduli[i];
+         }
+      }
+
+      this.channelsOfBit = new int[nrOfBits][];
+      for (int bit = 0; bit < nrOfBits; ++bit) {
+         channelsOfBit[bit] = new int[channelsPerBit[bit]];
+         channelsPerBit[bit] = 0;
+      }
+      for (int i = 0; i < moduli.length; ++i) {
+         final int bit = getBit(bits, i);
+         channelsOfBit[bit][channelsPerBit[bit]++] = i;
+      }
+
+      if (lcm <= maxTableSize / nrOfWords) {
+         this.period = (int) lcm;
+         this.masks = new long[period * nrOfWords];
+         this.counts = new int[period];
+
+         boolean anySet = false;
+         for (int phase = 0; phase < period; ++phase) {
+            for (int bit = 0; bit < nrOfBits; ++bit) {
+               if (evaluate(phase, bit)) {
+                  masks[phase * nrOfWords + (bit >>> 6)] |= 1L << bit;
+                  ++counts[phase];
+                  anySet = true;
+               }
+            }
+         }
+         this.anySet = anySet;
+         this.cache = null;
+      } else {
+         this.period = 0;
+         this.masks = null;
+         this.counts = null;
+         this.anySet = true;
+         this.cache = new CachedCount[CACHE_SIZE];
+      }
+   }
+
+   private static int getBit(int[] bits, int channel) {
+      return bits != null ? bits[channel] : channel;
+   }
+
+   private static long gcd(long a, long b) {
+      while (b != 0) {
+         final long tmp = b;
+         b = a % b;
+         a = tmp;
+      }
+      return a;
+   }
+
+   private boolean evaluate(long pulseId, int bit) {
+      for (final int channel : channelsOfBit[bit]) {
+         // same as MainHeaderCommand used to do (works also for negative offsets)
+         if (moduli[channel] > 0 && ((pulseId - offsets[channel]) % moduli[channel]) == 0) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Determines if a bit is set for a pulse-id (i.e. if one of its channels sends data).
+    *
+    * @param pulseId The pulse-id
+    * @param bit The bit
+    * @return boolean <tt>true</tt> if the bit is set, <tt>false</tt> otherwise
+    */
+   public boolean isSet(long pulseId, int bit) {
+      if (period > 0) {
+         final int phase = (int) Math.floorMod(pulseId, (long) period);
+         return (masks[phase * nrOfWords + (bit >>> 6)] & (1L << bit)) != 0;
+      } else {
+         return evaluate(pulseId, bit);
+      }
+   }
+
+   /**
+    * Provides the number of bits set for a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @return int The number of bits set
+    */
+   public int getCount(long pulseId) {
+      if (period > 0) {
+         return counts[(int) Math.floorMod(pulseId, (long) period)];
+      } else {
+         final int index = (int) (pulseId & (CACHE_SIZE - 1));
+         final CachedCount cached = cache[index];
+         if (cached != null && cached.pulseId == pulseId) {
+            return cached.count;
+         }
+
+         int count = 0;
+         for (int bit = 0; bit < nrOfBits; ++bit) {
+            if (evaluate(pulseId, bit)) {
+               ++count;
+            }
+         }
+         cache[index] = new CachedCount(pulseId, count);
+         return count;
+      }
+   }
+
+   /**
+    * Determines if any bit is set for a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @return boolean <tt>true</tt> if at least one bit is set, <tt>false</tt> otherwise
+    */
+   public boolean isAnySet(long pulseId) {
+      if (period > 0) {
+         return counts[(int) Math.floorMod(pulseId, (long) period)] > 0;
+      } else {
+         final CachedCount cached = cache[(int) (pulseId & (CACHE_SIZE - 1))];
+         if (cached != null && cached.pulseId == pulseId) {
+            return cached.count > 0;
+         }
+
+         for (int bit = 0; bit < nrOfBits; ++bit) {
+            if (evaluate(pulseId, bit)) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+   /**
+    * Determines if any bit is set for a pulse-id between two pulse-ids (both exclusive). Only
+    * tabulated phases are scanned (at most one period), otherwise every pulse-id in between is
+    * evaluated.
+    *
+    * @param fromPulseId The lower pulse-id (exclusive)
+    * @param toPulseId The upper pulse-id (exclusive)
+    * @return boolean <tt>true</tt> if at least one bit is set in between, <tt>false</tt> otherwise
+    */
+   public boolean isAnySetBetween(long fromPulseId, long toPulseId) {
+      final long nrOfPulseIds = toPulseId - fromPulseId - 1;
+      if (nrOfPulseIds <= 0) {
+         return false;
+      } else if (period > 0) {
+         if (nrOfPulseIds >= period) {
+            return anySet;
+         }
+
+         int phase = (int) Math.floorMod(fromPulseId + 1, (long) period);
+         for (long i = 0; i < nrOfPulseIds; ++i) {
+            if (counts[phase] > 0) {
+               return true;
+            }
+            if (++phase == period) {
+               phase = 0;
+            }
+         }
+         return false;
+      } else {
+         for (long pulseId = fromPulseId + 1; pulseId < toPulseId; ++pulseId) {
+            if (isAnySet(pulseId)) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+   /**
+    * Provides the number of bits.
+    *
+    * @return int The number of bits
+    */
+   public int getNrOfBits() {
+      return nrOfBits;
+   }
+
+   /**
+    * Provides the period of the table (the LCM of the moduli).
+    *
+    * @return int The period or 0 if the channels are evaluated for every pulse-id
+    */
+   public int getPeriod() {
+      return period;
+   }
+
+   private static class CachedCount {
+      private final long pulseId;
+      private final int count;
+
+      public CachedCount(long pulseId, int count) {
+         this.pulseId = pulseId;
+         this.count = count;
+      }
+   }
+}
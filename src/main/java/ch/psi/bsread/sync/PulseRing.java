@@ -0,0 +1,239 @@
+package ch.psi.bsread.sync;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * A lock-free map from pulse-id to value for dense and monotonically increasing pulse-ids. The
+ * values are kept in a power of two ring of slots indexed by <tt>pulseId &amp; mask</tt>. A slot
+ * holds an immutable (pulse-id, value) pair which is replaced by compare-and-set, i.e. the pulse-id
+ * acts as the sequence number of the slot and a slot reused by a later pulse-id can never be
+ * mistaken for an earlier one (no ABA).
+ * <p>
+ * The ring keeps pulse-ids within a window of its capacity. A pulse-id whose slot is still
+ * occupied by an older pulse-id does not fit (see {@link #computeIfAbsent(long, LongFunction)})
+ * and the older pulse-ids have to be removed first.
+ *
+ * @param <T> The type of the values
+ */
+public class PulseRing<T> {
+   public static final int DEFAULT_CAPACITY = 4096;
+   private static final long EMPTY = Long.MAX_VALUE;
+
+   private final AtomicReferenceArray<Slot<T>> slots;
+   private final int mask;
+   // all pulse-ids in the ring are bigger or equal (EMPTY if nothing was added yet)
+   private final AtomicLong head = new AtomicLong(EMPTY);
+   // the biggest pulse-id ever added
+   private final AtomicLong latest = new AtomicLong(Long.MIN_VALUE);
+   private final AtomicInteger size = new AtomicInteger();
+
+   public PulseRing() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param minCapacity The min number of slots (rounded up to a power of two)
+    */
+   public PulseRing(int minCapacity) {
+      if (minCapacity <= 0 || minCapacity > (1 << 30)) {
+         throw new IllegalArgumentException("Capacity needs to be in [1, 2^30] but was '" + minCapacity + "'.");
+      }
+      final int capacity = minCapacity <= 1 ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+      this.slots = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+   }
+
+   public int getCapacity() {
+      return mask + 1;
+   }
+
+   /**
+    * Provides the number of pulse-ids in the ring (constant time).
+    *
+    * @return int The size
+    */
+   public int size() {
+      return size.get();
+   }
+
+   public boolean isEmpty() {
+      return size.get() == 0;
+   }
+
+   /**
+    * Provides the biggest pulse-id ever added.
+    *
+    * @return long The pulse-id (Long.MIN_VALUE if nothing was added yet)
+    */
+   public long getLatestPulseId() {
+      return latest.get();
+   }
+
+   /**
+    * Provides the value of a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @return T The value or null if the pulse-id is not in the ring
+    */
+   public T get(long pulseId) {
+      final Slot<T> slot = slots.get(index(pulseId));
+      return slot != null && slot.pulseId == pulseId ? slot.value : null;
+   }
+
+   /**
+    * Provides the value of a pulse-id and adds it if absent (the creator might be called by
+    * several threads but only one value wins).
+    *
+    * @param pulseId The pulse-id
+    * @param creator Creates the value
+    * @return T The value or null if the slot is occupied by another pulse-id (an older pulse-id
+    *         needs to be removed first or the pulse-id is older than the window of the ring)
+    */
+   public T computeIfAbsent(long pulseId, LongFunction<T> creator) {
+      final int index = index(pulseId);
+      Slot<T> slot = slots.get(index);
+      Slot<T> newSlot = null;
+      while (true) {
+         if (slot != null) {
+            return slot.pulseId == pulseId ? slot.value : null;
+         }
+
+         if (newSlot == null) {
+            newSlot = new Slot<>(pulseId, creator.apply(pulseId));
+         }
+         if (slots.compareAndSet(index, null, newSlot)) {
+            size.incrementAndGet();
+            updateMax(latest, pulseId);
+            // make it visible to firstPulseId() (also if it was concurrently cleared)
+            updateMin(head, pulseId);
+            return newSlot.value;
+         }
+         slot = slots.get(index);
+      }
+   }
+
+   /**
+    * Removes a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @return T The removed value or null if another thread removed it or it was not in the ring
+    */
+   public T remove(long pulseId) {
+      final int index = index(pulseId);
+      final Slot<T> slot = slots.get(index);
+      if (slot != null && slot.pulseId == pulseId && slots.compareAndSet(index, slot, null)) {
+         size.decrementAndGet();
+         return slot.value;
+      }
+      return null;
+   }
+
+   /**
+    * Provides the smallest pulse-id in the ring. The scan starts at the head (moved by
+    * {@link #clearHead(long, boolean)}), i.e. it is short as long as pulse-ids are dense.
+    *
+    * @return long The pulse-id or Long.MIN_VALUE if the ring is empty
+    */
+   public long firstPulseId() {
+      final long start = head.get();
+      final long end = latest.get();
+      if (size.get() > 0 && start <= end) {
+         if (end - start <= mask) {
+            for (long pulseId = start; pulseId <= end; ++pulseId) {
+               final Slot<T> slot = slots.get(index(pulseId));
+               if (slot != null && slot.pulseId == pulseId) {
+                  return pulseId;
+               }
+            }
+         } else {
+            // gap bigger than the ring (e.g. pulse-ids jumped)
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i <= mask; ++i) {
+               final Slot<T> slot = slots.get(i);
+               if (slot != null && slot.pulseId < min) {
+                  min = slot.pulseId;
+               }
+            }
+            if (min != Long.MAX_VALUE) {
+               return min;
+            }
+         }
+      }
+      return Long.MIN_VALUE;
+   }
+
+   /**
+    * Provides the value of the smallest pulse-id in the ring.
+    *
+    * @return T The value or null if the ring is empty
+    */
+   public T first() {
+      T value = null;
+      long pulseId;
+      while (value == null && (pulseId = firstPulseId()) != Long.MIN_VALUE) {
+         value = get(pulseId);
+      }
+      return value;
+   }
+
+   /**
+    * Removes all pulse-ids smaller (or equal) than a pulse-id.
+    *
+    * @param pulseId The pulse-id
+    * @param inclusive Defines if the pulse-id itself is removed too
+    */
+   public void clearHead(long pulseId, boolean inclusive) {
+      final long end = inclusive ? pulseId : pulseId - 1;
+      long start;
+      do {
+         start = head.get();
+         if (start == EMPTY || start > end) {
+            return;
+         }
+      } while (!head.compareAndSet(start, end + 1));
+
+      if (end - start <= mask) {
+         for (long current = start; current <= end; ++current) {
+            remove(current);
+         }
+      } else {
+         for (int i = 0; i <= mask; ++i) {
+            final Slot<T> slot = slots.get(i);
+            if (slot != null && slot.pulseId <= end) {
+               remove(slot.pulseId);
+            }
+         }
+      }
+   }
+
+   private int index(long pulseId) {
+      return (int) (pulseId & mask);
+   }
+
+   private static void updateMax(AtomicLong value, long candidate) {
+      long current;
+      while (candidate > (current = value.get()) && !value.compareAndSet(current, candidate)) {
+      }
+   }
+
+   private static void updateMin(AtomicLong value, long candidate) {
+      long current;
+      while (candidate < (current = value.get()) && !value.compareAndSet(current, candidate)) {
+      }
+   }
+
+   private static class Slot<T> {
+      private final long pulseId;
+      private final T value;
+
+      public Slot(long pulseId, T value) {
+         this.pulseId = pulseId;
+         this.value = value;
+      }
+   }
+}
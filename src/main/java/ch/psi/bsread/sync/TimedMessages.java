@@ -1,27 +1,72 @@
 package ch.psi.bsread.sync;
 
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * The messages of a pulse. Channels are identified by their index (assigned once by the
+ * synchronizer), i.e. adding a message is a slot update and completeness is a counter (no hashing
+ * per message). The Map of channel name to message is only built when the pulse is handed out.
+ */
 public class TimedMessages<Msg> {
-   private long submitTime;
-   private ConcurrentMap<String, Msg> messagesMap;
+   private final long submitTime;
+   // shared by all pulses (index -> channel name)
+   private final String[] channelNames;
+   // a non-null slot marks a present channel
+   private final AtomicReferenceArray<Msg> messages;
+   private final AtomicInteger availableChannels = new AtomicInteger();
 
-   public TimedMessages(long submitTime, int nrOfChannels) {
+   /**
+    * Constructor (replaces the former <tt>TimedMessages(long, int)</tt>, i.e. messages are added with
+    * {@link #put(int, Object)} since {@link #getMessagesMap()} is no longer backed by the pulse).
+    *
+    * @param submitTime The time the first message of the pulse arrived
+    * @param channelNames The names of the channels by index (shared, must not be modified)
+    */
+   public TimedMessages(long submitTime, String[] channelNames) {
       this.submitTime = submitTime;
-      messagesMap = new ConcurrentHashMap<>(nrOfChannels, 0.75f, 4);
+      this.channelNames = channelNames;
+      this.messages = new AtomicReferenceArray<>(channelNames.length);
    }
 
    public long getSubmitTime() {
       return submitTime;
    }
 
+   /**
+    * Adds the message of a channel (a later message of the same channel replaces the earlier one).
+    *
+    * @param channelIndex The index of the channel
+    * @param msg The message
+    * @return int The number of channels available after adding the message
+    */
+   public int put(int channelIndex, Msg msg) {
+      if (messages.getAndSet(channelIndex, msg) == null) {
+         return availableChannels.incrementAndGet();
+      } else {
+         return availableChannels.get();
+      }
+   }
+
+   /**
+    * Creates a Map of channel name to message (messages added afterwards are not part of it).
+    *
+    * @return Map The messages
+    */
    public Map<String, Msg> getMessagesMap() {
+      final Map<String, Msg> messagesMap = new HashMap<>((int) (availableChannels.get() / 0.75f) + 1);
+      for (int i = 0; i < channelNames.length; ++i) {
+         final Msg msg = messages.get(i);
+         if (msg != null) {
+            messagesMap.put(channelNames[i], msg);
+         }
+      }
       return messagesMap;
    }
 
    public int availableChannels() {
-      return messagesMap.size();
+      return availableChannels.get();
    }
 }
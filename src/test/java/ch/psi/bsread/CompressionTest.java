@@ -24,6 +24,7 @@ import ch.psi.bitshuffle.BitShuffleLZ4JNICompressor;
 import ch.psi.bsread.common.allocator.ByteBufferAllocator;
 import ch.psi.bsread.compression.Compression;
 import ch.psi.bsread.compression.Compressor;
+import ch.psi.bsread.compression.bitshufflelz4.BitshuffleLZ4Compressor;
 import ch.psi.bsread.converter.AbstractByteConverter;
 import ch.psi.bsread.converter.MatlabByteConverter;
 import ch.psi.bsread.converter.ValueConverter;
@@ -576,6 +577,41 @@ public class CompressionTest {
 		}
 	}
 
+	@Test
+	public void testBitshuffleLZ4Parallel() {
+		// sequential vs. parallel in chunks of 3 blocks (of 8kB)
+		BitshuffleLZ4Compressor sequential = new BitshuffleLZ4Compressor(Long.MAX_VALUE, Long.MAX_VALUE);
+		BitshuffleLZ4Compressor parallel = new BitshuffleLZ4Compressor(0, 3 * 8192);
+		int[] nElements = new int[] { 1, 7, 1023, 1024, 1031, 5000, 24576, 24577, 24583, 100003, 1048576 };
+		Random rand = new Random(0);
+
+		for (int bytes : new int[] { 1, 2, 4, 8 }) {
+			for (int n : nElements) {
+				byte[] values = new byte[n * bytes];
+				// compressible data (incompressible data for 8 bytes, i.e. chunks hardly move)
+				for (int i = 0; i < values.length; ++i) {
+					values[i] = (byte) (rand.nextInt(bytes == 8 ? 256 : 16));
+				}
+
+				for (boolean direct : new boolean[] { false, true }) {
+					IntFunction<ByteBuffer> allocator = direct ? ByteBuffer::allocateDirect : ByteBuffer::allocate;
+					ByteBuffer src = allocator.apply(values.length);
+					src.put(values);
+					src.flip();
+
+					ByteBuffer compressedSeq = sequential.compressData(src, 0, src.remaining(), 0, allocator, bytes);
+					ByteBuffer compressedPar = parallel.compressData(src, 0, src.remaining(), 0, allocator, bytes);
+					assertEquals("n=" + n + " bytes=" + bytes, compressedSeq, compressedPar);
+
+					ByteBuffer decompressedSeq = sequential.decompressData(compressedSeq, 0, allocator, bytes);
+					ByteBuffer decompressedPar = parallel.decompressData(compressedSeq, 0, allocator, bytes);
+					assertEquals("n=" + n + " bytes=" + bytes, src, decompressedSeq);
+					assertEquals("n=" + n + " bytes=" + bytes, src, decompressedPar);
+				}
+			}
+		}
+	}
+
 	protected void testDataCompressionTwoArrayChannel100HzAnd10Hz(ByteOrder byteOrder, Compression compression) throws InterruptedException {
 		ScheduledSender sender = new ScheduledSender(
 				new SenderConfig(
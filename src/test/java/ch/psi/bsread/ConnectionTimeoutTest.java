@@ -34,7 +34,7 @@ public class ConnectionTimeoutTest {
    }
 
    @Test
-   public void testSenderReceiverTimeout_Reconnect() {
+   public void testSenderReceiverTimeout_Reconnect() throws Exception {
       ScheduledSender sender = new ScheduledSender(
             new SenderConfig(
                   SenderConfig.DEFAULT_ADDRESS,
@@ -75,6 +75,9 @@ public class ConnectionTimeoutTest {
       try {
          sender.connect();
          receiver.connect();
+         // make sure the connection is established (a non-blocking send drops messages while there is
+         // no peer)
+         TimeUnit.MILLISECONDS.sleep(100);
 
          sender.send();
          message = receiver.receive();
@@ -150,7 +153,7 @@ public class ConnectionTimeoutTest {
    }
 
    @Test
-   public void testSenderReceiverTimeout_Return() {
+   public void testSenderReceiverTimeout_Return() throws Exception {
       Sender sender = new Sender(
             new SenderConfig(
                   SenderConfig.DEFAULT_ADDRESS,
@@ -190,6 +193,9 @@ public class ConnectionTimeoutTest {
       try {
          sender.connect();
          receiver.connect();
+         // make sure the connection is established (a non-blocking send drops messages while there is
+         // no peer)
+         TimeUnit.MILLISECONDS.sleep(100);
 
          sender.send();
          message = receiver.receive();
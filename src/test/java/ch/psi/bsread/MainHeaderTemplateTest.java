@@ -0,0 +1,73 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.Timestamp;
+
+public class MainHeaderTemplateTest {
+
+   @Test
+   public void testRender() throws Exception {
+      ObjectMapper objectMapper = new ObjectMapper();
+      MainHeader mainHeader = new MainHeader();
+      mainHeader.setHash("a1b2c3d4e5f60718293a4b5c6d7e8f90");
+      MainHeaderTemplate template = new MainHeaderTemplate(mainHeader, objectMapper);
+
+      long[][] values = new long[][] {
+            {1, 0, 0},
+            {9, 9, 999999999},
+            {10, 10, 100000000},
+            {7463529180736251L, 1500000000, 123456789},
+            {Long.MAX_VALUE, 1700000000, 1},
+            // pulse-id 0 is omitted by Jackson
+            {0, 1700000000, 1},
+            {-1, 1700000000, 1}};
+      for (long[] value : values) {
+         mainHeader.setPulseId(value[0]);
+         mainHeader.setGlobalTimestamp(new Timestamp(value[1], value[2]));
+         assertArrayEquals(objectMapper.writeValueAsBytes(mainHeader), template.render(mainHeader));
+      }
+   }
+
+   @Test
+   public void testConfiguration() throws Exception {
+      ObjectMapper objectMapper = new ObjectMapper();
+      objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+      MainHeader mainHeader = new MainHeader();
+      mainHeader.setHash("hash");
+      mainHeader.setDataHeaderCompression(Compression.bitshuffle_lz4);
+      MainHeaderTemplate template = new MainHeaderTemplate(mainHeader, objectMapper);
+
+      mainHeader.setPulseId(123456789);
+      mainHeader.setGlobalTimestamp(Timestamp.ofMillis(System.currentTimeMillis()));
+      assertArrayEquals(objectMapper.writeValueAsBytes(mainHeader), template.render(mainHeader));
+
+      assertTrue(template.isValidFor(mainHeader, objectMapper));
+      assertFalse(template.isValidFor(mainHeader, new ObjectMapper()));
+      mainHeader.setHash("otherHash");
+      assertFalse(template.isValidFor(mainHeader, objectMapper));
+      mainHeader.setHash("hash");
+      mainHeader.setDataHeaderCompression(null);
+      assertFalse(template.isValidFor(mainHeader, objectMapper));
+   }
+
+   @Test
+   public void testDigits() {
+      byte[] dst = new byte[20];
+      for (long number : new long[] {0, 5, 10, 99, 100, 123456789, Long.MAX_VALUE}) {
+         int end = MainHeaderTemplate.writeDigits(dst, 1, number);
+         String digits = Long.toString(number);
+         assertTrue(end == 1 + digits.length());
+         assertTrue(digits.equals(new String(dst, 1, digits.length())));
+      }
+   }
+}
@@ -0,0 +1,137 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ch.psi.bsread.basic.BasicReceiver;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Type;
+
+public class PacerTest {
+
+   @Test
+   public void testPacing() throws Exception {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      CountDownLatch latch = new CountDownLatch(200);
+      AtomicInteger otherTasks = new AtomicInteger();
+      Pacer pacer = new Pacer(latch::countDown, executor, 2, TimeUnit.MILLISECONDS, Pacer.OverrunPolicy.CATCH_UP);
+      try {
+         long start = System.nanoTime();
+         pacer.start(0, TimeUnit.MILLISECONDS);
+         // other tasks get executed between two executions
+         for (int i = 0; i < 10; ++i) {
+            executor.submit(otherTasks::incrementAndGet).get(1, TimeUnit.SECONDS);
+         }
+         assertTrue(latch.await(5, TimeUnit.SECONDS));
+         long elapsed = System.nanoTime() - start;
+         pacer.cancel();
+
+         assertEquals(10, otherTasks.get());
+         // no drift
+         assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(2 * 199));
+         assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(2 * 200 + 100));
+         assertTrue(pacer.getJitterHistogram().getCount() >= 200);
+         assertTrue(pacer.getJitterHistogram().getValueAtPercentile(50) < TimeUnit.MILLISECONDS.toNanos(1));
+         assertEquals(0, pacer.getSkippedPeriods());
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testOverrunSkip() throws Exception {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      CountDownLatch latch = new CountDownLatch(10);
+      Pacer pacer = new Pacer(() -> {
+         try {
+            TimeUnit.MILLISECONDS.sleep(5);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         latch.countDown();
+      }, executor, 1, TimeUnit.MILLISECONDS, Pacer.OverrunPolicy.SKIP);
+      try {
+         pacer.start(0, TimeUnit.MILLISECONDS);
+         assertTrue(latch.await(5, TimeUnit.SECONDS));
+         pacer.cancel();
+
+         // the last execution might still be in progress
+         assertTrue(pacer.getOverrunHistogram().getCount() >= 9);
+         assertTrue(pacer.getSkippedPeriods() >= 9 * 4);
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testOverrunCatchUp() throws Exception {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      AtomicInteger count = new AtomicInteger();
+      CountDownLatch latch = new CountDownLatch(40);
+      Pacer pacer = new Pacer(() -> {
+         if (count.getAndIncrement() == 0) {
+            try {
+               TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+         latch.countDown();
+      }, executor, 2, TimeUnit.MILLISECONDS, Pacer.OverrunPolicy.CATCH_UP);
+      pacer.setAlignToWallClock(false);
+      try {
+         long start = System.nanoTime();
+         pacer.start(0, TimeUnit.MILLISECONDS);
+         assertTrue(latch.await(5, TimeUnit.SECONDS));
+         long elapsed = System.nanoTime() - start;
+         pacer.cancel();
+
+         // the missed periods are executed back to back
+         assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(2 * 40 + 50));
+         assertEquals(0, pacer.getSkippedPeriods());
+         assertTrue(pacer.getOverrunHistogram().getCount() >= 1);
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testScheduledSender() throws Exception {
+      ScheduledSender sender = new ScheduledSender();
+      sender.addSource(new DataChannel<Double>(new ChannelConfig("ABC", Type.Float64, 1, 0)) {
+         @Override
+         public Double getValue(long pulseId) {
+            return (double) pulseId;
+         }
+      });
+      BasicReceiver receiver = new BasicReceiver();
+      try {
+         sender.connect();
+         receiver.connect();
+
+         sender.sendPaced(10, 10, TimeUnit.MILLISECONDS, Pacer.OverrunPolicy.SKIP);
+         // send() is executed between two paced sends
+         sender.send();
+
+         Message<Object> message = receiver.receive();
+         long pulseId = message.getMainHeader().getPulseId();
+         for (int i = 1; i < 20; ++i) {
+            message = receiver.receive();
+            assertEquals(pulseId + i, message.getMainHeader().getPulseId());
+            assertEquals(pulseId + i, message.getValues().get("ABC").getValue(Double.class), 0.001);
+         }
+      } finally {
+         receiver.close();
+         sender.close();
+      }
+   }
+}
@@ -0,0 +1,241 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import ch.psi.bsread.ReceiverConfig.InactiveConnectionBehavior;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+
+public class ReceiverBatchTest {
+
+   @Test
+   public void testBatchReceive() throws Exception {
+      SenderConfig senderConfig = new SenderConfig(
+            SenderConfig.DEFAULT_ADDRESS,
+            new StandardPulseIdProvider(),
+            new TimeProvider() {
+
+               @Override
+               public Timestamp getTime(long pulseId) {
+                  return new Timestamp(pulseId, 0L);
+               }
+            },
+            new MatlabByteConverter());
+      senderConfig.setBlockingSend(true);
+      Sender sender = new Sender(senderConfig);
+
+      // Register data sources ...
+      sender.addSource(new DataChannel<Double>(new ChannelConfig("ABC", Type.Float64, 1, 0)) {
+         @Override
+         public Double getValue(long pulseId) {
+            return (double) pulseId;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+
+      ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<>();
+      receiverConfig.setInactiveConnectionTimeout(1000);
+      receiverConfig.setInactiveConnectionBehavior(InactiveConnectionBehavior.STOP);
+      Receiver<ByteBuffer> receiver = new Receiver<>(receiverConfig);
+      AtomicInteger mainHeaderCount = new AtomicInteger();
+      receiver.addMainHeaderHandler(header -> mainHeaderCount.incrementAndGet());
+      final int maxSend = 2000;
+      final int maxMessages = 100;
+      List<Message<ByteBuffer>> batch = new ArrayList<>();
+      ExecutorService senderService = Executors.newSingleThreadExecutor();
+
+      try {
+         receiver.connect();
+         sender.connect();
+
+         // nothing sent yet -> does not block
+         assertEquals(0, receiver.receive(batch, maxMessages, 0));
+         // nothing sent yet -> returns after timeout
+         assertEquals(0, receiver.receive(batch, maxMessages, TimeUnit.MILLISECONDS.toNanos(50)));
+
+         senderService.execute(() -> {
+            try {
+               for (int i = 0; i < maxSend; ++i) {
+                  sender.send();
+               }
+            } finally {
+               sender.close();
+            }
+         });
+
+         long expectedPulseId = 0;
+         int maxBatchSize = 0;
+         int count;
+         while ((count = receiver.receive(batch, maxMessages, -1)) >= 0) {
+            assertEquals(batch.size(), count);
+            assertTrue(count <= maxMessages);
+            maxBatchSize = Math.max(maxBatchSize, count);
+
+            for (Message<ByteBuffer> message : batch) {
+               assertEquals(expectedPulseId++, message.getMainHeader().getPulseId());
+            }
+            batch.clear();
+         }
+
+         assertEquals(maxSend, expectedPulseId);
+         assertEquals(maxSend, mainHeaderCount.get());
+         assertTrue("Queued messages should be received as a batch.", maxBatchSize > 1);
+      } finally {
+         senderService.shutdown();
+         receiver.close();
+         sender.close();
+      }
+   }
+
+   @Test
+   public void testSubMillisecondWait() throws Exception {
+      SenderConfig senderConfig = new SenderConfig(
+            SenderConfig.DEFAULT_ADDRESS,
+            new StandardPulseIdProvider(),
+            new TimeProvider() {
+
+               @Override
+               public Timestamp getTime(long pulseId) {
+                  return new Timestamp(pulseId, 0L);
+               }
+            },
+            new MatlabByteConverter());
+      senderConfig.setBlockingSend(true);
+      Sender sender = new Sender(senderConfig);
+      sender.addSource(new DataChannel<Double>(new ChannelConfig("ABC", Type.Float64, 1, 0)) {
+         @Override
+         public Double getValue(long pulseId) {
+            return (double) pulseId;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+
+      Receiver<ByteBuffer> receiver = new Receiver<>(new ReceiverConfig<>());
+      List<Message<ByteBuffer>> batch = new ArrayList<>();
+
+      try {
+         receiver.connect();
+         sender.connect();
+
+         for (int i = 0; i < 3; ++i) {
+            sender.send();
+         }
+         // make sure the messages are queued at the receiver
+         TimeUnit.MILLISECONDS.sleep(100);
+
+         // less than the granularity of the receive timeout still drains what is queued
+         assertEquals(3, receiver.receive(batch, 10, 500_000));
+         assertEquals(3, batch.size());
+         for (int i = 0; i < batch.size(); ++i) {
+            assertEquals(i, batch.get(i).getMainHeader().getPulseId());
+         }
+         assertEquals(0, receiver.receive(batch, 10, 500_000));
+      } finally {
+         receiver.close();
+         sender.close();
+      }
+   }
+
+   @Test
+   public void testPollingIdleActiveIdle() throws Exception {
+      SenderConfig senderConfig = new SenderConfig(
+            SenderConfig.DEFAULT_ADDRESS,
+            new StandardPulseIdProvider(),
+            new TimeProvider() {
+
+               @Override
+               public Timestamp getTime(long pulseId) {
+                  return new Timestamp(pulseId, 0L);
+               }
+            },
+            new MatlabByteConverter());
+      Sender sender = new Sender(senderConfig);
+      sender.addSource(new DataChannel<Double>(new ChannelConfig("ABC", Type.Float64, 1, 0)) {
+         @Override
+         public Double getValue(long pulseId) {
+            return (double) pulseId;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+
+      ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<>();
+      receiverConfig.setIdleConnectionTimeout(200);
+      receiverConfig.setInactiveConnectionTimeout(400);
+      receiverConfig.setInactiveConnectionBehavior(InactiveConnectionBehavior.KEEP_RUNNING);
+      Receiver<ByteBuffer> receiver = new Receiver<>(receiverConfig);
+      // handlers are called by the receiving (i.e. this) thread
+      List<Boolean> idleEvents = new ArrayList<>();
+      List<Boolean> inactiveEvents = new ArrayList<>();
+      receiver.addConnectionIdleHandler(idle -> idleEvents.add(idle));
+      receiver.addConnectionInactiveHandler(inactive -> inactiveEvents.add(inactive));
+      List<Message<ByteBuffer>> batch = new ArrayList<>();
+
+      try {
+         receiver.connect();
+         sender.connect();
+         // make sure the connection is established (a non-blocking send drops messages while there is
+         // no peer)
+         TimeUnit.MILLISECONDS.sleep(100);
+         // connection is idle/inactive until the first message arrives
+         poll(receiver, batch, () -> !idleEvents.isEmpty() && !inactiveEvents.isEmpty());
+
+         for (int i = 0; i < 2; ++i) {
+            sender.send();
+            poll(receiver, batch, () -> !batch.isEmpty());
+            assertEquals(1, batch.size());
+            batch.clear();
+            assertEquals(Boolean.FALSE, idleEvents.get(idleEvents.size() - 1));
+            assertEquals(Boolean.FALSE, inactiveEvents.get(inactiveEvents.size() - 1));
+
+            poll(receiver, batch, () -> idleEvents.get(idleEvents.size() - 1)
+                  && inactiveEvents.get(inactiveEvents.size() - 1));
+         }
+
+         assertEquals(Arrays.asList(true, false, true, false, true), idleEvents);
+         assertEquals(Arrays.asList(true, false, true, false, true), inactiveEvents);
+      } finally {
+         receiver.close();
+         sender.close();
+      }
+   }
+
+   private void poll(Receiver<ByteBuffer> receiver, List<Message<ByteBuffer>> batch, BooleanSupplier condition)
+         throws InterruptedException {
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (!condition.getAsBoolean()) {
+         assertTrue("Condition not met in time.", System.currentTimeMillis() < deadline);
+         // only take what is available
+         receiver.receive(batch, 10, 0);
+         TimeUnit.MILLISECONDS.sleep(1);
+      }
+   }
+}
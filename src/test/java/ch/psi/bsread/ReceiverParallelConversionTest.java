@@ -0,0 +1,18 @@
+package ch.psi.bsread;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+
+import ch.psi.bsread.common.concurrent.executor.CommonExecutors;
+
+public class ReceiverParallelConversionTest extends ReceiverTest {
+	private static final ExecutorService CONVERSION_SERVICE = CommonExecutors.newFixedThreadPool(4, "ValueConversion");
+
+	protected Receiver<ByteBuffer> getReceiver() {
+		ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<ByteBuffer>();
+		receiverConfig.setValueConversionService(CONVERSION_SERVICE);
+		// convert all values in parallel
+		receiverConfig.setValueConversionThreshold(0);
+		return new Receiver<ByteBuffer>(receiverConfig);
+	}
+}
@@ -0,0 +1,261 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import ch.psi.bsread.ReceiverConfig.InactiveConnectionBehavior;
+import ch.psi.bsread.common.concurrent.OverflowStrategy;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+
+public class ReceiverPublisherTest {
+
+   private Sender createSender() {
+      SenderConfig senderConfig = new SenderConfig(
+            SenderConfig.DEFAULT_ADDRESS,
+            new StandardPulseIdProvider(),
+            new TimeProvider() {
+
+               @Override
+               public Timestamp getTime(long pulseId) {
+                  return new Timestamp(pulseId, 0L);
+               }
+            },
+            new MatlabByteConverter());
+      senderConfig.setBlockingSend(true);
+      Sender sender = new Sender(senderConfig);
+
+      sender.addSource(new DataChannel<Double>(new ChannelConfig("ABC", Type.Float64, 1, 0)) {
+         @Override
+         public Double getValue(long pulseId) {
+            return (double) pulseId;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+      return sender;
+   }
+
+   private Receiver<ByteBuffer> createReceiver() {
+      ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<>();
+      receiverConfig.setInactiveConnectionTimeout(1000);
+      receiverConfig.setInactiveConnectionBehavior(InactiveConnectionBehavior.STOP);
+      return new Receiver<>(receiverConfig);
+   }
+
+   @Test
+   public void testBlock() throws Exception {
+      final int maxSend = 500;
+      Sender sender = createSender();
+      ReceiverPublisher<ByteBuffer> publisher = new ReceiverPublisher<>(createReceiver(), OverflowStrategy.BLOCK);
+      List<Long> pulseIds = new CopyOnWriteArrayList<>();
+      CompletableFuture<Void> completed = new CompletableFuture<>();
+      ExecutorService senderService = Executors.newSingleThreadExecutor();
+
+      try {
+         publisher.subscribe(new Subscriber<Message<ByteBuffer>>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+               this.subscription = subscription;
+               subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Message<ByteBuffer> message) {
+               pulseIds.add(message.getMainHeader().getPulseId());
+               if (pulseIds.size() % 100 == 0) {
+                  // slow subscriber
+                  sleep(50);
+               }
+               subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+               completed.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+               completed.complete(null);
+            }
+         });
+
+         // only one Subscriber is supported
+         AtomicReference<Throwable> error = new AtomicReference<>();
+         publisher.subscribe(new Subscriber<Message<ByteBuffer>>() {
+
+            @Override
+            public void onSubscribe(Subscription subscription) {}
+
+            @Override
+            public void onNext(Message<ByteBuffer> message) {}
+
+            @Override
+            public void onError(Throwable t) {
+               error.set(t);
+            }
+
+            @Override
+            public void onComplete() {}
+         });
+         assertTrue(error.get() instanceof IllegalStateException);
+
+         sender.connect();
+         senderService.execute(() -> {
+            for (int i = 0; i < maxSend; ++i) {
+               sender.send();
+            }
+         });
+
+         // completes after inactive connection timeout
+         assertNull(completed.get(10, TimeUnit.SECONDS));
+         assertEquals(maxSend, pulseIds.size());
+         for (int i = 0; i < maxSend; ++i) {
+            assertEquals(i, pulseIds.get(i).longValue());
+         }
+         assertEquals(0, publisher.getNrOfDroppedMessages());
+      } finally {
+         senderService.shutdown();
+         publisher.close();
+         sender.close();
+      }
+   }
+
+   @Test
+   public void testDropNewest() throws Exception {
+      final int maxSend = 1000;
+      final int bufferSize = 4;
+      Sender sender = createSender();
+      ReceiverPublisher<ByteBuffer> publisher =
+            new ReceiverPublisher<>(createReceiver(), OverflowStrategy.DROP_NEWEST, bufferSize, 16);
+      List<Long> pulseIds = new CopyOnWriteArrayList<>();
+      CompletableFuture<Void> completed = new CompletableFuture<>();
+      CountDownLatch sent = new CountDownLatch(1);
+      AtomicReference<Subscription> subscriptionRef = new AtomicReference<>();
+
+      try {
+         publisher.subscribe(new Subscriber<Message<ByteBuffer>>() {
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+               subscriptionRef.set(subscription);
+               subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Message<ByteBuffer> message) {
+               pulseIds.add(message.getMainHeader().getPulseId());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+               completed.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+               completed.complete(null);
+            }
+         });
+
+         sender.connect();
+         for (int i = 0; i < maxSend; ++i) {
+            sender.send();
+         }
+         sent.countDown();
+         // give the Receiver time to receive what is queued
+         sleep(500);
+         subscriptionRef.get().request(Long.MAX_VALUE);
+
+         assertNull(completed.get(10, TimeUnit.SECONDS));
+         assertTrue(publisher.getNrOfDroppedMessages() > 0);
+         assertEquals(maxSend, pulseIds.size() + publisher.getNrOfDroppedMessages());
+         // the first messages are kept
+         for (int i = 0; i < bufferSize; ++i) {
+            assertEquals(i, pulseIds.get(i).longValue());
+         }
+      } finally {
+         publisher.close();
+         sender.close();
+      }
+   }
+
+   @Test
+   public void testCancel() throws Exception {
+      Receiver<ByteBuffer> receiver = createReceiver();
+      ReceiverPublisher<ByteBuffer> publisher = new ReceiverPublisher<>(receiver, OverflowStrategy.BLOCK);
+      AtomicReference<Subscription> subscriptionRef = new AtomicReference<>();
+
+      try {
+         publisher.subscribe(new Subscriber<Message<ByteBuffer>>() {
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+               subscriptionRef.set(subscription);
+               subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Message<ByteBuffer> message) {}
+
+            @Override
+            public void onError(Throwable t) {}
+
+            @Override
+            public void onComplete() {}
+         });
+
+         // receiving thread waits for messages
+         sleep(200);
+         assertTrue(receiver.isRunning());
+
+         // does not wait for the Receiver to stop
+         long start = System.nanoTime();
+         subscriptionRef.get().cancel();
+         assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+         // the receiving thread closes the Receiver
+         long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+         while (receiver.isRunning() && System.nanoTime() < deadline) {
+            sleep(10);
+         }
+         assertFalse(receiver.isRunning());
+      } finally {
+         publisher.close();
+      }
+   }
+
+   private static void sleep(long millis) {
+      try {
+         TimeUnit.MILLISECONDS.sleep(millis);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
@@ -0,0 +1,131 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import ch.psi.bsread.ReceiverConfig.InactiveConnectionBehavior;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+
+public class ReceiverReactorTest {
+   private static final int NR_OF_STREAMS = 4;
+   private static final int BASE_PORT = 9100;
+
+   private ScheduledSender getSender(int port) {
+      ScheduledSender sender = new ScheduledSender(
+            new SenderConfig(
+                  "tcp://*:" + port,
+                  new StandardPulseIdProvider(),
+                  new TimeProvider() {
+
+                     @Override
+                     public Timestamp getTime(long pulseId) {
+                        return new Timestamp(pulseId, 0L);
+                     }
+                  },
+                  new MatlabByteConverter()));
+
+      sender.addSource(new DataChannel<Long>(new ChannelConfig("ABC_" + port, Type.Int64, 1, 0)) {
+         @Override
+         public Long getValue(long pulseId) {
+            return pulseId;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+      return sender;
+   }
+
+   @Test
+   public void testReactor() throws Exception {
+      List<ScheduledSender> senders = new ArrayList<>();
+      List<Receiver<ByteBuffer>> receivers = new ArrayList<>();
+      List<AtomicLong> lastPulseIds = new ArrayList<>();
+      List<CompletableFuture<Void>> stopped = new ArrayList<>();
+      AtomicInteger outOfOrder = new AtomicInteger();
+      AtomicInteger valueHandlerCalls = new AtomicInteger();
+      List<List<Boolean>> inactiveEvents = new ArrayList<>();
+
+      // fewer threads than streams
+      try (ReceiverReactor reactor = new ReceiverReactor(2)) {
+         for (int i = 0; i < NR_OF_STREAMS; ++i) {
+            final int port = BASE_PORT + i;
+            ScheduledSender sender = getSender(port);
+            senders.add(sender);
+            sender.connect();
+
+            ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<>("tcp://localhost:" + port);
+            receiverConfig.setInactiveConnectionTimeout(500);
+            receiverConfig.setInactiveConnectionBehavior(InactiveConnectionBehavior.KEEP_RUNNING);
+            Receiver<ByteBuffer> receiver = new Receiver<>(receiverConfig);
+            receiver.addValueHandler(values -> valueHandlerCalls.incrementAndGet());
+            List<Boolean> events = Collections.synchronizedList(new ArrayList<>());
+            inactiveEvents.add(events);
+            receiver.addConnectionInactiveHandler(events::add);
+            receivers.add(receiver);
+
+            final AtomicLong lastPulseId = new AtomicLong(-1);
+            lastPulseIds.add(lastPulseId);
+            stopped.add(reactor.register(receiver, message -> {
+               long pulseId = message.getMainHeader().getPulseId();
+               if (lastPulseId.get() >= 0 && pulseId != lastPulseId.get() + 1) {
+                  outOfOrder.incrementAndGet();
+               }
+               lastPulseId.set(pulseId);
+            }));
+         }
+         assertEquals(NR_OF_STREAMS, reactor.getNrOfReceivers());
+
+         for (ScheduledSender sender : senders) {
+            sender.sendAtFixedRate(100, 1, TimeUnit.MILLISECONDS);
+         }
+         TimeUnit.SECONDS.sleep(2);
+         for (ScheduledSender sender : senders) {
+            sender.close();
+         }
+
+         // all streams were received (on two threads)
+         int received = 0;
+         for (AtomicLong lastPulseId : lastPulseIds) {
+            assertTrue(lastPulseId.get() > 100);
+            received += lastPulseId.get() + 1;
+         }
+         assertEquals(0, outOfOrder.get());
+         assertTrue(valueHandlerCalls.get() >= received - NR_OF_STREAMS);
+
+         // inactive connections are detected through the timing wheel (inactive -> active ->
+         // inactive)
+         TimeUnit.MILLISECONDS.sleep(1000);
+         for (List<Boolean> events : inactiveEvents) {
+            assertEquals(Arrays.asList(true, false, true), events);
+         }
+
+         // stop one receiver
+         receivers.get(0).close();
+         stopped.get(0).get(1, TimeUnit.SECONDS);
+         assertEquals(NR_OF_STREAMS - 1, reactor.getNrOfReceivers());
+      }
+
+      for (CompletableFuture<Void> future : stopped) {
+         assertTrue(future.isDone());
+      }
+   }
+}
@@ -0,0 +1,124 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import zmq.Msg;
+
+import ch.psi.bsread.allocator.PooledMsgAllocator;
+import ch.psi.bsread.configuration.Channel;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardMessageExtractor;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+
+/**
+ * Checks the bytes allocated per skipped frame (frames of channels that are not requested) with
+ * and without handing skipped frames back to the MsgAllocator. Messages are sent and received one
+ * at a time, i.e. the IO thread cannot allocate frames ahead of the measured messages.
+ */
+public class ReceiverSkipTest {
+   private static final int NR_OF_ELEMENTS = 64 * 1024;
+   private static final int WARMUP_MESSAGES = 50;
+   private static final int MESSAGES = 500;
+
+   @Test
+   public void testSkippedFrameAllocation() throws Exception {
+      PooledMsgAllocator discarding = new PooledMsgAllocator(1024, PooledMsgAllocator.DEFAULT_MAX_POOLED_BYTES);
+      double discardingBytes = getAllocatedBytesPerSkippedFrame(discarding);
+
+      PooledMsgAllocator notDiscarding = new PooledMsgAllocator(1024, PooledMsgAllocator.DEFAULT_MAX_POOLED_BYTES) {
+         @Override
+         public void discard(Msg msg) {
+            // leave it to the GC
+         }
+      };
+      double notDiscardingBytes = getAllocatedBytesPerSkippedFrame(notDiscarding);
+
+      // skipped frames are recycled
+      assertTrue(discardingBytes < NR_OF_ELEMENTS * Double.BYTES / 10);
+      assertTrue(notDiscardingBytes >= NR_OF_ELEMENTS * Double.BYTES);
+   }
+
+   private double getAllocatedBytesPerSkippedFrame(PooledMsgAllocator allocator) throws Exception {
+      SenderConfig senderConfig = new SenderConfig(
+            SenderConfig.DEFAULT_ADDRESS,
+            new StandardPulseIdProvider(),
+            new TimeProvider() {
+
+               @Override
+               public Timestamp getTime(long pulseId) {
+                  return new Timestamp(pulseId, 0L);
+               }
+            },
+            new MatlabByteConverter());
+      senderConfig.setBlockingSend(true);
+      Sender sender = new Sender(senderConfig);
+
+      // Register data sources ...
+      final double[] bigValue = new double[NR_OF_ELEMENTS];
+      sender.addSource(new DataChannel<double[]>(
+            new ChannelConfig("BIG", Type.Float64, new int[] {NR_OF_ELEMENTS}, 1, 0)) {
+         @Override
+         public double[] getValue(long pulseId) {
+            return bigValue;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+      sender.addSource(new DataChannel<Long>(new ChannelConfig("SMALL", Type.Int64, 1, 0)) {
+         @Override
+         public Long getValue(long pulseId) {
+            return pulseId;
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+
+      ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<ByteBuffer>(ReceiverConfig.DEFAULT_ADDRESS,
+            true, false, new StandardMessageExtractor<ByteBuffer>(), allocator);
+      receiverConfig.setHighWaterMark(10);
+      receiverConfig.addRequestedChannel(new Channel("SMALL", 1, 0));
+      Receiver<ByteBuffer> receiver = new Receiver<>(receiverConfig);
+
+      try {
+         receiver.connect();
+         sender.connect();
+
+         long startBytes = 0;
+         for (int i = 0; i < WARMUP_MESSAGES + MESSAGES; ++i) {
+            if (i == WARMUP_MESSAGES) {
+               startBytes = allocator.getAllocatedBytes();
+            }
+
+            // blocks until the receiver is connected
+            sender.send();
+            Message<ByteBuffer> message = receiver.receive();
+            assertNotNull(message);
+            assertEquals(1, message.getValues().size());
+            assertTrue(message.getValues().containsKey("SMALL"));
+            message.release();
+         }
+
+         // one skipped value frame per message (its timestamp frame is small)
+         return (double) (allocator.getAllocatedBytes() - startBytes) / MESSAGES;
+      } finally {
+         receiver.close();
+         sender.close();
+      }
+   }
+}
@@ -0,0 +1,155 @@
+package ch.psi.bsread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.psi.bsread.allocator.PooledMsgAllocator;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardMessageExtractor;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.impl.ZeroCopyValueConverter;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.DataHeader;
+import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.ReleasableValueImpl;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+import ch.psi.bsread.message.Value;
+
+public class ReceiverZeroCopyTest extends ReceiverTest {
+	private PooledMsgAllocator allocator;
+
+	protected Receiver<ByteBuffer> getReceiver() {
+		allocator = new PooledMsgAllocator(0, PooledMsgAllocator.DEFAULT_MAX_POOLED_BYTES);
+		return new Receiver<ByteBuffer>(new ReceiverConfig<ByteBuffer>(ReceiverConfig.DEFAULT_ADDRESS, true, false,
+				new StandardMessageExtractor<ByteBuffer>(new ZeroCopyValueConverter()), allocator));
+	}
+
+	@Test
+	public void testRelease() {
+		ScheduledSender sender = new ScheduledSender(
+				new SenderConfig(
+						SenderConfig.DEFAULT_ADDRESS,
+						new StandardPulseIdProvider(),
+						new TimeProvider() {
+
+							@Override
+							public Timestamp getTime(long pulseId) {
+								return new Timestamp(pulseId, 0L);
+							}
+						},
+						new MatlabByteConverter()));
+		sender.addSource(new DataChannel<double[]>(new ChannelConfig("ABC", Type.Float64, new int[] {1024}, 1, 0)) {
+			@Override
+			public double[] getValue(long pulseId) {
+				double[] val = new double[1024];
+				val[0] = pulseId;
+				return val;
+			}
+
+			@Override
+			public Timestamp getTime(long pulseId) {
+				return new Timestamp(pulseId, 0L);
+			}
+		});
+
+		Receiver<ByteBuffer> receiver = getReceiver();
+		try {
+			receiver.connect();
+			sender.connect();
+			sender.sendAtFixedRate(200, 1, TimeUnit.MILLISECONDS);
+
+			for (int i = 0; i < 5; ++i) {
+				Message<ByteBuffer> message = receiver.receive();
+				Value<ByteBuffer> value = message.getValues().get("ABC");
+				assertTrue(value instanceof ReleasableValueImpl);
+				assertEquals(1024 * Double.BYTES, value.getValue().remaining());
+				assertEquals(message.getMainHeader().getPulseId(), value.getValue().getDouble(value.getValue().position()),
+						0.00000000001);
+
+				long pooledBytes = allocator.getPooledBytes();
+				message.release();
+				assertNull(value.getValue());
+				assertTrue(allocator.getPooledBytes() > pooledBytes);
+			}
+		} finally {
+			receiver.close();
+			sender.close();
+		}
+	}
+
+	@Test
+	public void testReleaseOnFailedConversion() {
+		ScheduledSender sender = new ScheduledSender(
+				new SenderConfig(
+						SenderConfig.DEFAULT_ADDRESS,
+						new StandardPulseIdProvider(),
+						new TimeProvider() {
+
+							@Override
+							public Timestamp getTime(long pulseId) {
+								return new Timestamp(pulseId, 0L);
+							}
+						},
+						new MatlabByteConverter()));
+		for (String channel : new String[] {"ABC", "DEF"}) {
+			sender.addSource(new DataChannel<double[]>(new ChannelConfig(channel, Type.Float64, new int[] {1024}, 1, 0)) {
+				@Override
+				public double[] getValue(long pulseId) {
+					return new double[1024];
+				}
+
+				@Override
+				public Timestamp getTime(long pulseId) {
+					return new Timestamp(pulseId, 0L);
+				}
+			});
+		}
+
+		ExecutorService conversionService = Executors.newFixedThreadPool(2);
+		PooledMsgAllocator allocator = new PooledMsgAllocator(0, PooledMsgAllocator.DEFAULT_MAX_POOLED_BYTES);
+		ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<ByteBuffer>(ReceiverConfig.DEFAULT_ADDRESS, true,
+				false, new StandardMessageExtractor<ByteBuffer>(new ZeroCopyValueConverter() {
+					@Override
+					public <V> Value<V> getMessageValue(MainHeader mainHeader, DataHeader dataHeader,
+							ChannelConfig channelConfig, ByteBuffer receivedValueBytes, Timestamp iocTimestamp,
+							Runnable releaser) {
+						if ("DEF".equals(channelConfig.getName())) {
+							throw new IllegalStateException("Conversion failed.");
+						}
+						return super.getMessageValue(mainHeader, dataHeader, channelConfig, receivedValueBytes,
+								iocTimestamp, releaser);
+					}
+				}), allocator);
+		receiverConfig.setValueConversionService(conversionService);
+		receiverConfig.setValueConversionThreshold(0);
+		Receiver<ByteBuffer> receiver = new Receiver<ByteBuffer>(receiverConfig);
+		try {
+			receiver.connect();
+			sender.connect();
+			sender.sendAtFixedRate(200, 1, TimeUnit.MILLISECONDS);
+
+			try {
+				receiver.receive();
+				assertTrue("Conversion should fail.", false);
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			// the buffers of the converted (ABC) and the failed (DEF) value are handed back
+			assertTrue(allocator.getPooledBytes() >= 2 * 1024 * Double.BYTES);
+		} finally {
+			receiver.close();
+			sender.close();
+			conversionService.shutdown();
+		}
+	}
+}
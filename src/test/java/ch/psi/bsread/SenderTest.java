@@ -2,6 +2,10 @@ package ch.psi.bsread;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -9,9 +13,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.psi.bsread.basic.BasicReceiver;
+import ch.psi.bsread.common.allocator.ByteBufferAllocator;
+import ch.psi.bsread.common.allocator.PooledByteBufferAllocator;
+import ch.psi.bsread.common.allocator.ReuseByteBufferAllocator;
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.impl.StandardTimeProvider;
 import ch.psi.bsread.message.ChannelConfig;
 import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Timestamp;
 import ch.psi.bsread.message.Type;
+import ch.psi.bsread.message.Value;
 
 public class SenderTest {
 
@@ -55,6 +68,208 @@ public class SenderTest {
 		}
 	}
 
+	@Test
+	public void testEncodingService() throws Exception {
+		ExecutorService encodingService = Executors.newFixedThreadPool(4);
+		// reusing allocators must not be shared by concurrently encoded values
+		SenderConfig senderConfig = new SenderConfig(SenderConfig.DEFAULT_ADDRESS, new StandardPulseIdProvider(),
+				new StandardTimeProvider(), new MatlabByteConverter(), Compression.none,
+				new ReuseByteBufferAllocator(ByteBufferAllocator.DEFAULT_ALLOCATOR),
+				new ReuseByteBufferAllocator(ByteBufferAllocator.DEFAULT_ALLOCATOR));
+		senderConfig.setEncodingService(encodingService);
+		senderConfig.setBlockingSend(true);
+		Sender sender = new Sender(senderConfig);
+
+		final int nrOfChannels = 8;
+		for (int i = 0; i < nrOfChannels; ++i) {
+			final int channelNr = i;
+			// last channel at 10Hz
+			final int modulo = i < nrOfChannels - 1 ? 1 : 10;
+			sender.addSource(new DataChannel<double[]>(new ChannelConfig("Channel_" + i, Type.Float64, new int[] {1024},
+					modulo, 0, ChannelConfig.DEFAULT_ENCODING, Compression.bitshuffle_lz4)) {
+				@Override
+				public double[] getValue(long pulseId) {
+					double[] value = new double[1024];
+					Arrays.fill(value, pulseId * 100 + channelNr);
+					return value;
+				}
+			});
+		}
+
+		BasicReceiver receiver = new BasicReceiver();
+		try {
+			sender.connect();
+			receiver.connect();
+
+			for (int pulse = 0; pulse < 21; pulse++) {
+				sender.send();
+				Message<Object> message = receiver.receive();
+				assertEquals(pulse, message.getMainHeader().getPulseId());
+				for (int i = 0; i < nrOfChannels; ++i) {
+					Value<Object> value = message.getValues().get("Channel_" + i);
+					if (i < nrOfChannels - 1 || pulse % 10 == 0) {
+						double[] array = value.getValue(double[].class);
+						assertEquals(1024, array.length);
+						assertEquals(pulse * 100 + i, array[0], 0.001);
+						assertEquals(pulse * 100 + i, array[1023], 0.001);
+					} else {
+						assertNull(value);
+					}
+				}
+			}
+		} finally {
+			receiver.close();
+			sender.close();
+			encodingService.shutdown();
+		}
+	}
+
+	@Test
+	public void testDirectDataChannel() throws Exception {
+		SenderConfig senderConfig = new SenderConfig();
+		senderConfig.setBlockingSend(true);
+		Sender sender = new Sender(senderConfig);
+
+		sender.addSource(new DirectDataChannel(new ChannelConfig("Waveform", Type.Float64, new int[] {16}, 1, 0,
+				ChannelConfig.ENCODING_LITTLE_ENDIAN, Compression.bitshuffle_lz4)) {
+			@Override
+			public int writeValue(long pulseId, ByteBuffer dst) {
+				for (int i = 0; i < 16; ++i) {
+					dst.putDouble(pulseId + i);
+				}
+				return 16 * Double.BYTES;
+			}
+
+			@Override
+			public void writeTime(long pulseId, ByteBuffer dst) {
+				dst.putLong(pulseId).putLong(pulseId * 1000);
+			}
+		});
+		sender.addSource(new DirectDataChannel(new ChannelConfig("Scalar", Type.Int32, new int[] {1}, 1, 0,
+				ChannelConfig.ENCODING_BIG_ENDIAN, Compression.none)) {
+			@Override
+			public int writeValue(long pulseId, ByteBuffer dst) {
+				// absolute put (position stays)
+				dst.putInt(dst.position(), (int) pulseId * 2);
+				return Integer.BYTES;
+			}
+		});
+		sender.addSource(new DirectDataChannel(new ChannelConfig("Time", Type.Int32, new int[] {1}, 1, 0,
+				ChannelConfig.ENCODING_LITTLE_ENDIAN, Compression.none)) {
+			@Override
+			public int writeValue(long pulseId, ByteBuffer dst) {
+				dst.putInt((int) pulseId);
+				return Integer.BYTES;
+			}
+
+			@Override
+			public Timestamp getTime(long pulseId) {
+				// written by the default writeTime
+				return new Timestamp(pulseId + 1, pulseId);
+			}
+		});
+
+		BasicReceiver receiver = new BasicReceiver();
+		try {
+			sender.connect();
+			receiver.connect();
+
+			for (int pulse = 0; pulse < 10; pulse++) {
+				long startMillis = System.currentTimeMillis();
+				sender.send();
+				Message<Object> message = receiver.receive();
+				assertEquals(pulse, message.getMainHeader().getPulseId());
+
+				Value<Object> waveform = message.getValues().get("Waveform");
+				double[] array = waveform.getValue(double[].class);
+				assertEquals(16, array.length);
+				for (int i = 0; i < 16; ++i) {
+					assertEquals(pulse + i, array[i], 0.001);
+				}
+				assertEquals(pulse, waveform.getTimestamp().getSec());
+				assertEquals(pulse * 1000, waveform.getTimestamp().getNs());
+
+				Value<Object> scalar = message.getValues().get("Scalar");
+				assertEquals(pulse * 2, scalar.getValue(Integer.class).intValue());
+				assertTrue(startMillis <= scalar.getTimestamp().getAsMillis());
+				assertTrue(scalar.getTimestamp().getAsMillis() <= System.currentTimeMillis());
+
+				Value<Object> time = message.getValues().get("Time");
+				assertEquals(pulse, time.getValue(Integer.class).intValue());
+				assertEquals(pulse + 1, time.getTimestamp().getSec());
+				assertEquals(pulse, time.getTimestamp().getNs());
+			}
+		} finally {
+			receiver.close();
+			sender.close();
+		}
+	}
+
+	@Test
+	public void testPooledAllocator() throws Exception {
+		PooledByteBufferAllocator valueAllocator = new PooledByteBufferAllocator();
+		PooledByteBufferAllocator compressedValueAllocator = new PooledByteBufferAllocator();
+		SenderConfig senderConfig = new SenderConfig(SenderConfig.DEFAULT_ADDRESS, new StandardPulseIdProvider(),
+				new StandardTimeProvider(), new MatlabByteConverter(), Compression.none, valueAllocator,
+				compressedValueAllocator);
+		Sender sender = new Sender(senderConfig);
+
+		sender.addSource(new DataChannel<double[]>(new ChannelConfig("Waveform", Type.Float64, new int[] {1024}, 1, 0,
+				ChannelConfig.DEFAULT_ENCODING, Compression.bitshuffle_lz4)) {
+			@Override
+			public double[] getValue(long pulseId) {
+				double[] value = new double[1024];
+				Arrays.fill(value, pulseId);
+				return value;
+			}
+		});
+		// the converter wraps byte arrays (which must not be pooled)
+		final byte[] bytes = new byte[256];
+		sender.addSource(new DataChannel<byte[]>(new ChannelConfig("Bytes", Type.Int8, new int[] {256}, 1, 0)) {
+			@Override
+			public byte[] getValue(long pulseId) {
+				Arrays.fill(bytes, (byte) pulseId);
+				return bytes;
+			}
+		});
+
+		BasicReceiver receiver = new BasicReceiver();
+		try {
+			sender.connect();
+			receiver.connect();
+
+			long allocatedBytes = 0;
+			for (int pulse = 0; pulse < 10; pulse++) {
+				sender.send();
+				Message<Object> message = receiver.receive();
+				assertEquals(pulse, message.getMainHeader().getPulseId());
+
+				double[] array = message.getValues().get("Waveform").getValue(double[].class);
+				assertEquals(1024, array.length);
+				assertEquals(pulse, array[0], 0.001);
+				assertEquals(pulse, array[1023], 0.001);
+
+				byte[] received = message.getValues().get("Bytes").getValue(byte[].class);
+				assertEquals(256, received.length);
+				assertEquals(pulse, received[0]);
+				assertEquals(pulse, received[255]);
+
+				if (pulse == 0) {
+					allocatedBytes = valueAllocator.getAllocatedBytes() + compressedValueAllocator.getAllocatedBytes();
+				} else {
+					// buffers are recycled
+					assertEquals(allocatedBytes,
+							valueAllocator.getAllocatedBytes() + compressedValueAllocator.getAllocatedBytes());
+				}
+			}
+			assertTrue(valueAllocator.getPooledBytes() > 0);
+			assertTrue(compressedValueAllocator.getPooledBytes() > 0);
+		} finally {
+			receiver.close();
+			sender.close();
+		}
+	}
+
 	// TODO Test whether expected messages are created
 	// TODO Test different modulo sources
 	// TODO Test different offset sources
@@ -0,0 +1,95 @@
+package ch.psi.bsread.allocator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import zmq.Msg;
+import ch.psi.bsread.allocator.PooledMsgAllocator.PooledMsg;
+import ch.psi.bsread.message.ReleasableValueImpl;
+import ch.psi.bsread.message.Timestamp;
+
+public class PooledMsgAllocatorTest {
+
+   @Test
+   public void testPooling() {
+      PooledMsgAllocator allocator = new PooledMsgAllocator(1024, 1024 * 1024);
+
+      Msg msg = allocator.allocate(100);
+      assertFalse(msg instanceof PooledMsg);
+      assertEquals(100, msg.size());
+
+      ByteBuffer buf = allocator.acquire(3000);
+      assertTrue(buf.isDirect());
+      assertEquals(4096, buf.capacity());
+      assertEquals(0, buf.position());
+      assertEquals(3000, buf.limit());
+      assertTrue(allocator.release(buf));
+      assertEquals(4096, allocator.getPooledBytes());
+
+      ByteBuffer buf2 = allocator.acquire(2049);
+      assertSame(buf, buf2);
+      assertEquals(2049, buf2.limit());
+      assertEquals(0, allocator.getPooledBytes());
+
+      // not from the pool
+      assertFalse(allocator.release(ByteBuffer.allocate(4096)));
+      assertFalse(allocator.release(ByteBuffer.allocateDirect(3000)));
+
+      // pool is full
+      assertTrue(allocator.release(allocator.acquire(1024 * 1024)));
+      assertFalse(allocator.release(buf2));
+      assertEquals(1024 * 1024, allocator.getPooledBytes());
+   }
+
+   @Test
+   public void testPooledMsg() {
+      PooledMsgAllocator allocator = new PooledMsgAllocator(1024, 1024 * 1024);
+
+      Msg msg = allocator.allocate(2000);
+      assertTrue(msg instanceof PooledMsg);
+      assertEquals(2000, msg.size());
+      assertTrue(msg.buf().isDirect());
+
+      ((PooledMsg) msg).release();
+      assertEquals(2048, allocator.getPooledBytes());
+      // multiple release calls have no effect
+      ((PooledMsg) msg).release();
+      assertEquals(2048, allocator.getPooledBytes());
+   }
+
+   @Test
+   public void testReleasableValue() {
+      AtomicInteger released = new AtomicInteger();
+      ByteBuffer buf = ByteBuffer.allocate(8);
+      ReleasableValueImpl<ByteBuffer> value =
+            new ReleasableValueImpl<>(buf, new Timestamp(1, 0), () -> released.incrementAndGet());
+
+      assertSame(value, value.retain());
+      assertEquals(2, value.getRefCount());
+      assertFalse(value.release());
+      assertSame(buf, value.getValue());
+      assertEquals(0, released.get());
+
+      assertTrue(value.release());
+      assertEquals(1, released.get());
+      assertNull(value.getValue());
+
+      assertFalse(value.release());
+      assertEquals(1, released.get());
+
+      try {
+         value.retain();
+         assertTrue("Retain of released value should fail.", false);
+      } catch (IllegalStateException e) {
+         // expected
+      }
+   }
+}
@@ -4,7 +4,16 @@ import ch.psi.bsread.message.MainHeader;
 import ch.psi.bsread.message.Timestamp;
 import org.junit.Test;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static org.junit.Assert.*;
 
@@ -140,4 +149,98 @@ public class MainHeaderAnalyzerTest {
 
         assertTrue(validator.reset());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void reportSnapshotAndMerge() {
+        MainHeaderAnalyzer validator = new MainHeaderAnalyzer("tcp://teststream");
+        validator.setCheckPulseIdTime(false);
+        validator.setCreateHistograms(true);
+
+        long timestamp = System.currentTimeMillis() - 100;
+        for (int i = 1; i <= 10; ++i) {
+            MainHeader header = new MainHeader();
+            // every second pulse-id
+            header.setPulseId(2 * i);
+            header.setGlobalTimestamp(Timestamp.ofMillis(timestamp + i));
+            assertTrue(validator.analyze(header));
+        }
+
+        AnalyzerReport snapshot = validator.getReport().snapshotAndReset();
+        assertEquals(10, snapshot.getNumberOfMessages());
+        assertEquals(9, snapshot.getNumberOfCorrectMessages());
+        assertEquals(9, snapshot.getHistogramPulseIdIncrements().getCount());
+        assertEquals(2, snapshot.getHistogramPulseIdIncrements().getValueAtPercentile(50));
+        assertEquals(9, snapshot.getHistogramDelays().getCount());
+        assertTrue(snapshot.getHistogramDelays().getValueAtPercentile(99) >= 90);
+        assertEquals(0, validator.getReport().getNumberOfMessages());
+        assertEquals(0, validator.getReport().getHistogramDelays().getCount());
+
+        AnalyzerReport total = new AnalyzerReport();
+        total.merge(snapshot);
+        total.merge(snapshot);
+        assertEquals(20, total.getNumberOfMessages());
+        assertEquals(18, total.getNumberOfCorrectMessages());
+        assertEquals(18, total.getHistogramPulseIdIncrements().getCount());
+        assertEquals(2, total.getHistogramPulseIdIncrements().getMax());
+    }
+
+    @Test
+    public void analyzeConcurrently() throws Exception {
+        MainHeaderAnalyzer validator = new MainHeaderAnalyzer("tcp://teststream");
+        validator.setCheckPulseIdTime(false);
+        int nrOfHeaders = 100000;
+        int nrOfThreads = 4;
+
+        long timestamp = System.currentTimeMillis() - nrOfHeaders;
+        MainHeader[] headers = new MainHeader[nrOfHeaders];
+        for (int i = 0; i < nrOfHeaders; ++i) {
+            headers[i] = new MainHeader();
+            headers[i].setPulseId(i + 1);
+            headers[i].setGlobalTimestamp(Timestamp.ofMillis(timestamp + i));
+        }
+
+        // all threads analyze the same headers - every header must be accepted at most once
+        AtomicIntegerArray accepted = new AtomicIntegerArray(nrOfHeaders);
+        ExecutorService executor = Executors.newFixedThreadPool(nrOfThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < nrOfThreads; ++t) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < nrOfHeaders; ++i) {
+                    if (validator.analyze(headers[i])) {
+                        accepted.incrementAndGet(i);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long nrOfAccepted = 0;
+        for (int i = 0; i < nrOfHeaders; ++i) {
+            assertTrue(accepted.get(i) <= 1);
+            nrOfAccepted += accepted.get(i);
+        }
+        // the last header is accepted by the first thread that gets there
+        assertEquals(1, accepted.get(nrOfHeaders - 1));
+
+        AnalyzerReport report = validator.getReport();
+        assertEquals(nrOfThreads * nrOfHeaders, report.getNumberOfMessages());
+        assertEquals(nrOfAccepted - 1, report.getNumberOfCorrectMessages());
+        assertEquals(report.getNumberOfMessages() - nrOfAccepted,
+                report.getDuplicatedPulseIds() + report.getPulseIdsBeforeLastValid());
+    }
+
+    @Test
+    public void simulatedPulseId() {
+        // same as the difference of the LocalDateTimes (winter and summer time)
+        for (LocalDateTime time : new LocalDateTime[] {
+                LocalDateTime.of(2018, 1, 15, 12, 0, 0),
+                LocalDateTime.of(2018, 7, 15, 12, 0, 0, 123000000)}) {
+            long millis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            assertEquals(ChronoUnit.MILLIS.between(MainHeaderAnalyzer.startPulseId, time) / 10,
+                    MainHeaderAnalyzer.getSimulatedPulseId(millis));
+        }
+    }
+}
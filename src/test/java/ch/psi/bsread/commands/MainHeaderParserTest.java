@@ -0,0 +1,120 @@
+package ch.psi.bsread.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.psi.bsread.ReceiverState;
+import ch.psi.bsread.command.Command;
+import ch.psi.bsread.command.PolymorphicCommandMixIn;
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.message.MainHeader;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.commands.MainHeaderCommand;
+import ch.psi.bsread.message.commands.MainHeaderParser;
+import ch.psi.bsread.message.commands.ReconnectCommand;
+import ch.psi.bsread.message.commands.StopCommand;
+
+public class MainHeaderParserTest {
+
+   @Test
+   public void testParseSameAsJackson() throws Exception {
+      ObjectMapper mapper = new ObjectMapper();
+      mapper.addMixIn(Command.class, PolymorphicCommandMixIn.class);
+      MainHeaderParser parser = new MainHeaderParser();
+
+      MainHeader header = new MainHeader();
+      header.setHash("50acfbebaa30924c857740b5a4d770b5");
+      header.setPulseId(1234567890123L);
+      header.setGlobalTimestamp(new Timestamp(1427960013L, 647000468));
+      header.setDataHeaderCompression(Compression.bitshuffle_lz4);
+      byte[] bytes = mapper.writeValueAsBytes(header);
+
+      MainHeaderCommand parsed = parser.parse(bytes, null);
+      assertNotNull(parsed);
+      MainHeaderCommand expected = (MainHeaderCommand) mapper.readValue(bytes, Command.class);
+      assertEquals(expected.getHtype(), parsed.getHtype());
+      assertEquals(expected.getHash(), parsed.getHash());
+      assertEquals(expected.getPulseId(), parsed.getPulseId());
+      assertEquals(expected.getGlobalTimestamp(), parsed.getGlobalTimestamp());
+      assertEquals(expected.getDataHeaderCompression(), parsed.getDataHeaderCompression());
+
+      // reordered fields, whitespace and negative pulse-id
+      bytes = ("{ \"pulse_id\" : -5,\n\t\"hash\":\"abc\", \"dh_compression\":null, "
+            + "\"global_timestamp\":{\"ns\":10,\"sec\":20},\"htype\":\"bsr_m-1.1\" }")
+                  .getBytes(StandardCharsets.UTF_8);
+      parsed = parser.parse(bytes, null);
+      assertNotNull(parsed);
+      assertEquals(-5, parsed.getPulseId());
+      assertEquals("abc", parsed.getHash());
+      assertEquals(new Timestamp(20, 10), parsed.getGlobalTimestamp());
+      assertNull(parsed.getDataHeaderCompression());
+   }
+
+   @Test
+   public void testReuseHash() throws Exception {
+      MainHeaderParser parser = new MainHeaderParser();
+      ReceiverState state = new ReceiverState();
+      String hash = new String("50acfbebaa30924c857740b5a4d770b5");
+      state.setDataHeaderHash(hash);
+
+      byte[] bytes = "{\"htype\":\"bsr_m-1.1\",\"hash\":\"50acfbebaa30924c857740b5a4d770b5\",\"pulse_id\":1}"
+            .getBytes(StandardCharsets.UTF_8);
+      MainHeaderCommand parsed = parser.parse(bytes, state);
+      assertSame(hash, parsed.getHash());
+
+      bytes = "{\"htype\":\"bsr_m-1.1\",\"hash\":\"50acfbebaa30924c857740b5a4d770b6\",\"pulse_id\":2}"
+            .getBytes(StandardCharsets.UTF_8);
+      parsed = parser.parse(bytes, state);
+      assertEquals("50acfbebaa30924c857740b5a4d770b6", parsed.getHash());
+      assertEquals(2, parsed.getPulseId());
+   }
+
+   @Test
+   public void testFallback() throws Exception {
+      ObjectMapper mapper = new ObjectMapper();
+      mapper.addMixIn(Command.class, PolymorphicCommandMixIn.class);
+      MainHeaderParser parser = new MainHeaderParser();
+
+      // commands are left to Jackson
+      assertNull(parser.parse(mapper.writeValueAsBytes(new StopCommand()), null));
+      assertNull(parser.parse(mapper.writeValueAsBytes(new ReconnectCommand()), null));
+
+      String[] fallbacks = new String[] {
+            // other htype version
+            "{\"htype\":\"bsr_m-1.0\",\"hash\":\"abc\",\"pulse_id\":1}",
+            // unknown property
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":1,\"foo\":1}",
+            // escapes
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"a\\\"bc\",\"pulse_id\":1}",
+            // floating point
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":1.0}",
+            // overflow
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":92233720368547758070}",
+            // unknown compression
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":1,\"dh_compression\":\"foo\"}",
+            // illegal time
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":1,\"global_timestamp\":{\"sec\":1,\"ns\":-1}}",
+            // no hash
+            "{\"htype\":\"bsr_m-1.1\",\"pulse_id\":1}",
+            // truncated
+            "{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":1",
+            // not json
+            "\u0001\u0002"
+      };
+      for (String fallback : fallbacks) {
+         assertNull(fallback, parser.parse(fallback.getBytes(StandardCharsets.UTF_8), null));
+      }
+
+      // parser still works after fallbacks
+      assertEquals(7, parser.parse("{\"htype\":\"bsr_m-1.1\",\"hash\":\"abc\",\"pulse_id\":7}"
+            .getBytes(StandardCharsets.UTF_8), null).getPulseId());
+   }
+}
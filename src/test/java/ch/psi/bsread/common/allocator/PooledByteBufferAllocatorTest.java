@@ -0,0 +1,59 @@
+package ch.psi.bsread.common.allocator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class PooledByteBufferAllocatorTest {
+
+   @Test
+   public void testPooling() {
+      PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(ByteBufferAllocator.DEFAULT_ALLOCATOR, 8192);
+
+      ByteBuffer buf = allocator.apply(3000);
+      assertEquals(4096, buf.capacity());
+      assertEquals(0, buf.position());
+      assertEquals(3000, buf.limit());
+      assertEquals(4096, allocator.getAllocatedBytes());
+
+      buf.order(ByteOrder.LITTLE_ENDIAN).putInt(5);
+      assertTrue(allocator.release(buf.duplicate()));
+      assertEquals(4096, allocator.getPooledBytes());
+
+      ByteBuffer pooled = allocator.apply(2049);
+      assertSame(buf.array(), pooled.array());
+      assertEquals(0, pooled.position());
+      assertEquals(2049, pooled.limit());
+      assertEquals(ByteOrder.BIG_ENDIAN, pooled.order());
+      assertEquals(0, allocator.getPooledBytes());
+      assertEquals(4096, allocator.getAllocatedBytes());
+
+      // other size class
+      allocator.apply(2048);
+      assertEquals(4096 + 2048, allocator.getAllocatedBytes());
+   }
+
+   @Test
+   public void testRelease() {
+      PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(ByteBufferAllocator.DEFAULT_ALLOCATOR, 8192);
+
+      // not a size class
+      assertFalse(allocator.release(ByteBuffer.allocate(3000)));
+      assertFalse(allocator.release(ByteBuffer.allocate(4096).asReadOnlyBuffer()));
+
+      ByteBuffer buf1 = allocator.apply(4096);
+      ByteBuffer buf2 = allocator.apply(4096);
+      ByteBuffer buf3 = allocator.apply(4096);
+      assertTrue(allocator.release(buf1));
+      assertTrue(allocator.release(buf2));
+      // pool is full
+      assertFalse(allocator.release(buf3));
+      assertEquals(8192, allocator.getPooledBytes());
+   }
+}
@@ -0,0 +1,129 @@
+package ch.psi.bsread.common.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+public class HandlerDispatcherTest {
+
+   @Test
+   public void testOrderAndIsolation() throws Exception {
+      final int nrOfEvents = 10000;
+      CountDownLatch slowLatch = new CountDownLatch(1);
+      List<Integer> fastEvents = new CopyOnWriteArrayList<>();
+      List<Integer> slowEvents = new CopyOnWriteArrayList<>();
+      CountDownLatch fastDone = new CountDownLatch(1);
+      Consumer<Integer> fast = event -> {
+         fastEvents.add(event);
+         if (event == nrOfEvents - 1) {
+            fastDone.countDown();
+         }
+      };
+      Consumer<Integer> slow = event -> {
+         try {
+            slowLatch.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         slowEvents.add(event);
+      };
+
+      try (HandlerDispatcher dispatcher = new HandlerDispatcher("Test", nrOfEvents, OverflowStrategy.BLOCK)) {
+         for (int i = 0; i < nrOfEvents; ++i) {
+            dispatcher.dispatchAll(Arrays.asList(fast, slow), Consumer::accept, i, false);
+         }
+
+         // the slow handler does not stall the fast one
+         assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+         assertEquals(nrOfEvents, fastEvents.size());
+         assertTrue(dispatcher.getHandlerStatistics(slow).getQueueDepth() > 0);
+         assertTrue(dispatcher.getHandlerStatistics(slow).getLagNanos() > 0);
+
+         slowLatch.countDown();
+         long start = System.currentTimeMillis();
+         while (dispatcher.getHandlerStatistics(slow).getNrOfHandled() < nrOfEvents
+               && System.currentTimeMillis() - start < 10000) {
+            TimeUnit.MILLISECONDS.sleep(10);
+         }
+         assertEquals(0, dispatcher.getHandlerStatistics(slow).getQueueDepth());
+         assertEquals(0, dispatcher.getHandlerStatistics(slow).getLagNanos());
+      }
+
+      assertEquals(nrOfEvents, fastEvents.size());
+      assertEquals(nrOfEvents, slowEvents.size());
+      for (int i = 0; i < nrOfEvents; ++i) {
+         assertEquals(i, fastEvents.get(i).intValue());
+         assertEquals(i, slowEvents.get(i).intValue());
+      }
+   }
+
+   @Test
+   public void testAwaitHandling() throws Exception {
+      AtomicInteger count = new AtomicInteger();
+      List<Consumer<Integer>> handlers = new ArrayList<>();
+      for (int i = 0; i < 4; ++i) {
+         handlers.add(event -> count.incrementAndGet());
+      }
+
+      try (HandlerDispatcher dispatcher = new HandlerDispatcher("Test")) {
+         for (int i = 0; i < 100; ++i) {
+            dispatcher.dispatchAll(handlers, Consumer::accept, i, true);
+            assertEquals((i + 1) * handlers.size(), count.get());
+         }
+      }
+   }
+
+   @Test
+   public void testOverflow() throws Exception {
+      testOverflow(OverflowStrategy.DROP_NEWEST, Arrays.asList(0, 1, 2, 3));
+      testOverflow(OverflowStrategy.DROP_OLDEST, Arrays.asList(0, 7, 8, 9));
+      testOverflow(OverflowStrategy.KEEP_LATEST, Arrays.asList(0, 9));
+   }
+
+   private void testOverflow(OverflowStrategy overflowStrategy, List<Integer> expected) throws Exception {
+      final int nrOfEvents = 10;
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch blocked = new CountDownLatch(1);
+      List<Integer> events = new CopyOnWriteArrayList<>();
+      AtomicInteger afterHandling = new AtomicInteger();
+      Consumer<Integer> handler = event -> {
+         started.countDown();
+         try {
+            blocked.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         events.add(event);
+      };
+
+      try (HandlerDispatcher dispatcher = new HandlerDispatcher("Test", 3, overflowStrategy)) {
+         dispatcher.dispatch(handler, Consumer::accept, 0, afterHandling::incrementAndGet);
+         // first event is being handled (not queued)
+         assertTrue(started.await(10, TimeUnit.SECONDS));
+         for (int i = 1; i < nrOfEvents; ++i) {
+            dispatcher.dispatch(handler, Consumer::accept, i, afterHandling::incrementAndGet);
+         }
+         assertEquals(nrOfEvents - expected.size(), dispatcher.getHandlerStatistics(handler).getNrOfDropped());
+
+         blocked.countDown();
+         long start = System.currentTimeMillis();
+         while (afterHandling.get() < nrOfEvents && System.currentTimeMillis() - start < 10000) {
+            TimeUnit.MILLISECONDS.sleep(10);
+         }
+      }
+
+      assertEquals(expected, events);
+      // called for handled and dropped events
+      assertEquals(nrOfEvents, afterHandling.get());
+   }
+}
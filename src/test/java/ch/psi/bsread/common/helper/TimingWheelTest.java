@@ -0,0 +1,104 @@
+package ch.psi.bsread.common.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+   @Test
+   public void testExpire() {
+      TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+      List<String> expired = new ArrayList<>();
+
+      wheel.schedule("a", 5);
+      wheel.schedule("b", 25);
+      // several rounds later
+      wheel.schedule("c", 105);
+      TimingWheel.Timeout<String> d = wheel.schedule("d", 15);
+      assertEquals(4, wheel.size());
+
+      // tick of 'a' did not pass completely
+      assertEquals(0, wheel.expire(9, expired::add));
+      assertEquals(1, wheel.expire(10, expired::add));
+      assertEquals(Arrays.asList("a"), expired);
+
+      assertTrue(d.cancel());
+      assertFalse(d.cancel());
+      assertEquals(0, wheel.expire(29, expired::add));
+      assertEquals(1, wheel.expire(30, expired::add));
+      assertEquals(Arrays.asList("a", "b"), expired);
+      assertEquals(1, wheel.size());
+
+      // already passed deadlines expire with the next tick
+      TimingWheel.Timeout<String> e = wheel.schedule("e", 0);
+      assertEquals(1, wheel.expire(40, expired::add));
+      assertTrue(e.isExpired());
+      assertFalse(e.cancel());
+
+      // consumer reschedules
+      wheel.expire(1000, element -> {
+         expired.add(element);
+         wheel.schedule(element, 2000);
+      });
+      assertEquals(Arrays.asList("a", "b", "e", "c"), expired);
+      assertEquals(1, wheel.size());
+      assertEquals(1, wheel.expire(2010, expired::add));
+      assertEquals(0, wheel.size());
+   }
+
+   @Test
+   public void testNextExpiration() {
+      TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+      assertEquals(Long.MAX_VALUE, wheel.nextExpiration());
+
+      wheel.schedule("a", 25);
+      // once the tick of 'a' passed completely
+      assertEquals(30, wheel.nextExpiration());
+      assertEquals(0, wheel.expire(29, element -> {}));
+      assertEquals(1, wheel.expire(wheel.nextExpiration(), element -> {}));
+
+      // several rounds later (not within the next rotation)
+      wheel.schedule("b", 205);
+      assertEquals(70, wheel.nextExpiration());
+      wheel.expire(70, element -> {});
+      assertEquals(110, wheel.nextExpiration());
+      wheel.expire(110, element -> {});
+      assertEquals(150, wheel.nextExpiration());
+      wheel.expire(150, element -> {});
+      assertEquals(190, wheel.nextExpiration());
+      wheel.expire(190, element -> {});
+      assertEquals(210, wheel.nextExpiration());
+
+      // earlier deadline in a later bucket
+      wheel.schedule("c", 195);
+      assertEquals(200, wheel.nextExpiration());
+   }
+
+   @Test
+   public void testCancelIf() {
+      TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+      List<String> expired = new ArrayList<>();
+
+      wheel.schedule("a1", 5);
+      wheel.schedule("b1", 5);
+      wheel.schedule("a2", 105);
+      TimingWheel.Timeout<String> b2 = wheel.schedule("b2", 25);
+
+      assertEquals(2, wheel.cancelIf(element -> element.startsWith("b")));
+      assertEquals(2, wheel.size());
+      assertFalse(b2.cancel());
+
+      assertEquals(2, wheel.expire(1000, expired::add));
+      Collections.sort(expired);
+      assertEquals(Arrays.asList("a1", "a2"), expired);
+      assertEquals(0, wheel.size());
+   }
+}
@@ -0,0 +1,104 @@
+package ch.psi.bsread.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class IndexedValueMapTest {
+
+	private DataHeader getDataHeader() {
+		DataHeader dataHeader = new DataHeader();
+		dataHeader.addChannel(new ChannelConfig("A", Type.Int32));
+		dataHeader.addChannel(new ChannelConfig("B", Type.Int32));
+		dataHeader.addChannel(new ChannelConfig("C", Type.Int32));
+		return dataHeader;
+	}
+
+	@Test
+	public void testChannelIndex() {
+		DataHeader dataHeader = getDataHeader();
+		ChannelIndex index = dataHeader.getChannelIndex();
+		assertSame(index, dataHeader.getChannelIndex());
+		assertEquals(3, index.size());
+		assertEquals(0, index.getSlot("A"));
+		assertEquals(2, index.getSlot("C"));
+		assertEquals(-1, index.getSlot("D"));
+		assertEquals("B", index.getName(1));
+
+		dataHeader.addChannel(new ChannelConfig("D", Type.Int32));
+		assertEquals(3, dataHeader.getChannelIndex().getSlot("D"));
+	}
+
+	@Test
+	public void testMap() throws Exception {
+		DataHeader dataHeader = getDataHeader();
+		IndexedValueMap<Integer> values = new IndexedValueMap<>(dataHeader.getChannelIndex());
+		Map<String, Value<Integer>> expected = new LinkedHashMap<>();
+		assertTrue(values.isEmpty());
+		assertEquals(expected, values);
+
+		Value<Integer> c = new ValueImpl<>(3, new Timestamp());
+		Value<Integer> a = new ValueImpl<>(1, new Timestamp());
+		Value<Integer> x = new ValueImpl<>(42, new Timestamp());
+		assertNull(values.setValue(2, c));
+		assertNull(values.put("A", a));
+		assertNull(values.put("X", x));
+		expected.put("A", a);
+		expected.put("C", c);
+		expected.put("X", x);
+
+		assertEquals(3, values.size());
+		assertEquals(expected, values);
+		assertEquals(expected.hashCode(), values.hashCode());
+		assertSame(a, values.getValue(0));
+		assertNull(values.getValue(1));
+		assertSame(c, values.get("C"));
+		assertSame(x, values.get("X"));
+		assertFalse(values.containsKey("B"));
+		// DataHeader order followed by the other channels
+		assertEquals(Arrays.asList("A", "C", "X"), Arrays.asList(values.keySet().toArray()));
+
+		assertSame(a, values.remove("A"));
+		assertNull(values.remove("A"));
+		assertEquals(2, values.size());
+
+		Iterator<Map.Entry<String, Value<Integer>>> iter = values.entrySet().iterator();
+		while (iter.hasNext()) {
+			if (iter.next().getKey().equals("X")) {
+				iter.remove();
+			}
+		}
+		assertEquals(1, values.size());
+		assertSame(c, values.get("C"));
+
+		values.put("B", a);
+		IndexedValueMap<Integer> copy = SerializationHelper.copy(values);
+		assertEquals(values.keySet(), copy.keySet());
+		assertEquals(values.get("B").getValue(), copy.getValue(1).getValue());
+	}
+
+	@Test
+	public void testMessage() {
+		DataHeader dataHeader = getDataHeader();
+		Value<Integer> b = new ValueImpl<>(2, new Timestamp());
+
+		Message<Integer> message = new Message<>();
+		message.setDataHeader(dataHeader);
+		message.getValues().put("B", b);
+		assertSame(b, message.getValue(1));
+
+		message.setValues(new IndexedValueMap<>(dataHeader.getChannelIndex()));
+		message.getValues().put("B", b);
+		assertSame(b, message.getValue(1));
+		assertNull(message.getValue(0));
+	}
+}
@@ -0,0 +1,100 @@
+package ch.psi.bsread.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.LazyValueConverter;
+
+public class LazyValueTest {
+
+	@Test
+	public void testOnce() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES);
+		LazyValueImpl<ByteBuffer> value = new LazyValueImpl<>(() -> {
+			calls.incrementAndGet();
+			return buf;
+		}, new Timestamp(1, 2));
+
+		assertFalse(value.isMaterialized());
+		assertEquals(1, value.getTimestamp().getSec());
+		assertEquals(0, calls.get());
+
+		final int nrOfThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(nrOfThreads);
+		try {
+			CountDownLatch latch = new CountDownLatch(1);
+			List<Future<ByteBuffer>> futures = new ArrayList<>();
+			for (int i = 0; i < nrOfThreads; ++i) {
+				futures.add(executor.submit(() -> {
+					latch.await();
+					return value.getValue();
+				}));
+			}
+			latch.countDown();
+			for (Future<ByteBuffer> future : futures) {
+				assertSame(buf, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(value.isMaterialized());
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void testConverter() throws Exception {
+		ChannelConfig config = new ChannelConfig("ABC", Type.Int32, new int[] {64}, 1, 0,
+				ChannelConfig.ENCODING_LITTLE_ENDIAN, Compression.lz4);
+		MatlabByteConverter byteConverter = new MatlabByteConverter();
+		int[] ints = new int[64];
+		for (int i = 0; i < ints.length; ++i) {
+			ints[i] = i;
+		}
+		ByteBuffer uncompressed = byteConverter.getBytes(ints, config.getType(), ByteOrder.LITTLE_ENDIAN,
+				ByteBuffer::allocate);
+		ByteBuffer compressed = config.getCompression().getCompressor().compressData(uncompressed,
+				uncompressed.position(), uncompressed.remaining(), 0, ByteBuffer::allocate, config.getType().getBytes());
+
+		AtomicInteger released = new AtomicInteger();
+		Value<ByteBuffer> value = new LazyValueConverter().getMessageValue(null, null, config, compressed,
+				new Timestamp(1, 2), () -> released.incrementAndGet());
+		assertFalse(((LazyValueImpl<ByteBuffer>) value).isMaterialized());
+		assertEquals(0, released.get());
+
+		assertEquals(uncompressed, value.getValue());
+		assertTrue(((LazyValueImpl<ByteBuffer>) value).isMaterialized());
+		assertEquals(1, released.get());
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buf.asIntBuffer().put(42);
+		LazyValueImpl<ByteBuffer> value = new LazyValueImpl<>(() -> buf, new Timestamp(10, 2));
+
+		LazyValueImpl<ByteBuffer> copy = SerializationHelper.copy(value);
+		assertTrue(value.isMaterialized());
+		assertTrue(copy.isMaterialized());
+		assertEquals(value.getTimestamp(), copy.getTimestamp());
+		assertEquals(buf.order(), copy.getValue().order());
+		assertEquals(42, copy.getValue().asIntBuffer().get());
+	}
+}
@@ -0,0 +1,76 @@
+package ch.psi.bsread.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LogLinearHistogramTest {
+
+   @Test
+   public void testExactValues() {
+      LogLinearHistogram histogram = new LogLinearHistogram(5);
+      for (int i = 1; i <= 10; ++i) {
+         histogram.record(i);
+      }
+      histogram.record(-5);
+
+      assertEquals(11, histogram.getCount());
+      assertEquals(55, histogram.getSum());
+      assertEquals(0, histogram.getMin());
+      assertEquals(10, histogram.getMax());
+      assertEquals(5, histogram.getValueAtPercentile(50));
+      assertEquals(10, histogram.getValueAtPercentile(100));
+      assertEquals(0, histogram.getValueAtPercentile(0));
+   }
+
+   @Test
+   public void testRelativeError() {
+      final int precisionBits = 5;
+      LogLinearHistogram histogram = new LogLinearHistogram(precisionBits);
+      Random random = new Random(0);
+      long[] values = new long[100000];
+      for (int i = 0; i < values.length; ++i) {
+         values[i] = (long) Math.exp(random.nextDouble() * 40);
+         histogram.record(values[i]);
+      }
+      histogram.record(Long.MAX_VALUE);
+      java.util.Arrays.sort(values);
+
+      for (double percentile : new double[] {10, 50, 90, 99, 99.9}) {
+         long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+         long actual = histogram.getValueAtPercentile(percentile);
+         assertTrue(actual >= expected);
+         assertTrue(percentile + ": " + expected + " vs " + actual,
+               actual - expected <= expected / (1 << precisionBits));
+      }
+      assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+   }
+
+   @Test
+   public void testMergeAndSnapshot() {
+      LogLinearHistogram first = new LogLinearHistogram();
+      LogLinearHistogram second = new LogLinearHistogram();
+      for (int i = 0; i < 1000; ++i) {
+         first.record(i);
+         second.record(1000 + i);
+      }
+
+      LogLinearHistogram merged = first.copy();
+      merged.add(second);
+      assertEquals(2000, merged.getCount());
+      assertEquals(0, merged.getMin());
+      assertEquals(1999, merged.getMax());
+      assertEquals(1999L * 2000 / 2, merged.getSum());
+      assertEquals(1000, first.getCount());
+
+      LogLinearHistogram snapshot = merged.snapshotAndReset();
+      assertEquals(2000, snapshot.getCount());
+      assertEquals(1999, snapshot.getMax());
+      assertEquals(0, merged.getCount());
+      assertEquals(0, merged.getMax());
+      assertEquals(0, merged.getValueAtPercentile(50));
+   }
+}
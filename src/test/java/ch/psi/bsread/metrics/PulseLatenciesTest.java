@@ -0,0 +1,82 @@
+package ch.psi.bsread.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Value;
+import ch.psi.bsread.message.ValueImpl;
+import ch.psi.bsread.metrics.PulseLatencies.Stage;
+
+public class PulseLatenciesTest {
+
+   @Test
+   public void testRecord() {
+      PulseLatencies latencies = new PulseLatencies();
+      Timestamp globalTimestamp = new Timestamp(1000, 500);
+      long globalNanos = TimeUnit.SECONDS.toNanos(1000) + 500;
+
+      latencies.record(Stage.RECEIVED, globalTimestamp, globalNanos + 1000);
+      latencies.record(Stage.EXTRACTED, globalTimestamp, globalNanos + 5000);
+      latencies.record(Stage.EXTRACTED, globalTimestamp, globalNanos + 7000);
+      // clock of sender ahead
+      latencies.record(Stage.DELIVERED, globalTimestamp, globalNanos - 1000);
+
+      assertEquals(1, latencies.getHistogram(Stage.RECEIVED).getCount());
+      assertEquals(1000, latencies.getHistogram(Stage.RECEIVED).getMax());
+      assertEquals(2, latencies.getHistogram(Stage.EXTRACTED).getCount());
+      assertEquals(5000, latencies.getHistogram(Stage.EXTRACTED).getMin());
+      assertEquals(0, latencies.getHistogram(Stage.SYNCHRONIZED).getCount());
+      assertEquals(0, latencies.getHistogram(Stage.DELIVERED).getMax());
+
+      // undefined timestamps are ignored
+      latencies.record(Stage.SYNCHRONIZED, null);
+      latencies.record(Stage.SYNCHRONIZED, new Timestamp());
+      assertEquals(0, latencies.getHistogram(Stage.SYNCHRONIZED).getCount());
+
+      PulseLatencies snapshot = latencies.snapshotAndReset();
+      assertEquals(2, snapshot.getHistogram(Stage.EXTRACTED).getCount());
+      assertEquals(0, latencies.getHistogram(Stage.EXTRACTED).getCount());
+   }
+
+   @Test
+   public void testIocLatency() {
+      PulseLatencies latencies = new PulseLatencies();
+      long now = System.currentTimeMillis();
+      Timestamp oldest = new Timestamp(now / 1000 - 10, 0);
+      Timestamp newest = new Timestamp(now / 1000, 0);
+
+      latencies.recordIocLatency(Arrays.<Value<Object>>asList(
+            new ValueImpl<>(null, newest),
+            new ValueImpl<>(null, oldest),
+            new ValueImpl<>(null, new Timestamp())));
+      latencies.recordIocLatency(Collections.<Value<Object>>emptyList());
+
+      LogLinearHistogram histogram = latencies.getIocHistogram();
+      assertEquals(1, histogram.getCount());
+      // the oldest timestamp defines the latency
+      assertTrue(histogram.getMax() >= TimeUnit.SECONDS.toNanos(10));
+      assertTrue(histogram.getMax() < TimeUnit.SECONDS.toNanos(12));
+   }
+
+   @Test
+   public void testCurrentTimeNanos() throws Exception {
+      PulseLatencies latencies = new PulseLatencies();
+      for (int i = 0; i < 3; ++i) {
+         long before = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+         long time = latencies.currentTimeNanos();
+         long after = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+         // calibrated within the granularity of currentTimeMillis (allow some slack)
+         assertTrue(time >= before - TimeUnit.MILLISECONDS.toNanos(5));
+         assertTrue(time <= after + TimeUnit.MILLISECONDS.toNanos(5));
+         TimeUnit.MILLISECONDS.sleep(600);
+      }
+   }
+}
@@ -0,0 +1,73 @@
+package ch.psi.bsread.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Value;
+import ch.psi.bsread.message.ValueImpl;
+
+/**
+ * Measures the cost of the metric updates of a message with 1000 (compressed) channels relative to
+ * the time budget of a message at 100 Hz. Not a unit test, run it manually.
+ */
+public class ReceiverMetricsBenchmark {
+   // 100 Hz
+   private static final long MESSAGE_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+   private static final int NR_OF_CHANNELS = 1000;
+   private static final int NR_OF_MESSAGES = 2000;
+   private static final int NR_OF_RUNS = 5;
+
+   private final Timestamp globalTimestamp = new Timestamp(System.currentTimeMillis() / 1000, 0);
+   private final List<Value<Object>> values = new ArrayList<>(NR_OF_CHANNELS);
+   private int decompressionCount;
+
+   public static void main(String[] args) {
+      new ReceiverMetricsBenchmark().run();
+   }
+
+   private void run() {
+      ReceiverMetrics metrics = new ReceiverMetrics();
+      for (int channel = 0; channel < NR_OF_CHANNELS; ++channel) {
+         values.add(new ValueImpl<>(null, new Timestamp(globalTimestamp.getSec(), channel)));
+      }
+      long blackHole = 0;
+
+      // first runs are warm-up
+      for (int run = 0; run < NR_OF_RUNS; ++run) {
+         final long start = System.nanoTime();
+         for (int i = 0; i < NR_OF_MESSAGES; ++i) {
+            blackHole += updateMetrics(metrics);
+         }
+         final long nanosPerMessage = (System.nanoTime() - start) / NR_OF_MESSAGES;
+
+         System.out.println(String.format(
+               "Metrics overhead per message with %d channels: %d ns (%.4f%% at 100 Hz) %d", NR_OF_CHANNELS,
+               nanosPerMessage, 100.0 * nanosPerMessage / MESSAGE_PERIOD_NANOS, blackHole % 2));
+      }
+   }
+
+   private long updateMetrics(ReceiverMetrics metrics) {
+      long nrOfBytes = 0;
+      int nrOfDecompressions = 0;
+      long sum = 0;
+      // as done by the AbstractMessageExtractor for every compressed value
+      for (int channel = 0; channel < NR_OF_CHANNELS; ++channel) {
+         nrOfBytes += 8 * 1024 + 16;
+         ++nrOfDecompressions;
+         if (++decompressionCount % ReceiverMetrics.DECOMPRESSION_SAMPLING == 0) {
+            final long start = System.nanoTime();
+            sum += start;
+            metrics.recordDecompressionTime(System.nanoTime() - start);
+         }
+      }
+      metrics.getLatencies().record(PulseLatencies.Stage.RECEIVED, globalTimestamp);
+      metrics.getLatencies().record(PulseLatencies.Stage.EXTRACTED, globalTimestamp);
+      metrics.getLatencies().recordIocLatency(values);
+      metrics.bytesReceived(nrOfBytes);
+      metrics.valuesDecompressed(nrOfDecompressions);
+      metrics.messageReceived();
+      return sum;
+   }
+}
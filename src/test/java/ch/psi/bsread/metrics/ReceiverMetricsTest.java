@@ -0,0 +1,148 @@
+package ch.psi.bsread.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import ch.psi.bsread.DataChannel;
+import ch.psi.bsread.Receiver;
+import ch.psi.bsread.ReceiverConfig;
+import ch.psi.bsread.Sender;
+import ch.psi.bsread.SenderConfig;
+import ch.psi.bsread.TimeProvider;
+import ch.psi.bsread.compression.Compression;
+import ch.psi.bsread.configuration.Channel;
+import ch.psi.bsread.converter.MatlabByteConverter;
+import ch.psi.bsread.impl.StandardPulseIdProvider;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.Message;
+import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.message.Type;
+
+public class ReceiverMetricsTest {
+
+   private Sender createSender() {
+      SenderConfig senderConfig = new SenderConfig(
+            SenderConfig.DEFAULT_ADDRESS,
+            new StandardPulseIdProvider(),
+            new TimeProvider() {
+
+               @Override
+               public Timestamp getTime(long pulseId) {
+                  return new Timestamp(pulseId, 0L);
+               }
+            },
+            new MatlabByteConverter());
+      senderConfig.setBlockingSend(true);
+      Sender sender = new Sender(senderConfig);
+      sender.addSource(new DataChannel<double[]>(
+            new ChannelConfig("ABC", Type.Float64, new int[] {1024}, 1, 0, ChannelConfig.DEFAULT_ENCODING,
+                  Compression.bitshuffle_lz4)) {
+         @Override
+         public double[] getValue(long pulseId) {
+            return new double[1024];
+         }
+
+         @Override
+         public Timestamp getTime(long pulseId) {
+            return new Timestamp(pulseId, 0L);
+         }
+      });
+      return sender;
+   }
+
+   @Test
+   public void testReceiverMetrics() throws Exception {
+      Sender sender = createSender();
+      ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<>();
+      receiverConfig.setMetricsEnabled(true);
+      Receiver<ByteBuffer> receiver = new Receiver<>(receiverConfig);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try {
+         sender.connect();
+         receiver.connect();
+
+         ReceiverMetrics metrics = receiver.getReceiverMetrics();
+         assertNotNull(metrics);
+         ObjectName name = metrics.getObjectName();
+         // (other Receivers of the same address get an id)
+         assertEquals(ReceiverMetrics.MBEAN_DOMAIN, name.getDomain());
+         assertEquals(ObjectName.quote(ReceiverConfig.DEFAULT_ADDRESS), name.getKeyProperty("address"));
+         assertTrue(server.isRegistered(name));
+
+         for (int i = 0; i < 10; ++i) {
+            sender.send();
+            Message<ByteBuffer> message = receiver.receive();
+            assertNotNull(message);
+         }
+
+         assertEquals(10L, server.getAttribute(name, "NrOfMessages"));
+         assertTrue((Long) server.getAttribute(name, "NrOfBytes") > 0);
+         assertEquals(10L, server.getAttribute(name, "NrOfDecompressions"));
+         assertEquals(0L, server.getAttribute(name, "NrOfParseFailures"));
+         assertEquals(0L, server.getAttribute(name, "NrOfDrainedMessages"));
+         assertTrue((Double) server.getAttribute(name, "MessageRate") > 0);
+         // reading the rate does not reset it (e.g. for other JMX clients)
+         assertTrue((Double) server.getAttribute(name, "MessageRate") > 0);
+         // pulse 0 has no (i.e. an undefined) global timestamp
+         assertEquals(9, metrics.getLatencies().getHistogram(PulseLatencies.Stage.RECEIVED).getCount());
+         assertEquals(9, metrics.getLatencies().getHistogram(PulseLatencies.Stage.EXTRACTED).getCount());
+         assertNotNull(server.getAttribute(name, "LatencySummary"));
+
+         receiver.close();
+         assertFalse(server.isRegistered(name));
+
+         // visible again after a new connect
+         receiver.connect();
+         name = metrics.getObjectName();
+         assertNotNull(name);
+         assertTrue(server.isRegistered(name));
+         receiver.close();
+         assertFalse(server.isRegistered(name));
+      } finally {
+         receiver.close();
+         sender.close();
+      }
+   }
+
+   @Test
+   public void testFilteredMessages() throws Exception {
+      Sender sender = createSender();
+      ReceiverConfig<ByteBuffer> receiverConfig = new ReceiverConfig<>();
+      receiverConfig.setMetricsEnabled(true);
+      // odd pulse-ids are filtered
+      receiverConfig.addRequestedChannel(new Channel("ABC", 2, 0));
+      Receiver<ByteBuffer> receiver = new Receiver<>(receiverConfig);
+      try {
+         sender.connect();
+         receiver.connect();
+
+         for (int i = 0; i < 10; ++i) {
+            sender.send();
+         }
+         for (int i = 0; i < 5; ++i) {
+            Message<ByteBuffer> message = receiver.receive();
+            assertNotNull(message);
+            assertEquals(2 * i, message.getMainHeader().getPulseId());
+         }
+
+         ReceiverMetrics metrics = receiver.getReceiverMetrics();
+         assertEquals(5, metrics.getNrOfMessages());
+         assertEquals(4, metrics.getNrOfFilteredMessages());
+         // skipped messages are not dropped mid-frame
+         assertEquals(0, metrics.getNrOfDrainedMessages());
+      } finally {
+         receiver.close();
+         sender.close();
+      }
+   }
+}
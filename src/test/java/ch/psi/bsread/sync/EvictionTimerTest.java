@@ -0,0 +1,154 @@
+package ch.psi.bsread.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.psi.bsread.configuration.Channel;
+
+public class EvictionTimerTest {
+   private static final long TIMEOUT_MILLIS = 200;
+   private static final List<Channel> CHANNELS = Arrays.asList(new Channel("A", 1), new Channel("B", 1));
+   private ExecutorService executor;
+
+   @Before
+   public void setUp() {
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @After
+   public void tearDown() {
+      executor.shutdownNow();
+   }
+
+   @Test
+   public void testIncompletePulseEvicted() throws Exception {
+      for (AbstractMessageSynchronizerLockFree<TestEvent> synchronizer : createMessageSynchronizers(
+            TIMEOUT_MILLIS)) {
+         final Future<Map<String, TestEvent>> next = executor.submit(synchronizer::nextMessage);
+         final long start = System.currentTimeMillis();
+         synchronizer.addMessage(new TestEvent("A", 0, 0, 0));
+
+         // only the timer wakes the consumer (no further messages arrive)
+         final Map<String, TestEvent> messages = next.get(10, TimeUnit.SECONDS);
+         assertTrue(System.currentTimeMillis() - start >= TIMEOUT_MILLIS - EvictionTimer.TICK_MILLIS);
+         assertEquals(1, messages.size());
+         assertEquals(0, messages.get("A").getPulseId());
+         assertEquals(0, synchronizer.getBufferSize());
+
+         synchronizer.close();
+      }
+   }
+
+   @Test
+   public void testNoEvictionAfterCompletion() throws Exception {
+      for (AbstractMessageSynchronizerLockFree<TestEvent> synchronizer : createMessageSynchronizers(
+            TIMEOUT_MILLIS)) {
+         synchronizer.addMessage(new TestEvent("A", 0, 0, 0));
+         synchronizer.addMessage(new TestEvent("B", 0, 0, 0));
+         assertEquals(2, executor.submit(synchronizer::nextMessage).get(10, TimeUnit.SECONDS).size());
+
+         // deadline of the completed pulse passes
+         final Future<Map<String, TestEvent>> next = executor.submit(synchronizer::nextMessage);
+         TimeUnit.MILLISECONDS.sleep(2 * TIMEOUT_MILLIS);
+         assertFalse(next.isDone());
+         assertEquals(0, synchronizer.getBufferSize());
+
+         synchronizer.close();
+         assertNull(next.get(10, TimeUnit.SECONDS));
+      }
+   }
+
+   @Test
+   public void testMultipleConsumers() throws Exception {
+      final long processingMillis = 10 * TIMEOUT_MILLIS;
+      for (AbstractMessageSynchronizerLockFree<TestEvent> synchronizer : createMessageSynchronizers(
+            TIMEOUT_MILLIS)) {
+         final ExecutorService consumers = Executors.newFixedThreadPool(2);
+         final Map<Long, Long> deliveryTimes = new ConcurrentHashMap<>();
+         final CountDownLatch latch = new CountDownLatch(2);
+         for (int i = 0; i < 2; ++i) {
+            consumers.execute(() -> {
+               Map<String, TestEvent> messages;
+               while ((messages = synchronizer.nextMessage()) != null) {
+                  deliveryTimes.put(messages.get("A").getPulseId(), System.currentTimeMillis());
+                  latch.countDown();
+                  try {
+                     // slow consumer
+                     TimeUnit.MILLISECONDS.sleep(processingMillis);
+                  } catch (InterruptedException e) {
+                     return;
+                  }
+               }
+            });
+         }
+         // let the consumers park
+         TimeUnit.MILLISECONDS.sleep(100);
+
+         final long start = System.currentTimeMillis();
+         // both deadlines pass while pulse 0 is the first pulse
+         synchronizer.addMessage(new TestEvent("A", 0, 0, 0));
+         synchronizer.addMessage(new TestEvent("A", 1, 0, 0));
+
+         // the second pulse does not wait for the consumer of the first one
+         assertTrue(latch.await(10, TimeUnit.SECONDS));
+         assertTrue(deliveryTimes.get(1L) - start < processingMillis);
+
+         synchronizer.close();
+         consumers.shutdownNow();
+         assertTrue(consumers.awaitTermination(10, TimeUnit.SECONDS));
+      }
+   }
+
+   @Test
+   public void testCancelOnClose() throws Exception {
+      final EvictionTimer timer = EvictionTimer.getInstance();
+      final int nrOfScheduled = timer.getNrOfScheduled();
+
+      AbstractMessageSynchronizerLockFree<TestEvent> synchronizer = createMessageSynchronizers(60000).get(0);
+      for (int pulseId = 0; pulseId < 10; ++pulseId) {
+         synchronizer.addMessage(new TestEvent("A", pulseId, 0, 0));
+      }
+      // (an eviction in transit from the queue to the wheel is not counted)
+      for (int i = 0; i < 100 && timer.getNrOfScheduled() < nrOfScheduled + 10; ++i) {
+         TimeUnit.MILLISECONDS.sleep(10);
+      }
+      assertEquals(nrOfScheduled + 10, timer.getNrOfScheduled());
+
+      // deadlines are dropped (and the synchronizer is not referenced anymore)
+      final WeakReference<AbstractMessageSynchronizerLockFree<TestEvent>> reference =
+            new WeakReference<>(synchronizer);
+      synchronizer.close();
+      synchronizer = null;
+      for (int i = 0; i < 100 && (timer.getNrOfScheduled() > nrOfScheduled || reference.get() != null); ++i) {
+         System.gc();
+         TimeUnit.MILLISECONDS.sleep(10);
+      }
+      assertTrue(timer.getNrOfScheduled() <= nrOfScheduled);
+      assertNull(reference.get());
+   }
+
+   private List<AbstractMessageSynchronizerLockFree<TestEvent>> createMessageSynchronizers(long timeoutMillis) {
+      return Arrays.asList(
+            new MessageSynchronizerCompleteAllLockFree<>(timeoutMillis, true, false, CHANNELS,
+                  (event) -> event.getChannel(), (event) -> event.getPulseId()),
+            new MessageSynchronizerCompleteAllRing<>(timeoutMillis, true, false, CHANNELS,
+                  (event) -> event.getChannel(), (event) -> event.getPulseId()));
+   }
+}
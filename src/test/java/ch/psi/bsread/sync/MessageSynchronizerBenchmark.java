@@ -0,0 +1,117 @@
+package ch.psi.bsread.sync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import ch.psi.bsread.configuration.Channel;
+
+/**
+ * Compares the throughput of the lock-free synchronizers (several producer threads, one per
+ * channel, and one consumer thread). Not a unit test, run it manually.
+ */
+public class MessageSynchronizerBenchmark {
+   private static final int NR_OF_CHANNELS = 4;
+   private static final int NR_OF_PULSES = 1000000;
+   private static final int MAX_NUMBER_OF_MESSAGES_TO_KEEP = 1000;
+   private static final int NR_OF_RUNS = 5;
+   // keeps producers close together (like sources sending at the same rate)
+   private static final int MAX_SKEW = 100;
+
+   private interface Factory {
+      AbstractMessageSynchronizer<TestEvent> create(
+            int maxNumberOfMessagesToKeep,
+            boolean sendIncompleteMessages,
+            boolean sendFirstComplete,
+            Collection<? extends SyncChannel> channels,
+            Function<TestEvent, String> channelNameProvider,
+            ToLongFunction<TestEvent> pulseIdProvider);
+   }
+
+   public static void main(String[] args) throws Exception {
+      for (int i = 0; i < NR_OF_RUNS; ++i) {
+         run("CompleteAllRing", MessageSynchronizerCompleteAllRing::new);
+         run("CompleteAllLockFree", MessageSynchronizerCompleteAllLockFree::new);
+         run("CompleteLatestLockFree", MessageSynchronizerCompleteLatestLockFree::new);
+      }
+   }
+
+   private static void run(String name, Factory factory) throws Exception {
+      final List<Channel> channels = new ArrayList<>(NR_OF_CHANNELS);
+      for (int i = 0; i < NR_OF_CHANNELS; ++i) {
+         channels.add(new Channel("Channel_" + i, 1));
+      }
+      final AbstractMessageSynchronizer<TestEvent> synchronizer =
+            factory.create(MAX_NUMBER_OF_MESSAGES_TO_KEEP, false, false, channels,
+                  (event) -> event.getChannel(), (event) -> event.getPulseId());
+
+      final AtomicLong received = new AtomicLong();
+      final Thread consumer = new Thread(() -> {
+         Map<String, TestEvent> messages;
+         while ((messages = synchronizer.nextMessage()) != null) {
+            received.incrementAndGet();
+            if (messages.values().iterator().next().getPulseId() == NR_OF_PULSES - 1) {
+               break;
+            }
+         }
+      });
+
+      final CountDownLatch startLatch = new CountDownLatch(1);
+      final AtomicLongArray progress = new AtomicLongArray(NR_OF_CHANNELS);
+      final List<Thread> producers = new ArrayList<>(NR_OF_CHANNELS);
+      for (int i = 0; i < NR_OF_CHANNELS; ++i) {
+         final Channel channel = channels.get(i);
+         final int index = i;
+         producers.add(new Thread(() -> {
+            try {
+               startLatch.await();
+            } catch (InterruptedException e) {
+               return;
+            }
+            for (long pulseId = 0; pulseId < NR_OF_PULSES; ++pulseId) {
+               while (pulseId - getSlowest(progress) > MAX_SKEW) {
+                  Thread.yield();
+               }
+               synchronizer.addMessage(new TestEvent(channel.getName(), pulseId, 0, 0));
+               progress.set(index, pulseId);
+            }
+         }));
+      }
+
+      consumer.start();
+      for (final Thread producer : producers) {
+         producer.start();
+      }
+      final long start = System.nanoTime();
+      startLatch.countDown();
+      for (final Thread producer : producers) {
+         producer.join();
+      }
+      consumer.join(TimeUnit.SECONDS.toMillis(10));
+      final long elapsed = System.nanoTime() - start;
+      synchronizer.close();
+      consumer.join();
+
+      System.out.printf("%-24s %10.0f msgs/s %10.0f pulses/s (%d of %d pulses)%n",
+            name,
+            (double) NR_OF_PULSES * NR_OF_CHANNELS / elapsed * TimeUnit.SECONDS.toNanos(1),
+            (double) received.get() / elapsed * TimeUnit.SECONDS.toNanos(1),
+            received.get(),
+            NR_OF_PULSES);
+   }
+
+   private static long getSlowest(AtomicLongArray progress) {
+      long slowest = Long.MAX_VALUE;
+      for (int i = 0; i < progress.length(); ++i) {
+         slowest = Math.min(slowest, progress.get(i));
+      }
+      return slowest;
+   }
+}
@@ -29,6 +29,8 @@ import org.junit.Test;
 
 import ch.psi.bsread.configuration.Channel;
 import ch.psi.bsread.message.Timestamp;
+import ch.psi.bsread.metrics.LogLinearHistogram;
+import ch.psi.bsread.metrics.PulseLatencies;
 
 public abstract class MessageSynchronizerCompleteAllTest {
    private static final long INIT_SLEEP = 0;
@@ -3660,6 +3662,34 @@ public abstract class MessageSynchronizerCompleteAllTest {
       assertTrue(AbstractMessageSynchronizer.isPulseIdMissing(2, 4, config));
    }
 
+   @Test
+   public void testMessageSynchronizer_PulseLatencies() throws Exception {
+      AbstractMessageSynchronizer<TestEvent> mBuffer =
+            createMessageSynchronizer(3, false, false, Arrays.asList(new Channel("A", 1), new Channel("B", 1)),
+                  (event) -> event.getChannel(), (event) -> event.getPulseId());
+      PulseLatencies latencies = new PulseLatencies();
+      Timestamp globalTime = new Timestamp(System.currentTimeMillis() / 1000, 0);
+      mBuffer.setPulseLatencies(latencies, (event) -> globalTime);
+      MessageSynchronizerBlockingQueue<TestEvent> completeQueue = new MessageSynchronizerBlockingQueue<>(5, mBuffer);
+      completeQueue.await(AWAIT_TIMEOUT, TimeUnit.SECONDS);
+
+      completeQueue.initBarrier(2);
+      mBuffer.addMessage(newMessage(1, globalTime, "A"));
+      mBuffer.addMessage(newMessage(1, globalTime, "B"));
+      mBuffer.addMessage(newMessage(2, globalTime, "A"));
+      mBuffer.addMessage(newMessage(2, globalTime, "B"));
+      // recorded once the pulses are complete (independent of the consumer)
+      LogLinearHistogram histogram = latencies.getHistogram(PulseLatencies.Stage.SYNCHRONIZED);
+      assertEquals(2, histogram.getCount());
+      completeQueue.await(AWAIT_TIMEOUT, TimeUnit.SECONDS);
+
+      assertEquals(2, completeQueue.size());
+      assertEquals(2, histogram.getCount());
+      assertTrue(histogram.getMax() < TimeUnit.SECONDS.toNanos(10));
+
+      completeQueue.close();
+   }
+
    private TestEvent newMessage(long pulseId, Timestamp globalTime, String channel) {
       return new TestEvent(channel, pulseId, globalTime.getSec(), globalTime.getNs());
    }
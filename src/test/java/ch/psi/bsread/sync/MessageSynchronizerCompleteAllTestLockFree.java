@@ -1,9 +1,19 @@
 package ch.psi.bsread.sync;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.ToLongFunction;
 
+import org.junit.Test;
+
+import ch.psi.bsread.configuration.Channel;
+
 public class MessageSynchronizerCompleteAllTestLockFree extends MessageSynchronizerCompleteAllTest {
 
    @Override
@@ -40,6 +50,39 @@ public class MessageSynchronizerCompleteAllTestLockFree extends MessageSynchroni
             pulseIdProvider);
    }
 
+   @Test
+   public void testEvictionWithConcurrentlyAddedOlderPulse() throws Exception {
+      List<Channel> channels = Arrays.asList(new Channel("A", 1), new Channel("B", 1));
+      AtomicBoolean addOlderPulse = new AtomicBoolean();
+      // every pulse times out immediately
+      MessageSynchronizerCompleteAllLockFree<TestEvent> synchronizer =
+            new MessageSynchronizerCompleteAllLockFree<TestEvent>(0, true, false, channels,
+                  (event) -> event.getChannel(), (event) -> event.getPulseId()) {
+
+               @Override
+               protected int getNumberOfExpectedChannels(long pulseId) {
+                  if (pulseId == 5 && addOlderPulse.compareAndSet(true, false)) {
+                     // another producer adds an older pulse after the consumer took pulse 5 as
+                     // the first one
+                     addMessage(new TestEvent("A", 3, 0, 0));
+                  }
+                  return super.getNumberOfExpectedChannels(pulseId);
+               }
+            };
+
+      synchronizer.addMessage(new TestEvent("A", 5, 0, 0));
+      addOlderPulse.set(true);
+
+      // the older pulse is evicted first (instead of being dropped together with pulse 5)
+      Map<String, TestEvent> messages = synchronizer.nextMessage();
+      assertEquals(3, messages.get("A").getPulseId());
+      messages = synchronizer.nextMessage();
+      assertEquals(5, messages.get("A").getPulseId());
+      assertEquals(0, synchronizer.getBufferSize());
+
+      synchronizer.close();
+   }
+
    // @Test
    // public void testSpecific() throws Exception {
    // testMessageSynchronizer_LoadTestTime_3_100Hz_Forget();
@@ -0,0 +1,136 @@
+package ch.psi.bsread.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.psi.bsread.RequestedChannelFilter;
+import ch.psi.bsread.configuration.Channel;
+import ch.psi.bsread.message.ChannelConfig;
+import ch.psi.bsread.message.DataHeader;
+import ch.psi.bsread.message.Type;
+
+public class PulsePhaseTableTest {
+
+   private static boolean isExpected(long pulseId, SyncChannel channel) {
+      return ((pulseId - channel.getOffset()) % channel.getModulo()) == 0;
+   }
+
+   private void check(List<Channel> channels, PulsePhaseTable table) {
+      for (long pulseId = -1000; pulseId < 1000; ++pulseId) {
+         int count = 0;
+         for (int i = 0; i < channels.size(); ++i) {
+            boolean expected = isExpected(pulseId, channels.get(i));
+            assertEquals(expected, table.isSet(pulseId, i));
+            if (expected) {
+               ++count;
+            }
+         }
+         assertEquals(count, table.getCount(pulseId));
+         // cached if not tabulated
+         assertEquals(count, table.getCount(pulseId));
+         assertEquals(count > 0, table.isAnySet(pulseId));
+      }
+   }
+
+   @Test
+   public void testTable() {
+      List<Channel> channels = Arrays.asList(
+            new Channel("A", 1, 0),
+            new Channel("B", 10, 0),
+            new Channel("C", 10, 3),
+            new Channel("D", 4, -1),
+            new Channel("E", 100, 150));
+
+      PulsePhaseTable table = new PulsePhaseTable(channels);
+      assertEquals(100, table.getPeriod());
+      check(channels, table);
+
+      // table would be too big
+      table = new PulsePhaseTable(channels, null, channels.size(), 50);
+      assertEquals(0, table.getPeriod());
+      check(channels, table);
+   }
+
+   @Test
+   public void testAnySetBetween() {
+      List<Channel> channels = Arrays.asList(
+            new Channel("B", 10, 0),
+            new Channel("C", 10, 3),
+            new Channel("E", 100, 50));
+      List<SyncChannel> syncChannels = new ArrayList<>(channels);
+
+      PulsePhaseTable table = new PulsePhaseTable(channels);
+      assertEquals(100, table.getPeriod());
+      for (long last = 0; last < 300; ++last) {
+         for (long next = last; next < last + 250; ++next) {
+            assertEquals(AbstractMessageSynchronizer.isPulseIdMissing(last, next, syncChannels),
+                  table.isAnySetBetween(last, next));
+         }
+      }
+
+      table = new PulsePhaseTable(Arrays.asList(new Channel("A", 1, 0)));
+      assertFalse(table.isAnySetBetween(5, 6));
+      assertTrue(table.isAnySetBetween(5, 7));
+      assertFalse(new PulsePhaseTable(new ArrayList<Channel>()).isAnySetBetween(5, 500));
+   }
+
+   @Test
+   public void testSharedBits() {
+      List<Channel> channels = Arrays.asList(
+            new Channel("A", 10, 0),
+            new Channel("A", 10, 5),
+            new Channel("B", 3, 0));
+      int[] bits = new int[] {1, 1, 0};
+
+      for (int maxTableSize : new int[] {PulsePhaseTable.DEFAULT_MAX_TABLE_SIZE, 1}) {
+         PulsePhaseTable table = new PulsePhaseTable(channels, bits, 2, maxTableSize);
+         for (long pulseId = 0; pulseId < 100; ++pulseId) {
+            assertEquals(pulseId % 5 == 0, table.isSet(pulseId, 1));
+            assertEquals(pulseId % 3 == 0, table.isSet(pulseId, 0));
+         }
+      }
+   }
+
+   @Test
+   public void testRequestedChannelFilter() {
+      List<Channel> requested = Arrays.asList(
+            new Channel("B", 10, 0),
+            new Channel("X", 2, 0));
+      RequestedChannelFilter filter = new RequestedChannelFilter(requested);
+      assertTrue(filter.isCompiledFrom(requested));
+      assertFalse(filter.isCompiledFrom(Arrays.asList(new Channel("B", 10, 0), new Channel("X", 2, 1))));
+      List<Channel> added = new ArrayList<>(requested);
+      filter = new RequestedChannelFilter(added);
+      added.add(new Channel("C", 5, 0));
+      assertFalse(filter.isCompiledFrom(added));
+      filter = new RequestedChannelFilter(requested);
+
+      assertTrue(filter.isAnyRequested(0));
+      assertTrue(filter.isAnyRequested(2));
+      assertFalse(filter.isAnyRequested(1));
+      assertEquals(Arrays.asList("X"), Arrays.asList(filter.getRequestedChannels(4).toArray()));
+
+      DataHeader dataHeader = new DataHeader();
+      dataHeader.addChannel(new ChannelConfig("A", Type.Int32));
+      dataHeader.addChannel(new ChannelConfig("B", Type.Int32));
+      PulsePhaseTable slots = filter.getSlotTable(dataHeader);
+      assertSame(slots, filter.getSlotTable(dataHeader));
+      for (long pulseId = 0; pulseId < 100; ++pulseId) {
+         assertFalse(slots.isSet(pulseId, 0));
+         assertEquals(pulseId % 10 == 0, slots.isSet(pulseId, 1));
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRequestedChannelFilterModuloZero() {
+      new RequestedChannelFilter(Arrays.asList(new Channel("A", 0, 0)));
+   }
+}
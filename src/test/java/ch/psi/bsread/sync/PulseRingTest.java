@@ -0,0 +1,147 @@
+package ch.psi.bsread.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PulseRingTest {
+
+   @Test
+   public void testCapacity() {
+      assertEquals(1, new PulseRing<String>(1).getCapacity());
+      assertEquals(8, new PulseRing<String>(5).getCapacity());
+      assertEquals(8, new PulseRing<String>(8).getCapacity());
+      assertEquals(PulseRing.DEFAULT_CAPACITY, new PulseRing<String>().getCapacity());
+   }
+
+   @Test
+   public void testAddGetRemove() {
+      PulseRing<String> ring = new PulseRing<>(8);
+      assertTrue(ring.isEmpty());
+      assertEquals(Long.MIN_VALUE, ring.firstPulseId());
+      assertNull(ring.first());
+
+      assertEquals("100", ring.computeIfAbsent(100, (pulseId) -> "" + pulseId));
+      assertEquals("100", ring.computeIfAbsent(100, (pulseId) -> "other"));
+      assertEquals("102", ring.computeIfAbsent(102, (pulseId) -> "" + pulseId));
+      assertEquals("101", ring.computeIfAbsent(101, (pulseId) -> "" + pulseId));
+      assertEquals(3, ring.size());
+      assertEquals(100, ring.firstPulseId());
+      assertEquals("100", ring.first());
+      assertEquals(102, ring.getLatestPulseId());
+      assertEquals("101", ring.get(101));
+      assertNull(ring.get(103));
+      // same slot as 101
+      assertNull(ring.get(109));
+
+      assertEquals("100", ring.remove(100));
+      assertNull(ring.remove(100));
+      assertEquals(2, ring.size());
+      assertEquals(101, ring.firstPulseId());
+
+      assertEquals("102", ring.remove(102));
+      assertEquals(1, ring.size());
+      assertEquals(101, ring.firstPulseId());
+   }
+
+   @Test
+   public void testClearHead() {
+      PulseRing<String> ring = new PulseRing<>(8);
+      for (long pulseId = 10; pulseId < 16; ++pulseId) {
+         ring.computeIfAbsent(pulseId, (id) -> "" + id);
+      }
+      assertEquals(6, ring.size());
+
+      ring.clearHead(12, false);
+      assertEquals(4, ring.size());
+      assertEquals(12, ring.firstPulseId());
+      assertNull(ring.get(11));
+
+      ring.clearHead(13, true);
+      assertEquals(2, ring.size());
+      assertEquals(14, ring.firstPulseId());
+
+      // older than the head (e.g. a late message)
+      assertEquals("8", ring.computeIfAbsent(8, (id) -> "" + id));
+      assertEquals(8, ring.firstPulseId());
+      assertEquals(3, ring.size());
+
+      ring.clearHead(100, true);
+      assertTrue(ring.isEmpty());
+      assertEquals(Long.MIN_VALUE, ring.firstPulseId());
+   }
+
+   @Test
+   public void testOverflow() {
+      PulseRing<String> ring = new PulseRing<>(4);
+      for (long pulseId = 0; pulseId < 4; ++pulseId) {
+         ring.computeIfAbsent(pulseId, (id) -> "" + id);
+      }
+
+      // slot still occupied by pulse 0
+      assertNull(ring.computeIfAbsent(4, (id) -> "" + id));
+      assertEquals(4, ring.size());
+
+      ring.clearHead(0, true);
+      assertEquals("4", ring.computeIfAbsent(4, (id) -> "" + id));
+      assertEquals(1, ring.firstPulseId());
+      assertEquals(4, ring.size());
+   }
+
+   @Test
+   public void testGap() {
+      PulseRing<String> ring = new PulseRing<>(8);
+      ring.computeIfAbsent(5, (id) -> "" + id);
+      // pulse-ids jumped by more than the capacity
+      ring.computeIfAbsent(1000, (id) -> "" + id);
+      ring.computeIfAbsent(1001, (id) -> "" + id);
+      assertEquals(5, ring.firstPulseId());
+
+      ring.remove(5);
+      assertEquals(1000, ring.firstPulseId());
+
+      ring.clearHead(1000, true);
+      assertEquals(1001, ring.firstPulseId());
+      assertEquals(1, ring.size());
+   }
+
+   @Test
+   public void testConcurrentAdd() throws Exception {
+      final PulseRing<AtomicInteger> ring = new PulseRing<>(1024);
+      final int nrOfThreads = 4;
+      final int nrOfPulses = 1000;
+      final ExecutorService executor = Executors.newFixedThreadPool(nrOfThreads);
+      final CountDownLatch latch = new CountDownLatch(nrOfThreads);
+
+      for (int i = 0; i < nrOfThreads; ++i) {
+         executor.execute(() -> {
+            for (long pulseId = 0; pulseId < nrOfPulses; ++pulseId) {
+               ring.computeIfAbsent(pulseId, (id) -> new AtomicInteger()).incrementAndGet();
+            }
+            latch.countDown();
+         });
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      executor.shutdown();
+
+      assertEquals(nrOfPulses, ring.size());
+      assertEquals(0, ring.firstPulseId());
+      for (long pulseId = 0; pulseId < nrOfPulses; ++pulseId) {
+         assertEquals(nrOfThreads, ring.get(pulseId).get());
+      }
+
+      final AtomicInteger first = ring.get(0);
+      assertSame(first, ring.first());
+      ring.clearHead(nrOfPulses, false);
+      assertTrue(ring.isEmpty());
+   }
+}
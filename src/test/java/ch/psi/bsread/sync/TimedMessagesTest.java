@@ -0,0 +1,36 @@
+package ch.psi.bsread.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TimedMessagesTest {
+
+   @Test
+   public void testPut() {
+      TimedMessages<String> messages = new TimedMessages<>(10, new String[] {"A", "B", "C"});
+      assertEquals(10, messages.getSubmitTime());
+      assertEquals(0, messages.availableChannels());
+      assertEquals(0, messages.getMessagesMap().size());
+
+      assertEquals(1, messages.put(2, "C1"));
+      assertEquals(2, messages.put(0, "A1"));
+      // replaces the message of the channel
+      assertEquals(2, messages.put(2, "C2"));
+      assertEquals(2, messages.availableChannels());
+
+      Map<String, String> messagesMap = messages.getMessagesMap();
+      assertEquals(2, messagesMap.size());
+      assertEquals("A1", messagesMap.get("A"));
+      assertEquals("C2", messagesMap.get("C"));
+      assertFalse(messagesMap.containsKey("B"));
+
+      // snapshot
+      assertEquals(3, messages.put(1, "B1"));
+      assertEquals(2, messagesMap.size());
+      assertEquals(3, messages.getMessagesMap().size());
+   }
+}
@@ -0,0 +1,93 @@
+package ch.psi.bsread.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ch.psi.bsread.configuration.Channel;
+import ch.psi.bsread.sync.AbstractMessageSynchronizerLockFree.WaitStrategy;
+
+public class WaitStrategyTest {
+   private static final int NR_OF_CONSUMERS = 4;
+   private static final int NR_OF_PULSES = 10000;
+
+   @Test
+   public void testBlocking() throws Exception {
+      AbstractMessageSynchronizerLockFree<TestEvent> synchronizer = createMessageSynchronizer();
+      assertEquals(WaitStrategy.BLOCKING, synchronizer.getWaitStrategy());
+      consume(synchronizer);
+
+      // consumers do not park for every pulse (handover) and are not all woken up for every pulse
+      assertTrue(synchronizer.getNumberOfWakeups() <= NR_OF_PULSES);
+   }
+
+   @Test
+   public void testYielding() throws Exception {
+      AbstractMessageSynchronizerLockFree<TestEvent> synchronizer = createMessageSynchronizer();
+      synchronizer.setWaitStrategy(WaitStrategy.YIELDING);
+      consume(synchronizer);
+
+      assertEquals(0, synchronizer.getNumberOfParks());
+   }
+
+   @Test
+   public void testBusySpin() throws Exception {
+      AbstractMessageSynchronizerLockFree<TestEvent> synchronizer = createMessageSynchronizer();
+      synchronizer.setWaitStrategy(WaitStrategy.BUSY_SPIN);
+      consume(synchronizer);
+
+      assertEquals(0, synchronizer.getNumberOfParks());
+   }
+
+   private AbstractMessageSynchronizerLockFree<TestEvent> createMessageSynchronizer() {
+      List<Channel> channels = Arrays.asList(new Channel("A", 1), new Channel("B", 1));
+      // the ring holds all pulses (the producer might run far ahead of the consumers)
+      return new MessageSynchronizerCompleteAllRing<>(Integer.MAX_VALUE, Long.MAX_VALUE, false, false, channels,
+            (event) -> event.getChannel(), (event) -> event.getPulseId(), 2 * NR_OF_PULSES);
+   }
+
+   private void consume(AbstractMessageSynchronizerLockFree<TestEvent> synchronizer) throws Exception {
+      final ExecutorService executor = Executors.newFixedThreadPool(NR_OF_CONSUMERS);
+      final Map<Long, Boolean> received = new ConcurrentHashMap<>();
+      final AtomicInteger duplicates = new AtomicInteger();
+      final CountDownLatch latch = new CountDownLatch(NR_OF_PULSES);
+
+      for (int i = 0; i < NR_OF_CONSUMERS; ++i) {
+         executor.execute(() -> {
+            Map<String, TestEvent> messages;
+            while ((messages = synchronizer.nextMessage()) != null) {
+               assertEquals(2, messages.size());
+               if (received.put(messages.get("A").getPulseId(), Boolean.TRUE) != null) {
+                  duplicates.incrementAndGet();
+               }
+               latch.countDown();
+            }
+         });
+      }
+
+      for (long pulseId = 0; pulseId < NR_OF_PULSES; ++pulseId) {
+         synchronizer.addMessage(new TestEvent("A", pulseId, 0, 0));
+         synchronizer.addMessage(new TestEvent("B", pulseId, 0, 0));
+      }
+
+      assertTrue(latch.await(30, TimeUnit.SECONDS));
+      synchronizer.close();
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+      assertEquals(NR_OF_PULSES, received.size());
+      assertEquals(0, duplicates.get());
+      assertEquals(0, synchronizer.getBufferSize());
+   }
+}